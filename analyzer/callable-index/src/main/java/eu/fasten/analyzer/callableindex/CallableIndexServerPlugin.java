@@ -21,6 +21,7 @@ package eu.fasten.analyzer.callableindex;
 import eu.fasten.core.data.callableindex.ExtendedGidGraph;
 import eu.fasten.core.data.callableindex.RocksDao;
 import eu.fasten.core.plugins.CallableIndexConnector;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
 import eu.fasten.core.plugins.KafkaPlugin;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -45,7 +46,7 @@ public class CallableIndexServerPlugin extends Plugin {
     }
 
     @Extension
-    public static class CallableIndexFastenPlugin implements KafkaPlugin, CallableIndexConnector {
+    public static class CallableIndexFastenPlugin implements ConcurrentKafkaPlugin, CallableIndexConnector {
 
         private List<String> consumeTopics = new LinkedList<>(List.of("fasten.MetadataDBJavaExtension.priority.out",
                 "fasten.MetadataDBExtension.out"));
@@ -68,6 +69,14 @@ public class CallableIndexServerPlugin extends Plugin {
             this.consumeTopics = consumeTopics;
         }
 
+        @Override
+        public KafkaPlugin newWorker() {
+            // RocksDB supports concurrent writes, and the DAO is shared
+            var worker = new CallableIndexFastenPlugin();
+            worker.setTopics(consumeTopics);
+            return worker;
+        }
+
         @Override
         public Optional<String> produce() {
             final var output = new JSONObject();
@@ -25,6 +25,7 @@ import static java.lang.System.currentTimeMillis;
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONObject;
 import org.pf4j.Extension;
@@ -97,6 +98,7 @@ public class OPALPlugin extends Plugin {
                         + artifactId + File.separator + product + ".json";
 
                 logger.info("[CG-GENERATION] [SUCCESS] [" + duration + "] [" + mavenCoordinate.getCoordinate() + "] [NONE] ");
+                stageTimer("cg-generation").record(duration, TimeUnit.MILLISECONDS);
 
             } catch (OPALException | EmptyCallGraphException e) {
                 setError(mavenCoordinate, startTime, e, "CG-GENERATION");
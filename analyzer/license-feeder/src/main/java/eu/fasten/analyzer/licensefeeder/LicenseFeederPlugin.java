@@ -3,6 +3,7 @@ package eu.fasten.analyzer.licensefeeder;
 import eu.fasten.core.data.Constants;
 import eu.fasten.core.data.metadatadb.MetadataDao;
 import dev.c0ps.maven.data.Revision;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
 import eu.fasten.core.plugins.DBConnector;
 import eu.fasten.core.plugins.KafkaPlugin;
 import org.jooq.DSLContext;
@@ -29,7 +30,7 @@ public class LicenseFeederPlugin extends Plugin {
     }
 
     @Extension
-    public static class LicenseFeeder implements KafkaPlugin, DBConnector {
+    public static class LicenseFeeder implements ConcurrentKafkaPlugin, DBConnector {
 
         private final Logger logger = LoggerFactory.getLogger(LicenseFeeder.class.getName());
 
@@ -53,6 +54,14 @@ public class LicenseFeederPlugin extends Plugin {
             this.consumeTopics = consumeTopics;
         }
 
+        @Override
+        public KafkaPlugin newWorker() {
+            // The only per-record state is the plugin error; the database context is shared
+            var worker = new LicenseFeeder();
+            worker.setTopics(consumeTopics);
+            return worker;
+        }
+
         @Override
         public void consume(String record) {
             this.pluginError = null;
@@ -31,8 +31,8 @@ import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallablesRecord;
 import eu.fasten.core.exceptions.UnrecoverableError;
 import dev.c0ps.maven.MavenUtilities;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
 import eu.fasten.core.plugins.DBConnector;
-import eu.fasten.core.plugins.KafkaPlugin;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
@@ -59,7 +59,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-public abstract class MetadataDBExtension implements KafkaPlugin, DBConnector {
+public abstract class MetadataDBExtension implements ConcurrentKafkaPlugin, DBConnector {
 
     protected List<String> consumeTopics = null;
     private static DSLContext dslContext;
@@ -300,7 +300,7 @@ public abstract class MetadataDBExtension implements KafkaPlugin, DBConnector {
         
         // Create a GID Graph for production
         this.gidGraph = new ExtendedGidGraph(packageVersionId, callGraph.product, callGraph.version,
-                callablesIds, numInternal, edges, gid2uriMap, typesMap);
+                callablesIds, numInternal, edges, gid2uriMap, typesMap, getTypeHierarchy(callGraph));
         return packageVersionId;
     }
 
@@ -308,6 +308,18 @@ public abstract class MetadataDBExtension implements KafkaPlugin, DBConnector {
         return new HashMap<>();
     }
 
+    /**
+     * Returns the class hierarchy of the internal types of a call graph, which is stored
+     * in the graph database along with the GID graph.
+     *
+     * @param graph Call graph
+     * @return Map from internal types to their direct supertypes (superclasses first, then
+     * superinterfaces), or null if the forge has no class hierarchy
+     */
+    protected Map<String, List<String>> getTypeHierarchy(PartialCallGraph graph) {
+        return null;
+    }
+
     // All classes that implements this class must provide an implementation
     // for this method. We cannot convert this class to an abstract class.
     public Pair<ArrayList<CallablesRecord>, Integer> insertDataExtractCallables(
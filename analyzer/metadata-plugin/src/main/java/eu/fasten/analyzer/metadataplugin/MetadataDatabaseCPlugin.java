@@ -29,6 +29,7 @@ import eu.fasten.core.data.metadatadb.MetadataDao;
 import eu.fasten.core.data.metadatadb.codegen.enums.Access;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallablesRecord;
+import eu.fasten.core.plugins.KafkaPlugin;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -68,6 +69,13 @@ public class MetadataDatabaseCPlugin extends Plugin {
             return MetadataDBCExtension.dslContext;
         }
 
+        @Override
+        public KafkaPlugin newWorker() {
+            var worker = new MetadataDBCExtension();
+            worker.setTopics(consumeTopics);
+            return worker;
+        }
+
         private static final String globalNamespace = "C";
         private static final String moduleNamespaceAddition = "_module";
 
@@ -25,6 +25,7 @@ import eu.fasten.core.data.metadatadb.codegen.enums.CallableType;
 import eu.fasten.core.data.metadatadb.codegen.enums.CallType;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallablesRecord;
+import eu.fasten.core.plugins.KafkaPlugin;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -61,6 +62,13 @@ public class MetadataDatabaseJavaPlugin extends Plugin {
             return MetadataDBJavaExtension.dslContext;
         }
 
+        @Override
+        public KafkaPlugin newWorker() {
+            var worker = new MetadataDBJavaExtension();
+            worker.setTopics(consumeTopics);
+            return worker;
+        }
+
         /**
          * Sets outputPath to a JSON file where plugin's output can be stored.
          *
@@ -102,6 +110,18 @@ public class MetadataDatabaseJavaPlugin extends Plugin {
             return metadataDao.insertNamespaces(namespaces);
         }
 
+        @Override
+        protected Map<String, List<String>> getTypeHierarchy(PartialCallGraph graph) {
+            var internalTypes = ((PartialJavaCallGraph) graph).getClassHierarchy().get(JavaScope.internalTypes);
+            var typeHierarchy = new HashMap<String, List<String>>(internalTypes.size());
+            internalTypes.forEach((fastenUri, type) -> {
+                var superTypes = new ArrayList<>(JavaType.toListOfString(type.getSuperClasses()));
+                superTypes.addAll(JavaType.toListOfString(type.getSuperInterfaces()));
+                typeHierarchy.put(fastenUri, superTypes);
+            });
+            return typeHierarchy;
+        }
+
         public Pair<ArrayList<CallablesRecord>, Integer> insertDataExtractCallables(
             PartialCallGraph callgraph, MetadataDao metadataDao, long packageVersionId,
             Map<String, Long> namespaceMap) {
@@ -24,6 +24,7 @@ import eu.fasten.core.data.metadatadb.codegen.enums.Access;
 import eu.fasten.core.data.metadatadb.codegen.enums.CallableType;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallablesRecord;
+import eu.fasten.core.plugins.KafkaPlugin;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -59,6 +60,13 @@ public class MetadataDatabasePythonPlugin extends Plugin {
             return MetadataDBPythonExtension.dslContext;
         }
 
+        @Override
+        public KafkaPlugin newWorker() {
+            var worker = new MetadataDBPythonExtension();
+            worker.setTopics(consumeTopics);
+            return worker;
+        }
+
         protected Map<String, Long> getNamespaceMap(PartialCallGraph graph, MetadataDao metadataDao) {
             PartialPythonCallGraph pyGraph = (PartialPythonCallGraph) graph;
             var namespaces = new HashSet<String>();
@@ -81,6 +81,12 @@ public class ParallelVulnerabilityCacheInvalidationPlugin extends Plugin {
             logger.info("...Dependency Graph has been successfully built.");
         }
 
+        @Override
+        public boolean setGraphResolver(IMavenResolver graphResolver) {
+            ParallelVulnerabilityCacheInvalidationExtension.graphResolver = graphResolver;
+            return true;
+        }
+
         /**
          * The helper method that creates a graph resolver. It is overloaded method that allows to load graph resolver from the mocked instance. Currently, used for testing purposes.
          *
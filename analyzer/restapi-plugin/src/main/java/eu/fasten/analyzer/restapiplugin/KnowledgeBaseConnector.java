@@ -136,7 +136,7 @@ public class KnowledgeBaseConnector {
             logger.info("Establishing connection to the " + kbForge + " KnowledgeBase at " + kbUrl + ", user " + kbUser + "...");
             // JDBC auto-commit should be false: (1) Postgres doesn't like it when using non-zero fetch size.
             // (2) It is not usually a good practice.
-            dbContext = PostgresConnector.getDSLContext(kbUrl, kbUser, false);
+            dbContext = PostgresConnector.getPooledDSLContext(kbUrl, kbUser, false);
             kbDao = new MetadataDao(dbContext);
         } catch (SQLException e) {
             logger.error("Couldn't connect to the KnowledgeBase", e);
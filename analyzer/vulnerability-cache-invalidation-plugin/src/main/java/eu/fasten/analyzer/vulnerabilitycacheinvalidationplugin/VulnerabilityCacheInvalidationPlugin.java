@@ -85,6 +85,12 @@ public class VulnerabilityCacheInvalidationPlugin extends Plugin {
             logger.info("...Dependency Graph has been successfully built.");
         }
 
+        @Override
+        public boolean setGraphResolver(IMavenResolver graphResolver) {
+            VulnerabilityCacheInvalidationExtension.graphResolver = graphResolver;
+            return true;
+        }
+
         /**
          * The helper method that creates a graph resolver.
          * It is overloaded method that allows to load graph resolver from the mocked instance.
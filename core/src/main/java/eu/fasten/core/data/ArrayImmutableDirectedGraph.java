@@ -44,7 +44,8 @@ import it.unimi.dsi.fastutil.longs.LongSet;
  * {@linkplain ArrayImmutableDirectedGraph.Builder#addExternalNode(long) external}) and
  * {@linkplain ArrayImmutableDirectedGraph.Builder#addArc(long, long) arcs}, and finally an
  * immutable instance can be built using the {@link ArrayImmutableDirectedGraph.Builder#build()
- * Builder.build()} method.
+ * Builder.build()} method. Large graphs whose arcs are generated in bulk can be built more
+ * efficiently using a {@link ArrayImmutableDirectedGraph.BulkBuilder BulkBuilder}.
  *
  * <p>
  * The representation is extremely compact and easy on the garbage collector, using a single array
@@ -145,6 +146,137 @@ public class ArrayImmutableDirectedGraph implements DirectedGraph, Serializable
 		}
 	}
 
+	/**
+	 * A builder accumulating nodes and arcs in primitive arrays, suitable for large graphs whose arcs
+	 * are generated in bulk (e.g., by {@link eu.fasten.core.merge.CGMerger}).
+	 *
+	 * <p>
+	 * Differently from a {@link Builder}, this builder does not check for duplicates: nodes and arcs
+	 * can be added any number of times, and the endpoints of arcs need not be added explicitly. At
+	 * {@linkplain #build() construction time} arcs are sorted lexicographically, duplicates are
+	 * removed, and the endpoints of arcs are added as internal nodes, unless they have been added as
+	 * external nodes. A node that has been added both as an internal and as an external node is
+	 * external.
+	 *
+	 * <p>
+	 * Instances are not thread safe, but they can be {@linkplain #addAll(BulkBuilder) combined}, so
+	 * that each thread can fill a separate instance.
+	 */
+	public static class BulkBuilder {
+		/** The sources of the arcs. */
+		private long[] sources = LongArrays.EMPTY_ARRAY;
+		/** The targets of the arcs. */
+		private long[] targets = LongArrays.EMPTY_ARRAY;
+		/** The number of (possibly duplicate) arcs in {@link #sources} and {@link #targets}. */
+		private int numArcs;
+		/** The nodes added explicitly as internal nodes. */
+		private final LongArrayList internalNodes = new LongArrayList();
+		/** The nodes added explicitly as external nodes. */
+		private final LongArrayList externalNodes = new LongArrayList();
+
+		public void addInternalNode(final long node) {
+			internalNodes.add(node);
+		}
+
+		public void addExternalNode(final long node) {
+			externalNodes.add(node);
+		}
+
+		public void addArc(final long x, final long y) {
+			if (numArcs == sources.length) {
+				if (numArcs == Integer.MAX_VALUE - 8) throw new IllegalStateException("Graph is too large");
+				sources = LongArrays.grow(sources, numArcs + 1);
+				targets = LongArrays.grow(targets, numArcs + 1);
+			}
+			sources[numArcs] = x;
+			targets[numArcs++] = y;
+		}
+
+		/**
+		 * Adds to this builder all nodes and arcs of another builder.
+		 *
+		 * @param builder another builder.
+		 * @return this builder.
+		 */
+		public BulkBuilder addAll(final BulkBuilder builder) {
+			internalNodes.addAll(builder.internalNodes);
+			externalNodes.addAll(builder.externalNodes);
+			if ((long)numArcs + builder.numArcs > Integer.MAX_VALUE - 8) throw new IllegalStateException("Graph is too large");
+			sources = LongArrays.ensureCapacity(sources, numArcs + builder.numArcs, numArcs);
+			targets = LongArrays.ensureCapacity(targets, numArcs + builder.numArcs, numArcs);
+			System.arraycopy(builder.sources, 0, sources, numArcs, builder.numArcs);
+			System.arraycopy(builder.targets, 0, targets, numArcs, builder.numArcs);
+			numArcs += builder.numArcs;
+			return this;
+		}
+
+		/**
+		 * Builds an {@link ArrayImmutableDirectedGraph} with sorted predecessor and successor lists.
+		 *
+		 * <p>
+		 * After this call, arcs in this builder are sorted and deduplicated, but the builder can
+		 * still be used.
+		 *
+		 * @return an {@link ArrayImmutableDirectedGraph} with sorted predecessor and successor lists.
+		 */
+		public ArrayImmutableDirectedGraph build() {
+			// Sort arcs lexicographically and remove duplicates
+			LongArrays.radixSort(sources, targets, 0, numArcs);
+			int m = 0;
+			for (int i = 0; i < numArcs; i++) {
+				if (m != 0 && sources[i] == sources[m - 1] && targets[i] == targets[m - 1]) continue;
+				sources[m] = sources[i];
+				targets[m++] = targets[i];
+			}
+			numArcs = m;
+
+			// Sorted node set
+			final long size = (long)internalNodes.size() + externalNodes.size() + 2L * m;
+			if (size > Integer.MAX_VALUE - 8) throw new IllegalStateException("Graph is too large");
+			long[] nodes = new long[(int)size];
+			internalNodes.getElements(0, nodes, 0, internalNodes.size());
+			externalNodes.getElements(0, nodes, internalNodes.size(), externalNodes.size());
+			System.arraycopy(sources, 0, nodes, internalNodes.size() + externalNodes.size(), m);
+			System.arraycopy(targets, 0, nodes, internalNodes.size() + externalNodes.size() + m, m);
+			LongArrays.radixSort(nodes);
+			int n = 0;
+			for (int i = 0; i < nodes.length; i++) if (n == 0 || nodes[i] != nodes[n - 1]) nodes[n++] = nodes[i];
+			nodes = Arrays.copyOf(nodes, n);
+			if (n + 2L * m > Integer.MAX_VALUE - 8) throw new IllegalStateException("Graph is too large");
+
+			// Degrees; sources are sorted, so we can scan them in parallel with the nodes
+			final int[] outdegree = new int[n], indegree = new int[n];
+			final int[] target = new int[m];
+			for (int i = 0, x = 0; i < m; i++) {
+				while (nodes[x] != sources[i]) x++;
+				outdegree[x]++;
+				indegree[target[i] = Arrays.binarySearch(nodes, targets[i])]++;
+			}
+
+			final long[] succpred = new long[n + 2 * m];
+			final int[] successor = new int[n], predecessor = new int[n];
+			final Long2IntOpenHashMap GID2Offset = new Long2IntOpenHashMap(n);
+			GID2Offset.defaultReturnValue(-1);
+			for (int x = 0, offset = 0; x < n; x++) {
+				GID2Offset.put(nodes[x], offset);
+				succpred[offset] = outdegree[x] | (long)indegree[x] << 32;
+				// Next free positions for a successor and for a predecessor of x
+				successor[x] = offset + 1;
+				predecessor[x] = offset + 1 + outdegree[x];
+				offset += 1 + outdegree[x] + indegree[x];
+			}
+
+			// Since arcs are sorted, successors and predecessors are added in increasing order
+			for (int i = 0, x = 0; i < m; i++) {
+				while (nodes[x] != sources[i]) x++;
+				succpred[successor[x]++] = targets[i];
+				succpred[predecessor[target[i]]++] = sources[i];
+			}
+
+			return new ArrayImmutableDirectedGraph(GID2Offset, succpred, new LongOpenHashSet(externalNodes));
+		}
+	}
+
 	public static ArrayImmutableDirectedGraph copyOf(final DirectedGraph graph, final boolean sorted) {
 		Builder builder = new Builder();
 		graph.forEach(x -> { if (graph.isInternal(x)) builder.addInternalNode(x); else builder.addExternalNode(x); });
@@ -194,6 +326,13 @@ public class ArrayImmutableDirectedGraph implements DirectedGraph, Serializable
 		return LongArrayList.wrap(Arrays.copyOfRange(succpred, offset + 1, offset + 1 + outdegree));
 	}
 
+	@Override
+	public int outdegree(final long node) {
+		final int offset = GID2Offset.get(node);
+		if (offset == -1) throw new IllegalArgumentException("No such node: " + node);
+		return (int)succpred[offset];
+	}
+
 	@Override
 	public LongList predecessors(final long node) {
 		int offset = GID2Offset.get(node);
@@ -204,6 +343,13 @@ public class ArrayImmutableDirectedGraph implements DirectedGraph, Serializable
 		return LongArrayList.wrap(Arrays.copyOfRange(succpred, offset, offset + indegree));
 	}
 
+	@Override
+	public int indegree(final long node) {
+		final int offset = GID2Offset.get(node);
+		if (offset == -1) throw new IllegalArgumentException("No such node: " + node);
+		return (int)(succpred[offset] >>> 32);
+	}
+
 	@Override
 	public LongSet nodes() {
 		return GID2Offset.keySet();
@@ -22,10 +22,22 @@ public class Constants {
 
     public static final String pgPasswordEnvVariable = "PGPASSWORD";
 
+    public static final String fastenDbPoolSizeEnvVariable = "FASTEN_DB_POOL_SIZE";
+
+    public static final String fastenDbFetchSizeEnvVariable = "FASTEN_DB_FETCH_SIZE";
+
     public static final String defaultMavenResolutionScopes = "compile,runtime,provided";
 
     public static final int MIN_COMPRESSED_GRAPH_SIZE = 100;
 
+    public static final String graphCacheSizeEnvVariable = "FASTEN_GRAPH_CACHE_SIZE";
+
+    public static final String stitchedGraphCacheSizeEnvVariable = "FASTEN_STITCHED_GRAPH_CACHE_SIZE";
+
+    public static final String stitchedGraphCacheDirEnvVariable = "FASTEN_STITCHED_GRAPH_CACHE_DIR";
+
+    public static final String stitchedGraphCacheDirSizeEnvVariable = "FASTEN_STITCHED_GRAPH_CACHE_DIR_SIZE";
+
     public static final String fastenApiUrlEnvVariable = "FASTEN_API_URL";
 
     public static final String fastenApiUrlDefault = "https://api.fasten.eu/api/";
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * An immutable {@link DirectedGraph} whose adjacency lists are stored in a dense local-identifier
+ * space, suitable for visits using bitsets and queues of integers.
+ *
+ * <p>
+ * Nodes are numbered from 0 to {@link #numNodes()} &minus; 1 by increasing GID: these numbers are
+ * the <em>LIDs</em> of the nodes. Successors and predecessors are stored, as LIDs sorted in
+ * increasing order (thus, in increasing GID order), in two compressed sparse-row arrays, and they
+ * can be enumerated without allocating objects using {@link #lidOutdegree(int)} and
+ * {@link #lidSuccessor(int, int)} (or {@link #lidIndegree(int)} and
+ * {@link #lidPredecessor(int, int)}). The GID-based methods of {@link DirectedGraph} are available,
+ * too, but they are slower.
+ *
+ * <p>
+ * Instances are created using {@link #copyOf(DirectedGraph)}, and they can be used concurrently.
+ */
+
+public class DenseDirectedGraph implements DirectedGraph {
+	/** Maps LIDs to GIDs; sorted in increasing order. */
+	private final long[] LID2GID;
+	/** Inverse to {@link #LID2GID}; returns -1 on missing keys. */
+	private final Long2IntOpenHashMap GID2LID;
+	/** For each LID, the start of its successors in {@link #successors}; the last entry is the number of arcs. */
+	private final int[] successorOffset;
+	/** The concatenation of the (sorted) successor lists. */
+	private final int[] successors;
+	/** For each LID, the start of its predecessors in {@link #predecessors}; the last entry is the number of arcs. */
+	private final int[] predecessorOffset;
+	/** The concatenation of the (sorted) predecessor lists. */
+	private final int[] predecessors;
+	/** The set of external nodes. */
+	private final LongOpenHashSet externalNodes;
+
+	private DenseDirectedGraph(final long[] LID2GID, final Long2IntOpenHashMap GID2LID, final int[] successorOffset, final int[] successors, final int[] predecessorOffset, final int[] predecessors, final LongOpenHashSet externalNodes) {
+		this.LID2GID = LID2GID;
+		this.GID2LID = GID2LID;
+		this.successorOffset = successorOffset;
+		this.successors = successors;
+		this.predecessorOffset = predecessorOffset;
+		this.predecessors = predecessors;
+		this.externalNodes = externalNodes;
+	}
+
+	/**
+	 * Returns a dense copy of a graph.
+	 *
+	 * @param graph a directed graph with less than 2<sup>31</sup> arcs.
+	 * @return a dense copy of {@code graph}.
+	 */
+	public static DenseDirectedGraph copyOf(final DirectedGraph graph) {
+		if (graph instanceof DenseDirectedGraph) return (DenseDirectedGraph)graph;
+		final long[] LID2GID = graph.nodes().toLongArray();
+		LongArrays.radixSort(LID2GID);
+		final int n = LID2GID.length;
+		final Long2IntOpenHashMap GID2LID = new Long2IntOpenHashMap(n);
+		GID2LID.defaultReturnValue(-1);
+		for (int i = 0; i < n; i++) GID2LID.put(LID2GID[i], i);
+
+		final long m = graph.numArcs();
+		if (m > Integer.MAX_VALUE) throw new IllegalArgumentException("Too many arcs: " + m);
+		final int[] successorOffset = new int[n + 1];
+		final int[] successors = new int[(int)m];
+		final int[] indegree = new int[n];
+		for (int x = 0, a = 0; x < n; x++) {
+			successorOffset[x] = a;
+			for (final long y : graph.successors(LID2GID[x])) {
+				final int lid = GID2LID.get(y);
+				if (lid == -1) throw new IllegalArgumentException("Successor " + y + " of " + LID2GID[x] + " is not a node");
+				successors[a++] = lid;
+				indegree[lid]++;
+			}
+			IntArrays.quickSort(successors, successorOffset[x], a);
+			successorOffset[x + 1] = a;
+		}
+
+		// Predecessors are filled scanning sources in increasing order, so they come out sorted
+		final int[] predecessorOffset = new int[n + 1];
+		for (int x = 0; x < n; x++) predecessorOffset[x + 1] = predecessorOffset[x] + indegree[x];
+		final int[] predecessors = new int[(int)m];
+		final int[] next = indegree;
+		System.arraycopy(predecessorOffset, 0, next, 0, n);
+		for (int x = 0; x < n; x++)
+			for (int a = successorOffset[x]; a < successorOffset[x + 1]; a++) predecessors[next[successors[a]]++] = x;
+
+		return new DenseDirectedGraph(LID2GID, GID2LID, successorOffset, successors, predecessorOffset, predecessors, new LongOpenHashSet(graph.externalNodes()));
+	}
+
+	/**
+	 * Returns the LID of a node.
+	 *
+	 * @param gid a GID.
+	 * @return the LID of {@code gid}, or -1 if {@code gid} is not a node of this graph.
+	 */
+	public int lid(final long gid) {
+		return GID2LID.get(gid);
+	}
+
+	/**
+	 * Returns the GID of a node.
+	 *
+	 * @param lid a LID.
+	 * @return the associated GID.
+	 */
+	public long gid(final int lid) {
+		return LID2GID[lid];
+	}
+
+	/**
+	 * Returns the outdegree of a node.
+	 *
+	 * @param lid a LID.
+	 * @return the number of successors of {@code lid}.
+	 */
+	public int lidOutdegree(final int lid) {
+		return successorOffset[lid + 1] - successorOffset[lid];
+	}
+
+	/**
+	 * Returns a successor of a node.
+	 *
+	 * @param lid a LID.
+	 * @param i the index of a successor, smaller than {@link #lidOutdegree(int) lidOutdegree(lid)}.
+	 * @return the LID of the successor of index {@code i} of {@code lid}; successors are in
+	 *         increasing order.
+	 */
+	public int lidSuccessor(final int lid, final int i) {
+		return successors[successorOffset[lid] + i];
+	}
+
+	/**
+	 * Returns the indegree of a node.
+	 *
+	 * @param lid a LID.
+	 * @return the number of predecessors of {@code lid}.
+	 */
+	public int lidIndegree(final int lid) {
+		return predecessorOffset[lid + 1] - predecessorOffset[lid];
+	}
+
+	/**
+	 * Returns a predecessor of a node.
+	 *
+	 * @param lid a LID.
+	 * @param i the index of a predecessor, smaller than {@link #lidIndegree(int) lidIndegree(lid)}.
+	 * @return the LID of the predecessor of index {@code i} of {@code lid}; predecessors are in
+	 *         increasing order.
+	 */
+	public int lidPredecessor(final int lid, final int i) {
+		return predecessors[predecessorOffset[lid] + i];
+	}
+
+	private int checkedLid(final long node) {
+		final int lid = GID2LID.get(node);
+		if (lid == -1) throw new IllegalArgumentException("No such node: " + node);
+		return lid;
+	}
+
+	@Override
+	public int numNodes() {
+		return LID2GID.length;
+	}
+
+	@Override
+	public long numArcs() {
+		return successors.length;
+	}
+
+	@Override
+	public LongList successors(final long node) {
+		final int lid = checkedLid(node);
+		final long[] result = new long[lidOutdegree(lid)];
+		for (int i = 0; i < result.length; i++) result[i] = LID2GID[lidSuccessor(lid, i)];
+		return LongArrayList.wrap(result);
+	}
+
+	@Override
+	public int outdegree(final long node) {
+		return lidOutdegree(checkedLid(node));
+	}
+
+	@Override
+	public LongList predecessors(final long node) {
+		final int lid = checkedLid(node);
+		final long[] result = new long[lidIndegree(lid)];
+		for (int i = 0; i < result.length; i++) result[i] = LID2GID[lidPredecessor(lid, i)];
+		return LongArrayList.wrap(result);
+	}
+
+	@Override
+	public int indegree(final long node) {
+		return lidIndegree(checkedLid(node));
+	}
+
+	@Override
+	public LongSet nodes() {
+		return GID2LID.keySet();
+	}
+
+	@Override
+	public LongIterator iterator() {
+		return LongIterators.wrap(LID2GID);
+	}
+
+	@Override
+	public LongSet externalNodes() {
+		return externalNodes;
+	}
+
+	@Override
+	public boolean isInternal(final long node) {
+		return !externalNodes.contains(node);
+	}
+
+	@Override
+	public boolean isExternal(final long node) {
+		return externalNodes.contains(node);
+	}
+}
@@ -48,6 +48,31 @@ public class CallGraphData implements DirectedGraph {
 		this.nodes = new LongOpenHashSet(LID2GID);
 	}
 
+	private CallGraphData(final CallGraphData callGraphData) {
+		this.graph = callGraphData.graph.copy();
+		this.transpose = callGraphData.transpose.copy();
+		this.graphProperties = callGraphData.graphProperties;
+		this.transposeProperties = callGraphData.transposeProperties;
+		this.LID2GID = callGraphData.LID2GID;
+		this.GID2LID = callGraphData.GID2LID;
+		this.externalNodes = callGraphData.externalNodes;
+		this.size = callGraphData.size;
+		this.nodes = callGraphData.nodes;
+	}
+
+	/**
+	 * Returns a lightweight copy of this call graph that can be used in a different thread.
+	 *
+	 * <p>
+	 * All data is shared, except for the state of the underlying graphs, which are
+	 * {@linkplain ImmutableGraph#copy() copied}.
+	 *
+	 * @return a copy of this call graph.
+	 */
+	public CallGraphData copy() {
+		return new CallGraphData(this);
+	}
+
 	@Override
 	public int numNodes() {
 		return graph.numNodes();
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static eu.fasten.core.utils.VariableLengthByteCoder.readLong;
+import static eu.fasten.core.utils.VariableLengthByteCoder.readString;
+import static eu.fasten.core.utils.VariableLengthByteCoder.writeLong;
+import static eu.fasten.core.utils.VariableLengthByteCoder.writeString;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import eu.fasten.core.data.callableindex.GraphMetadata.NodeMetadata;
+import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * The contribution of a revision to the universal class hierarchy and to the type dictionary used
+ * to stitch call graphs.
+ *
+ * <p>
+ * A fragment contains the types defined by a revision, each with its direct supertypes
+ * (superclasses first, then superinterfaces), and a signature table associating with each callable
+ * of the revision its type and its signature. Fragments are computed once, when a graph is stored,
+ * so that the class hierarchy of a dependency set can be assembled by merging the fragments of its
+ * revisions, without querying the metadata database.
+ *
+ * <p>
+ * All strings are stored once in a per-fragment dictionary, and the rest of the serialized form
+ * refers to them by index. The layout is as follows:
+ * <ul>
+ * <li>the byte {@link #VERSION};
+ * <li>the dictionary size, followed by the strings of the dictionary;
+ * <li>the number of types and, for each type, the dictionary index of the type, the number of its
+ * direct supertypes and their dictionary indices;
+ * <li>the number of callables and, for each callable in increasing GID order, the dictionary
+ * indices of its type and of its signature, and the gap from the previous GID (the first GID is
+ * written as is).
+ * </ul>
+ *
+ * <p>
+ * All numbers are written using {@link eu.fasten.core.utils.VariableLengthByteCoder}. Instances
+ * are immutable.
+ */
+public class ClassHierarchyFragment {
+	/** The version of this format. */
+	public static final byte VERSION = 1;
+
+	/** The dictionary. */
+	private final String[] dictionary;
+	/** The dictionary indices of the types. */
+	private final int[] types;
+	/** The dictionary indices of the direct supertypes of each type. */
+	private final int[][] superTypes;
+	/** The dictionary indices of the types of the callables. */
+	private final int[] callableTypes;
+	/** The dictionary indices of the signatures of the callables. */
+	private final int[] callableSignatures;
+	/** The GIDs of the callables, in increasing order. */
+	private final long[] callableIds;
+
+	private ClassHierarchyFragment(final String[] dictionary, final int[] types, final int[][] superTypes, final int[] callableTypes, final int[] callableSignatures, final long[] callableIds) {
+		this.dictionary = dictionary;
+		this.types = types;
+		this.superTypes = superTypes;
+		this.callableTypes = callableTypes;
+		this.callableSignatures = callableSignatures;
+		this.callableIds = callableIds;
+	}
+
+	/**
+	 * Creates a fragment.
+	 *
+	 * @param typeHierarchy a map from the types defined by a revision to their direct supertypes
+	 *            (superclasses first, then superinterfaces).
+	 * @param gid2NodeMetadata the metadata of the nodes of the call graph of the revision, whose
+	 *            types and signatures will form the signature table.
+	 */
+	public ClassHierarchyFragment(final Map<String, List<String>> typeHierarchy, final Long2ObjectMap<NodeMetadata> gid2NodeMetadata) {
+		final Object2IntOpenHashMap<String> string2Index = new Object2IntOpenHashMap<>();
+		string2Index.defaultReturnValue(-1);
+		final ObjectArrayList<String> strings = new ObjectArrayList<>();
+
+		types = new int[typeHierarchy.size()];
+		superTypes = new int[types.length][];
+		int t = 0;
+		for (final Map.Entry<String, List<String>> e : typeHierarchy.entrySet()) {
+			types[t] = index(e.getKey(), string2Index, strings);
+			superTypes[t] = new int[e.getValue().size()];
+			for (int i = 0; i < superTypes[t].length; i++) superTypes[t][i] = index(e.getValue().get(i), string2Index, strings);
+			t++;
+		}
+
+		callableIds = gid2NodeMetadata.keySet().toLongArray();
+		LongArrays.radixSort(callableIds);
+		callableTypes = new int[callableIds.length];
+		callableSignatures = new int[callableIds.length];
+		for (int i = 0; i < callableIds.length; i++) {
+			final NodeMetadata nodeMetadata = gid2NodeMetadata.get(callableIds[i]);
+			callableTypes[i] = index(nodeMetadata.type, string2Index, strings);
+			callableSignatures[i] = index(nodeMetadata.signature, string2Index, strings);
+		}
+		dictionary = strings.toArray(new String[0]);
+	}
+
+	private static int index(final String s, final Object2IntOpenHashMap<String> string2Index, final ObjectArrayList<String> strings) {
+		int index = string2Index.getInt(s);
+		if (index == -1) {
+			string2Index.put(s, index = strings.size());
+			strings.add(s);
+		}
+		return index;
+	}
+
+	/**
+	 * Serializes this fragment.
+	 *
+	 * @return the serialized form of this fragment.
+	 */
+	public byte[] toByteArray() {
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		try {
+			fbaos.write(VERSION);
+			writeLong(dictionary.length, fbaos);
+			for (final String s : dictionary) writeString(s, fbaos);
+			writeLong(types.length, fbaos);
+			for (int t = 0; t < types.length; t++) {
+				writeLong(types[t], fbaos);
+				writeLong(superTypes[t].length, fbaos);
+				for (final int s : superTypes[t]) writeLong(s, fbaos);
+			}
+			writeLong(callableIds.length, fbaos);
+			for (int i = 0; i < callableIds.length; i++) {
+				writeLong(callableTypes[i], fbaos);
+				writeLong(callableSignatures[i], fbaos);
+				writeLong(i == 0 ? callableIds[0] : callableIds[i] - callableIds[i - 1], fbaos);
+			}
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+		fbaos.trim();
+		return fbaos.array;
+	}
+
+	/**
+	 * Deserializes a fragment.
+	 *
+	 * @param array the serialized form of a fragment, as returned by {@link #toByteArray()}.
+	 * @return the fragment.
+	 * @throws IllegalArgumentException if the array does not contain a fragment in a known format.
+	 */
+	public static ClassHierarchyFragment fromByteArray(final byte[] array) {
+		if (array.length == 0 || array[0] != VERSION) throw new IllegalArgumentException("Unknown class hierarchy fragment format");
+		final FastByteArrayInputStream fbais = new FastByteArrayInputStream(array);
+		fbais.position(1);
+		try {
+			final String[] dictionary = new String[(int)readLong(fbais)];
+			for (int i = 0; i < dictionary.length; i++) dictionary[i] = readString(fbais);
+			final int[] types = new int[(int)readLong(fbais)];
+			final int[][] superTypes = new int[types.length][];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = (int)readLong(fbais);
+				superTypes[t] = new int[(int)readLong(fbais)];
+				for (int i = 0; i < superTypes[t].length; i++) superTypes[t][i] = (int)readLong(fbais);
+			}
+			final int n = (int)readLong(fbais);
+			final int[] callableTypes = new int[n], callableSignatures = new int[n];
+			final long[] callableIds = new long[n];
+			for (int i = 0; i < n; i++) {
+				callableTypes[i] = (int)readLong(fbais);
+				callableSignatures[i] = (int)readLong(fbais);
+				callableIds[i] = readLong(fbais) + (i == 0 ? 0 : callableIds[i - 1]);
+			}
+			return new ClassHierarchyFragment(dictionary, types, superTypes, callableTypes, callableSignatures, callableIds);
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+	}
+
+	/**
+	 * Returns the number of types defined by the revision.
+	 *
+	 * @return the number of types in this fragment of the class hierarchy.
+	 */
+	public int numTypes() {
+		return types.length;
+	}
+
+	/**
+	 * Returns a type.
+	 *
+	 * @param t the index of a type, smaller than {@link #numTypes()}.
+	 * @return the URI of the type.
+	 */
+	public String type(final int t) {
+		return dictionary[types[t]];
+	}
+
+	/**
+	 * Returns the direct supertypes of a type.
+	 *
+	 * @param t the index of a type, smaller than {@link #numTypes()}.
+	 * @return the URIs of the direct supertypes of the type (superclasses first, then
+	 *         superinterfaces).
+	 */
+	public List<String> superTypes(final int t) {
+		final String[] result = new String[superTypes[t].length];
+		for (int i = 0; i < result.length; i++) result[i] = dictionary[superTypes[t][i]];
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * Returns the number of callables in the signature table.
+	 *
+	 * @return the number of callables in the signature table.
+	 */
+	public int numCallables() {
+		return callableIds.length;
+	}
+
+	/**
+	 * Returns the GID of a callable.
+	 *
+	 * @param i the index of a callable, smaller than {@link #numCallables()}; callables are in
+	 *            increasing GID order.
+	 * @return the GID of the callable.
+	 */
+	public long callableId(final int i) {
+		return callableIds[i];
+	}
+
+	/**
+	 * Returns the type of a callable.
+	 *
+	 * @param i the index of a callable, smaller than {@link #numCallables()}.
+	 * @return the URI of the type of the callable.
+	 */
+	public String callableType(final int i) {
+		return dictionary[callableTypes[i]];
+	}
+
+	/**
+	 * Returns the signature of a callable.
+	 *
+	 * @param i the index of a callable, smaller than {@link #numCallables()}.
+	 * @return the signature of the callable.
+	 */
+	public String callableSignature(final int i) {
+		return dictionary[callableSignatures[i]];
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static eu.fasten.core.utils.VariableLengthByteCoder.readLong;
+import static eu.fasten.core.utils.VariableLengthByteCoder.readString;
+import static eu.fasten.core.utils.VariableLengthByteCoder.writeLong;
+import static eu.fasten.core.utils.VariableLengthByteCoder.writeString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import eu.fasten.core.data.callableindex.GraphMetadata.NodeMetadata;
+import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord;
+import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord.CallType;
+import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+/**
+ * Graph metadata in compact format, decoded on demand.
+ *
+ * <p>
+ * All strings (types, signatures, receiver signatures and receiver types) are stored once in a
+ * per-graph dictionary, and node records refer to them by index. The layout is as follows:
+ * <ul>
+ * <li>a zero byte (in the original format, the first byte is the nonzero length of a type) and
+ * the byte {@link #VERSION};
+ * <li>two reserved bytes;
+ * <li>the number of nodes <var>n</var> and the offset of the dictionary, as integers;
+ * <li>the <var>n</var> GIDs of the nodes, in increasing order, as longs;
+ * <li>the offsets of the <var>n</var> node records (in the same order), as integers;
+ * <li>the node records, each made of the dictionary indices of the type and of the signature, the
+ * number of receiver records and, for each receiver record, the line, the call type, the dictionary
+ * index of the receiver signature, the number of receiver types and their dictionary indices;
+ * <li>the dictionary size, followed by the strings of the dictionary.
+ * </ul>
+ *
+ * <p>
+ * All numbers in node records and in the dictionary are written using
+ * {@link eu.fasten.core.utils.VariableLengthByteCoder}. On construction, only the dictionary is
+ * decoded; {@link NodeMetadata} instances are built each time they are retrieved, so the metadata
+ * of large graphs can be kept (e.g., in a {@link GraphCache}) at little more than the cost of its
+ * serialized form. Instances are read-only and can be used concurrently.
+ */
+public class CompactGraphMetadata extends GraphMetadata {
+	/** The version of this format. */
+	public static final byte VERSION = 2;
+
+	private static final int HEADER_SIZE = 12;
+	private static final CallType[] CALL_TYPES = CallType.values();
+
+	/** The serialized form. */
+	private final byte[] array;
+	/** The number of nodes. */
+	private final int numNodes;
+	/** The dictionary. */
+	private final String[] dictionary;
+
+	/**
+	 * Creates a view on metadata in compact format.
+	 *
+	 * @param array metadata in compact format; it must not be modified afterwards.
+	 * @throws IllegalArgumentException if the array does not contain metadata in compact format.
+	 */
+	public CompactGraphMetadata(final byte[] array) {
+		super(new View());
+		if (!isCompact(array)) throw new IllegalArgumentException("The array does not contain metadata in compact format");
+		this.array = array;
+		this.numNodes = getInt(array, 4);
+		final FastByteArrayInputStream fbais = new FastByteArrayInputStream(array);
+		fbais.position(getInt(array, 8));
+		try {
+			dictionary = new String[(int)readLong(fbais)];
+			for (int i = 0; i < dictionary.length; i++) dictionary[i] = readString(fbais);
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+		((View)gid2NodeMetadata).metadata = this;
+	}
+
+	/**
+	 * Returns whether a serialized form of graph metadata is in compact format.
+	 *
+	 * @param array serialized graph metadata.
+	 * @return true if {@code array} is in compact format.
+	 */
+	public static boolean isCompact(final byte[] array) {
+		return array.length >= HEADER_SIZE && array[0] == 0 && array[1] == VERSION;
+	}
+
+	/**
+	 * Serializes graph metadata in compact format.
+	 *
+	 * @param gid2NodeMetadata a map from GIDs to the associated metadata.
+	 * @return the metadata in compact format.
+	 */
+	public static byte[] toByteArray(final Long2ObjectMap<NodeMetadata> gid2NodeMetadata) {
+		final long[] gids = gid2NodeMetadata.keySet().toLongArray();
+		LongArrays.radixSort(gids);
+		final int n = gids.length;
+
+		final Object2IntOpenHashMap<String> string2Index = new Object2IntOpenHashMap<>();
+		string2Index.defaultReturnValue(-1);
+		final ObjectArrayList<String> strings = new ObjectArrayList<>();
+		final int[] offsets = new int[n];
+		final FastByteArrayOutputStream records = new FastByteArrayOutputStream();
+		try {
+			for (int i = 0; i < n; i++) {
+				offsets[i] = records.length;
+				final NodeMetadata nodeMetadata = gid2NodeMetadata.get(gids[i]);
+				writeLong(index(nodeMetadata.type, string2Index, strings), records);
+				writeLong(index(nodeMetadata.signature, string2Index, strings), records);
+				writeLong(nodeMetadata.receiverRecords.size(), records);
+				for (final ReceiverRecord r : nodeMetadata.receiverRecords) {
+					writeLong(r.line, records);
+					writeLong(r.callType.ordinal(), records);
+					writeLong(index(r.receiverSignature, string2Index, strings), records);
+					writeLong(r.receiverTypes.size(), records);
+					for (final String t : r.receiverTypes) writeLong(index(t, string2Index, strings), records);
+				}
+			}
+
+			final int recordsStart = HEADER_SIZE + n * (Long.BYTES + Integer.BYTES);
+			final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream(recordsStart + records.length * 2);
+			final ByteBuffer header = ByteBuffer.allocate(recordsStart);
+			header.put((byte)0).put(VERSION).putShort((short)0).putInt(n).putInt(recordsStart + records.length);
+			for (final long gid : gids) header.putLong(gid);
+			for (final int offset : offsets) header.putInt(recordsStart + offset);
+			fbaos.write(header.array());
+			fbaos.write(records.array, 0, records.length);
+			writeLong(strings.size(), fbaos);
+			for (final String s : strings) writeString(s, fbaos);
+			fbaos.trim();
+			return fbaos.array;
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+	}
+
+	private static int index(final String s, final Object2IntOpenHashMap<String> string2Index, final ObjectArrayList<String> strings) {
+		int index = string2Index.getInt(s);
+		if (index == -1) {
+			string2Index.put(s, index = strings.size());
+			strings.add(s);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the size of the serialized form.
+	 *
+	 * @return the size in bytes of the serialized form of this metadata.
+	 */
+	public int size() {
+		return array.length;
+	}
+
+	private long gid(final int i) {
+		return getLong(array, HEADER_SIZE + i * Long.BYTES);
+	}
+
+	private int position(final long gid) {
+		int from = 0, to = numNodes - 1;
+		while (from <= to) {
+			final int mid = (from + to) >>> 1;
+			final long midVal = gid(mid);
+			if (midVal < gid) from = mid + 1;
+			else if (midVal > gid) to = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	private static long getLong(final byte[] a, final int p) {
+		return (long)getInt(a, p) << 32 | getInt(a, p + 4) & 0xFFFFFFFFL;
+	}
+
+	private static int getInt(final byte[] a, final int p) {
+		return a[p] << 24 | (a[p + 1] & 0xFF) << 16 | (a[p + 2] & 0xFF) << 8 | a[p + 3] & 0xFF;
+	}
+
+	private NodeMetadata decode(final int i) {
+		final ByteBuffer buffer = ByteBuffer.wrap(array);
+		buffer.position(getInt(array, HEADER_SIZE + numNodes * Long.BYTES + i * Integer.BYTES));
+		final String type = dictionary[(int)readLong(buffer)];
+		final String signature = dictionary[(int)readLong(buffer)];
+		final int length = (int)readLong(buffer);
+		if (length == 0) return new NodeMetadata(type, signature, List.of());
+		final ReceiverRecord[] records = new ReceiverRecord[length];
+		for (int r = 0; r < length; r++) {
+			final int line = (int)readLong(buffer);
+			final CallType callType = CALL_TYPES[(int)readLong(buffer)];
+			final String receiverSignature = dictionary[(int)readLong(buffer)];
+			final String[] receiverTypes = new String[(int)readLong(buffer)];
+			for (int t = 0; t < receiverTypes.length; t++) receiverTypes[t] = dictionary[(int)readLong(buffer)];
+			records[r] = new ReceiverRecord(line, callType, receiverSignature, List.of(receiverTypes));
+		}
+		return new NodeMetadata(type, signature, List.of(records));
+	}
+
+	/** A read-only map view decoding node metadata on demand. */
+	private static final class View extends AbstractLong2ObjectMap<NodeMetadata> {
+		private static final long serialVersionUID = 0L;
+		private CompactGraphMetadata metadata;
+
+		@Override
+		public int size() {
+			return metadata.numNodes;
+		}
+
+		@Override
+		public boolean containsKey(final long k) {
+			return metadata.position(k) != -1;
+		}
+
+		/**
+		 * Returns the metadata of a node. This method performs a binary search on the GIDs and decodes
+		 * a new {@link NodeMetadata} instance at each call; decoded instances are not cached, as that
+		 * would defeat the purpose of the compact format.
+		 */
+		@Override
+		public NodeMetadata get(final long k) {
+			final int i = metadata.position(k);
+			return i == -1 ? defRetValue : metadata.decode(i);
+		}
+
+		@Override
+		public LongSet keySet() {
+			return new AbstractLongSet() {
+				@Override
+				public boolean contains(final long k) {
+					return containsKey(k);
+				}
+
+				@Override
+				public int size() {
+					return metadata.numNodes;
+				}
+
+				@Override
+				public LongIterator iterator() {
+					return new LongIterator() {
+						private int i;
+
+						@Override
+						public boolean hasNext() {
+							return i < metadata.numNodes;
+						}
+
+						@Override
+						public long nextLong() {
+							if (!hasNext()) throw new NoSuchElementException();
+							return metadata.gid(i++);
+						}
+					};
+				}
+			};
+		}
+
+		@Override
+		public ObjectSet<Entry<NodeMetadata>> long2ObjectEntrySet() {
+			return new AbstractObjectSet<>() {
+				@Override
+				public int size() {
+					return metadata.numNodes;
+				}
+
+				@Override
+				public ObjectIterator<Entry<NodeMetadata>> iterator() {
+					return new ObjectIterator<>() {
+						private int i;
+
+						@Override
+						public boolean hasNext() {
+							return i < metadata.numNodes;
+						}
+
+						@Override
+						public Entry<NodeMetadata> next() {
+							if (!hasNext()) throw new NoSuchElementException();
+							final int p = i++;
+							return new BasicEntry<>(metadata.gid(p), metadata.decode(p));
+						}
+					};
+				}
+			};
+		}
+	}
+}
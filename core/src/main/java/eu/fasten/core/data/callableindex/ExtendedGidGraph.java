@@ -18,12 +18,15 @@
 
 package eu.fasten.core.data.callableindex;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import eu.fasten.core.data.metadatadb.codegen.enums.CallType;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
 import org.apache.commons.math3.util.Pair;
 import org.jooq.tools.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -36,6 +39,7 @@ public class ExtendedGidGraph extends GidGraph {
     private final Map<Pair<Long, Long>, CallSitesRecord> callInfo = new HashMap<>();
     private final Map<Long, String> gidToUriMap;
     private final Map<Long, String> typeMap;
+    private final Map<String, List<String>> typeHierarchy;
 
     /**
      * Constructor for Graph.
@@ -49,10 +53,28 @@ public class ExtendedGidGraph extends GidGraph {
      * @param edges            List of edges of the graph with pairs for Global IDs
      */
     public ExtendedGidGraph(long index, String product, String version, List<Long> nodes, int numInternalNodes, List<CallSitesRecord> edges, Map<Long, String> gid2UriMap, Map<Long, String> typeMap) {
+        this(index, product, version, nodes, numInternalNodes, edges, gid2UriMap, typeMap, null);
+    }
+
+    /**
+     * Constructor for Graph with the class hierarchy of its internal types.
+     *
+     * @param index            ID of the graph (index from postgres)
+     * @param product          Product name
+     * @param version          Product version
+     * @param nodes            List of Global IDs of nodes of the graph
+     *                         (first internal nodes, then external nodes)
+     * @param numInternalNodes Number of internal nodes in nodes list
+     * @param edges            List of edges of the graph with pairs for Global IDs
+     * @param typeHierarchy    Map from internal types to their direct supertypes
+     *                         (superclasses first, then superinterfaces), or {@code null} if unknown
+     */
+    public ExtendedGidGraph(long index, String product, String version, List<Long> nodes, int numInternalNodes, List<CallSitesRecord> edges, Map<Long, String> gid2UriMap, Map<Long, String> typeMap, Map<String, List<String>> typeHierarchy) {
         super(index, product, version, nodes, numInternalNodes, edges);
         this.gidToUriMap = gid2UriMap;
         edges.forEach(e -> callInfo.put(new Pair<>(e.getSourceId(), e.getTargetId()), e));
         this.typeMap = typeMap;
+        this.typeHierarchy = typeHierarchy;
     }
 
     public Map<Pair<Long, Long>, CallSitesRecord> getCallsInfo() {
@@ -71,6 +93,14 @@ public class ExtendedGidGraph extends GidGraph {
         return typeMap;
     }
 
+    /**
+     * @return a map from internal types to their direct supertypes (superclasses first, then
+     * superinterfaces), or {@code null} if the class hierarchy of the graph is unknown
+     */
+    public Map<String, List<String>> getTypeHierarchy() {
+        return typeHierarchy;
+    }
+
     public JSONObject toCPythonJSON() {
         var json = super.toJSON();
         var callSitesInfo = new JSONObject();
@@ -99,7 +129,7 @@ public class ExtendedGidGraph extends GidGraph {
         getCallsInfo().forEach((edge, info) -> {
             var edgeStr = String.format("[%d, %d]", edge.getFirst(), edge.getSecond());
             var infoJson = new JSONObject();
-            infoJson.put("line", info.getLine());
+            infoJson.put("line", info.getLine() == null ? JSONObject.NULL : info.getLine());
             infoJson.put("receiver_type_ids", new JSONArray(Arrays.asList(info.getReceiverTypeIds())));
             infoJson.put("call_type", info.getCallType().getLiteral());
             callSitesInfo.put(edgeStr, infoJson);
@@ -111,6 +141,11 @@ public class ExtendedGidGraph extends GidGraph {
         var typesJson = new JSONObject();
         this.typeMap.forEach((k, v) -> typesJson.put(String.valueOf(k), v));
         json.put("types_map", typesJson);
+        if (this.typeHierarchy != null) {
+            var hierarchyJson = new JSONObject();
+            this.typeHierarchy.forEach((k, v) -> hierarchyJson.put(k, new JSONArray(v)));
+            json.put("type_hierarchy", hierarchyJson);
+        }
         return json;
     }
 
@@ -152,7 +187,7 @@ public class ExtendedGidGraph extends GidGraph {
             var source = Long.parseLong(key[0].trim());
             var target = Long.parseLong(key[1].trim());
             var infoJson = callSitesInfo.getJSONObject(k);
-            var line = infoJson.getInt("line");
+            var line = infoJson.isNull("line") ? null : infoJson.getInt("line");
             var callType = getCallType(infoJson.getString("call_type"));
             var receiverTypeIdsJson = infoJson.getJSONArray("receiver_type_ids");
             var receiverTypeIds = new Long[receiverTypeIdsJson.length()];
@@ -167,7 +202,150 @@ public class ExtendedGidGraph extends GidGraph {
         var typesMap = new HashMap<Long, String>();
         var typesJson = jsonGraph.getJSONObject("types_map");
         typesJson.keySet().forEach(k -> typesMap.put(Long.parseLong(k), typesJson.getString(k)));
-        return new ExtendedGidGraph(index, product, version, nodes, numInternalNodes, callSitesList, gid2uriMap, typesMap);
+        Map<String, List<String>> typeHierarchy = null;
+        var hierarchyJson = jsonGraph.optJSONObject("type_hierarchy");
+        if (hierarchyJson != null) {
+            typeHierarchy = new HashMap<>(hierarchyJson.length());
+            for (var k : hierarchyJson.keySet()) {
+                var superTypesJson = hierarchyJson.getJSONArray(k);
+                var superTypes = new ArrayList<String>(superTypesJson.length());
+                for (int i = 0; i < superTypesJson.length(); i++) {
+                    superTypes.add(superTypesJson.getString(i));
+                }
+                typeHierarchy.put(k, superTypes);
+            }
+        }
+        return new ExtendedGidGraph(index, product, version, nodes, numInternalNodes, callSitesList, gid2uriMap, typesMap, typeHierarchy);
+    }
+
+    /**
+     * Reads a graph from a streaming JSON parser, without building an intermediate JSON tree.
+     *
+     * <p>The parser must be positioned on, or just before, the start of an object in the format
+     * of {@link #toJSON()}; on return, it is positioned on the end of the object. Unknown fields
+     * are skipped.
+     *
+     * @param parser a streaming JSON parser
+     * @return the graph
+     * @throws IOException if the parser throws an exception
+     * @throws JSONException if the object is not a valid graph
+     */
+    public static ExtendedGidGraph getGraph(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT && parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JSONException("Expected the start of a JSON graph, found " + parser.currentToken());
+        }
+        Long index = null;
+        String product = null;
+        String version = null;
+        List<Long> nodes = null;
+        Integer numInternalNodes = null;
+        List<CallSitesRecord> callSitesList = null;
+        Map<Long, String> gid2uriMap = null;
+        Map<Long, String> typesMap = null;
+        Map<String, List<String>> typeHierarchy = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "index":
+                    index = parser.getLongValue();
+                    break;
+                case "product":
+                    product = parser.getText();
+                    break;
+                case "version":
+                    version = parser.getText();
+                    break;
+                case "nodes":
+                    nodes = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        nodes.add(parser.getLongValue());
+                    }
+                    break;
+                case "numInternalNodes":
+                    numInternalNodes = parser.getIntValue();
+                    break;
+                case "callsites_info":
+                    callSitesList = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        var k = parser.getCurrentName();
+                        var key = k.substring(1, k.length() - 1).split(",");
+                        var source = Long.parseLong(key[0].trim());
+                        var target = Long.parseLong(key[1].trim());
+                        parser.nextToken();
+                        callSitesList.add(readCallSite(parser, source, target));
+                    }
+                    break;
+                case "gid_to_uri":
+                    gid2uriMap = readStringMap(parser);
+                    break;
+                case "types_map":
+                    typesMap = readStringMap(parser);
+                    break;
+                case "type_hierarchy":
+                    typeHierarchy = new HashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        var type = parser.getCurrentName();
+                        parser.nextToken();
+                        var superTypes = new ArrayList<String>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            superTypes.add(parser.getText());
+                        }
+                        typeHierarchy.put(type, superTypes);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (index == null || product == null || version == null || nodes == null || numInternalNodes == null
+                || callSitesList == null || gid2uriMap == null || typesMap == null) {
+            throw new JSONException("Incomplete JSON graph" + (index == null ? "" : " with index " + index));
+        }
+        return new ExtendedGidGraph(index, product, version, nodes, numInternalNodes, callSitesList, gid2uriMap, typesMap, typeHierarchy);
+    }
+
+    private static CallSitesRecord readCallSite(JsonParser parser, long source, long target) throws IOException {
+        boolean hasLine = false;
+        Integer line = null;
+        CallType callType = null;
+        List<Long> receiverTypeIds = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "line":
+                    // The line of a call site may be unknown
+                    hasLine = true;
+                    line = parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getIntValue();
+                    break;
+                case "call_type":
+                    callType = getCallType(parser.getText());
+                    break;
+                case "receiver_type_ids":
+                    receiverTypeIds = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        receiverTypeIds.add(parser.getLongValue());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (!hasLine || callType == null || receiverTypeIds == null) {
+            throw new JSONException("Incomplete call site information for [" + source + ", " + target + "]");
+        }
+        return new CallSitesRecord(source, target, line, callType, receiverTypeIds.toArray(new Long[0]), null);
+    }
+
+    private static Map<Long, String> readStringMap(JsonParser parser) throws IOException {
+        var map = new HashMap<Long, String>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var key = Long.parseLong(parser.getCurrentName());
+            parser.nextToken();
+            map.put(key, parser.getText());
+        }
+        return map;
     }
 
     private static CallType getCallType(String type) {
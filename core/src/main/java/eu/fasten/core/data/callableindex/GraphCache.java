@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fasten.core.data.Constants;
+import eu.fasten.core.data.DenseDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
+import eu.fasten.core.metrics.MetricRegistry;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/**
+ * A concurrent LRU cache of decoded graphs and graph metadata, bounded by (estimated) bytes.
+ *
+ * <p>
+ * Instances of {@link RocksDao} use by default the {@linkplain #getInstance() process-wide
+ * instance}, whose capacity is given by the environment variable
+ * {@value Constants#graphCacheSizeEnvVariable} (in bytes; 0 disables caching), or by one eighth of
+ * the maximum heap size if the variable is not set. Each instance of {@link RocksDao} uses a
+ * separate {@linkplain #newNamespace() namespace}, so that graphs with the same index in different
+ * databases do not clash. The statistics of the process-wide instance are exposed as gauges of the
+ * {@linkplain MetricRegistry#global() global metric registry} (see
+ * {@link #registerMetrics(MetricRegistry, String...)}).
+ *
+ * <p>
+ * The cache is divided into a fixed number of segments, each with its own lock, its own LRU order
+ * and an equal share of the capacity. Values are decoded outside of the locks, so concurrent misses
+ * on the same key may decode the same value twice; the last one wins.
+ *
+ * <p>
+ * To avoid caching values made stale by an invalidation that happens while they are being loaded,
+ * a loader takes a {@linkplain #stamp(int, long) stamp} before reading a value, and passes it when
+ * caching the value, which is not cached if the key has been invalidated in the meantime. Stamps are
+ * generations of a fixed number of stripes of keys, so an invalidation might also prevent, but only
+ * while it is happening, the caching of a few unrelated values.
+ */
+public final class GraphCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GraphCache.class);
+
+	/** The number of segments; must be a power of two. */
+	private static final int SEGMENTS = 16;
+	/** The number of stripes of generations; must be a power of two. */
+	private static final int STRIPES = 1024;
+	/** An estimate of the ratio between the heap footprint of fully decoded metadata and its serialized size. */
+	private static final int METADATA_EXPANSION = 4;
+
+	private static volatile GraphCache instance;
+
+	private static final class Key {
+		private final int namespace;
+		private final long index;
+		private final boolean metadata;
+
+		private Key(final int namespace, final long index, final boolean metadata) {
+			this.namespace = namespace;
+			this.index = index;
+			this.metadata = metadata;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key k = (Key)o;
+			return index == k.index && namespace == k.namespace && metadata == k.metadata;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)HashCommon.mix(index ^ (long)namespace << 33 ^ (metadata ? 1L << 32 : 0));
+		}
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long weight;
+
+		private Entry(final Object value, final long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private static final class Segment {
+		private final Object2ObjectLinkedOpenHashMap<Key, Entry> map = new Object2ObjectLinkedOpenHashMap<>();
+		private long weight;
+	}
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long maxSegmentWeight;
+	private final AtomicInteger namespaces = new AtomicInteger();
+	/** The generation of each stripe, incremented before removing a key of the stripe. */
+	private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxWeight the maximum overall (estimated) size in bytes of the cached values; values
+	 *            larger than {@code maxWeight / 16} are never cached.
+	 */
+	public GraphCache(final long maxWeight) {
+		if (maxWeight < 0) throw new IllegalArgumentException("Negative maximum weight: " + maxWeight);
+		this.maxSegmentWeight = maxWeight / SEGMENTS;
+		for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+	}
+
+	/**
+	 * Returns the process-wide instance.
+	 *
+	 * @return the process-wide instance.
+	 */
+	public static GraphCache getInstance() {
+		if (instance == null) {
+			synchronized (GraphCache.class) {
+				if (instance == null) {
+					final String size = System.getenv(Constants.graphCacheSizeEnvVariable);
+					final long maxWeight = size != null ? Long.parseLong(size) : Runtime.getRuntime().maxMemory() / 8;
+					LOGGER.info("Graph cache size: " + maxWeight + " bytes");
+					final GraphCache cache = new GraphCache(maxWeight);
+					cache.registerMetrics(MetricRegistry.global(), "cache", "global");
+					instance = cache;
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns a new namespace, that is, a new key space for indices.
+	 *
+	 * @return a new namespace.
+	 */
+	int newNamespace() {
+		return namespaces.getAndIncrement();
+	}
+
+	private Segment segment(final Key key) {
+		return segments[key.hashCode() & SEGMENTS - 1];
+	}
+
+	private Object get(final Key key) {
+		final Segment segment = segment(key);
+		final Entry entry;
+		synchronized (segment) {
+			entry = segment.map.getAndMoveToFirst(key);
+		}
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value;
+	}
+
+	private static int stripe(final int namespace, final long index) {
+		return (int)HashCommon.mix(index ^ (long)namespace << 33) & STRIPES - 1;
+	}
+
+	/**
+	 * Returns a stamp for the graph with given index in a namespace, and its metadata, which must be
+	 * taken before reading them.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of a graph.
+	 * @return a stamp to be passed to {@link #putGraph(int, long, DirectedGraph, long)} or
+	 *         {@link #putMetadata(int, long, GraphMetadata, int, long)}.
+	 */
+	long stamp(final int namespace, final long index) {
+		return generations.get(stripe(namespace, index));
+	}
+
+	private void put(final Key key, final Object value, final long weight, final long stamp) {
+		if (weight > maxSegmentWeight) return;
+		final Segment segment = segment(key);
+		synchronized (segment) {
+			// Invalidations increment the generation before taking the lock of the segment
+			if (generations.get(stripe(key.namespace, key.index)) != stamp) return;
+			final Entry old = segment.map.putAndMoveToFirst(key, new Entry(value, weight));
+			if (old != null) segment.weight -= old.weight;
+			segment.weight += weight;
+			while (segment.weight > maxSegmentWeight) {
+				segment.weight -= segment.map.removeLast().weight;
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached graph with given index in a namespace.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of a graph.
+	 * @return the cached graph, or {@code null}.
+	 */
+	DirectedGraph getGraph(final int namespace, final long index) {
+		return (DirectedGraph)get(new Key(namespace, index, false));
+	}
+
+	/**
+	 * Caches a graph.
+	 *
+	 * <p>
+	 * The graph must be safe for concurrent use; in particular, instances of {@link CallGraphData}
+	 * should be {@linkplain CallGraphData#copy() copied} before being handed to other threads.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of the graph.
+	 * @param graph the graph.
+	 * @param stamp the {@linkplain #stamp(int, long) stamp} taken before reading the graph; if the
+	 *            graph has been invalidated since then, it is not cached.
+	 */
+	void putGraph(final int namespace, final long index, final DirectedGraph graph, final long stamp) {
+		put(new Key(namespace, index, false), graph, weight(graph), stamp);
+	}
+
+	/**
+	 * Returns the cached metadata of the graph with given index in a namespace.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of a graph.
+	 * @return the cached metadata, or {@code null}.
+	 */
+	GraphMetadata getMetadata(final int namespace, final long index) {
+		return (GraphMetadata)get(new Key(namespace, index, true));
+	}
+
+	/**
+	 * Caches graph metadata.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of the graph.
+	 * @param metadata the metadata.
+	 * @param serializedSize the size in bytes of the serialized metadata.
+	 * @param stamp the {@linkplain #stamp(int, long) stamp} taken before reading the metadata; if the
+	 *            metadata have been invalidated since then, they are not cached.
+	 */
+	void putMetadata(final int namespace, final long index, final GraphMetadata metadata, final int serializedSize, final long stamp) {
+		// Compact metadata keeps its serialized form, plus a decoded copy of its dictionary
+		put(new Key(namespace, index, true), metadata, (long)serializedSize * (metadata instanceof CompactGraphMetadata ? 2 : METADATA_EXPANSION), stamp);
+	}
+
+	/**
+	 * Removes the graph with given index, and its metadata, from the cache.
+	 *
+	 * @param namespace a namespace.
+	 * @param index the index of a graph.
+	 */
+	void invalidate(final int namespace, final long index) {
+		generations.incrementAndGet(stripe(namespace, index));
+		for (final Key key : new Key[] { new Key(namespace, index, false), new Key(namespace, index, true) }) {
+			final Segment segment = segment(key);
+			synchronized (segment) {
+				final Entry entry = segment.map.remove(key);
+				if (entry != null) segment.weight -= entry.weight;
+			}
+		}
+	}
+
+	/**
+	 * Removes all graphs and metadata in a namespace from the cache.
+	 *
+	 * @param namespace a namespace.
+	 */
+	void invalidate(final int namespace) {
+		for (int i = 0; i < STRIPES; i++) generations.incrementAndGet(i);
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				for (final var iterator = segment.map.object2ObjectEntrySet().fastIterator(); iterator.hasNext();) {
+					final var e = iterator.next();
+					if (e.getKey().namespace == namespace) {
+						segment.weight -= e.getValue().weight;
+						iterator.remove();
+					}
+				}
+			}
+		}
+	}
+
+	/** Removes all entries from the cache. */
+	public void clear() {
+		for (int i = 0; i < STRIPES; i++) generations.incrementAndGet(i);
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				segment.map.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	/**
+	 * Estimates the heap footprint of a graph.
+	 *
+	 * @param graph a graph.
+	 * @return an estimate of the heap footprint of {@code graph}, in bytes.
+	 */
+	public static long weight(final DirectedGraph graph) {
+		// The node sets of CallGraphData instances are open hash sets
+		if (graph instanceof CallGraphData) return ((CallGraphData)graph).size + 32L * graph.numNodes();
+		if (graph instanceof MappedCallGraphData) return ((MappedCallGraphData)graph).size;
+		if (graph instanceof DenseDirectedGraph) return 48L * graph.numNodes() + 8L * graph.numArcs();
+		return 48L * graph.numNodes() + 16L * graph.numArcs();
+	}
+
+	/** @return the number of lookups that found a value. */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/** @return the number of lookups that did not find a value. */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/** @return the number of values evicted to make room for new values. */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/** @return the number of cached values. */
+	public int size() {
+		int size = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	/** @return the overall (estimated) size in bytes of the cached values. */
+	public long weight() {
+		long weight = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+	/** @return the maximum overall (estimated) size in bytes of the cached values. */
+	public long maxWeight() {
+		return maxSegmentWeight * SEGMENTS;
+	}
+
+	/**
+	 * Exposes the statistics of this cache as gauges of a metric registry. As gauges are created
+	 * only once, the tags must identify this cache among those registered with {@code registry}.
+	 *
+	 * @param registry a metric registry.
+	 * @param tags alternating tag keys and values.
+	 */
+	public void registerMetrics(final MetricRegistry registry, final String... tags) {
+		registry.gauge("fasten_graph_cache_hits", this::hits, tags);
+		registry.gauge("fasten_graph_cache_misses", this::misses, tags);
+		registry.gauge("fasten_graph_cache_evictions", this::evictions, tags);
+		registry.gauge("fasten_graph_cache_entries", this::size, tags);
+		registry.gauge("fasten_graph_cache_weight_bytes", this::weight, tags);
+		registry.gauge("fasten_graph_cache_max_weight_bytes", this::maxWeight, tags);
+	}
+
+	@Override
+	public String toString() {
+		return "[size: " + size() + ", weight: " + weight() + "/" + maxWeight() + ", hits: " + hits() + ", misses: " + misses() + ", evictions: " + evictions() + "]";
+	}
+}
@@ -20,13 +20,17 @@ package eu.fasten.core.data.callableindex;
 
 import java.util.List;
 import it.unimi.dsi.fastutil.HashCommon;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 
 /**
  * This class contains the metadata associated with the nodes of a call graph.
  * Such metadata is stored by the {@link RocksDao} class in a suitable column family of the RocksDB
  * database, and can be recovered after reading the graph using
  * {@link RocksDao#getGraphMetadata(long, eu.fasten.core.data.DirectedGraph)}, if needed.
+ *
+ * <p>
+ * Metadata is stored either in the original format, in which strings are written for each node in
+ * graph enumeration order, or in the {@linkplain CompactGraphMetadata compact format}.
  */
 
 public class GraphMetadata {
@@ -137,11 +141,14 @@ public class GraphMetadata {
     }
 
     /**
-     * For each node, the associated metadata.
+     * For each node, the associated metadata. The map might be a {@linkplain CompactGraphMetadata
+     * read-only view} that decodes metadata on demand: in that case, each call to {@code get()} (and
+     * each entry returned by an iterator) decodes a new {@link NodeMetadata} instance, so callers
+     * needing the metadata of a node several times should keep the instance they retrieved.
      */
-    public final Long2ObjectOpenHashMap<NodeMetadata> gid2NodeMetadata;
+    public final Long2ObjectMap<NodeMetadata> gid2NodeMetadata;
 
-    public GraphMetadata(final Long2ObjectOpenHashMap<NodeMetadata> gid2NodeData) {
+    public GraphMetadata(final Long2ObjectMap<NodeMetadata> gid2NodeData) {
         this.gid2NodeMetadata = gid2NodeData;
     }
 }
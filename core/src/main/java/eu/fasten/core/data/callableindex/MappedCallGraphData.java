@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static eu.fasten.core.utils.VariableLengthByteCoder.readLong;
+import static eu.fasten.core.utils.VariableLengthByteCoder.writeLong;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+
+import eu.fasten.core.data.DirectedGraph;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * An implementation of {@link DirectedGraph} that reads a call graph directly from a
+ * {@link ByteBuffer} in a flat, position-independent layout.
+ *
+ * <p>
+ * Contrarily to {@link CallGraphData}, opening an instance of this class does not deserialize
+ * anything: the buffer can wrap the value returned by RocksDB, or it can be a
+ * {@linkplain #map(File) memory-mapped sidecar file}, and all accessors read the buffer on demand.
+ * In particular, successor and predecessor lists are decoded lazily, and the sets returned by
+ * {@link #nodes()} and {@link #externalNodes()} are views.
+ *
+ * <p>
+ * The layout is as follows (all fixed-width values are big-endian):
+ * <ul>
+ * <li>a 32-byte header containing the byte {@link #FORMAT}, the number of nodes, the number of
+ * internal nodes, the length in bytes of the successor stream, the number of arcs, and the length in
+ * bytes of the predecessor stream;
+ * <li>the map from LIDs to GIDs (a long per node; internal nodes come first);
+ * <li>the GIDs in increasing order, followed by the corresponding LIDs (an int per node), which
+ * make it possible to map GIDs to LIDs by binary search;
+ * <li>the offset of each node in the successor stream, and the offset of each node in the
+ * predecessor stream (an int per node);
+ * <li>the successor stream and the predecessor stream: for each node, the degree followed by the
+ * gaps between consecutive (sorted) LIDs, all written using
+ * {@linkplain eu.fasten.core.utils.VariableLengthByteCoder variable-length byte coding};
+ * <li>in sidecar files only, the version of the RocksDB value they have been rewritten from (a
+ * long).
+ * </ul>
+ *
+ * <p>
+ * Since the first byte of a value written by {@link RocksDao} in the Kryo-based format is a
+ * serialized {@link Boolean} (i.e., 0 or 1), the two formats can be told apart by looking at the
+ * first byte.
+ */
+public class MappedCallGraphData implements DirectedGraph {
+	/** The first byte of a graph stored in this format. */
+	public static final byte FORMAT = 2;
+	/** The extension of sidecar files containing a graph in this format. */
+	public static final String EXTENSION = ".graph";
+	/** The size in bytes of the header. */
+	private static final int HEADER_SIZE = 32;
+
+	/** The underlying buffer. */
+	private final ByteBuffer buffer;
+	/** The number of nodes. */
+	private final int numNodes;
+	/** The number of internal nodes (they have the LIDs from 0 to this value, excluded). */
+	private final int numInternal;
+	/** The number of arcs. */
+	private final long numArcs;
+	/** The position of the map from LIDs to GIDs. */
+	private final int lid2gid;
+	/** The position of the sorted GIDs. */
+	private final int sortedGids;
+	/** The position of the LIDs of the sorted GIDs. */
+	private final int sortedLids;
+	/** The position of the offsets into the successor stream. */
+	private final int graphOffsets;
+	/** The position of the offsets into the predecessor stream. */
+	private final int transposeOffsets;
+	/** The position of the successor stream. */
+	private final int graphStream;
+	/** The position of the predecessor stream. */
+	private final int transposeStream;
+	/** The size in bytes of the layout. */
+	public final int size;
+
+	/** A view on the set of nodes. */
+	private final LongSet nodes = new AbstractLongSet() {
+		@Override
+		public boolean contains(final long k) {
+			return lid(k) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return numNodes;
+		}
+
+		@Override
+		public LongIterator iterator() {
+			return gids(0);
+		}
+	};
+
+	/** A view on the set of external nodes. */
+	private final LongSet externalNodes = new AbstractLongSet() {
+		@Override
+		public boolean contains(final long k) {
+			return lid(k) >= numInternal;
+		}
+
+		@Override
+		public int size() {
+			return numNodes - numInternal;
+		}
+
+		@Override
+		public LongIterator iterator() {
+			return gids(numInternal);
+		}
+	};
+
+	/**
+	 * Creates a graph reading the given buffer, from its current position up to its limit.
+	 *
+	 * <p>
+	 * The buffer is not copied, and it must not be modified while this graph is in use.
+	 *
+	 * @param buffer a buffer containing a graph in the layout described in the class documentation.
+	 * @throws IllegalArgumentException if the buffer does not contain a graph in this format.
+	 */
+	public MappedCallGraphData(final ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+		if (this.buffer.remaining() < HEADER_SIZE || this.buffer.get(0) != FORMAT) throw new IllegalArgumentException("The buffer does not contain a graph in mapped format");
+		numNodes = this.buffer.getInt(4);
+		numInternal = this.buffer.getInt(8);
+		final int graphStreamLength = this.buffer.getInt(12);
+		numArcs = this.buffer.getLong(16);
+		final int transposeStreamLength = this.buffer.getInt(24);
+
+		lid2gid = HEADER_SIZE;
+		sortedGids = lid2gid + Long.BYTES * numNodes;
+		sortedLids = sortedGids + Long.BYTES * numNodes;
+		graphOffsets = sortedLids + Integer.BYTES * numNodes;
+		transposeOffsets = graphOffsets + Integer.BYTES * numNodes;
+		graphStream = transposeOffsets + Integer.BYTES * numNodes;
+		transposeStream = graphStream + graphStreamLength;
+		size = transposeStream + transposeStreamLength;
+		if (size > this.buffer.limit()) throw new IllegalArgumentException("Truncated graph: expected " + size + " bytes, found " + this.buffer.limit());
+	}
+
+	/**
+	 * Returns the version of the RocksDB value a sidecar file has been rewritten from.
+	 *
+	 * @return the version of the value, or an empty optional if this graph does not come from a
+	 *         sidecar file.
+	 */
+	OptionalLong sourceVersion() {
+		return buffer.limit() < size + Long.BYTES ? OptionalLong.empty() : OptionalLong.of(buffer.getLong(size));
+	}
+
+	/**
+	 * Appends to a serialized graph the version of the RocksDB value it has been rewritten from.
+	 *
+	 * @param graph a graph serialized by {@link #toByteArray(DirectedGraph)}.
+	 * @param sourceVersion the version of the value {@code graph} has been rewritten from.
+	 * @return the content of a sidecar file for {@code graph}.
+	 */
+	static byte[] withSourceVersion(final byte[] graph, final long sourceVersion) {
+		final byte[] sidecar = Arrays.copyOf(graph, graph.length + Long.BYTES);
+		ByteBuffer.wrap(sidecar).putLong(graph.length, sourceVersion);
+		return sidecar;
+	}
+
+	/**
+	 * Memory-maps a sidecar file containing a graph in this format.
+	 *
+	 * <p>
+	 * The mapping remains valid after this method returns, and it is released when the returned
+	 * graph is garbage collected.
+	 *
+	 * @param file a file containing a graph in the layout described in the class documentation.
+	 * @return a graph reading the memory-mapped file.
+	 */
+	public static MappedCallGraphData map(final File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return new MappedCallGraphData(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Serializes a graph in the layout described in the class documentation.
+	 *
+	 * <p>
+	 * LIDs are assigned following the order of the {@linkplain DirectedGraph#iterator() iterator} of
+	 * the graph, internal nodes first. Thus, if the iterator enumerates nodes in a locality-preserving
+	 * order (e.g., the LLP order of a {@link CallGraphData}), the gaps in the adjacency lists will be
+	 * small.
+	 *
+	 * @param graph a graph.
+	 * @return a byte array representing {@code graph}.
+	 */
+	public static byte[] toByteArray(final DirectedGraph graph) {
+		final int n = graph.numNodes();
+		final long[] lid2gid = new long[n];
+		int numInternal = 0;
+		for (final LongIterator iterator = graph.iterator(); iterator.hasNext();) {
+			final long node = iterator.nextLong();
+			if (graph.isInternal(node)) lid2gid[numInternal++] = node;
+		}
+		int lid = numInternal;
+		for (final LongIterator iterator = graph.iterator(); iterator.hasNext();) {
+			final long node = iterator.nextLong();
+			if (graph.isExternal(node)) lid2gid[lid++] = node;
+		}
+		if (lid != n) throw new IllegalArgumentException("The graph iterator returned " + lid + " nodes, but the graph has " + n + " nodes");
+
+		final Long2IntOpenHashMap gid2lid = new Long2IntOpenHashMap(n);
+		for (int i = 0; i < n; i++) gid2lid.put(lid2gid[i], i);
+
+		final int[] perm = new int[n];
+		for (int i = 0; i < n; i++) perm[i] = i;
+		IntArrays.quickSort(perm, (x, y) -> Long.compare(lid2gid[x], lid2gid[y]));
+
+		final int[] graphOffsets = new int[n];
+		final int[] transposeOffsets = new int[n];
+		final FastByteArrayOutputStream graphStream = new FastByteArrayOutputStream();
+		final FastByteArrayOutputStream transposeStream = new FastByteArrayOutputStream();
+		try {
+			for (int x = 0; x < n; x++) {
+				graphOffsets[x] = graphStream.length;
+				writeAdjacency(graph.successors(lid2gid[x]), gid2lid, graphStream);
+				transposeOffsets[x] = transposeStream.length;
+				writeAdjacency(graph.predecessors(lid2gid[x]), gid2lid, transposeStream);
+			}
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+
+		final long size = HEADER_SIZE + (2L * Long.BYTES + 3L * Integer.BYTES) * n + graphStream.length + transposeStream.length;
+		if (size > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Graph is too large");
+		final ByteBuffer buffer = ByteBuffer.allocate((int)size);
+		buffer.put(FORMAT).put((byte)0).putShort((short)0);
+		buffer.putInt(n).putInt(numInternal).putInt(graphStream.length);
+		buffer.putLong(graph.numArcs());
+		buffer.putInt(transposeStream.length).putInt(0);
+		for (final long gid : lid2gid) buffer.putLong(gid);
+		for (final int x : perm) buffer.putLong(lid2gid[x]);
+		for (final int x : perm) buffer.putInt(x);
+		for (final int offset : graphOffsets) buffer.putInt(offset);
+		for (final int offset : transposeOffsets) buffer.putInt(offset);
+		buffer.put(graphStream.array, 0, graphStream.length);
+		buffer.put(transposeStream.array, 0, transposeStream.length);
+		assert !buffer.hasRemaining();
+		return buffer.array();
+	}
+
+	private static void writeAdjacency(final LongList adjacency, final Long2IntOpenHashMap gid2lid, final FastByteArrayOutputStream os) throws IOException {
+		final int d = adjacency.size();
+		final long[] lids = new long[d];
+		for (int i = 0; i < d; i++) lids[i] = gid2lid.get(adjacency.getLong(i));
+		LongArrays.quickSort(lids);
+		writeLong(d, os);
+		long prev = -1;
+		for (final long lid : lids) {
+			writeLong(lid - prev - 1, os);
+			prev = lid;
+		}
+	}
+
+	/**
+	 * Returns the LID of a given GID.
+	 *
+	 * @param gid a GID.
+	 * @return the LID of {@code gid}, or &minus;1 if {@code gid} is not a node of this graph.
+	 */
+	private int lid(final long gid) {
+		int from = 0, to = numNodes - 1;
+		while (from <= to) {
+			final int mid = (from + to) >>> 1;
+			final long midGid = buffer.getLong(sortedGids + Long.BYTES * mid);
+			if (midGid < gid) from = mid + 1;
+			else if (midGid > gid) to = mid - 1;
+			else return buffer.getInt(sortedLids + Integer.BYTES * mid);
+		}
+		return -1;
+	}
+
+	private long gid(final int lid) {
+		return buffer.getLong(lid2gid + Long.BYTES * lid);
+	}
+
+	private LongIterator gids(final int from) {
+		return new LongIterator() {
+			private int lid = from;
+
+			@Override
+			public boolean hasNext() {
+				return lid < numNodes;
+			}
+
+			@Override
+			public long nextLong() {
+				if (!hasNext()) throw new NoSuchElementException();
+				return gid(lid++);
+			}
+		};
+	}
+
+	private int checkedLid(final long node) {
+		final int lid = lid(node);
+		if (lid < 0) throw new IllegalArgumentException("GID " + node + " does not exist");
+		return lid;
+	}
+
+	private LongList adjacency(final int stream, final int offsets, final int lid) {
+		final ByteBuffer b = buffer.duplicate();
+		b.position(stream + buffer.getInt(offsets + Integer.BYTES * lid));
+		final int d = (int)readLong(b);
+		final long[] a = new long[d];
+		int x = -1;
+		for (int i = 0; i < d; i++) a[i] = gid(x += (int)readLong(b) + 1);
+		return LongArrayList.wrap(a);
+	}
+
+	private int degree(final int stream, final int offsets, final int lid) {
+		final ByteBuffer b = buffer.duplicate();
+		b.position(stream + buffer.getInt(offsets + Integer.BYTES * lid));
+		return (int)readLong(b);
+	}
+
+	@Override
+	public int numNodes() {
+		return numNodes;
+	}
+
+	@Override
+	public long numArcs() {
+		return numArcs;
+	}
+
+	@Override
+	public LongList successors(final long node) {
+		return adjacency(graphStream, graphOffsets, checkedLid(node));
+	}
+
+	@Override
+	public int outdegree(final long node) {
+		return degree(graphStream, graphOffsets, checkedLid(node));
+	}
+
+	@Override
+	public LongList predecessors(final long node) {
+		return adjacency(transposeStream, transposeOffsets, checkedLid(node));
+	}
+
+	@Override
+	public int indegree(final long node) {
+		return degree(transposeStream, transposeOffsets, checkedLid(node));
+	}
+
+	@Override
+	public LongSet nodes() {
+		return nodes;
+	}
+
+	@Override
+	public LongIterator iterator() {
+		return gids(0);
+	}
+
+	@Override
+	public LongSet externalNodes() {
+		return externalNodes;
+	}
+
+	@Override
+	public boolean isExternal(final long node) {
+		return lid(node) >= numInternal;
+	}
+
+	@Override
+	public boolean isInternal(final long node) {
+		final int lid = lid(node);
+		return lid >= 0 && lid < numInternal;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (final LongIterator iterator = iterator(); iterator.hasNext();) {
+			final long gid = iterator.nextLong();
+			sb.append(gid).append(": ").append(successors(gid));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (o == this) return true;
+		if (!(o instanceof DirectedGraph)) return false;
+		final DirectedGraph graph = (DirectedGraph)o;
+		if (numNodes() != graph.numNodes()) return false;
+		if (!new LongOpenHashSet(nodes()).equals(new LongOpenHashSet(graph.nodes()))) return false;
+		for (final long node : nodes()) {
+			if (!new LongOpenHashSet(successors(node)).equals(new LongOpenHashSet(graph.successors(node)))) return false;
+			if (!new LongOpenHashSet(predecessors(node)).equals(new LongOpenHashSet(graph.predecessors(node)))) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		long h = HashCommon.mix(numNodes()) ^ HashCommon.murmurHash3(numArcs());
+		for (final long node : nodes()) {
+			for (final long succ : successors(node)) h ^= HashCommon.murmurHash3(h ^ succ);
+			for (final long pred : predecessors(node)) h ^= HashCommon.murmurHash3(h ^ pred);
+		}
+		return (int)(h ^ h >>> 32);
+	}
+}
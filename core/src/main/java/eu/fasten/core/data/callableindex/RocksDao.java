@@ -20,17 +20,23 @@ package eu.fasten.core.data.callableindex;
 
 import static eu.fasten.core.utils.VariableLengthByteCoder.readLong;
 import static eu.fasten.core.utils.VariableLengthByteCoder.readString;
-import static eu.fasten.core.utils.VariableLengthByteCoder.writeLong;
-import static eu.fasten.core.utils.VariableLengthByteCoder.writeString;
 
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Collectors;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.math3.util.Pair;
 import org.rocksdb.ColumnFamilyDescriptor;
@@ -38,8 +44,13 @@ import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.CompressionType;
 import org.rocksdb.DBOptions;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +59,7 @@ import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.google.common.hash.Hashing;
 import com.google.common.primitives.Longs;
 
 import eu.fasten.core.data.ArrayImmutableDirectedGraph;
@@ -60,18 +72,23 @@ import eu.fasten.core.data.callableindex.GraphMetadata.NodeMetadata;
 import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord;
 import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord.CallType;
 import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
+import eu.fasten.core.index.BVGraphCompressor;
 import eu.fasten.core.index.BVGraphSerializer;
 import eu.fasten.core.index.LayeredLabelPropagation;
-import eu.fasten.core.legacy.KnowledgeBase;
 import it.unimi.dsi.Util;
 import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
 import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongIterators;
 import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.io.InputBitStream;
 import it.unimi.dsi.io.NullInputStream;
@@ -85,10 +102,33 @@ import it.unimi.dsi.webgraph.Transform;
 public class RocksDao implements Closeable {
 
     private final static byte[] METADATA_COLUMN_FAMILY = "metadata".getBytes();
+    private final static byte[] HIERARCHY_COLUMN_FAMILY = "hierarchy".getBytes();
+    private final static byte[] VERSION_COLUMN_FAMILY = "versions".getBytes();
+    /** An empty buffer, used as a key that cannot exist. */
+    private final static byte[] NO_VALUE = new byte[0];
     private final RocksDB rocksDb;
+    /** The absolute, normalized path of the database. */
+    private final String path;
     private final ColumnFamilyHandle defaultHandle;
     private ColumnFamilyHandle metadataHandle;
-    private Kryo kryo;
+    /** The handle of the column family of {@linkplain ClassHierarchyFragment class hierarchy fragments}, or {@code null}. */
+    private ColumnFamilyHandle hierarchyHandle;
+    /** The handle of the column family of graph {@linkplain #version(byte[], int, int) versions}, or {@code null}. */
+    private ColumnFamilyHandle versionHandle;
+    /** Whether the database has been opened read-only. */
+    private final boolean readOnly;
+    /** Serializes writes of graphs, so that versions can be recorded for graphs stored before versions existed. */
+    private final Object writeLock = new Object();
+    /** Kryo instances are not thread-safe, so each thread uses its own. */
+    private final ThreadLocal<Kryo> kryo = ThreadLocal.withInitial(RocksDao::createKryo);
+    /** If not {@code null}, the pool used to decode in parallel the results of batched reads. */
+    private ForkJoinPool decodingPool;
+    /** If not {@code null}, a directory containing graphs in {@linkplain MappedCallGraphData mapped format}. */
+    private File sidecarDirectory;
+    /** If not {@code null}, the cache of decoded graphs and metadata. */
+    private GraphCache graphCache = GraphCache.getInstance();
+    /** The namespace of this instance in {@link #graphCache}. */
+    private int cacheNamespace = graphCache.newNamespace();
     private final static Logger logger = LoggerFactory.getLogger(RocksDao.class.getName());
 
     public RocksDao(final String dbDir, final boolean readOnly) throws RocksDBException {
@@ -103,6 +143,8 @@ public class RocksDao implements Closeable {
      */
     public RocksDao(final String dbDir, final boolean readOnly, final boolean onlyDefaultColumnFamily) throws RocksDBException {    // TODO: Remove onlyDefaultColumnFamily
         RocksDB.loadLibrary();
+        this.path = Paths.get(dbDir).toAbsolutePath().normalize().toString();
+        this.readOnly = readOnly;
 		final ColumnFamilyOptions defaultOptions = new ColumnFamilyOptions();
         ColumnFamilyOptions metadataOptions = null;
         if (!onlyDefaultColumnFamily) {
@@ -111,9 +153,18 @@ public class RocksDao implements Closeable {
         @SuppressWarnings("resource") final DBOptions dbOptions = new DBOptions()
                 .setCreateIfMissing(true)
                 .setCreateMissingColumnFamilies(true);
-		final List<ColumnFamilyDescriptor> cfDescriptors = onlyDefaultColumnFamily ?
-                List.of(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions)) :
-                List.of(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions), new ColumnFamilyDescriptor(METADATA_COLUMN_FAMILY, metadataOptions));
+		final List<ColumnFamilyDescriptor> cfDescriptors = new ArrayList<>();
+        cfDescriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions));
+        if (!onlyDefaultColumnFamily) {
+            cfDescriptors.add(new ColumnFamilyDescriptor(METADATA_COLUMN_FAMILY, metadataOptions));
+            // Databases written before class hierarchy fragments existed cannot be opened read-only with a missing column family
+            if (!readOnly || hasColumnFamily(dbDir, HIERARCHY_COLUMN_FAMILY)) {
+                cfDescriptors.add(new ColumnFamilyDescriptor(HIERARCHY_COLUMN_FAMILY, metadataOptions));
+            }
+        }
+        // The same holds for versions; without versions, sidecar files are never mapped
+        final boolean versions = !onlyDefaultColumnFamily && (!readOnly || hasColumnFamily(dbDir, VERSION_COLUMN_FAMILY));
+        if (versions) cfDescriptors.add(new ColumnFamilyDescriptor(VERSION_COLUMN_FAMILY, defaultOptions));
         final List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>();
         this.rocksDb = readOnly
                 ? RocksDB.openReadOnly(dbOptions, dbDir, cfDescriptors, columnFamilyHandles)
@@ -121,12 +172,23 @@ public class RocksDao implements Closeable {
         this.defaultHandle = columnFamilyHandles.get(0);
         if (!onlyDefaultColumnFamily) {
             this.metadataHandle = columnFamilyHandles.get(1);
+            if (columnFamilyHandles.size() > (versions ? 3 : 2)) this.hierarchyHandle = columnFamilyHandles.get(2);
+            if (versions) this.versionHandle = columnFamilyHandles.get(columnFamilyHandles.size() - 1);
+        }
+    }
+
+    private static boolean hasColumnFamily(final String dbDir, final byte[] name) throws RocksDBException {
+        if (!new File(dbDir).exists()) return false;
+        try (final Options options = new Options()) {
+            for (final byte[] columnFamily : RocksDB.listColumnFamilies(options, dbDir)) {
+                if (Arrays.equals(columnFamily, name)) return true;
+            }
         }
-        initKryo();
+        return false;
     }
 
-    private void initKryo() {
-        kryo = new Kryo();
+    private static Kryo createKryo() {
+        final Kryo kryo = new Kryo();
         kryo.register(BVGraph.class, new BVGraphSerializer(kryo));
         kryo.register(Boolean.class);
         kryo.register(byte[].class);
@@ -141,6 +203,7 @@ public class RocksDao implements Closeable {
         kryo.register(LongOpenHashSet.class);
         kryo.register(ArrayImmutableDirectedGraph.class);
         kryo.register(GOV3LongFunction.class, new JavaSerializer());
+        return kryo;
     }
 
     private GraphMetadata.ReceiverRecord.CallType transformCallType(eu.fasten.core.data.metadatadb.codegen.enums.CallType type) {
@@ -164,7 +227,21 @@ public class RocksDao implements Closeable {
         // Save and obtain graph
         final DirectedGraph graph = saveToRocksDb(extendedGidGraph.getIndex(), extendedGidGraph.getNodes(),
                 extendedGidGraph.getNumInternalNodes(), extendedGidGraph.getEdges());
-        // Save metadata
+        // Serialize information in compact form
+        final Long2ObjectOpenHashMap<NodeMetadata> nodeMetadata = nodeMetadata(extendedGidGraph, graph);
+        final byte[] metadata = CompactGraphMetadata.toByteArray(nodeMetadata);
+        rocksDb.put(metadataHandle, Longs.toByteArray(extendedGidGraph.getIndex()), metadata);
+        if (hierarchyHandle != null) {
+            // Without a class hierarchy, a stale fragment must not survive
+            if (extendedGidGraph.getTypeHierarchy() == null) rocksDb.delete(hierarchyHandle, Longs.toByteArray(extendedGidGraph.getIndex()));
+            else rocksDb.put(hierarchyHandle, Longs.toByteArray(extendedGidGraph.getIndex()),
+                    new ClassHierarchyFragment(extendedGidGraph.getTypeHierarchy(), nodeMetadata).toByteArray());
+        }
+        invalidate(extendedGidGraph.getIndex());
+    }
+
+    /** Gathers the metadata of the nodes of a graph. */
+    private Long2ObjectOpenHashMap<NodeMetadata> nodeMetadata(final ExtendedGidGraph extendedGidGraph, final DirectedGraph graph) {
         final Map<Pair<Long, Long>, CallSitesRecord> edgesInfo = extendedGidGraph.getCallsInfo();
         final Map<Long, String> typeMap = extendedGidGraph.getTypeMap();
         final Long2ObjectOpenHashMap<List<ReceiverRecord>> map = new Long2ObjectOpenHashMap<>();
@@ -174,39 +251,26 @@ public class RocksDao implements Closeable {
         // Gather data by source and store it in lists of GraphMetadata.ReceiverRecord.
         edgesInfo.forEach((pair, record) -> map.compute(pair.getFirst().longValue(), (k, list) -> {
             if (list == null) list = new ArrayList<>();
-            list.add(new ReceiverRecord(record.getLine(), transformCallType(record.getCallType())
+            // Unknown lines are stored as 0, as lines start from 1
+            final int line = record.getLine() == null ? 0 : record.getLine();
+            list.add(new ReceiverRecord(line, transformCallType(record.getCallType())
                 , gidToUriMap.get(pair.getSecond()),
                 Arrays.stream(record.getReceiverTypeIds()).map(typeMap::get).collect(Collectors.toList())));
             return list;
         }));
 
 
-        // Serialize information in compact form, following the standard node enumeration order
-        final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+        final Long2ObjectOpenHashMap<NodeMetadata> gid2NodeMetadata = new Long2ObjectOpenHashMap<>(graph.numNodes());
         for (final LongIterator iterator = graph.iterator(); iterator.hasNext();) {
             final long node = iterator.nextLong();
 
             final FastenJavaURI uri = FastenJavaURI.create(gidToUriMap.get(node)).decanonicalize();
-            writeString("/" + uri.getNamespace() + "/" + uri.getClassName(), fbaos);
-            writeString(StringUtils.substringAfter(uri.getEntity(), "."), fbaos);
-
             final List<ReceiverRecord> list = map.get(node);
             // TODO: is this acceptable behavior?
-            if (list == null) writeLong(0, fbaos); // no data
-            else {
-                // Encode list length
-                writeLong(list.size(), fbaos);
-                // Encode elements
-                for (final var r : list) {
-                    writeLong(r.line, fbaos);
-                    writeLong(r.callType.ordinal(), fbaos);
-                    writeString(r.receiverSignature, fbaos);
-                    writeLong(r.receiverTypes.size(), fbaos);
-                    for (final String s : r.receiverTypes) writeString(s, fbaos);
-                }
-            }
+            gid2NodeMetadata.put(node, new NodeMetadata("/" + uri.getNamespace() + "/" + uri.getClassName(),
+                    StringUtils.substringAfter(uri.getEntity(), "."), list == null ? List.of() : list));
         }
-        rocksDb.put(metadataHandle, Longs.toByteArray(extendedGidGraph.getIndex()), 0, 8, fbaos.array, 0, fbaos.length);
+        return gid2NodeMetadata;
     }
 
     /**
@@ -223,32 +287,9 @@ public class RocksDao implements Closeable {
 	 */
     public DirectedGraph saveToRocksDb(final long index, List<Long> nodes, int numInternal, final List<List<Long>> edges)
             throws IOException, RocksDBException {
-        final var internalIds = new LongArrayList(numInternal);
-        final var externalIds = new LongArrayList(nodes.size() - numInternal);
-        for (int i = 0; i < numInternal; i++) {
-            internalIds.add(nodes.get(i).longValue());
-        }
-        for (int i = numInternal; i < nodes.size(); i++) {
-            externalIds.add(nodes.get(i).longValue());
-        }
-        final var internalNodesSet = new LongLinkedOpenHashSet(internalIds);
-        final var externalNodesSet = new LongLinkedOpenHashSet(externalIds);
-        numInternal = internalNodesSet.size();
-        nodes = new LongArrayList(internalNodesSet.size() + externalNodesSet.size());
-        nodes.addAll(internalNodesSet);
-        nodes.addAll(externalNodesSet);
-
-        final var nodesSet = new LongLinkedOpenHashSet(nodes);
-        final var edgeNodesSet = new LongOpenHashSet();
-        for (final var edge : edges) {
-            edgeNodesSet.addAll(edge);
-        }
-        // Nodes list must contain all nodes which are in edges
-        if (!nodesSet.containsAll(edgeNodesSet)) {
-            edgeNodesSet.removeAll(nodesSet);
-            throw new IllegalArgumentException("Some nodes from edges are not in the nodes list:\n"
-                    + edgeNodesSet);
-        }
+        final var uniqueNodes = new LongArrayList(nodes.size());
+        numInternal = uniqueNodes(nodes, numInternal, edges, uniqueNodes);
+        nodes = uniqueNodes;
 
         if (nodes.size() <= Constants.MIN_COMPRESSED_GRAPH_SIZE) {
             /*
@@ -257,26 +298,19 @@ public class RocksDao implements Closeable {
              * graph is simply serialized with kryo, as it already implements the return interface of
              * getGraphData().
              */
-            final Builder builder = new ArrayImmutableDirectedGraph.Builder();
-            for (int i = 0; i < numInternal; i++) builder.addInternalNode(nodes.get(i));
-            for (int i = numInternal; i < nodes.size(); i++) builder.addExternalNode(nodes.get(i));
-            for (final var edge : edges) builder.addArc(edge.get(0), edge.get(1));
-            final ArrayImmutableDirectedGraph graph = builder.build();
-            final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
-            final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
-            kryo.writeObject(bbo, Boolean.FALSE);
-            kryo.writeObject(bbo, graph);
-            bbo.flush();
+            final ArrayImmutableDirectedGraph graph = buildGraph(nodes, numInternal, edges);
+            final FastByteArrayOutputStream fbaos = serialize(graph);
             // Write to DB
-            rocksDb.put(defaultHandle, Longs.toByteArray(index), 0, 8, fbaos.array, 0, fbaos.length);
+            putGraph(index, fbaos.array, 0, fbaos.length);
             return graph;
         } else {
             /*
              * In this case we compress the graph: first, we remap GIDs into a compact temporary ID space
              * [0..nodes.size()). Then, we build an ArrayListMutableGraph that represent the original graph in
              * the temporary ID space. We run LLP on the graph obtaining a permutation of the temporary ID space
-             * that improves greatly compression. Finally, we store the permuted graph and the transpose using
-             * BVGraph, and store the bijective mapping between GIDs and the (permuted) temporary ID space.
+             * that improves greatly compression. Finally, we compress in memory the permuted graph and the
+             * transpose using BVGraph, and store the bijective mapping between GIDs and the (permuted)
+             * temporary ID space.
              */
             final long[] temporary2GID = new long[nodes.size()];
             final var nodesList = new LongArrayList(nodes);
@@ -302,11 +336,6 @@ public class RocksDao implements Closeable {
                     logger.error("Duplicate arc (" + sourceId + " -> " + targetId + ")", e);
                 }
             }
-            final var file = File.createTempFile(KnowledgeBase.class.getSimpleName(), ".tmpgraph");
-            final var graphProperties = new Properties();
-            final var transposeProperties = new Properties();
-            FileInputStream propertyFile;
-
             final ImmutableGraph unpermutedGraph = mutableGraph.immutableView();
             final int numNodes = unpermutedGraph.numNodes();
             // Run LLP on the graph
@@ -324,16 +353,14 @@ public class RocksDao implements Closeable {
             }
             Util.invertPermutationInPlace(sorted);
 
-            // Permute, compress and load the graph
+            // Permute and compress the graph in memory
             final ImmutableGraph graph = Transform.map(unpermutedGraph, sorted);
-            BVGraph.store(graph, file.toString());
-            propertyFile = new FileInputStream(file + BVGraph.PROPERTIES_EXTENSION);
-            graphProperties.load(propertyFile);
-            propertyFile.close();
+            final var graphProperties = new Properties();
+            final BVGraph storedGraph = BVGraphCompressor.compress(graph, graphProperties);
+            final Kryo kryo = this.kryo.get();
             final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
             final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
             kryo.writeObject(bbo, Boolean.TRUE);
-            final ImmutableGraph storedGraph = BVGraph.load(file.toString());
             kryo.writeObject(bbo, storedGraph);
 
             // Compute LIDs according to the current node numbering based on the LLP permutation
@@ -345,12 +372,9 @@ public class RocksDao implements Closeable {
             // Compute a succinct version of the function mapping GIDs to LIDs
             final GOV3LongFunction GID2LID = new GOV3LongFunction.Builder().keys(LongArrayList.wrap(LID2GID)).build();
 
-            // Compress and load the transpose
-            BVGraph.store(Transform.transpose(graph), file.toString());
-            propertyFile = new FileInputStream(file + BVGraph.PROPERTIES_EXTENSION);
-            transposeProperties.load(propertyFile);
-            propertyFile.close();
-            final ImmutableGraph storedTranspose = BVGraph.load(file.toString());
+            // Compress the transpose in memory
+            final var transposeProperties = new Properties();
+            final BVGraph storedTranspose = BVGraphCompressor.compress(Transform.transpose(graph), transposeProperties);
             kryo.writeObject(bbo, storedTranspose);
             kryo.writeObject(bbo, numInternal);
             // Write out properties
@@ -361,66 +385,329 @@ public class RocksDao implements Closeable {
             kryo.writeObject(bbo, GID2LID);
             bbo.flush();
             // Write to DB
-            rocksDb.put(defaultHandle, Longs.toByteArray(index), 0, 8, fbaos.array, 0, fbaos.length);
-			final var fileProperties = new File(file + BVGraph.PROPERTIES_EXTENSION);
-			final var fileOffsets = new File(file + BVGraph.OFFSETS_EXTENSION);
-			final var fileGraph = new File(file + BVGraph.GRAPH_EXTENSION);
-            try {
-                FileUtils.forceDelete(fileProperties);
-                FileUtils.forceDelete(fileOffsets);
-                FileUtils.forceDelete(fileGraph);
-                FileUtils.forceDelete(file);
-            } finally {
-                if (fileProperties.exists()) {
-                    fileProperties.delete();
-                }
-                if (fileOffsets.exists()) {
-                    fileOffsets.delete();
-                }
-                if (fileGraph.exists()) {
-                    fileGraph.delete();
-                }
-                if (file.exists()) {
-                    file.delete();
-                }
-            }
+            putGraph(index, fbaos.array, 0, fbaos.length);
             return new CallGraphData(storedGraph, storedTranspose, graphProperties, transposeProperties,
                     LID2GID, GID2LID, numInternal, fbaos.length);
 
         }
     }
 
+    /**
+     * Returns the version of a graph, that is, a fingerprint of its RocksDB value.
+     *
+     * <p>
+     * Versions are stored, before the graphs, by all methods writing graphs, so a sidecar file,
+     * which records the version of the value it has been rewritten from, can be checked cheaply
+     * against the current value.
+     */
+    private static long version(final byte[] value, final int offset, final int length) {
+        return Hashing.murmur3_128().hashBytes(value, offset, length).asLong();
+    }
+
+    /** Stores the value of a graph, after its version. */
+    private void putGraph(final long index, final byte[] value, final int offset, final int length) throws RocksDBException {
+        final byte[] key = Longs.toByteArray(index);
+        synchronized (writeLock) {
+            if (versionHandle != null) rocksDb.put(versionHandle, key, Longs.toByteArray(version(value, offset, length)));
+            rocksDb.put(defaultHandle, key, 0, key.length, value, offset, length);
+        }
+        invalidate(index);
+    }
+
+    /**
+     * Removes duplicates from a list of nodes, checking that all nodes appearing in edges are in the
+     * list.
+     *
+     * @param nodes List of GID nodes (first internal nodes, then external nodes)
+     * @param numInternal Number of internal nodes in nodes list
+     * @param edges List of edges (pairs of GIDs)
+     * @param uniqueNodes a list that will be filled with the nodes, without duplicates, in the same
+     *            order
+     * @return the number of distinct internal nodes.
+     */
+    private static int uniqueNodes(final List<Long> nodes, final int numInternal, final List<List<Long>> edges, final LongArrayList uniqueNodes) {
+        final var internalIds = new LongArrayList(numInternal);
+        final var externalIds = new LongArrayList(nodes.size() - numInternal);
+        for (int i = 0; i < numInternal; i++) {
+            internalIds.add(nodes.get(i).longValue());
+        }
+        for (int i = numInternal; i < nodes.size(); i++) {
+            externalIds.add(nodes.get(i).longValue());
+        }
+        final var internalNodesSet = new LongLinkedOpenHashSet(internalIds);
+        final var externalNodesSet = new LongLinkedOpenHashSet(externalIds);
+        uniqueNodes.addAll(internalNodesSet);
+        uniqueNodes.addAll(externalNodesSet);
+
+        final var nodesSet = new LongOpenHashSet(uniqueNodes);
+        final var edgeNodesSet = new LongOpenHashSet();
+        for (final var edge : edges) {
+            edgeNodesSet.addAll(edge);
+        }
+        // Nodes list must contain all nodes which are in edges
+        if (!nodesSet.containsAll(edgeNodesSet)) {
+            edgeNodesSet.removeAll(nodesSet);
+            throw new IllegalArgumentException("Some nodes from edges are not in the nodes list:\n"
+                    + edgeNodesSet);
+        }
+        return internalNodesSet.size();
+    }
+
+    private static ArrayImmutableDirectedGraph buildGraph(final List<Long> nodes, final int numInternal, final List<List<Long>> edges) {
+        final Builder builder = new ArrayImmutableDirectedGraph.Builder();
+        for (int i = 0; i < numInternal; i++) builder.addInternalNode(nodes.get(i));
+        for (int i = numInternal; i < nodes.size(); i++) builder.addExternalNode(nodes.get(i));
+        for (final var edge : edges) builder.addArc(edge.get(0), edge.get(1));
+        return builder.build();
+    }
+
+    /** Serializes a small graph in the Kryo-based format. */
+    private FastByteArrayOutputStream serialize(final ArrayImmutableDirectedGraph graph) {
+        final Kryo kryo = this.kryo.get();
+        final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+        final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
+        kryo.writeObject(bbo, Boolean.FALSE);
+        kryo.writeObject(bbo, graph);
+        bbo.flush();
+        return fbaos;
+    }
+
+    /**
+     * A graph encoded in memory by {@link #encode(ExtendedGidGraph)}, as the values that
+     * {@link #ingest(Long2ObjectMap, File)} stores in the database.
+     */
+    public static final class EncodedGraph {
+        /** The encoded graph. */
+        public final byte[] graph;
+        /** The encoded metadata. */
+        public final byte[] metadata;
+        /** The encoded {@linkplain ClassHierarchyFragment class hierarchy fragment}, or {@code null} if the class hierarchy is unknown. */
+        public final byte[] hierarchy;
+
+        public EncodedGraph(final byte[] graph, final byte[] metadata, final byte[] hierarchy) {
+            this.graph = graph;
+            this.metadata = metadata;
+            this.hierarchy = hierarchy;
+        }
+    }
+
+    /**
+     * Encodes a graph, its metadata and its class hierarchy fragment in memory, as the values that
+     * {@link #ingest(Long2ObjectMap, File)} stores in the database.
+     *
+     * <p>
+     * Small graphs are encoded as by {@link #saveToRocksDb(ExtendedGidGraph)}; larger graphs are
+     * encoded in {@linkplain MappedCallGraphData mapped format} rather than being compressed with
+     * {@link BVGraph}, which requires a (slow) LLP permutation. Metadata is encoded in
+     * {@linkplain CompactGraphMetadata compact format}. No files are written, and this method can be
+     * called concurrently by multiple threads.
+     *
+     * @param extendedGidGraph a graph.
+     * @return the encoded graph, metadata and, if the graph has a class hierarchy, class hierarchy fragment.
+     */
+    public EncodedGraph encode(final ExtendedGidGraph extendedGidGraph) {
+        final List<Long> nodes = extendedGidGraph.getNodes();
+        final List<List<Long>> edges = extendedGidGraph.getEdges();
+        final var uniqueNodes = new LongArrayList(nodes.size());
+        final int numInternal = uniqueNodes(nodes, extendedGidGraph.getNumInternalNodes(), edges, uniqueNodes);
+        final ArrayImmutableDirectedGraph graph = buildGraph(uniqueNodes, numInternal, edges);
+        final byte[] value;
+        if (uniqueNodes.size() <= Constants.MIN_COMPRESSED_GRAPH_SIZE) {
+            final FastByteArrayOutputStream fbaos = serialize(graph);
+            fbaos.trim();
+            value = fbaos.array;
+        } else value = MappedCallGraphData.toByteArray(graph);
+        final Long2ObjectOpenHashMap<NodeMetadata> nodeMetadata = nodeMetadata(extendedGidGraph, graph);
+        final byte[] hierarchy = extendedGidGraph.getTypeHierarchy() == null ? null
+                : new ClassHierarchyFragment(extendedGidGraph.getTypeHierarchy(), nodeMetadata).toByteArray();
+        return new EncodedGraph(value, CompactGraphMetadata.toByteArray(nodeMetadata), hierarchy);
+    }
+
+    /**
+     * Stores in bulk graphs, metadata and class hierarchy fragments {@linkplain #encode(ExtendedGidGraph)
+     * encoded} in memory.
+     *
+     * <p>
+     * Instead of going through the memtable and the write-ahead log, the values are sorted and
+     * written to SST files, which are then moved into the database using
+     * {@link RocksDB#ingestExternalFile(ColumnFamilyHandle, List, IngestExternalFileOptions)}. The
+     * metadata and the class hierarchy fragments are ingested first, and the graphs afterwards, each
+     * column family atomically, so a graph never becomes visible before its metadata. As by
+     * {@link #saveToRocksDb(ExtendedGidGraph)}, the fragments of graphs without a class hierarchy are
+     * deleted.
+     *
+     * @param values a map from indices to encoded graphs; existing values with the same indices are replaced.
+     * @param tempDirectory a directory, on the same file system as the database, where SST files
+     *            will be written.
+     * @throws IOException if there was a problem writing SST files
+     * @throws RocksDBException if there was a problem ingesting SST files
+     */
+    public void ingest(final Long2ObjectMap<EncodedGraph> values, final File tempDirectory) throws IOException, RocksDBException {
+        if (values.isEmpty()) return;
+        final long[] indices = values.keySet().toLongArray();
+        // Keys are compared as unsigned big-endian byte sequences
+        LongArrays.quickSort(indices, Long::compareUnsigned);
+        final long[] withHierarchy = Arrays.stream(indices).filter(i -> values.get(i).hierarchy != null).toArray();
+        final File graphFile = File.createTempFile(RocksDao.class.getSimpleName(), ".graphs.sst", tempDirectory);
+        final File metadataFile = File.createTempFile(RocksDao.class.getSimpleName(), ".metadata.sst", tempDirectory);
+        final File hierarchyFile = File.createTempFile(RocksDao.class.getSimpleName(), ".hierarchy.sst", tempDirectory);
+        final File versionFile = File.createTempFile(RocksDao.class.getSimpleName(), ".versions.sst", tempDirectory);
+        try (final EnvOptions envOptions = new EnvOptions();
+                final Options graphOptions = new Options();
+                final Options metadataOptions = new Options().setCompressionType(CompressionType.ZSTD_COMPRESSION);
+                final IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+            writeSstFile(graphFile, envOptions, graphOptions, indices, i -> values.get(i).graph);
+            writeSstFile(metadataFile, envOptions, metadataOptions, indices, i -> values.get(i).metadata);
+            if (versionHandle != null) writeSstFile(versionFile, envOptions, graphOptions, indices, i -> Longs.toByteArray(version(values.get(i).graph, 0, values.get(i).graph.length)));
+            if (hierarchyHandle != null) {
+                // Fragments of replaced graphs without a class hierarchy are stale
+                for (final long index : indices) if (values.get(index).hierarchy == null) rocksDb.delete(hierarchyHandle, Longs.toByteArray(index));
+                if (withHierarchy.length != 0) {
+                    writeSstFile(hierarchyFile, envOptions, metadataOptions, withHierarchy, i -> values.get(i).hierarchy);
+                    rocksDb.ingestExternalFile(hierarchyHandle, List.of(hierarchyFile.toString()), ingestOptions);
+                }
+            }
+            rocksDb.ingestExternalFile(metadataHandle, List.of(metadataFile.toString()), ingestOptions);
+            synchronized (writeLock) {
+                // As in putGraph(), versions come first
+                if (versionHandle != null) rocksDb.ingestExternalFile(versionHandle, List.of(versionFile.toString()), ingestOptions);
+                rocksDb.ingestExternalFile(defaultHandle, List.of(graphFile.toString()), ingestOptions);
+            }
+            // Files not overlapping existing keys might be ingested without a new sequence number;
+            // deleting a key that cannot exist makes sure that the epoch changes
+            rocksDb.delete(defaultHandle, NO_VALUE);
+        } finally {
+            for (final long index : indices) invalidate(index);
+            graphFile.delete();
+            metadataFile.delete();
+            hierarchyFile.delete();
+            versionFile.delete();
+        }
+    }
+
+    private static void writeSstFile(final File file, final EnvOptions envOptions, final Options options, final long[] indices, final LongFunction<byte[]> value) throws RocksDBException {
+        try (final SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+            writer.open(file.toString());
+            for (final long index : indices) writer.put(Longs.toByteArray(index), value.apply(index));
+            writer.finish();
+        }
+    }
+
+    /**
+     * Returns the absolute, normalized path of the database.
+     *
+     * @return the path of the database.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Returns the epoch of the database, that is, the sequence number of its latest write.
+     *
+     * <p>
+     * The epoch is persistent, and it increases whenever graphs are saved, ingested or deleted, so
+     * it can be used to invalidate data derived from the graphs, even across restarts.
+     *
+     * @return the epoch of the database.
+     */
+    public long epoch() {
+        return rocksDb.getLatestSequenceNumber();
+    }
+
+    /**
+     * Sets a directory of sidecar files containing graphs in {@linkplain MappedCallGraphData mapped
+     * format}.
+     *
+     * <p>
+     * When a directory is set, {@link #getGraphData(long)} will first look for a file named after the
+     * index of the graph with extension {@link MappedCallGraphData#EXTENSION}, and if it exists it
+     * will memory-map it instead of reading the graph from RocksDB.
+     *
+     * <p>
+     * Sidecar files in the directory are deleted when the corresponding graphs are saved, ingested or
+     * deleted through this instance. Moreover, a sidecar file is mapped only if the version (a
+     * fingerprint) of the RocksDB value it has been rewritten from matches the version stored with
+     * the current value, so sidecar files made stale by writers not using the directory are ignored.
+     * Thus, sidecar files are never mapped if the database has no versions (i.e., it has been opened
+     * read-only, and it has never been opened for writing since versions exist).
+     *
+     * @param sidecarDirectory a directory of sidecar files, or {@code null} to disable sidecar files.
+     */
+    public void setSidecarDirectory(final File sidecarDirectory) {
+        this.sidecarDirectory = sidecarDirectory;
+        if (graphCache != null) graphCache.invalidate(cacheNamespace);
+    }
+
+    /**
+     * Sets the cache of decoded graphs and metadata used by this instance.
+     *
+     * <p>
+     * By default, the {@linkplain GraphCache#getInstance() process-wide cache} is used.
+     *
+     * @param graphCache a cache, or {@code null} to disable caching.
+     */
+    public void setGraphCache(final GraphCache graphCache) {
+        if (this.graphCache != null) this.graphCache.invalidate(cacheNamespace);
+        this.graphCache = graphCache;
+        if (graphCache != null) cacheNamespace = graphCache.newNamespace();
+    }
+
+    /** Forgets the cached and sidecar copies of a graph whose record has been written or deleted. */
+    private void invalidate(final long index) {
+        if (sidecarDirectory != null) sidecarFile(sidecarDirectory, index).delete();
+        if (graphCache != null) graphCache.invalidate(cacheNamespace, index);
+    }
+
+    /** Returns a version of a graph that can be safely used by a thread while the cache holds it. */
+    private static DirectedGraph threadSafe(final DirectedGraph graph) {
+        return graph instanceof CallGraphData ? ((CallGraphData)graph).copy() : graph;
+    }
+
+    /**
+     * Returns the sidecar file of a graph.
+     *
+     * @param sidecarDirectory a directory of sidecar files.
+     * @param index Index of the graph
+     * @return the sidecar file of the graph with given index in {@code sidecarDirectory}.
+     */
+    public static File sidecarFile(final File sidecarDirectory, final long index) {
+        return new File(sidecarDirectory, index + MappedCallGraphData.EXTENSION);
+    }
+
     /**
      * Retrieves graph data from RocksDB database.
      *
+     * <p>
+     * Graphs stored in {@linkplain MappedCallGraphData mapped format} (either in RocksDB or in a
+     * {@linkplain #setSidecarDirectory(File) sidecar file}) are returned as views over the stored
+     * bytes; graphs stored in the Kryo-based format are deserialized.
+     *
+     * <p>
+     * Decoded graphs are kept in the {@linkplain #setGraphCache(GraphCache) graph cache}, so the
+     * returned graph must not be modified.
+     *
      * @param index Index of the graph
      * @return the directed graph stored in the database
      * @throws RocksDBException if there was problem retrieving data from RocksDB
      */
     public DirectedGraph getGraphData(final long index) throws RocksDBException {
+        if (graphCache == null) return loadGraphData(index);
+        final DirectedGraph cached = graphCache.getGraph(cacheNamespace, index);
+        if (cached != null) return threadSafe(cached);
+        // Taken before loading, so that a concurrent invalidation prevents caching a stale graph
+        final long stamp = graphCache.stamp(cacheNamespace, index);
+        final DirectedGraph graph = loadGraphData(index);
+        if (graph == null) return null;
+        graphCache.putGraph(cacheNamespace, index, graph, stamp);
+        return threadSafe(graph);
+    }
+
+    private DirectedGraph loadGraphData(final long index) throws RocksDBException {
+        final DirectedGraph mapped = mapSidecar(index);
+        if (mapped != null) return mapped;
         try {
-            final byte[] buffer = rocksDb.get(Longs.toByteArray(index));
-            final Input input = new Input(buffer);
-            assert kryo != null;
-
-            final boolean compressed = kryo.readObject(input, Boolean.class);
-            if (compressed) {
-                final var graphs = new ImmutableGraph[]{
-                        kryo.readObject(input, BVGraph.class),
-                        kryo.readObject(input, BVGraph.class)
-                };
-                final int numInternal = kryo.readObject(input, int.class);
-                final Properties[] properties = new Properties[]{
-                        kryo.readObject(input, Properties.class),
-                        kryo.readObject(input, Properties.class)
-                };
-                final long[] LID2GID = kryo.readObject(input, long[].class);
-                final GOV3LongFunction GID2LID = kryo.readObject(input, GOV3LongFunction.class);
-                return new CallGraphData(graphs[0], graphs[1], properties[0], properties[1],
-                        LID2GID, GID2LID, numInternal, buffer.length);
-            } else {
-                return kryo.readObject(input, ArrayImmutableDirectedGraph.class);
-            }
+            return readGraph(rocksDb.get(Longs.toByteArray(index)));
         } catch (final NullPointerException e) {
             // TODO fix this handling of a null pointer exception more maturely
             logger.warn("Graph with index " + index + " could not be found");
@@ -428,9 +715,275 @@ public class RocksDao implements Closeable {
         }
     }
 
+    private DirectedGraph mapSidecar(final long index) throws RocksDBException {
+        if (sidecarDirectory == null) return null;
+        final File sidecar = sidecarFile(sidecarDirectory, index);
+        if (!sidecar.exists()) return null;
+        final MappedCallGraphData graph;
+        try {
+            graph = MappedCallGraphData.map(sidecar);
+        } catch (final IOException e) {
+            logger.warn("Could not map sidecar file " + sidecar + ", reading graph from RocksDB", e);
+            return null;
+        }
+        // Versions are stored before, and deleted before, the values, so a matching version implies a matching value
+        final byte[] version = versionHandle == null ? null : rocksDb.get(versionHandle, Longs.toByteArray(index));
+        final OptionalLong sourceVersion = graph.sourceVersion();
+        if (version == null || sourceVersion.isEmpty() || Longs.fromByteArray(version) != sourceVersion.getAsLong()) {
+            logger.warn("Sidecar file " + sidecar + " is stale, reading graph from RocksDB");
+            return null;
+        }
+        return graph;
+    }
+
+    /**
+     * Retrieves the graphs with given indices from RocksDB database.
+     *
+     * <p>
+     * Graphs that are not cached or stored in sidecar files are read with a single batched read, and
+     * then decoded, in parallel if a {@linkplain #setDecodingParallelism(int) decoding parallelism}
+     * has been set.
+     *
+     * @param indices indices of graphs.
+     * @return a map from indices to the associated graphs; indices that do not correspond to a graph
+     *         in the database are missing.
+     * @throws RocksDBException if there was problem retrieving data from RocksDB
+     */
+    public Long2ObjectMap<DirectedGraph> getGraphData(final LongCollection indices) throws RocksDBException {
+        final Long2ObjectOpenHashMap<DirectedGraph> result = new Long2ObjectOpenHashMap<>(indices.size());
+        final LongArrayList missing = new LongArrayList();
+        final LongArrayList stamps = new LongArrayList();
+        for (final long index : new LongOpenHashSet(indices)) {
+            DirectedGraph graph = graphCache != null ? graphCache.getGraph(cacheNamespace, index) : null;
+            if (graph != null) {
+                result.put(index, threadSafe(graph));
+                continue;
+            }
+            // Taken before loading, so that a concurrent invalidation prevents caching a stale graph
+            final long stamp = graphCache != null ? graphCache.stamp(cacheNamespace, index) : 0;
+            if ((graph = mapSidecar(index)) != null) {
+                if (graphCache != null) graphCache.putGraph(cacheNamespace, index, graph, stamp);
+                result.put(index, threadSafe(graph));
+            } else {
+                missing.add(index);
+                stamps.add(stamp);
+            }
+        }
+
+        final List<byte[]> values = multiGet(defaultHandle, missing);
+        final DirectedGraph[] graphs = new DirectedGraph[values.size()];
+        decode(graphs.length, i -> {
+            if (values.get(i) != null) graphs[i] = readGraph(values.get(i));
+        });
+        for (int i = 0; i < graphs.length; i++) {
+            if (graphs[i] == null) continue;
+            if (graphCache != null) graphCache.putGraph(cacheNamespace, missing.getLong(i), graphs[i], stamps.getLong(i));
+            result.put(missing.getLong(i), threadSafe(graphs[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the metadata of the graphs with given indices from RocksDB database.
+     *
+     * <p>
+     * Metadata that is not cached is read with a single batched read, and then decoded, in parallel
+     * if a {@linkplain #setDecodingParallelism(int) decoding parallelism} has been set. Metadata in
+     * the original format needs the associated graphs, which are retrieved using
+     * {@link #getGraphData(LongCollection)}.
+     *
+     * @param indices indices of graphs.
+     * @return a map from indices to the associated metadata; indices that do not correspond to
+     *         metadata in the database are missing.
+     * @throws RocksDBException if there was problem retrieving data from RocksDB
+     */
+    public Long2ObjectMap<GraphMetadata> getGraphMetadata(final LongCollection indices) throws RocksDBException {
+        final Long2ObjectOpenHashMap<GraphMetadata> result = new Long2ObjectOpenHashMap<>(indices.size());
+        final LongArrayList missing = new LongArrayList();
+        final LongArrayList stamps = new LongArrayList();
+        for (final long index : new LongOpenHashSet(indices)) {
+            final GraphMetadata metadata = graphCache != null ? graphCache.getMetadata(cacheNamespace, index) : null;
+            if (metadata != null) result.put(index, metadata);
+            else {
+                missing.add(index);
+                stamps.add(graphCache != null ? graphCache.stamp(cacheNamespace, index) : 0);
+            }
+        }
+
+        final List<byte[]> values = multiGet(metadataHandle, missing);
+        final LongArrayList original = new LongArrayList();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null && !CompactGraphMetadata.isCompact(values.get(i))) original.add(missing.getLong(i));
+        }
+        final Long2ObjectMap<DirectedGraph> graphs = original.isEmpty() ? Long2ObjectMaps.emptyMap() : getGraphData(original);
+
+        final GraphMetadata[] metadata = new GraphMetadata[values.size()];
+        decode(metadata.length, i -> {
+            final byte[] value = values.get(i);
+            if (value == null) return;
+            final DirectedGraph graph = graphs.get(missing.getLong(i));
+            if (graph != null || CompactGraphMetadata.isCompact(value)) metadata[i] = readMetadata(value, graph);
+        });
+        for (int i = 0; i < metadata.length; i++) {
+            if (metadata[i] == null) continue;
+            if (graphCache != null) graphCache.putMetadata(cacheNamespace, missing.getLong(i), metadata[i], values.get(i).length, stamps.getLong(i));
+            result.put(missing.getLong(i), metadata[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the {@linkplain ClassHierarchyFragment class hierarchy fragments} of the graphs with
+     * given indices from RocksDB database, with a single batched read.
+     *
+     * <p>
+     * A fragment is stored by {@link #saveToRocksDb(ExtendedGidGraph)} when the graph comes with the
+     * class hierarchy of its internal types.
+     *
+     * @param indices indices of graphs.
+     * @return a map from indices to the associated fragments; indices for which no fragment is stored
+     *         are missing.
+     * @throws RocksDBException if there was problem retrieving data from RocksDB
+     */
+    public Long2ObjectMap<ClassHierarchyFragment> getClassHierarchyFragments(final LongCollection indices) throws RocksDBException {
+        final Long2ObjectOpenHashMap<ClassHierarchyFragment> result = new Long2ObjectOpenHashMap<>(indices.size());
+        if (hierarchyHandle == null) return result;
+        final LongArrayList keys = new LongArrayList(new LongOpenHashSet(indices));
+        final List<byte[]> values = multiGet(hierarchyHandle, keys);
+        final ClassHierarchyFragment[] fragments = new ClassHierarchyFragment[values.size()];
+        decode(fragments.length, i -> {
+            if (values.get(i) != null) fragments[i] = ClassHierarchyFragment.fromByteArray(values.get(i));
+        });
+        for (int i = 0; i < fragments.length; i++) {
+            if (fragments[i] != null) result.put(keys.getLong(i), fragments[i]);
+        }
+        return result;
+    }
+
+    private List<byte[]> multiGet(final ColumnFamilyHandle handle, final LongList indices) throws RocksDBException {
+        if (indices.isEmpty()) return List.of();
+        final List<byte[]> keys = new ArrayList<>(indices.size());
+        for (final long index : indices) keys.add(Longs.toByteArray(index));
+        return rocksDb.multiGetAsList(Collections.nCopies(keys.size(), handle), keys);
+    }
+
+    /** Runs an action on the integers from 0 to {@code n}, in parallel on {@link #decodingPool} if it is set. */
+    private void decode(final int n, final IntConsumer action) {
+        if (decodingPool == null || n < 2) {
+            for (int i = 0; i < n; i++) action.accept(i);
+            return;
+        }
+        try {
+            decodingPool.submit(() -> IntStream.range(0, n).parallel().forEach(action)).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Sets the number of threads used to decode the results of batched reads.
+     *
+     * @param parallelism the number of decoding threads; 1 (the default) decodes in the calling
+     *            thread.
+     * @see #getGraphData(LongCollection)
+     * @see #getGraphMetadata(LongCollection)
+     */
+    public void setDecodingParallelism(final int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Nonpositive parallelism: " + parallelism);
+        if (decodingPool != null) decodingPool.shutdown();
+        decodingPool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+    }
+
+    private DirectedGraph readGraph(final byte[] buffer) {
+        if (buffer[0] == MappedCallGraphData.FORMAT) return new MappedCallGraphData(ByteBuffer.wrap(buffer));
+        final Input input = new Input(buffer);
+        final Kryo kryo = this.kryo.get();
+
+        final boolean compressed = kryo.readObject(input, Boolean.class);
+        if (compressed) {
+            final var graphs = new ImmutableGraph[]{
+                    kryo.readObject(input, BVGraph.class),
+                    kryo.readObject(input, BVGraph.class)
+            };
+            final int numInternal = kryo.readObject(input, int.class);
+            final Properties[] properties = new Properties[]{
+                    kryo.readObject(input, Properties.class),
+                    kryo.readObject(input, Properties.class)
+            };
+            final long[] LID2GID = kryo.readObject(input, long[].class);
+            final GOV3LongFunction GID2LID = kryo.readObject(input, GOV3LongFunction.class);
+            return new CallGraphData(graphs[0], graphs[1], properties[0], properties[1],
+                    LID2GID, GID2LID, numInternal, buffer.length);
+        } else {
+            return kryo.readObject(input, ArrayImmutableDirectedGraph.class);
+        }
+    }
+
+    /**
+     * Rewrites a compressed graph stored in the Kryo-based format in {@linkplain MappedCallGraphData
+     * mapped format}.
+     *
+     * <p>
+     * Small graphs (stored as {@link ArrayImmutableDirectedGraph} instances) and graphs already in
+     * mapped format are left untouched.
+     *
+     * @param index Index of the graph
+     * @param sidecarDirectory if not {@code null}, the rewritten graph is stored in a sidecar file in
+     *            this directory, together with the version of the RocksDB value, which is left
+     *            untouched (the version is recorded if the graph has been stored before versions
+     *            existed and this instance is not read-only); otherwise, the RocksDB value is
+     *            replaced.
+     * @return true if the graph has been rewritten.
+     * @throws RocksDBException if there was problem retrieving or storing data in RocksDB
+     * @throws IOException if there was problem writing the sidecar file
+     */
+    public boolean rewriteInMappedFormat(final long index, final File sidecarDirectory) throws RocksDBException, IOException {
+        final byte[] value = rocksDb.get(defaultHandle, Longs.toByteArray(index));
+        if (value == null || value[0] != 1) return false;
+        final byte[] mapped = MappedCallGraphData.toByteArray(readGraph(value));
+        if (sidecarDirectory == null) putGraph(index, mapped, 0, mapped.length);
+        else {
+            final byte[] key = Longs.toByteArray(index);
+            final long version = version(value, 0, value.length);
+            if (versionHandle != null && !readOnly) {
+                synchronized (writeLock) {
+                    // Writers store versions first, so no writer has touched a graph without version and with an unchanged value
+                    if (rocksDb.get(versionHandle, key) == null && Arrays.equals(value, rocksDb.get(defaultHandle, key))) rocksDb.put(versionHandle, key, Longs.toByteArray(version));
+                }
+            }
+            final File sidecar = sidecarFile(sidecarDirectory, index);
+            final File tmp = new File(sidecarDirectory, sidecar.getName() + ".tmp");
+            Files.write(tmp.toPath(), MappedCallGraphData.withSourceVersion(mapped, version));
+            Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return true;
+    }
+
+    /**
+     * Enumerates the indices of all graphs stored in the database.
+     *
+     * @param consumer a consumer that will receive the indices of the graphs, in key order.
+     */
+    public void forEachGraphIndex(final LongConsumer consumer) {
+        try (final RocksIterator iterator = rocksDb.newIterator(defaultHandle)) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                consumer.accept(Longs.fromByteArray(iterator.key()));
+            }
+        }
+    }
+
     /**
      * Retrieves graph metadata from RocksDB database.
      *
+     * <p>
+     * Metadata in {@linkplain CompactGraphMetadata compact format} is returned as a view that decodes
+     * node metadata on demand; metadata in the original format is fully decoded, following the
+     * enumeration order of {@code graph}.
+     *
      * @param index index of the graph
      * @param graph the graph associated with {@code} index
      * @return the metadata associated with the graph, or {@code null}
@@ -438,10 +991,23 @@ public class RocksDao implements Closeable {
      * @throws RocksDBException if there was problem retrieving data from RocksDB
      */
     public GraphMetadata getGraphMetadata(final long index, final DirectedGraph graph) {
+        long stamp = 0;
+        if (graphCache != null) {
+            final GraphMetadata cached = graphCache.getMetadata(cacheNamespace, index);
+            if (cached != null) return cached;
+            stamp = graphCache.stamp(cacheNamespace, index);
+        }
         byte[] metadata = getMetaData(index);
         if (metadata == null) {
             return null;
         }
+        final GraphMetadata graphMetadata = readMetadata(metadata, graph);
+        if (graphCache != null) graphCache.putMetadata(cacheNamespace, index, graphMetadata, metadata.length, stamp);
+        return graphMetadata;
+    }
+
+    private static GraphMetadata readMetadata(final byte[] metadata, final DirectedGraph graph) {
+        if (CompactGraphMetadata.isCompact(metadata)) return new CompactGraphMetadata(metadata);
         final Long2ObjectOpenHashMap<NodeMetadata> map = new Long2ObjectOpenHashMap<>();
 
         final FastByteArrayInputStream fbais = new FastByteArrayInputStream(metadata);
@@ -497,8 +1063,14 @@ public class RocksDao implements Closeable {
      */
     public boolean deleteCallGraph(final long index) {
         try {
-            rocksDb.delete(defaultHandle, Longs.toByteArray(index));
+            synchronized (writeLock) {
+                // Versions go first, so that sidecar files of deleted graphs are never mapped
+                if (versionHandle != null) rocksDb.delete(versionHandle, Longs.toByteArray(index));
+                rocksDb.delete(defaultHandle, Longs.toByteArray(index));
+            }
             rocksDb.delete(metadataHandle, Longs.toByteArray(index));
+            if (hierarchyHandle != null) rocksDb.delete(hierarchyHandle, Longs.toByteArray(index));
+            invalidate(index);
         } catch (final RocksDBException e) {
             logger.error("Could not delete graph with index " + index, e);
             return false;
@@ -508,6 +1080,8 @@ public class RocksDao implements Closeable {
 
     @Override
     public void close() {
+        if (decodingPool != null) decodingPool.shutdown();
+        if (graphCache != null) graphCache.invalidate(cacheNamespace);
         if (defaultHandle != null) {
             defaultHandle.close();
         }
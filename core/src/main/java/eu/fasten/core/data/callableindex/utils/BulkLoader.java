@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import eu.fasten.core.data.callableindex.ExtendedGidGraph;
+import eu.fasten.core.data.callableindex.RocksDao;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.math3.util.Pair;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+/**
+ * Loads in bulk graphs in the JSON format of {@link ExtendedGidGraph} into a graph database.
+ *
+ * <p>Files are parsed with a streaming parser and {@linkplain RocksDao#encode(ExtendedGidGraph)
+ * encoded in memory} by a pool of worker threads; encoded graphs are gathered in batches, which
+ * are {@linkplain RocksDao#ingest(it.unimi.dsi.fastutil.longs.Long2ObjectMap, File) ingested}
+ * as SST files. Each file may contain a single graph, an array of graphs, or a sequence of graphs
+ * (e.g., one per line).
+ */
+@CommandLine.Command(name = "BulkLoader")
+public class BulkLoader implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+    @CommandLine.Option(names = {"-p", "--graph-db-path"},
+        paramLabel = "GRAPHDB_PATH",
+        required = true,
+        description = "Path to the graph database")
+    String graphDbPath;
+
+    @CommandLine.Option(names = {"-t", "--threads"},
+        paramLabel = "THREADS",
+        description = "Number of parsing and encoding threads (default: number of processors)")
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = {"-b", "--batch-size"},
+        paramLabel = "BATCH_SIZE",
+        description = "Number of graphs ingested at a time (default: ${DEFAULT-VALUE})")
+    int batchSize = 10000;
+
+    @CommandLine.Option(names = {"-d", "--temp-dir"},
+        paramLabel = "TEMP_DIR",
+        description = "Directory for temporary SST files; it must be on the same file system as the graph database (default: the graph database directory)")
+    String tempDir;
+
+    @CommandLine.Parameters(paramLabel = "FILE",
+        arity = "1..*",
+        description = "JSON files, or directories that will be searched recursively for JSON files")
+    List<File> inputs;
+
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public static void main(String[] args) {
+        final int exitCode = new CommandLine(new BulkLoader()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        final List<Path> files = new ArrayList<>();
+        for (final File input : inputs) {
+            try (Stream<Path> paths = Files.walk(input.toPath())) {
+                files.addAll(paths.filter(p -> Files.isRegularFile(p) && (input.isFile() || p.toString().endsWith(".json")))
+                    .collect(Collectors.toList()));
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot list " + input, e);
+            }
+        }
+        logger.info("Loading graphs from {} files using {} threads", files.size(), threads);
+        try (var rocksDao = new RocksDao(graphDbPath, false)) {
+            final long ingested = load(rocksDao, files, tempDir == null ? new File(graphDbPath) : new File(tempDir));
+            logger.info("Ingested {} graphs, failed on {} graphs or files", ingested, failed.get());
+        } catch (RocksDBException | IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses, encodes and ingests graphs.
+     *
+     * @param rocksDao the graph database
+     * @param files the files containing the graphs
+     * @param tempDirectory a directory for temporary SST files
+     * @return the number of ingested graphs
+     */
+    long load(final RocksDao rocksDao, final List<Path> files, final File tempDirectory)
+        throws IOException, RocksDBException, InterruptedException {
+        // Bounding the queue makes workers wait while a batch is being ingested
+        final BlockingQueue<Pair<Long, RocksDao.EncodedGraph>> queue = new ArrayBlockingQueue<>(Math.max(batchSize, threads));
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        final JsonFactory jsonFactory = new JsonFactory();
+        for (final Path file : files) {
+            workers.execute(() -> parse(rocksDao, jsonFactory, file, queue));
+        }
+        workers.shutdown();
+
+        long ingested = 0;
+        final Long2ObjectOpenHashMap<RocksDao.EncodedGraph> batch = new Long2ObjectOpenHashMap<>();
+        try {
+            // Once the workers have terminated, no more graphs will be queued
+            while (!workers.isTerminated() || !queue.isEmpty()) {
+                final var encoded = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (encoded == null) continue;
+                batch.put(encoded.getFirst().longValue(), encoded.getSecond());
+                if (batch.size() >= batchSize) {
+                    ingested += ingest(rocksDao, batch, tempDirectory);
+                }
+            }
+            ingested += ingest(rocksDao, batch, tempDirectory);
+        } finally {
+            workers.shutdownNow();
+        }
+        return ingested;
+    }
+
+    private int ingest(final RocksDao rocksDao, final Long2ObjectOpenHashMap<RocksDao.EncodedGraph> batch, final File tempDirectory)
+        throws IOException, RocksDBException {
+        final int size = batch.size();
+        rocksDao.ingest(batch, tempDirectory);
+        batch.clear();
+        if (size != 0) logger.info("Ingested a batch of {} graphs ({} parsed so far)", size, parsed.get());
+        return size;
+    }
+
+    private void parse(final RocksDao rocksDao, final JsonFactory jsonFactory, final Path file,
+                       final BlockingQueue<Pair<Long, RocksDao.EncodedGraph>> queue) {
+        try (JsonParser parser = jsonFactory.createParser(file.toFile())) {
+            JsonToken token = parser.nextToken();
+            final boolean array = token == JsonToken.START_ARRAY;
+            if (array) token = parser.nextToken();
+            for (; token == JsonToken.START_OBJECT; token = parser.nextToken()) {
+                ExtendedGidGraph graph = null;
+                try {
+                    graph = ExtendedGidGraph.getGraph(parser);
+                    queue.put(new Pair<>(graph.getIndex(), rocksDao.encode(graph)));
+                    parsed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    logger.error("Could not load graph" + (graph == null ? "" : " with index " + graph.getIndex()) + " from " + file, e);
+                    // If parsing failed, the position of the parser is unknown, so we skip the rest of the file
+                    if (graph == null) return;
+                }
+            }
+            if (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                throw new IOException("Unexpected token " + token);
+            }
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            logger.error("Could not parse " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -158,7 +158,7 @@ public class CallableIndexChecker implements Runnable {
 
     private DSLContext connectToPostgres() {
         try {
-            return PostgresConnector.getDSLContext(metadataDbUrl, metadataDbUser, true);
+            return PostgresConnector.getPooledDSLContext(metadataDbUrl, metadataDbUser, true);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
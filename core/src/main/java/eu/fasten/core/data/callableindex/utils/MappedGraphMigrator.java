@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex.utils;
+
+import eu.fasten.core.data.callableindex.MappedCallGraphData;
+import eu.fasten.core.data.callableindex.RocksDao;
+import java.io.File;
+import java.io.IOException;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+/**
+ * Rewrites the compressed graphs of a graph database in {@linkplain MappedCallGraphData mapped
+ * format}, either in place or as sidecar files.
+ */
+@CommandLine.Command(name = "MappedGraphMigrator")
+public class MappedGraphMigrator implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedGraphMigrator.class);
+
+    @CommandLine.Option(names = {"-p", "--graph-db-path"},
+        paramLabel = "GRAPHDB_PATH",
+        required = true,
+        description = "Path to the graph database")
+    String graphDbPath;
+
+    @CommandLine.Option(names = {"-s", "--sidecar-dir"},
+        paramLabel = "SIDECAR_DIR",
+        description = "Write the graphs as sidecar files in this directory instead of replacing them in the graph database")
+    String sidecarDir;
+
+    private long rewritten;
+    private long skipped;
+    private long failed;
+
+    public static void main(String[] args) {
+        final int exitCode = new CommandLine(new MappedGraphMigrator()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        final File sidecarDirectory = sidecarDir == null ? null : new File(sidecarDir);
+        if (sidecarDirectory != null && !sidecarDirectory.isDirectory() && !sidecarDirectory.mkdirs()) {
+            throw new RuntimeException("Cannot create sidecar directory " + sidecarDirectory);
+        }
+        // Sidecar files need the versions of the graphs, which are recorded for graphs stored before versions existed
+        try (var rocksDao = new RocksDao(graphDbPath, false)) {
+            rocksDao.forEachGraphIndex(index -> {
+                try {
+                    if (rocksDao.rewriteInMappedFormat(index, sidecarDirectory)) rewritten++;
+                    else skipped++;
+                } catch (RocksDBException | IOException | RuntimeException e) {
+                    failed++;
+                    logger.error("Could not rewrite graph with index " + index, e);
+                }
+                if ((rewritten + skipped + failed) % 10000 == 0) {
+                    logger.info("Processed {} graphs", rewritten + skipped + failed);
+                }
+            });
+        } catch (RocksDBException e) {
+            throw new RuntimeException(e);
+        }
+        logger.info("Rewrote {} graphs, skipped {} graphs (small or already migrated), failed on {} graphs",
+            rewritten, skipped, failed);
+    }
+}
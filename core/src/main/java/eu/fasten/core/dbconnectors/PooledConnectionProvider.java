@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dbconnectors;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import eu.fasten.core.metrics.MetricRegistry;
+import org.jooq.ConnectionProvider;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of JDBC connections, used by jOOQ as a {@link ConnectionProvider}.
+ *
+ * <p>
+ * jOOQ acquires a connection for each query (or for each transaction, or for the lifetime of a lazy
+ * cursor) and releases it as soon as it is done, so a {@link org.jooq.DSLContext} built on this
+ * provider can be shared by any number of threads: at most {@link #maxSize()} of them will be
+ * talking to the database at the same time, while the others wait for a connection to be
+ * released.
+ *
+ * <p>
+ * Idle connections are reused in LIFO order. Before being handed out, a connection that has been
+ * idle for more than {@link #VALIDATION_INTERVAL_MILLIS} milliseconds is checked with
+ * {@link Connection#isValid(int)}, and replaced with a fresh one if the check fails. When a
+ * connection is released, a pending non-autocommit transaction is committed, and the autocommit mode
+ * of the pool is restored.
+ *
+ * <p>
+ * The time spent by threads waiting for a connection is recorded, and it is available through
+ * {@link #waits()}, {@link #totalWaitNanos()} and {@link #maxWaitNanos()}, or as gauges of a
+ * {@link MetricRegistry} using {@link #registerMetrics(MetricRegistry, String...)}.
+ */
+public class PooledConnectionProvider implements ConnectionProvider, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledConnectionProvider.class);
+
+    /** Connections idle for longer than this will be validated before being handed out. */
+    public static final long VALIDATION_INTERVAL_MILLIS = 30_000;
+    /** The timeout, in seconds, of {@link Connection#isValid(int)}. */
+    public static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    /** The default maximum time a thread will wait for a connection. */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 60_000;
+
+    /** Opens a new connection to the database. */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection newConnection() throws SQLException;
+    }
+
+    /** A connection sitting in the pool, with the time at which it was released. */
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long releaseTime;
+
+        private IdleConnection(Connection connection, long releaseTime) {
+            this.connection = connection;
+            this.releaseTime = releaseTime;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final boolean autocommit;
+    private final long acquireTimeoutMillis;
+    /** One permit per connection that can still be handed out. */
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory              a factory opening new connections to the database.
+     * @param maxSize              the maximum number of connections that will be open at the same time.
+     * @param autocommit           the autocommit mode of the connections handed out.
+     * @param acquireTimeoutMillis the maximum time a thread will wait for a connection, in milliseconds.
+     */
+    public PooledConnectionProvider(ConnectionFactory factory, int maxSize, boolean autocommit, long acquireTimeoutMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.autocommit = autocommit;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    @Override
+    public Connection acquire() throws DataAccessException {
+        if (closed) {
+            throw new DataAccessException("The connection pool has been closed");
+        }
+        final long start = System.nanoTime();
+        final boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Interrupted while waiting for a database connection", e);
+        }
+        final long wait = System.nanoTime() - start;
+        waits.increment();
+        totalWaitNanos.add(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+        if (!acquired) {
+            timeouts.increment();
+            throw new DataAccessException("No database connection available after " + acquireTimeoutMillis + " ms (pool size " + maxSize + ")");
+        }
+
+        try {
+            for (IdleConnection candidate; (candidate = idle.pollFirst()) != null; ) {
+                if (System.currentTimeMillis() - candidate.releaseTime < VALIDATION_INTERVAL_MILLIS
+                        || isValid(candidate.connection)) {
+                    return candidate.connection;
+                }
+                invalidated.increment();
+                discard(candidate.connection);
+            }
+            final var connection = factory.newConnection();
+            connection.setAutoCommit(autocommit);
+            created.increment();
+            open.incrementAndGet();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e instanceof DataAccessException ? (DataAccessException) e
+                    : new DataAccessException("Could not open a database connection", e);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) throws DataAccessException {
+        try {
+            if (closed || connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            if (connection.getAutoCommit() != autocommit) {
+                connection.setAutoCommit(autocommit);
+            }
+            idle.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            logger.warn("Discarding a database connection that could not be reset", e);
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        open.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Error while closing a database connection", e);
+        }
+    }
+
+    /**
+     * Closes all idle connections; connections currently in use will be closed when released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (IdleConnection candidate; (candidate = idle.pollFirst()) != null; ) {
+            discard(candidate.connection);
+        }
+    }
+
+    /** Returns the maximum number of connections open at the same time. */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of connections currently open (in use or idle). */
+    public int openConnections() {
+        return open.get();
+    }
+
+    /** Returns the number of connections currently idle. */
+    public int idleConnections() {
+        return idle.size();
+    }
+
+    /** Returns the number of connections opened since the creation of this pool. */
+    public long createdConnections() {
+        return created.sum();
+    }
+
+    /** Returns the number of idle connections that failed validation and were replaced. */
+    public long invalidatedConnections() {
+        return invalidated.sum();
+    }
+
+    /** Returns the number of calls to {@link #acquire()}. */
+    public long waits() {
+        return waits.sum();
+    }
+
+    /** Returns the number of calls to {@link #acquire()} that timed out. */
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    /** Returns the overall time spent by threads waiting for a connection, in nanoseconds. */
+    public long totalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    /** Returns the longest time spent by a thread waiting for a connection, in nanoseconds. */
+    public long maxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Exposes the statistics of this pool as gauges of a metric registry. As gauges are created only once,
+     * the tags must identify this pool among those registered with {@code registry}.
+     *
+     * @param registry a metric registry.
+     * @param tags     alternating tag keys and values.
+     */
+    public void registerMetrics(MetricRegistry registry, String... tags) {
+        registry.gauge("fasten_db_pool_max_connections", this::maxSize, tags);
+        registry.gauge("fasten_db_pool_open_connections", this::openConnections, tags);
+        registry.gauge("fasten_db_pool_idle_connections", this::idleConnections, tags);
+        registry.gauge("fasten_db_pool_created_connections", this::createdConnections, tags);
+        registry.gauge("fasten_db_pool_invalidated_connections", this::invalidatedConnections, tags);
+        registry.gauge("fasten_db_pool_acquires", this::waits, tags);
+        registry.gauge("fasten_db_pool_acquire_timeouts", this::timeouts, tags);
+        registry.gauge("fasten_db_pool_wait_seconds", () -> totalWaitNanos() / 1e9, tags);
+        registry.gauge("fasten_db_pool_max_wait_seconds", () -> maxWaitNanos() / 1e9, tags);
+    }
+
+    @Override
+    public String toString() {
+        final long waits = waits();
+        return "[open: " + openConnections() + "/" + maxSize + ", idle: " + idleConnections()
+                + ", created: " + createdConnections() + ", invalidated: " + invalidatedConnections()
+                + ", waits: " + waits + ", mean wait: " + (waits == 0 ? 0 : totalWaitNanos() / waits / 1000) + " us"
+                + ", max wait: " + maxWaitNanos() / 1000 + " us, timeouts: " + timeouts() + "]";
+    }
+}
@@ -20,14 +20,29 @@ package eu.fasten.core.dbconnectors;
 
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 import eu.fasten.core.data.Constants;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.postgresql.Driver;
 
 public class PostgresConnector {
 
+    /** The default size of connection pools; can be overridden by {@link Constants#fastenDbPoolSizeEnvVariable}. */
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    /** The default fetch size of pooled contexts; can be overridden by {@link Constants#fastenDbFetchSizeEnvVariable}. */
+    public static final int DEFAULT_FETCH_SIZE = 10_000;
+
+    /** Number of executions of a statement after which the driver switches to a server-side prepared statement. */
+    public static final int PREPARE_THRESHOLD = 3;
+
+    /** Number of prepared statements cached by the driver for each pooled connection. */
+    public static final int PREPARED_STATEMENT_CACHE_QUERIES = 512;
+
     /**
      * Establishes database connection.
      *
@@ -39,6 +54,84 @@ public class PostgresConnector {
      */
     public static DSLContext getDSLContext(String dbUrl, String user, boolean autocommit)
             throws SQLException, IllegalArgumentException {
+        var pass = getPassword(dbUrl);
+        var connection = DriverManager.getConnection(dbUrl, user, pass);
+        connection.setAutoCommit(autocommit);
+        return DSL.using(connection, SQLDialect.POSTGRES);
+    }
+
+    /**
+     * Creates a jOOQ context backed by a {@linkplain PooledConnectionProvider pool of connections}.
+     * The pool size and the default fetch size are read from the environment variables
+     * {@link Constants#fastenDbPoolSizeEnvVariable} and {@link Constants#fastenDbFetchSizeEnvVariable},
+     * falling back to {@link #DEFAULT_POOL_SIZE} and {@link #DEFAULT_FETCH_SIZE}.
+     *
+     * @param dbUrl URL of the database to connect
+     * @param user  Database user name
+     * @return DSLContext for jOOQ to query the database, which can be shared by multiple threads
+     * @throws SQLException             if failed to set up the first connection
+     * @throws IllegalArgumentException if database URL has incorrect format and cannot be parsed
+     * @see #getPooledDSLContext(String, String, boolean, int, int)
+     */
+    public static DSLContext getPooledDSLContext(String dbUrl, String user, boolean autocommit)
+            throws SQLException, IllegalArgumentException {
+        return getPooledDSLContext(dbUrl, user, autocommit,
+                getIntEnv(Constants.fastenDbPoolSizeEnvVariable, DEFAULT_POOL_SIZE),
+                getIntEnv(Constants.fastenDbFetchSizeEnvVariable, DEFAULT_FETCH_SIZE));
+    }
+
+    /**
+     * Creates a jOOQ context backed by a {@linkplain PooledConnectionProvider pool of connections}.
+     *
+     * <p>Connections are opened lazily (except for the first one, which is opened immediately to
+     * check the connection parameters) and kept open, so that the prepared statements cached by the
+     * driver are reused across queries. The pool can be retrieved, e.g., to read its wait-time
+     * statistics, using {@link #getPool(DSLContext)}.
+     *
+     * <p>Note that PostgreSQL honors the fetch size only outside of autocommit mode.
+     *
+     * @param dbUrl     URL of the database to connect
+     * @param user      Database user name
+     * @param poolSize  maximum number of connections open at the same time
+     * @param fetchSize default fetch size of queries, or 0 to fetch all results at once
+     * @return DSLContext for jOOQ to query the database, which can be shared by multiple threads
+     * @throws SQLException             if failed to set up the first connection
+     * @throws IllegalArgumentException if database URL has incorrect format and cannot be parsed
+     */
+    public static DSLContext getPooledDSLContext(String dbUrl, String user, boolean autocommit,
+                                                 int poolSize, int fetchSize)
+            throws SQLException, IllegalArgumentException {
+        var properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", getPassword(dbUrl));
+        properties.setProperty("prepareThreshold", Integer.toString(PREPARE_THRESHOLD));
+        properties.setProperty("preparedStatementCacheQueries", Integer.toString(PREPARED_STATEMENT_CACHE_QUERIES));
+        var pool = new PooledConnectionProvider(() -> DriverManager.getConnection(dbUrl, properties),
+                poolSize, autocommit, PooledConnectionProvider.DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+        // Fail fast on wrong credentials, and leave a warm connection in the pool
+        try {
+            pool.release(pool.acquire());
+        } catch (DataAccessException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw e;
+        }
+        return DSL.using(pool, SQLDialect.POSTGRES, new Settings().withFetchSize(fetchSize));
+    }
+
+    /**
+     * Returns the connection pool of a context.
+     *
+     * @param context a jOOQ context
+     * @return the pool of {@code context}, or null if it was not created by {@link #getPooledDSLContext}
+     */
+    public static PooledConnectionProvider getPool(DSLContext context) {
+        var provider = context.configuration().connectionProvider();
+        return provider instanceof PooledConnectionProvider ? (PooledConnectionProvider) provider : null;
+    }
+
+    private static String getPassword(String dbUrl) throws SQLException {
         if (!new Driver().acceptsURL(dbUrl)) {
             throw new IllegalArgumentException("Could not parse database URI: " + dbUrl);
         }
@@ -49,8 +142,18 @@ public class PostgresConnector {
         if (pass == null) {
             throw new IllegalArgumentException("No password for DB is provided");
         }
-        var connection = DriverManager.getConnection(dbUrl, user, pass);
-        connection.setAutoCommit(autocommit);
-        return DSL.using(connection, SQLDialect.POSTGRES);
+        return pass;
+    }
+
+    private static int getIntEnv(String name, int defaultValue) {
+        var value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of " + name + ": " + value, e);
+        }
     }
 }
@@ -0,0 +1,576 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.Revision;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.jgrapht.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable dependency graph in which revisions are identified by dense integer ids, and both the
+ * dependencies and the dependents of each revision are stored as compressed sparse rows.
+ *
+ * <p>
+ * Instances are {@linkplain #store(Graph, File) written once} from a JGraphT graph, or {@linkplain
+ * #store(CompactDependencyGraph, Collection, Collection, File) from another instance} and some additional
+ * revisions and edges, and then {@linkplain #load(File) memory-mapped}, so loading takes time independent of the size of the graph,
+ * the transpose is never recomputed, and the graph lives outside of the heap. Ids are assigned in
+ * lexicographical order of package name and version, so that a revision can be found by binary search.
+ *
+ * <p>
+ * The file is made of a header containing {@link #MAGIC}, the number of revisions <var>n</var>, the
+ * number of dependency edges <var>m</var> and the length in bytes of the coordinate section, followed by
+ * these sections (all values are big-endian):
+ * <ul>
+ * <li>the creation timestamp of each revision, in milliseconds ({@link Long#MIN_VALUE} if unknown);
+ * <li>the database id of each revision;
+ * <li>the <var>n</var> + 1 offsets of the coordinates of each revision in the coordinate section;
+ * <li>the coordinate section, containing for each revision its package name and its version in UTF-8,
+ * separated by a zero byte;
+ * <li>the <var>n</var> + 1 offsets of the dependencies of each revision, followed by the <var>m</var> ids of
+ * the dependencies (sorted for each revision);
+ * <li>the same for dependents, except that the dependents of each revision are sorted by creation
+ * timestamp (and then by id), so that the dependents released after a given timestamp can be found by
+ * {@linkplain #firstDependent(int, long) binary search}.
+ * </ul>
+ */
+public class CompactDependencyGraph {
+
+    /** The first int of a file in this format. */
+    public static final int MAGIC = 0xFA57DE91;
+    /** The extension appended to the path of the serialized dependency graph. */
+    public static final String EXTENSION = ".compact";
+    private static final int HEADER_SIZE = 24;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final int numNodes;
+    private final long numArcs;
+    private final LongBuffer timestamps;
+    private final LongBuffer ids;
+    private final IntBuffer coordinateOffsets;
+    private final ByteBuffer coordinates;
+    private final IntBuffer dependencyOffsets;
+    private final IntBuffer dependencies;
+    private final IntBuffer dependentOffsets;
+    private final IntBuffer dependents;
+
+    private CompactDependencyGraph(FileChannel channel) throws IOException {
+        final var header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a compact dependency graph");
+        }
+        numNodes = header.getInt(4);
+        numArcs = header.getLong(8);
+        final long coordinateBytes = header.getLong(16);
+
+        long position = HEADER_SIZE;
+        timestamps = map(channel, position, (long) Long.BYTES * numNodes).asLongBuffer();
+        position += (long) Long.BYTES * numNodes;
+        ids = map(channel, position, (long) Long.BYTES * numNodes).asLongBuffer();
+        position += (long) Long.BYTES * numNodes;
+        coordinateOffsets = map(channel, position, Integer.BYTES * (numNodes + 1L)).asIntBuffer();
+        position += Integer.BYTES * (numNodes + 1L);
+        coordinates = map(channel, position, coordinateBytes);
+        position += coordinateBytes;
+        dependencyOffsets = map(channel, position, Integer.BYTES * (numNodes + 1L)).asIntBuffer();
+        position += Integer.BYTES * (numNodes + 1L);
+        dependencies = map(channel, position, Integer.BYTES * numArcs).asIntBuffer();
+        position += Integer.BYTES * numArcs;
+        dependentOffsets = map(channel, position, Integer.BYTES * (numNodes + 1L)).asIntBuffer();
+        position += Integer.BYTES * (numNodes + 1L);
+        dependents = map(channel, position, Integer.BYTES * numArcs).asIntBuffer();
+        position += Integer.BYTES * numArcs;
+        if (position != channel.size()) {
+            throw new IOException("Expected " + position + " bytes, found " + channel.size());
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (position + size > channel.size()) {
+            throw new IOException("Truncated compact dependency graph");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Memory-maps a graph written by {@link #store(Graph, File)}.
+     *
+     * <p>
+     * The mapping remains valid after this method returns, and it is released when the returned graph
+     * is garbage collected.
+     *
+     * @throws IOException if the file cannot be read or is not in this format.
+     */
+    public static CompactDependencyGraph load(File file) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new CompactDependencyGraph(channel);
+        }
+    }
+
+    /**
+     * Writes a dependency graph in the format described in the class documentation. The file is
+     * written to a temporary file first, and then atomically moved to its final location.
+     *
+     * @param graph a dependency graph, in which edges go from a revision to its dependencies.
+     * @param file  the destination file.
+     */
+    public static void store(Graph<Revision, DependencyEdge> graph, File file) throws IOException {
+        final var revisions = graph.vertexSet().toArray(new Revision[0]);
+        final int n = revisions.length;
+        final byte[][] keys = new byte[n][];
+        final long[] createdAt = new long[n];
+        final long[] dbIds = new long[n];
+        final var index = new Object2IntOpenHashMap<Revision>(n);
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(revisions[i].packageName, revisions[i].version.toString());
+            createdAt[i] = revisions[i].createdAt == null ? NO_TIMESTAMP : revisions[i].createdAt.getTime();
+            dbIds[i] = revisions[i].id;
+            index.put(revisions[i], i);
+        }
+        final long m = graph.edgeSet().size();
+        if (Integer.BYTES * m > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph too large: " + n + " revisions, " + m + " edges");
+        }
+        final int[] sources = new int[(int) m];
+        final int[] targets = new int[(int) m];
+        int e = 0;
+        for (var edge : graph.edgeSet()) {
+            sources[e] = index.getInt(graph.getEdgeSource(edge));
+            targets[e++] = index.getInt(graph.getEdgeTarget(edge));
+        }
+        write(keys, createdAt, dbIds, sources, targets, file);
+    }
+
+    /**
+     * Writes a graph made of the given graph and some additional revisions and edges, in the format
+     * described in the class documentation. Revisions that are in the given graph already are
+     * ignored, as are edges that are in the given graph already; the endpoints of additional edges must
+     * be either in the given graph or among the additional revisions.
+     *
+     * <p>
+     * The file is written to a temporary file first, and then atomically moved to its final location, so
+     * it can be the file the given graph is mapped from.
+     *
+     * @param graph     a graph.
+     * @param revisions the additional revisions.
+     * @param edges     the additional edges, from a revision to one of its dependencies.
+     * @param file      the destination file.
+     */
+    public static void store(CompactDependencyGraph graph, Collection<Revision> revisions,
+                             Collection<DependencyEdge> edges, File file) throws IOException {
+        final var added = new Object2IntOpenHashMap<Revision>(revisions.size());
+        added.defaultReturnValue(-1);
+        for (var revision : revisions) {
+            if (!added.containsKey(revision) && graph.id(revision.packageName, revision.version.toString()) < 0) {
+                added.put(revision, graph.numNodes + added.size());
+            }
+        }
+        final int n = graph.numNodes + added.size();
+        final byte[][] keys = new byte[n][];
+        final long[] createdAt = new long[n];
+        final long[] dbIds = new long[n];
+        for (int i = 0; i < graph.numNodes; i++) {
+            keys[i] = graph.key(i);
+            createdAt[i] = graph.createdAt(i);
+            dbIds[i] = graph.ids.get(i);
+        }
+        for (var entry : added.object2IntEntrySet()) {
+            final var revision = entry.getKey();
+            final int i = entry.getIntValue();
+            keys[i] = key(revision.packageName, revision.version.toString());
+            createdAt[i] = revision.createdAt == null ? NO_TIMESTAMP : revision.createdAt.getTime();
+            dbIds[i] = revision.id;
+        }
+
+        final var arcs = new LongOpenHashSet(edges.size());
+        for (var edge : edges) {
+            final long source = graph.idOrAdded(edge.source, added);
+            final long target = graph.idOrAdded(edge.target, added);
+            if (source < graph.numNodes && target < graph.numNodes && graph.hasDependency((int) source, (int) target)) {
+                continue;
+            }
+            arcs.add(source << 32 | target);
+        }
+        final long m = graph.numArcs + arcs.size();
+        if (Integer.BYTES * m > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph too large: " + n + " revisions, " + m + " edges");
+        }
+        final int[] sources = new int[(int) m];
+        final int[] targets = new int[(int) m];
+        int e = 0;
+        for (int i = 0; i < graph.numNodes; i++) {
+            for (int j = 0, count = graph.dependencyCount(i); j < count; j++) {
+                sources[e] = i;
+                targets[e++] = graph.dependency(i, j);
+            }
+        }
+        for (long arc : arcs) {
+            sources[e] = (int) (arc >>> 32);
+            targets[e++] = (int) arc;
+        }
+        write(keys, createdAt, dbIds, sources, targets, file);
+    }
+
+    /** Returns the id of a revision of this graph, or its position among the given added revisions. */
+    private int idOrAdded(Revision revision, Object2IntOpenHashMap<Revision> added) {
+        final int index = added.getInt(revision);
+        if (index >= 0) {
+            return index;
+        }
+        final int id = id(revision.packageName, revision.version.toString());
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown revision " + revision);
+        }
+        return id;
+    }
+
+    /** Returns whether a revision depends on another one. */
+    private boolean hasDependency(int node, int dependency) {
+        int low = dependencyOffsets.get(node);
+        int high = dependencyOffsets.get(node + 1) - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = Integer.compare(dependencies.get(mid), dependency);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes revisions, given by their keys, timestamps and database ids, and the edges between them,
+     * given by the positions of their endpoints. Revisions are sorted by key, and the edges renumbered.
+     */
+    private static void write(byte[][] keys, long[] createdAt, long[] dbIds, int[] sources, int[] targets,
+                              File file) throws IOException {
+        final int n = keys.length;
+        final int[] perm = new int[n];
+        Arrays.setAll(perm, i -> i);
+        IntArrays.parallelQuickSort(perm, (x, y) -> Arrays.compareUnsigned(keys[x], keys[y]));
+        final int[] rank = new int[n];
+        final long[] sortedCreatedAt = new long[n];
+        long coordinateBytes = 0;
+        for (int i = 0; i < n; i++) {
+            rank[perm[i]] = i;
+            sortedCreatedAt[i] = createdAt[perm[i]];
+            coordinateBytes += keys[perm[i]].length;
+        }
+        if (coordinateBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph too large: " + n + " revisions");
+        }
+        for (int e = 0; e < sources.length; e++) {
+            sources[e] = rank[sources[e]];
+            targets[e] = rank[targets[e]];
+        }
+
+        final var tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(n);
+                out.writeLong(sources.length);
+                out.writeLong(coordinateBytes);
+                for (int i = 0; i < n; i++) {
+                    out.writeLong(sortedCreatedAt[i]);
+                }
+                for (int i = 0; i < n; i++) {
+                    out.writeLong(dbIds[perm[i]]);
+                }
+                int offset = 0;
+                for (int i = 0; i < n; i++) {
+                    out.writeInt(offset);
+                    offset += keys[perm[i]].length;
+                }
+                out.writeInt(offset);
+                for (int i = 0; i < n; i++) {
+                    out.write(keys[perm[i]]);
+                }
+                writeRows(out, n, sources, targets, Integer::compare);
+                writeRows(out, n, targets, sources, (x, y) -> {
+                    final int cmp = Long.compare(sortedCreatedAt[x], sortedCreatedAt[y]);
+                    return cmp != 0 ? cmp : Integer.compare(x, y);
+                });
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /** Writes the offsets and the contents, sorted by the given order, of the rows of the arcs from sources to targets. */
+    private static void writeRows(DataOutputStream out, int n, int[] sources, int[] targets, IntComparator order)
+            throws IOException {
+        final int[] offsets = new int[n + 1];
+        for (int s : sources) {
+            offsets[s + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        final int[] rows = new int[targets.length];
+        final int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < sources.length; e++) {
+            rows[next[sources[e]]++] = targets[e];
+        }
+        for (int i = 0; i < n; i++) {
+            IntArrays.quickSort(rows, offsets[i], offsets[i + 1], order);
+        }
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (int target : rows) {
+            out.writeInt(target);
+        }
+    }
+
+    private static byte[] key(String packageName, String version) {
+        final byte[] name = packageName.getBytes(StandardCharsets.UTF_8);
+        final byte[] v = version.getBytes(StandardCharsets.UTF_8);
+        final byte[] key = Arrays.copyOf(name, name.length + 1 + v.length);
+        System.arraycopy(v, 0, key, name.length + 1, v.length);
+        return key;
+    }
+
+    /** Returns the number of revisions. */
+    public int numNodes() {
+        return numNodes;
+    }
+
+    /** Returns the number of dependency edges. */
+    public long numArcs() {
+        return numArcs;
+    }
+
+    /**
+     * Returns the id of a revision.
+     *
+     * <p>
+     * Coordinates are compared in full, so a version is never confused with a longer version it is a
+     * prefix of (e.g., {@code 1.2} and {@code 1.2-rc1}). If no revision has exactly the given version
+     * string, the versions of the package are compared as {@linkplain DefaultArtifactVersion Maven
+     * versions}, as {@link Revision#equals(Object)} does.
+     *
+     * @return the id of the revision, or -1 if the graph does not contain it.
+     */
+    public int id(String packageName, String version) {
+        final byte[] key = key(packageName, version);
+        int low = 0;
+        int high = numNodes - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareKey(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        // low is where the key would be: scan the versions of the package around it
+        final int prefix = key.length - version.getBytes(StandardCharsets.UTF_8).length;
+        final var artifactVersion = new DefaultArtifactVersion(version);
+        for (int i = low - 1; i >= 0 && compareKey(i, key, prefix) == 0; i--) {
+            if (artifactVersion.equals(new DefaultArtifactVersion(version(i)))) {
+                return i;
+            }
+        }
+        for (int i = low; i < numNodes && compareKey(i, key, prefix) == 0; i++) {
+            if (artifactVersion.equals(new DefaultArtifactVersion(version(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ids of the revisions of a package, which are consecutive.
+     *
+     * @return an array containing the first id (inclusive) and the last id (exclusive).
+     */
+    public int[] revisions(String packageName) {
+        final byte[] name = packageName.getBytes(StandardCharsets.UTF_8);
+        final byte[] prefix = Arrays.copyOf(name, name.length + 1);
+        int low = 0;
+        int high = numNodes;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (compareKey(mid, prefix, prefix.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < numNodes && compareKey(end, prefix, prefix.length) == 0) {
+            end++;
+        }
+        return new int[]{low, end};
+    }
+
+    /** Compares the coordinates of a revision with a key. */
+    private int compareKey(int node, byte[] key) {
+        final int cmp = compareKey(node, key, key.length);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Integer.compare(coordinateOffsets.get(node + 1) - coordinateOffsets.get(node), key.length);
+    }
+
+    /**
+     * Compares the coordinates of a revision, truncated to the given length, with the first bytes of
+     * a key.
+     */
+    private int compareKey(int node, byte[] key, int length) {
+        final int start = coordinateOffsets.get(node);
+        final int end = Math.min(coordinateOffsets.get(node + 1), start + length);
+        for (int i = start, j = 0; ; i++, j++) {
+            if (i == end) {
+                return j == length ? 0 : -1;
+            }
+            if (j == length) {
+                return 1;
+            }
+            final int cmp = Byte.compareUnsigned(coordinates.get(i), key[j]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+    }
+
+    /** Returns the coordinates of a revision, as written in the coordinate section. */
+    private byte[] key(int node) {
+        final int start = coordinateOffsets.get(node);
+        final byte[] key = new byte[coordinateOffsets.get(node + 1) - start];
+        coordinates.duplicate().position(start).get(key);
+        return key;
+    }
+
+    private int separator(int node) {
+        int i = coordinateOffsets.get(node);
+        while (coordinates.get(i) != 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private String string(int from, int to) {
+        final byte[] bytes = new byte[to - from];
+        coordinates.duplicate().position(from).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the package name of a revision. */
+    public String packageName(int node) {
+        return string(coordinateOffsets.get(node), separator(node));
+    }
+
+    /** Returns the version of a revision. */
+    public String version(int node) {
+        return string(separator(node) + 1, coordinateOffsets.get(node + 1));
+    }
+
+    /** Returns the creation timestamp of a revision, or {@link Long#MIN_VALUE} if it is unknown. */
+    public long createdAt(int node) {
+        return timestamps.get(node);
+    }
+
+    /** Returns the database id of a revision. */
+    public long databaseId(int node) {
+        return ids.get(node);
+    }
+
+    /** Returns a new {@link Revision} instance representing a revision. */
+    public Revision revision(int node) {
+        final long createdAt = createdAt(node);
+        return new Revision(ids.get(node), packageName(node), version(node),
+                createdAt == NO_TIMESTAMP ? null : new Timestamp(createdAt));
+    }
+
+    /** Returns the number of dependencies of a revision. */
+    public int dependencyCount(int node) {
+        return dependencyOffsets.get(node + 1) - dependencyOffsets.get(node);
+    }
+
+    /** Returns the <var>i</var>-th dependency of a revision, in increasing order of id. */
+    public int dependency(int node, int i) {
+        return dependencies.get(dependencyOffsets.get(node) + i);
+    }
+
+    /** Returns the number of dependents of a revision. */
+    public int dependentCount(int node) {
+        return dependentOffsets.get(node + 1) - dependentOffsets.get(node);
+    }
+
+    /**
+     * Returns the <var>i</var>-th dependent of a revision, in increasing order of creation timestamp (and
+     * then of id).
+     */
+    public int dependent(int node, int i) {
+        return dependents.get(dependentOffsets.get(node) + i);
+    }
+
+    /**
+     * Returns the index of the first dependent of a revision created at or after the given timestamp;
+     * all following dependents are created at or after the timestamp, too.
+     *
+     * @return an index between 0 and {@link #dependentCount(int)}, included.
+     */
+    public int firstDependent(int node, long timestamp) {
+        final int start = dependentOffsets.get(node);
+        int low = start;
+        int high = dependentOffsets.get(node + 1);
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (timestamps.get(dependents.get(mid)) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - start;
+    }
+}
@@ -30,8 +30,10 @@ import eu.fasten.core.dependents.utils.DependencyGraphUtilities;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Record5;
+import org.jooq.impl.DSL;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +43,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -51,6 +54,46 @@ public class DependencyGraphBuilder {
     private static final Logger logger = LoggerFactory.getLogger(DependencyGraphBuilder.class);
 
     public Map<Revision, List<Dependency>> getDependencyList(DSLContext dbContext) {
+        return getDependencyList(dbContext, DSL.noCondition());
+    }
+
+    /**
+     * Returns the package versions inserted after a given one, with their dependencies.
+     *
+     * <p>
+     * Package versions are selected by database id, rather than by creation timestamp, as the latter is
+     * the release date of a version, which can be earlier than the release dates of versions inserted
+     * before it.
+     *
+     * @param watermark the largest database id of the package versions known already.
+     */
+    public Map<Revision, List<Dependency>> getDependencyList(DSLContext dbContext, long watermark) {
+        return getDependencyList(dbContext, PackageVersions.PACKAGE_VERSIONS.ID.gt(watermark));
+    }
+
+    /**
+     * Returns the package versions with the given database ids (e.g., those announced by the metadata
+     * plugin), with their dependencies.
+     */
+    public Map<Revision, List<Dependency>> getDependencyList(DSLContext dbContext, Collection<Long> packageVersionIds) {
+        return getDependencyList(dbContext, PackageVersions.PACKAGE_VERSIONS.ID.in(packageVersionIds));
+    }
+
+    /**
+     * Returns the package versions depending on any of the given packages, each with its dependencies on
+     * those packages only.
+     */
+    public Map<Revision, List<Dependency>> getDependents(DSLContext dbContext, Collection<String> packageNames) {
+        var dependencies = Packages.PACKAGES.as("dependencies");
+        var packageIds = dbContext.select(dependencies.ID).from(dependencies)
+                .where(dependencies.PACKAGE_NAME.in(packageNames));
+        return getDependencyList(dbContext, Dependencies.DEPENDENCIES.DEPENDENCY_ID.in(packageIds)).entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().stream()
+                        .filter(d -> packageNames.contains(d.packageName))
+                        .collect(Collectors.toList())));
+    }
+
+    private Map<Revision, List<Dependency>> getDependencyList(DSLContext dbContext, Condition condition) {
         return dbContext.select(PackageVersions.PACKAGE_VERSIONS.ID,
                 Packages.PACKAGES.PACKAGE_NAME,
                 PackageVersions.PACKAGE_VERSIONS.VERSION,
@@ -62,6 +105,7 @@ public class DependencyGraphBuilder {
                 .leftJoin(Dependencies.DEPENDENCIES)
                 .on(Dependencies.DEPENDENCIES.PACKAGE_VERSION_ID.eq(PackageVersions.PACKAGE_VERSIONS.ID))
                 .and(PackageVersions.PACKAGE_VERSIONS.CREATED_AT.isNotNull())
+                .where(condition)
                 .fetch()
                 .parallelStream()
                 .map(x -> {
@@ -88,22 +132,36 @@ public class DependencyGraphBuilder {
                 ));
     }
 
+    /**
+     * Returns the revisions, in the given order, matching any of the given constraints.
+     *
+     * <p>
+     * This method parses the constraint bounds at each call; to match many dependencies, use a
+     * {@link VersionRangeIndex}, which implements the same semantics.
+     */
     public List<Revision> findMatchingRevisions(List<Revision> revisions,
                                                 List<Dependency.VersionConstraint> constraints) {
         if (revisions == null) {
             return Collections.emptyList();
         }
+        final var lowerBounds = new DefaultArtifactVersion[constraints.size()];
+        final var upperBounds = new DefaultArtifactVersion[constraints.size()];
+        for (int i = 0; i < constraints.size(); i++) {
+            lowerBounds[i] = new DefaultArtifactVersion(constraints.get(i).lowerBound);
+            upperBounds[i] = new DefaultArtifactVersion(constraints.get(i).upperBound);
+        }
         return revisions.stream().filter(r -> {
-            for (var constraint : constraints) {
+            for (int i = 0; i < constraints.size(); i++) {
+                var constraint = constraints.get(i);
                 if ((constraint.toString().startsWith("[") || constraint.toString().startsWith("("))
                         && (constraint.toString().endsWith("]") || constraint.toString().endsWith(")"))) {
-                    if (checkVersionLowerBound(constraint, r.version) &&
-                            checkVersionUpperBound(constraint, r.version)) {
+                    if (checkVersionLowerBound(constraint, lowerBounds[i], r.version) &&
+                            checkVersionUpperBound(constraint, upperBounds[i], r.version)) {
                         return true;
                     }
                 } else {
                     if (constraint.lowerBound.equals(constraint.upperBound) &&
-                            new DefaultArtifactVersion(constraint.lowerBound).equals(r.version)) {
+                            lowerBounds[i].equals(r.version)) {
                         return true;
                     }
                 }
@@ -112,48 +170,46 @@ public class DependencyGraphBuilder {
         }).collect(Collectors.toList());
     }
 
-    private boolean checkVersionLowerBound(Dependency.VersionConstraint constraint, DefaultArtifactVersion version) {
+    private boolean checkVersionLowerBound(Dependency.VersionConstraint constraint, DefaultArtifactVersion lowerBound,
+                                           DefaultArtifactVersion version) {
         if (constraint.lowerBound.isEmpty()) {
             return true;
         }
         if (constraint.isLowerHardRequirement) {
-            return version.compareTo(new DefaultArtifactVersion(constraint.lowerBound)) >= 0;
+            return version.compareTo(lowerBound) >= 0;
         } else {
-            return version.compareTo(new DefaultArtifactVersion(constraint.lowerBound)) > 0;
+            return version.compareTo(lowerBound) > 0;
         }
     }
 
-    private boolean checkVersionUpperBound(Dependency.VersionConstraint constraint, DefaultArtifactVersion version) {
+    private boolean checkVersionUpperBound(Dependency.VersionConstraint constraint, DefaultArtifactVersion upperBound,
+                                           DefaultArtifactVersion version) {
         if (constraint.upperBound.isEmpty()) {
             return true;
         }
         if (constraint.isUpperHardRequirement) {
-            return version.compareTo(new DefaultArtifactVersion(constraint.upperBound)) <= 0;
+            return version.compareTo(upperBound) <= 0;
         } else {
-            return version.compareTo(new DefaultArtifactVersion(constraint.upperBound)) < 0;
+            return version.compareTo(upperBound) < 0;
         }
     }
 
     public Graph<Revision, DependencyEdge> buildDependencyGraph(DSLContext dbContext) {
-        var startTs = System.currentTimeMillis();
         var startDepRet = System.currentTimeMillis();
-
         var dependencies = getDependencyList(dbContext);
         logger.info("Retrieved {} package versions: {} ms", dependencies.size(),
                 System.currentTimeMillis() - startDepRet);
+        return buildDependencyGraph(dependencies);
+    }
 
-        var startIdx = System.currentTimeMillis();
-        var productRevisionMap = dependencies.keySet().stream().collect(Collectors.toConcurrentMap(
-                Revision::product,
-                List::of,
-                (x, y) -> {
-                    var z = new ArrayList<Revision>();
-                    z.addAll(x);
-                    z.addAll(y);
-                    return z;
-                })
-        );
-        logger.debug("Indexed {} products: {} ms", productRevisionMap.size(), System.currentTimeMillis() - startIdx);
+    /**
+     * Builds a dependency graph, in which each revision has an edge towards each revision matching one of
+     * its dependencies (see {@link #generateEdges(Map)}).
+     *
+     * @param dependencies a map from revisions to their dependencies, as returned by {@link #getDependencyList}.
+     */
+    public Graph<Revision, DependencyEdge> buildDependencyGraph(Map<Revision, List<Dependency>> dependencies) {
+        var startTs = System.currentTimeMillis();
 
         logger.info("Creating dependency graph");
 
@@ -165,23 +221,7 @@ public class DependencyGraphBuilder {
 
         logger.info("Generating graph edges");
         var startGenEdgesTs = System.currentTimeMillis();
-
-        var allEdges = dependencies.entrySet().parallelStream().map(e -> {
-            var source = e.getKey();
-            var edges = new ArrayList<DependencyEdge>();
-            for (var dependency : e.getValue()) {
-                if (dependency.equals(Dependency.empty)) {
-                    continue;
-                }
-                var potentialRevisions = productRevisionMap.get(dependency.product());
-                var matchingRevisions = findMatchingRevisions(potentialRevisions, dependency.versionConstraints);
-                for (var target : matchingRevisions) {
-                    var edge = new DependencyEdge(source, target);
-                    edges.add(edge);
-                }
-            }
-            return edges;
-        }).flatMap(Collection::stream).collect(Collectors.toList());
+        var allEdges = generateEdges(dependencies);
         logger.debug("Generated {} edges: {} ms", allEdges.size(), System.currentTimeMillis() - startGenEdgesTs);
 
         var startAddEdgesTs = System.currentTimeMillis();
@@ -192,4 +232,38 @@ public class DependencyGraphBuilder {
         logger.info("Dependency graph generated: {} ms", System.currentTimeMillis() - startTs);
         return dependencyGraph;
     }
+
+    /**
+     * Generates an edge from each revision to each revision matching one of its dependencies.
+     *
+     * <p>
+     * Constraints are matched by a {@link VersionRangeIndex}, and edges are generated one package at a
+     * time, in parallel: since the versions of a package often declare the same dependencies, the
+     * matches of each dependency are computed once per package.
+     *
+     * @param dependencies a map from revisions to their dependencies, as returned by {@link #getDependencyList}.
+     */
+    public List<DependencyEdge> generateEdges(Map<Revision, List<Dependency>> dependencies) {
+        var startIdx = System.currentTimeMillis();
+        var index = new VersionRangeIndex(dependencies.keySet());
+        var packages = dependencies.keySet().parallelStream()
+                .collect(Collectors.groupingByConcurrent(r -> r.packageName));
+        logger.debug("Indexed {} products: {} ms", packages.size(), System.currentTimeMillis() - startIdx);
+
+        return packages.values().parallelStream().map(revisions -> {
+            var matches = new HashMap<Dependency, List<Revision>>();
+            var edges = new ArrayList<DependencyEdge>();
+            for (var source : revisions) {
+                for (var dependency : dependencies.get(source)) {
+                    if (dependency.equals(Dependency.empty)) {
+                        continue;
+                    }
+                    for (var target : matches.computeIfAbsent(dependency, index::findMatchingRevisions)) {
+                        edges.add(new DependencyEdge(source, target));
+                    }
+                }
+            }
+            return edges;
+        }).flatMap(Collection::stream).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dbconnectors.PostgresConnector;
+import eu.fasten.core.dependents.data.Dependency;
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.DependencyGraphDelta;
+import eu.fasten.core.dependents.data.Revision;
+import eu.fasten.core.dependents.utils.DependencyGraphUtilities;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the {@linkplain CompactDependencyGraph compact dependency graph} serialized at a path up to
+ * date with the package versions inserted in the database, without rebuilding it.
+ *
+ * <p>
+ * New revisions are {@linkplain #add(Map) queued}, either by {@linkplain #poll(DSLContext) polling the
+ * database} for package versions with an id larger than the {@linkplain #watermark() watermark} minus an
+ * overlap, or by a consumer of the output of the metadata plugin (see {@link
+ * DependencyGraphBuilder#getDependencyList(DSLContext, Collection)}). A {@linkplain #checkpoint() checkpoint} matches the dependencies of the queued revisions,
+ * and the dependencies of the revisions depending on their packages, which are the only ones whose
+ * matches can change; it then appends the resulting {@link DependencyGraphDelta} to the delta log next to
+ * the serialized graph, and rewrites the compact graph. Resolvers mapping the compact graph pick up the new
+ * version with {@link GraphResolver#refresh()}.
+ *
+ * <p>
+ * The edges added are those that {@link DependencyGraphBuilder#buildDependencyGraph(Map)} would add,
+ * except that the compact graph keeps distinct edges towards revisions whose versions are spelled
+ * differently, but equal for Maven.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+@CommandLine.Command(name = "DependencyGraphUpdater")
+public class DependencyGraphUpdater implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DependencyGraphUpdater.class);
+
+    @CommandLine.Option(names = {"-p", "--serializedPath"},
+            paramLabel = "PATH",
+            description = "Path of the serialized dependency graph",
+            required = true)
+    protected String serializedPath;
+
+    @CommandLine.Option(names = {"-d", "--database"},
+            paramLabel = "DB_URL",
+            description = "Database URL for connection",
+            defaultValue = "jdbc:postgresql:postgres")
+    protected String dbUrl;
+
+    @CommandLine.Option(names = {"-u", "--user"},
+            paramLabel = "DB_USER",
+            description = "Database user name",
+            defaultValue = "postgres")
+    protected String dbUser;
+
+    @CommandLine.Option(names = {"-i", "--interval"},
+            paramLabel = "SECONDS",
+            description = "Seconds between checkpoints",
+            defaultValue = "300")
+    protected long interval;
+
+    /** The default number of database ids below the watermark polled again. */
+    public static final long DEFAULT_POLL_OVERLAP = 10_000;
+
+    @CommandLine.Option(names = {"-o", "--overlap"},
+            paramLabel = "IDS",
+            description = "Number of database ids below the watermark polled again, to pick up package versions committed after versions with larger ids",
+            defaultValue = "" + DEFAULT_POLL_OVERLAP)
+    protected long pollOverlap = DEFAULT_POLL_OVERLAP;
+
+    private final DependencyGraphBuilder builder = new DependencyGraphBuilder();
+    /** The revisions queued for the next checkpoint. */
+    private final Map<Revision, List<Dependency>> pending = new LinkedHashMap<>();
+    private File compactFile;
+    private CompactDependencyGraph graph;
+    private Function<Collection<String>, Map<Revision, List<Dependency>>> dependents;
+    private long watermark;
+
+    public DependencyGraphUpdater() {
+    }
+
+    /**
+     * Creates an updater of a compact dependency graph.
+     *
+     * @param serializedPath the path of the serialized graph.
+     * @param graph          the compact graph mapped from the path.
+     * @param dependents     a function returning the revisions depending on any of the given packages, each
+     *                       with its dependencies on those packages (as {@link DependencyGraphBuilder#getDependents}
+     *                       does).
+     */
+    public DependencyGraphUpdater(String serializedPath, CompactDependencyGraph graph,
+                                  Function<Collection<String>, Map<Revision, List<Dependency>>> dependents) {
+        init(serializedPath, graph, dependents);
+    }
+
+    private synchronized void init(String serializedPath, CompactDependencyGraph graph,
+                                   Function<Collection<String>, Map<Revision, List<Dependency>>> dependents) {
+        this.serializedPath = serializedPath;
+        this.compactFile = new File(serializedPath + CompactDependencyGraph.EXTENSION);
+        this.graph = graph;
+        this.dependents = dependents;
+        for (int i = 0; i < graph.numNodes(); i++) {
+            watermark = Math.max(watermark, graph.databaseId(i));
+        }
+    }
+
+    public static void main(String[] args) {
+        final int exitCode = new CommandLine(new DependencyGraphUpdater()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        DSLContext dbContext;
+        try {
+            dbContext = PostgresConnector.getPooledDSLContext(dbUrl, dbUser, true);
+        } catch (SQLException e) {
+            logger.error("Could not connect to the database", e);
+            return;
+        }
+        try {
+            init(serializedPath, DependencyGraphUtilities.loadCompactDependencyGraph(dbContext, serializedPath),
+                    packageNames -> builder.getDependents(dbContext, packageNames));
+        } catch (Exception e) {
+            logger.error("Could not load the dependency graph serialized at {}", serializedPath, e);
+            return;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                poll(dbContext);
+                checkpoint();
+                TimeUnit.SECONDS.sleep(interval);
+            } catch (IOException e) {
+                logger.error("Could not checkpoint the dependency graph serialized at {}", serializedPath, e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Returns the largest database id of the revisions in the graph or queued. */
+    public synchronized long watermark() {
+        return watermark;
+    }
+
+    /** Returns the number of revisions queued for the next checkpoint. */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    /** Returns the compact graph, as of the last checkpoint. */
+    public synchronized CompactDependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Sets the number of database ids below the {@linkplain #watermark() watermark} polled again.
+     *
+     * @param pollOverlap the number of ids; it should exceed the number of package versions that can be
+     *                    inserted while a package version is being committed.
+     */
+    public synchronized void setPollOverlap(long pollOverlap) {
+        if (pollOverlap < 0) {
+            throw new IllegalArgumentException("Negative poll overlap: " + pollOverlap);
+        }
+        this.pollOverlap = pollOverlap;
+    }
+
+    /**
+     * Queues the package versions in the database with an id larger than the {@linkplain #watermark()
+     * watermark} minus the {@linkplain #setPollOverlap(long) poll overlap}.
+     *
+     * <p>
+     * Ids are assigned when package versions are inserted, but package versions become visible when they
+     * are committed, so a concurrent transaction can commit a package version with an id smaller than the
+     * watermark; polling again the last ids picks it up, and package versions known already are ignored by
+     * {@link #add(Map)}.
+     *
+     * @return the number of revisions queued.
+     */
+    public int poll(DSLContext dbContext) {
+        final long from;
+        synchronized (this) {
+            from = Math.max(0, watermark - pollOverlap);
+        }
+        return add(builder.getDependencyList(dbContext, from));
+    }
+
+    /**
+     * Queues revisions for the next checkpoint; revisions in the graph or queued already are ignored.
+     *
+     * @param revisions a map from revisions to their dependencies, as returned by
+     *                  {@link DependencyGraphBuilder#getDependencyList}.
+     * @return the number of revisions queued.
+     */
+    public synchronized int add(Map<Revision, List<Dependency>> revisions) {
+        int added = 0;
+        for (var entry : revisions.entrySet()) {
+            final var revision = entry.getKey();
+            if (!pending.containsKey(revision) && graph.id(revision.packageName, revision.version.toString()) < 0) {
+                pending.put(revision, entry.getValue());
+                watermark = Math.max(watermark, revision.id);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds the queued revisions to the graph: computes the edges from and to them, appends them to the
+     * delta log, and rewrites the compact graph.
+     *
+     * @return the delta applied, or {@code null} if no revision is queued.
+     * @throws IOException if the delta log or the compact graph cannot be written; in this case, the
+     *                     revisions remain queued.
+     */
+    public synchronized DependencyGraphDelta checkpoint() throws IOException {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        final var startTs = System.currentTimeMillis();
+        final var delta = new DependencyGraphDelta(new ArrayList<>(pending.keySet()), edges());
+        DependencyGraphUtilities.appendDelta(delta, serializedPath);
+        CompactDependencyGraph.store(graph, delta.revisions, delta.edges, compactFile);
+        graph = CompactDependencyGraph.load(compactFile);
+        pending.clear();
+        logger.info("Added {} revisions and {} edges to {}: {} ms", delta.revisions.size(), delta.edges.size(),
+                compactFile, System.currentTimeMillis() - startTs);
+        return delta;
+    }
+
+    /** Computes the edges from and to the queued revisions. */
+    private List<DependencyEdge> edges() {
+        final Set<String> packages = new HashSet<>();
+        final Set<String> dependencyPackages = new HashSet<>();
+        for (var entry : pending.entrySet()) {
+            packages.add(entry.getKey().packageName);
+            for (var dependency : entry.getValue()) {
+                dependencyPackages.add(dependency.packageName);
+            }
+        }
+        // The queued revisions can depend on any revision of the packages they depend on
+        final var candidates = new ArrayList<>(pending.keySet());
+        for (var packageName : dependencyPackages) {
+            final int[] range = graph.revisions(packageName);
+            for (int i = range[0]; i < range[1]; i++) {
+                candidates.add(graph.revision(i));
+            }
+        }
+        final var edges = new ArrayList<DependencyEdge>();
+        final var index = new VersionRangeIndex(candidates);
+        for (var entry : pending.entrySet()) {
+            for (var dependency : entry.getValue()) {
+                if (dependency.equals(Dependency.empty)) {
+                    continue;
+                }
+                for (var target : index.findMatchingRevisions(dependency)) {
+                    edges.add(new DependencyEdge(entry.getKey(), target));
+                }
+            }
+        }
+        // Revisions in the graph can depend only on the queued revisions matching their constraints
+        final var added = new VersionRangeIndex(pending.keySet());
+        for (var entry : dependents.apply(packages).entrySet()) {
+            final var source = entry.getKey();
+            if (pending.containsKey(source) || graph.id(source.packageName, source.version.toString()) < 0) {
+                // Either its edges have been computed above, or it has not been polled yet (e.g., it was
+                // committed after revisions with larger ids); its edges will be computed when it is queued
+                continue;
+            }
+            for (var dependency : entry.getValue()) {
+                for (var target : added.findMatchingRevisions(dependency)) {
+                    edges.add(new DependencyEdge(source, target));
+                }
+            }
+        }
+        return edges;
+    }
+}
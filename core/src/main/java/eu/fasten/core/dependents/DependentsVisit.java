@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A breadth-first visit of the dependents of a revision in a {@link CompactDependencyGraph}, limited to
+ * dependents created at or after a given timestamp.
+ *
+ * <p>
+ * Nodes are marked as visited in a bitset when they are enqueued, so each dependent is enqueued once.
+ * Since the dependents of each revision are sorted by creation timestamp, the dependents passing the
+ * cut-off are found by {@linkplain CompactDependencyGraph#firstDependent(int, long) binary search}. At
+ * the end of a visit the queue contains exactly the dependents found, in visit order; the bitset is
+ * cleared at the start of the next visit, in time proportional to the size of the previous one. All
+ * internal state is reused across visits, so a sequential visit performs no allocation once the queue has
+ * grown large enough.
+ *
+ * <p>
+ * If an executor is provided, levels of the visit containing at least a given number of nodes (as it
+ * happens for popular revisions such as those of {@code junit} or {@code slf4j-api}) are expanded by a
+ * bounded number of tasks; in that case, the order of the dependents within a level is not deterministic.
+ *
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class DependentsVisit {
+
+    /** The default minimum number of nodes of a level that is expanded in parallel. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+    /** The number of nodes of a level claimed at once by a task during a parallel expansion. */
+    private static final int CHUNK_SIZE = 256;
+    private static final VarHandle SEEN = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final CompactDependencyGraph graph;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int parallelThreshold;
+    /** The bitset of visited nodes; only the nodes in the queue are set. */
+    private long[] seen = LongArrays.EMPTY_ARRAY;
+    /** The queue of the visit, in visit order. */
+    private int[] queue = IntArrays.EMPTY_ARRAY;
+    /** The number of nodes in the queue. */
+    private int size;
+
+    /**
+     * Creates a sequential visit.
+     */
+    public DependentsVisit(CompactDependencyGraph graph) {
+        this(graph, null, 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a visit expanding large levels in parallel.
+     *
+     * @param graph             the graph to visit.
+     * @param executor          the executor running the expansion of large levels, or {@code null}.
+     * @param parallelism       the number of tasks expanding a large level.
+     * @param parallelThreshold the minimum number of nodes of a level that is expanded in parallel.
+     */
+    public DependentsVisit(CompactDependencyGraph graph, ExecutorService executor, int parallelism,
+                           int parallelThreshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.graph = graph;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Visits the dependents of a revision created at or after a timestamp.
+     *
+     * <p>
+     * The revision itself is not part of the result, unless it depends transitively on itself.
+     *
+     * @param root       the id of a revision.
+     * @param timestamp  the cut-off timestamp.
+     * @param transitive whether to visit transitive dependents, or just direct ones.
+     * @return the number of dependents found, which can be retrieved with {@link #dependent(int)}.
+     */
+    public int visit(int root, long timestamp, boolean transitive) {
+        for (int i = 0; i < size; i++) {
+            seen[queue[i] >>> 6] = 0;
+        }
+        size = 0;
+        final int n = graph.numNodes();
+        if (seen.length < (n + 63) >>> 6) {
+            seen = new long[(n + 63) >>> 6];
+        }
+
+        size = expand(root, timestamp, 0);
+        if (transitive) {
+            for (int start = 0; start < size; ) {
+                final int levelEnd = size;
+                if (executor != null && parallelism > 1 && levelEnd - start >= parallelThreshold) {
+                    size = expandInParallel(start, levelEnd, timestamp);
+                } else {
+                    for (int i = start; i < levelEnd; i++) {
+                        size = expand(queue[i], timestamp, size);
+                    }
+                }
+                start = levelEnd;
+            }
+        }
+        return size;
+    }
+
+    /** Returns the number of dependents found by the last visit. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the <var>i</var>-th dependent found by the last visit, in visit order. */
+    public int dependent(int i) {
+        return queue[i];
+    }
+
+    /** Enqueues the unvisited dependents of a node passing the cut-off, returning the new end of the queue. */
+    private int expand(int node, long timestamp, int end) {
+        final int count = graph.dependentCount(node);
+        int i = graph.firstDependent(node, timestamp);
+        queue = IntArrays.grow(queue, end + count - i);
+        for (; i < count; i++) {
+            final int dependent = graph.dependent(node, i);
+            final long mask = 1L << dependent;
+            final long word = seen[dependent >>> 6];
+            if ((word & mask) == 0) {
+                seen[dependent >>> 6] = word | mask;
+                queue[end++] = dependent;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Expands the level of the queue between the given positions with {@link #parallelism} tasks,
+     * returning the new end of the queue.
+     */
+    private int expandInParallel(int from, int to, long timestamp) {
+        long capacity = to;
+        for (int i = from; i < to; i++) {
+            capacity += graph.dependentCount(queue[i]);
+        }
+        queue = IntArrays.grow(queue, (int) Math.min(capacity, graph.numNodes()));
+
+        final var next = new AtomicInteger(from);
+        final var end = new AtomicInteger(to);
+        final var abort = new AtomicBoolean();
+        final var tasks = new ArrayList<Callable<Void>>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            tasks.add(() -> {
+                final var found = new IntArrayList();
+                for (int chunk; !abort.get() && (chunk = next.getAndAdd(CHUNK_SIZE)) < to; ) {
+                    for (int i = chunk, last = Math.min(chunk + CHUNK_SIZE, to); i < last; i++) {
+                        final int node = queue[i];
+                        for (int j = graph.firstDependent(node, timestamp), count = graph.dependentCount(node); j < count; j++) {
+                            final int dependent = graph.dependent(node, j);
+                            if (mark(dependent)) {
+                                found.add(dependent);
+                            }
+                        }
+                    }
+                    // Each task appends what it found to a region of the queue reserved for it
+                    final int position = end.getAndAdd(found.size());
+                    found.getElements(0, queue, position, found.size());
+                    found.clear();
+                }
+                return null;
+            });
+        }
+        final var futures = new ArrayList<Future<Void>>(parallelism);
+        Throwable failure = null;
+        boolean interrupted = false;
+        try {
+            for (var task : tasks) {
+                futures.add(executor.submit(task));
+            }
+        } catch (RejectedExecutionException e) {
+            failure = e;
+            abort.set(true);
+        }
+        // On failure, the tasks still running stop at their next chunk; in any case, all tasks must be
+        // done before returning, as they modify the bitset and the queue, which are reused
+        for (var future : futures) {
+            for (;;) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    abort.set(true);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    abort.set(true);
+                    break;
+                }
+            }
+        }
+        if (interrupted || failure != null) {
+            // Marked nodes might be missing from the queue, so the bitset must be cleared entirely
+            Arrays.fill(seen, 0);
+            size = 0;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while visiting dependents");
+            }
+            throw new RuntimeException(failure);
+        }
+        return end.get();
+    }
+
+    /** Atomically marks a node as visited, returning true if it was not visited before. */
+    private boolean mark(int node) {
+        final long mask = 1L << node;
+        final int index = node >>> 6;
+        long word;
+        do {
+            word = (long) SEEN.getVolatile(seen, index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!SEEN.compareAndSet(seen, index, word, word | mask));
+        return true;
+    }
+}
@@ -22,16 +22,12 @@ import eu.fasten.core.data.Constants;
 import eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions;
 import eu.fasten.core.data.metadatadb.codegen.tables.Packages;
 import eu.fasten.core.dbconnectors.PostgresConnector;
-import eu.fasten.core.dependents.data.DependencyEdge;
-import eu.fasten.core.dependents.data.Product;
 import eu.fasten.core.dependents.data.Revision;
 import eu.fasten.core.dependents.utils.DependencyGraphUtilities;
 import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.commons.math3.util.Pair;
-import org.jgrapht.Graph;
-import org.jgrapht.Graphs;
 import org.jooq.DSLContext;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -39,9 +35,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @CommandLine.Command(name = "GraphResolver")
@@ -69,8 +70,88 @@ public class GraphResolver implements Runnable {
             required = true)
     protected String dbUser;
 
-    private Graph<Revision, DependencyEdge> dependencyGraph;
-    private Graph<Revision, DependencyEdge> dependentGraph;
+    @CommandLine.Option(names = {"-t", "--threads"},
+            paramLabel = "THREADS",
+            description = "Number of threads expanding large levels of transitive dependents",
+            defaultValue = "1")
+    protected int parallelism = 1;
+
+    /** The minimum interval between two checks of the modification time of the compact graph file. */
+    private static final long REFRESH_INTERVAL_MS = 10_000;
+    /** The time after which idle threads of {@link #visitPool} terminate. */
+    private static final long VISIT_POOL_KEEP_ALIVE_S = 60;
+
+    /**
+     * A dependency graph together with the visits of its threads; they are published together, as
+     * node ids are only meaningful within a graph.
+     */
+    private static final class Snapshot {
+        private final CompactDependencyGraph graph;
+        private final ThreadLocal<DependentsVisit> visits;
+
+        private Snapshot(CompactDependencyGraph graph, ExecutorService pool, int threads) {
+            this.graph = graph;
+            this.visits = ThreadLocal.withInitial(() ->
+                    new DependentsVisit(graph, pool, threads, DependentsVisit.DEFAULT_PARALLEL_THRESHOLD));
+        }
+    }
+
+    /** The current graph and its visits, or {@code null} if no graph has been loaded yet. */
+    private volatile Snapshot snapshot;
+    /** The file the graph is mapped from, or {@code null} if it was provided directly. */
+    private File compactFile;
+    /** The modification time of {@link #compactFile} when it was mapped. */
+    private long compactFileModified;
+    private volatile long nextRefreshCheck;
+    /** The pool expanding large levels of visits, or {@code null} if {@link #parallelism} is 1. */
+    private ExecutorService visitPool;
+
+    public GraphResolver() {
+    }
+
+    /**
+     * Creates a resolver working on the given graph.
+     */
+    public GraphResolver(CompactDependencyGraph dependencyGraph) {
+        setDependencyGraph(dependencyGraph);
+    }
+
+    private synchronized void setDependencyGraph(CompactDependencyGraph dependencyGraph) {
+        this.snapshot = new Snapshot(dependencyGraph, visitPool, parallelism);
+    }
+
+    /**
+     * Sets the number of threads expanding the levels of transitive visits containing at least
+     * {@link DependentsVisit#DEFAULT_PARALLEL_THRESHOLD} revisions.
+     *
+     * <p>
+     * Visits in progress keep using the previous pool, which is never shut down explicitly, as they
+     * might still submit tasks to it: once it is no longer used, its threads terminate after
+     * {@value #VISIT_POOL_KEEP_ALIVE_S} seconds of idleness.
+     *
+     * @param parallelism the number of threads; if 1, visits are sequential.
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        if (parallelism > 1) {
+            final var pool = new ThreadPoolExecutor(parallelism, parallelism, VISIT_POOL_KEEP_ALIVE_S, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        final var thread = new Thread(r, "dependents-visit");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            visitPool = pool;
+        } else {
+            visitPool = null;
+        }
+        if (snapshot != null) {
+            setDependencyGraph(snapshot.graph);
+        }
+    }
 
     public static void main(String[] args) {
         final int exitCode = new CommandLine(new GraphResolver()).execute(args);
@@ -81,20 +162,14 @@ public class GraphResolver implements Runnable {
     public void run() {
         DSLContext dbContext;
         try {
-            dbContext = PostgresConnector.getDSLContext(dbUrl, dbUser, true);
+            dbContext = PostgresConnector.getPooledDSLContext(dbUrl, dbUser, true);
         } catch (SQLException e) {
             logger.error("Could not connect to the database", e);
             return;
         }
+        setParallelism(parallelism);
         try {
-            var optDependencyGraph = DependencyGraphUtilities.loadDependencyGraph(serializedPath);
-            if (optDependencyGraph.isPresent()) {
-                this.dependencyGraph = optDependencyGraph.get();
-                this.dependentGraph = DependencyGraphUtilities.invertDependencyGraph(dependencyGraph);
-            } else {
-                this.dependencyGraph = DependencyGraphUtilities.buildDependencyGraphFromScratch(dbContext, serializedPath);
-                this.dependentGraph = DependencyGraphUtilities.invertDependencyGraph(dependencyGraph);
-            }
+            buildDependencyGraph(dbContext, serializedPath);
         } catch (Exception e) {
             logger.warn("Could not load serialized dependency graph from {}\n", serializedPath, e);
         }
@@ -147,67 +222,78 @@ public class GraphResolver implements Runnable {
      */
     public ObjectLinkedOpenHashSet<Revision> resolveDependents(String packageName, String version, long timestamp,
                                                                boolean transitive) {
+        if (compactFile != null && System.currentTimeMillis() >= nextRefreshCheck) {
+            nextRefreshCheck = System.currentTimeMillis() + REFRESH_INTERVAL_MS;
+            try {
+                refresh();
+            } catch (IOException e) {
+                logger.warn("Could not map updated dependency graph at {}, keeping the current one", compactFile, e);
+            }
+        }
         return dependentBFS(packageName, version, timestamp, transitive);
     }
 
     /**
-     * Performs a Breadth-First Search on the {@param dependentGraph} to determine the revisions that depend on
-     * the revision indicated by the first 3 parameters, at the indicated {@param timestamp}.
+     * Performs a Breadth-First Search on the dependents of the revision indicated by the first 2 parameters,
+     * to determine the revisions that depend on it at the indicated {@param timestamp}. The visit is
+     * performed by a {@link DependentsVisit} owned by the current thread, and {@link Revision} instances
+     * are only created for the result. The whole search uses the graph current when it starts, even if
+     * the graph is {@linkplain #refresh() refreshed} in the meantime.
      *
      * @param timestamp  - The cut-off timestamp. The returned dependents have been released after the provided timestamp
      * @param transitive - Whether the BFS should recurse into the graph
      */
     public ObjectLinkedOpenHashSet<Revision> dependentBFS(String packageName, String version, long timestamp,
                                                           boolean transitive) {
-        var revision = new Revision(packageName, version, new Timestamp(timestamp));
-
-        if (!this.dependentGraph.containsVertex(revision)) {
+        final var snapshot = this.snapshot;
+        final int root = snapshot.graph.id(packageName, version);
+        if (root < 0) {
             throw new RuntimeException("Revision " + packageName + " is not in the dependents graph. Probably it is missing in the database");
         }
 
-        var workQueue = new ArrayDeque<>(filterDependentsByTimestamp(Graphs.successorListOf(this.dependentGraph, revision), timestamp));
-
-        var result = new ObjectLinkedOpenHashSet<>(workQueue);
-
-        if (!transitive) {
-            return new ObjectLinkedOpenHashSet<>(workQueue);
+        final var visit = snapshot.visits.get();
+        final int size = visit.visit(root, timestamp, transitive);
+        logger.debug("Dependents of {}:{}: {}", packageName, version, size);
+        final var revisions = new ObjectLinkedOpenHashSet<Revision>(size);
+        for (int i = 0; i < size; i++) {
+            revisions.add(snapshot.graph.revision(visit.dependent(i)));
         }
-
-        while (!workQueue.isEmpty()) {
-            var rev = workQueue.poll();
-            if (rev != null) {
-                result.add(rev);
-            }
-            if (!dependentGraph.containsVertex(rev)) {
-                throw new RuntimeException("Revision " + rev + " is not in the dependents graph. Probably it is missing in the database");
-            }
-            var dependents = filterDependentsByTimestamp(Graphs.successorListOf(this.dependentGraph, rev), timestamp);
-            logger.debug("Successors for {}:{}: deps: {}, queue: {} items",
-                    rev.packageName, rev.version,
-                    dependents.size(), workQueue.size());
-            for (var dependent : dependents) {
-                if (!result.contains(dependent)) {
-                    workQueue.add(dependent);
-                }
-            }
-        }
-        return result;
+        return revisions;
     }
 
-    protected List<Revision> filterDependentsByTimestamp(List<Revision> successors, long timestamp) {
-        return successors.stream().
-                filter(revision -> revision.createdAt.getTime() >= timestamp).
-                collect(Collectors.toList());
+    /**
+     * Loads the dependency graph serialized at the given path. The graph is memory-mapped from its
+     * {@linkplain CompactDependencyGraph compact form}, which is created next to the serialized graph
+     * the first time (or whenever the serialized graph is newer); if no graph is serialized at the given
+     * path, it is built from the database first.
+     */
+    public void buildDependencyGraph(DSLContext dbContext, String serializedGraphPath) throws Exception {
+        final var file = new File(serializedGraphPath + CompactDependencyGraph.EXTENSION);
+        final var graph = DependencyGraphUtilities.loadCompactDependencyGraph(dbContext, serializedGraphPath);
+        synchronized (this) {
+            compactFile = file;
+            compactFileModified = file.lastModified();
+            setDependencyGraph(graph);
+        }
     }
 
-    public void buildDependencyGraph(DSLContext dbContext, String serializedGraphPath) throws Exception {
-        var graphOpt = DependencyGraphUtilities.loadDependencyGraph(serializedGraphPath);
-        if (graphOpt.isEmpty()) {
-            this.dependencyGraph = DependencyGraphUtilities.buildDependencyGraphFromScratch(dbContext, serializedGraphPath);
-        } else {
-            this.dependencyGraph = graphOpt.get();
+    /**
+     * Maps again the compact dependency graph loaded by {@link #buildDependencyGraph(DSLContext, String)}
+     * if its file has been rewritten since (e.g., by a {@link DependencyGraphUpdater}). Searches in progress
+     * complete on the previous graph, which they read once together with their visit. This method is
+     * called by {@link #resolveDependents} at most every few seconds.
+     *
+     * @return true if the graph has been mapped again.
+     */
+    public synchronized boolean refresh() throws IOException {
+        if (compactFile == null || compactFile.lastModified() == compactFileModified) {
+            return false;
         }
-        this.dependentGraph = DependencyGraphUtilities.invertDependencyGraph(dependencyGraph);
+        final long modified = compactFile.lastModified();
+        setDependencyGraph(CompactDependencyGraph.load(compactFile));
+        compactFileModified = modified;
+        logger.info("Mapped updated dependency graph at {}: {} revisions", compactFile, snapshot.graph.numNodes());
+        return true;
     }
     
     public long getCreatedAt(String packageName, String version, DSLContext context) {
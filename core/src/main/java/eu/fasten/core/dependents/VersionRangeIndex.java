@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.Dependency;
+import eu.fasten.core.dependents.data.Revision;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * An index of the revisions of each package, sorted by version, that matches {@linkplain
+ * Dependency.VersionConstraint version constraints} by binary search.
+ *
+ * <p>
+ * The semantics are those of {@link DependencyGraphBuilder#findMatchingRevisions(List, List)}: a constraint
+ * written as a range matches the versions within its (possibly open or unbounded) bounds, any other
+ * constraint matches the versions equal to it, and versions are compared as Maven does (i.e., as
+ * {@link ComparableVersion}s). Each version is parsed once, when the index is built, and each distinct
+ * bound is parsed once, when it is first used, so matching does not allocate version objects.
+ *
+ * <p>
+ * Maven's ordering is not transitive on unusual versions (e.g., {@code 1.a} is greater than {@code 1.0},
+ * which is greater than {@code 1.0-SNAPSHOT}, which is greater than {@code 1.a}), so the versions
+ * matching a bound need not be contiguous once sorted. Thus, constraints are matched by binary search
+ * only if both the bound and all the versions of the package are numeric (i.e., of the form
+ * {@code 1.2.3}), as numeric versions are totally ordered; otherwise, the versions are scanned.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public class VersionRangeIndex {
+
+    private static final Revision[] NO_REVISIONS = new Revision[0];
+    private static final ComparableVersion[] NO_VERSIONS = new ComparableVersion[0];
+
+    /** The revisions of each package, sorted by version. */
+    private final Map<String, Revision[]> revisions;
+    /** The parsed versions of the revisions in {@link #revisions}. */
+    private final Map<String, ComparableVersion[]> versions;
+    /** The packages whose versions are all numeric. */
+    private final Set<String> numeric = ConcurrentHashMap.newKeySet();
+    /** Constraint bounds, parsed. */
+    private final Map<String, ComparableVersion> bounds = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an index of the given revisions; packages are indexed in parallel.
+     */
+    public VersionRangeIndex(Collection<Revision> revisions) {
+        final var byPackage = revisions.parallelStream().collect(Collectors.groupingByConcurrent(r -> r.packageName));
+        this.revisions = new ConcurrentHashMap<>(byPackage.size());
+        this.versions = new ConcurrentHashMap<>(byPackage.size());
+        byPackage.entrySet().parallelStream().forEach(e -> {
+            final var list = e.getValue();
+            final var parsed = new ComparableVersion[list.size()];
+            for (int i = 0; i < parsed.length; i++) {
+                parsed[i] = new ComparableVersion(list.get(i).version.toString());
+            }
+            final int[] perm = new int[parsed.length];
+            Arrays.setAll(perm, i -> i);
+            IntArrays.stableSort(perm, (x, y) -> parsed[x].compareTo(parsed[y]));
+            final var sortedRevisions = new Revision[perm.length];
+            final var sortedVersions = new ComparableVersion[perm.length];
+            for (int i = 0; i < perm.length; i++) {
+                sortedRevisions[i] = list.get(perm[i]);
+                sortedVersions[i] = parsed[perm[i]];
+            }
+            if (Arrays.stream(parsed).allMatch(VersionRangeIndex::isNumeric)) {
+                numeric.add(e.getKey());
+            }
+            this.revisions.put(e.getKey(), sortedRevisions);
+            this.versions.put(e.getKey(), sortedVersions);
+        });
+    }
+
+    /**
+     * Returns the revisions of a package, sorted by version; the array must not be modified.
+     */
+    public Revision[] revisions(String packageName) {
+        return revisions.getOrDefault(packageName, NO_REVISIONS);
+    }
+
+    /**
+     * Returns the spans of the {@linkplain #revisions(String) sorted revisions} of a package matching
+     * any of the given constraints.
+     *
+     * @return a sequence of disjoint, increasing spans of indices, each given by its start (inclusive)
+     *         and its end (exclusive); thus, the array has even length.
+     */
+    public int[] spans(String packageName, List<Dependency.VersionConstraint> constraints) {
+        final var sorted = versions.getOrDefault(packageName, NO_VERSIONS);
+        if (sorted.length == 0) {
+            return IntArrays.EMPTY_ARRAY;
+        }
+        final boolean sortedNumeric = numeric.contains(packageName);
+        int[] spans = new int[2 * constraints.size()];
+        int n = 0;
+        for (var constraint : constraints) {
+            final var spec = constraint.toString();
+            final ComparableVersion lower;
+            final ComparableVersion upper;
+            final boolean lowerInclusive;
+            final boolean upperInclusive;
+            if ((spec.startsWith("[") || spec.startsWith("(")) && (spec.endsWith("]") || spec.endsWith(")"))) {
+                lower = constraint.lowerBound.isEmpty() ? null : bound(constraint.lowerBound);
+                upper = constraint.upperBound.isEmpty() ? null : bound(constraint.upperBound);
+                lowerInclusive = constraint.isLowerHardRequirement;
+                upperInclusive = constraint.isUpperHardRequirement;
+            } else if (constraint.lowerBound.equals(constraint.upperBound)) {
+                lower = upper = bound(constraint.lowerBound);
+                lowerInclusive = upperInclusive = true;
+            } else {
+                continue;
+            }
+            if (sortedNumeric && (lower == null || isNumeric(lower)) && (upper == null || isNumeric(upper))) {
+                final int from = lower == null ? 0 : lowerIndex(sorted, lower, lowerInclusive);
+                final int to = upper == null ? sorted.length : upperIndex(sorted, upper, upperInclusive);
+                if (from < to) {
+                    spans = IntArrays.grow(spans, n + 2);
+                    spans[n++] = from;
+                    spans[n++] = to;
+                }
+            } else {
+                for (int i = 0; i < sorted.length; ) {
+                    if (!matches(sorted[i], lower, lowerInclusive, upper, upperInclusive)) {
+                        i++;
+                        continue;
+                    }
+                    final int from = i;
+                    while (i < sorted.length && matches(sorted[i], lower, lowerInclusive, upper, upperInclusive)) {
+                        i++;
+                    }
+                    spans = IntArrays.grow(spans, n + 2);
+                    spans[n++] = from;
+                    spans[n++] = i;
+                }
+            }
+        }
+        return merge(spans, n);
+    }
+
+    /**
+     * Returns the revisions of the package of a dependency matching any of its constraints, sorted by
+     * version, as an unmodifiable list.
+     */
+    public List<Revision> findMatchingRevisions(Dependency dependency) {
+        final var sorted = revisions(dependency.packageName);
+        final int[] spans = spans(dependency.packageName, dependency.versionConstraints);
+        if (spans.length == 0) {
+            return Collections.emptyList();
+        }
+        if (spans.length == 2) {
+            return Collections.unmodifiableList(Arrays.asList(sorted).subList(spans[0], spans[1]));
+        }
+        int size = 0;
+        for (int i = 0; i < spans.length; i += 2) {
+            size += spans[i + 1] - spans[i];
+        }
+        final var matches = new Revision[size];
+        for (int i = 0, j = 0; i < spans.length; i += 2) {
+            System.arraycopy(sorted, spans[i], matches, j, spans[i + 1] - spans[i]);
+            j += spans[i + 1] - spans[i];
+        }
+        return Collections.unmodifiableList(Arrays.asList(matches));
+    }
+
+    private ComparableVersion bound(String version) {
+        return bounds.computeIfAbsent(version, ComparableVersion::new);
+    }
+
+    /** Returns whether a version is within the given bounds, where a null bound is unbounded. */
+    private static boolean matches(ComparableVersion version, ComparableVersion lower, boolean lowerInclusive,
+                                   ComparableVersion upper, boolean upperInclusive) {
+        if (lower != null) {
+            final int cmp = version.compareTo(lower);
+            if (cmp < 0 || cmp == 0 && !lowerInclusive) {
+                return false;
+            }
+        }
+        if (upper != null) {
+            final int cmp = version.compareTo(upper);
+            return cmp < 0 || cmp == 0 && upperInclusive;
+        }
+        return true;
+    }
+
+    /** Returns whether a version is made of numbers separated by dots only. */
+    private static boolean isNumeric(ComparableVersion version) {
+        final var canonical = version.getCanonical();
+        if (canonical.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < canonical.length(); i++) {
+            final char c = canonical.charAt(i);
+            if ((c < '0' || c > '9') && (c != '.' || i == 0 || canonical.charAt(i - 1) == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the first index of a version greater than (or equal to, if inclusive) the given one. */
+    private static int lowerIndex(ComparableVersion[] sorted, ComparableVersion version, boolean inclusive) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = sorted[mid].compareTo(version);
+            if (cmp < 0 || cmp == 0 && !inclusive) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Returns the first index of a version greater than (or equal to, if exclusive) the given one. */
+    private static int upperIndex(ComparableVersion[] sorted, ComparableVersion version, boolean inclusive) {
+        return lowerIndex(sorted, version, !inclusive);
+    }
+
+    /** Sorts the first n / 2 spans in the given array and merges overlapping ones. */
+    private static int[] merge(int[] spans, int n) {
+        if (n <= 2) {
+            return Arrays.copyOf(spans, n);
+        }
+        final int[] perm = new int[n / 2];
+        Arrays.setAll(perm, i -> 2 * i);
+        IntArrays.quickSort(perm, (x, y) -> Integer.compare(spans[x], spans[y]));
+        final int[] merged = new int[n];
+        int m = 0;
+        for (int p : perm) {
+            if (m > 0 && spans[p] <= merged[m - 1]) {
+                merged[m - 1] = Math.max(merged[m - 1], spans[p + 1]);
+            } else {
+                merged[m++] = spans[p];
+                merged[m++] = spans[p + 1];
+            }
+        }
+        return Arrays.copyOf(merged, m);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents.data;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The revisions added to a dependency graph by an incremental update, together with the edges
+ * added along with them (both from the new revisions to their dependencies, and from existing
+ * revisions to the new revisions matching their dependencies).
+ */
+public class DependencyGraphDelta {
+
+    public final List<Revision> revisions;
+    public final List<DependencyEdge> edges;
+
+    public DependencyGraphDelta(List<Revision> revisions, List<DependencyEdge> edges) {
+        this.revisions = revisions;
+        this.edges = edges;
+    }
+
+    /**
+     * Converts the delta to JSON. Edges are represented by the coordinates of their endpoints, as
+     * arrays made of the package and the version of the source, followed by those of the target.
+     */
+    public JSONObject toJSON() {
+        var revisionsJson = new JSONArray();
+        for (var revision : revisions) {
+            var json = new JSONObject();
+            json.put("id", revision.id);
+            json.put("package", revision.packageName);
+            json.put("version", revision.version.toString());
+            json.put("createdAt", revision.createdAt == null ? JSONObject.NULL : revision.createdAt.getTime());
+            revisionsJson.put(json);
+        }
+        var edgesJson = new JSONArray();
+        for (var edge : edges) {
+            edgesJson.put(new JSONArray().put(edge.source.packageName).put(edge.source.version.toString())
+                    .put(edge.target.packageName).put(edge.target.version.toString()));
+        }
+        var json = new JSONObject();
+        json.put("revisions", revisionsJson);
+        json.put("edges", edgesJson);
+        return json;
+    }
+
+    /**
+     * Creates a delta from its JSON representation. Endpoints of edges which are not among the
+     * revisions of the delta are represented by revisions with no database id nor creation timestamp.
+     *
+     * @param json JSONObject representation of a delta, as returned by {@link #toJSON()}
+     * @return DependencyGraphDelta object
+     */
+    public static DependencyGraphDelta fromJSON(JSONObject json) {
+        var revisions = new ArrayList<Revision>();
+        var byCoordinates = new HashMap<List<String>, Revision>();
+        var revisionsJson = json.getJSONArray("revisions");
+        for (var i = 0; i < revisionsJson.length(); i++) {
+            var revisionJson = revisionsJson.getJSONObject(i);
+            var revision = new Revision(revisionJson.getLong("id"), revisionJson.getString("package"),
+                    revisionJson.getString("version"), revisionJson.isNull("createdAt") ? null
+                    : new Timestamp(revisionJson.getLong("createdAt")));
+            revisions.add(revision);
+            byCoordinates.put(List.of(revision.packageName, revision.version.toString()), revision);
+        }
+        var edges = new ArrayList<DependencyEdge>();
+        var edgesJson = json.getJSONArray("edges");
+        for (var i = 0; i < edgesJson.length(); i++) {
+            var edgeJson = edgesJson.getJSONArray(i);
+            var source = byCoordinates.computeIfAbsent(List.of(edgeJson.getString(0), edgeJson.getString(1)),
+                    c -> new Revision(c.get(0), c.get(1), null));
+            var target = byCoordinates.computeIfAbsent(List.of(edgeJson.getString(2), edgeJson.getString(3)),
+                    c -> new Revision(c.get(0), c.get(1), null));
+            edges.add(new DependencyEdge(source, target));
+        }
+        return new DependencyGraphDelta(revisions, edges);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DependencyGraphDelta that = (DependencyGraphDelta) o;
+        return Objects.equals(revisions, that.revisions) && Objects.equals(edges, that.edges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(revisions, edges);
+    }
+}
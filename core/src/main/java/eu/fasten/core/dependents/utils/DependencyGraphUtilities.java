@@ -22,21 +22,34 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import eu.fasten.core.dependents.CompactDependencyGraph;
 import eu.fasten.core.dependents.DependencyGraphBuilder;
 import eu.fasten.core.dependents.data.Dependency;
 import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.DependencyGraphDelta;
 import eu.fasten.core.dependents.data.Revision;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jooq.DSLContext;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -47,6 +60,9 @@ public final class DependencyGraphUtilities {
 
     private static final Logger logger = LoggerFactory.getLogger(DependencyGraphUtilities.class);
 
+    /** The extension appended to the path of the serialized dependency graph to obtain its delta log. */
+    public static final String DELTA_EXTENSION = ".delta";
+
     public static Graph<Revision, DependencyEdge> invertDependencyGraph(Graph<Revision,
             DependencyEdge> dependencyGraph) {
         logger.debug("Calculating graph transpose");
@@ -164,6 +180,94 @@ public final class DependencyGraphUtilities {
         }
     }
 
+    /**
+     * Appends a delta to the delta log of the dependency graph serialized at a path, one JSON object per
+     * line, and forces it to the storage device.
+     *
+     * @throws IOException When the delta log cannot be written.
+     */
+    public static void appendDelta(DependencyGraphDelta delta, String path) throws IOException {
+        var line = (delta.toJSON().toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        try (var channel = FileChannel.open(Path.of(path + DELTA_EXTENSION), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads the delta log of the dependency graph serialized at a path. A truncated last line, as left
+     * by an interrupted {@link #appendDelta(DependencyGraphDelta, String)}, is ignored.
+     *
+     * @return the deltas in the log, in the order they were appended; empty if there is no log.
+     * @throws IOException When the delta log cannot be read.
+     */
+    public static List<DependencyGraphDelta> readDeltas(String path) throws IOException {
+        var log = Path.of(path + DELTA_EXTENSION);
+        var deltas = new ArrayList<DependencyGraphDelta>();
+        if (!Files.exists(log)) {
+            return deltas;
+        }
+        var lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                deltas.add(DependencyGraphDelta.fromJSON(new JSONObject(lines.get(i))));
+            } catch (JSONException e) {
+                if (i < lines.size() - 1) {
+                    throw new IOException("Corrupted delta log " + log + " at line " + (i + 1), e);
+                }
+                logger.warn("Ignoring truncated last line of delta log {}", log);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Loads the compact form of the dependency graph serialized at a path, creating it if it is missing
+     * or older than the serialized graph or its delta log. If no graph is serialized at the path, it is
+     * built from the database first. When the compact form is created, the deltas in the delta log are
+     * applied to it.
+     *
+     * @throws Exception When deserialization or serialization fails.
+     */
+    public static CompactDependencyGraph loadCompactDependencyGraph(DSLContext dbContext, String path)
+            throws Exception {
+        var compact = new File(path + CompactDependencyGraph.EXTENSION);
+        var nodes = new File(path + ".nodes");
+        var delta = new File(path + DELTA_EXTENSION);
+        if (compact.exists() && compact.lastModified() >= nodes.lastModified()
+                && compact.lastModified() >= delta.lastModified()) {
+            logger.info("Found compact dependency graph at {}. Mapping.", compact);
+            try {
+                return CompactDependencyGraph.load(compact);
+            } catch (IOException e) {
+                logger.warn("Could not map compact dependency graph at {}, rewriting it", compact, e);
+            }
+        }
+        var graphOpt = loadDependencyGraph(path);
+        var graph = graphOpt.isPresent() ? graphOpt.get() : buildDependencyGraphFromScratch(dbContext, path);
+        var startTs = System.currentTimeMillis();
+        CompactDependencyGraph.store(graph, compact);
+        logger.info("Wrote compact dependency graph to {}: {} ms", compact, System.currentTimeMillis() - startTs);
+        var deltas = readDeltas(path);
+        if (!deltas.isEmpty()) {
+            startTs = System.currentTimeMillis();
+            var revisions = new ArrayList<Revision>();
+            var edges = new ArrayList<DependencyEdge>();
+            for (var d : deltas) {
+                revisions.addAll(d.revisions);
+                edges.addAll(d.edges);
+            }
+            CompactDependencyGraph.store(CompactDependencyGraph.load(compact), revisions, edges, compact);
+            logger.info("Applied {} deltas ({} revisions, {} edges): {} ms", deltas.size(), revisions.size(),
+                    edges.size(), System.currentTimeMillis() - startTs);
+        }
+        return CompactDependencyGraph.load(compact);
+    }
+
     /**
      * Builds a new dependency graph by connecting to the database and then serializes it to the provided path.
      *
@@ -182,6 +286,8 @@ public final class DependencyGraphUtilities {
         logger.info("Serializing graph to {}", path);
         DependencyGraphUtilities.serializeDependencyGraph(graph, path == null ? "graph.bin" : path);
         logger.info("Finished serializing graph ({} ms)", System.currentTimeMillis() - tsStart);
+        // The graph includes all the revisions in the delta log
+        Files.deleteIfExists(Path.of((path == null ? "graph.bin" : path) + DELTA_EXTENSION));
 
         return graph;
     }
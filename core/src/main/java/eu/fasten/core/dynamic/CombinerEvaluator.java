@@ -34,7 +34,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.fasten.core.data.HybridDirectedGraph;
-import eu.fasten.core.data.MergedDirectedGraph;
 import eu.fasten.core.data.PartialJavaCallGraph;
 import eu.fasten.core.dynamic.data.DynamicJavaCG;
 import eu.fasten.core.merge.CGMerger;
@@ -90,7 +89,7 @@ public class CombinerEvaluator implements Runnable {
         }
         logger.info("Stitching static CGs together");
         var merger = new CGMerger(staticCGs);
-        var stitchedStaticCg = (MergedDirectedGraph) merger.mergeAllDeps();
+        var stitchedStaticCg = merger.mergeAllDeps();
         var staticUrisMap = merger.getAllUris();
         logger.info("Static CG has {} nodes and {} edges", stitchedStaticCg.numNodes(), stitchedStaticCg.numArcs());
 
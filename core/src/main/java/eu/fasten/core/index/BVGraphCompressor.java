@@ -0,0 +1,379 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.io.InputBitStream;
+import it.unimi.dsi.io.NullOutputStream;
+import it.unimi.dsi.io.OutputBitStream;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.CompressionFlags;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/**
+ * Compresses an {@link ImmutableGraph} into an in-memory {@link BVGraph}, without writing files.
+ *
+ * <p>
+ * {@link BVGraph} can only compress graphs by {@linkplain BVGraph#store(ImmutableGraph, CharSequence)
+ * storing} them to files, which must then be {@linkplain BVGraph#load(CharSequence) loaded} back.
+ * This class implements the same (single-threaded) compression algorithm, with the default coding
+ * flags, writing the bit stream to memory and computing the offsets on the fly. Then, it builds by
+ * reflection a {@link BVGraph} equivalent to the one that would be loaded from the files: in
+ * particular, its {@linkplain BVGraphSerializer serialized form} is readable by existing code.
+ *
+ * <p>
+ * Since both the reflective access and the encoding depend on the internals of WebGraph, when this
+ * class is initialized it checks the version of the {@link BVGraph} format, resolves all the
+ * members of {@link BVGraph} it needs, and verifies that {@link BVGraph} decodes correctly a graph
+ * compressed by this class; if anything fails, initialization fails with an
+ * {@link IllegalStateException}, rather than producing graphs that might be silently wrong.
+ */
+public final class BVGraphCompressor {
+	/** The version of the {@link BVGraph} format written by this class. */
+	private static final int BVGRAPH_VERSION = 0;
+	/** The names of the fields of {@link BVGraph} set by {@link #newBVGraph(Object...)}, with the types of their values. */
+	private static final Object[] FIELD_TYPES = {
+			"n", int.class,
+			"m", long.class,
+			"isMemory", boolean.class,
+			"graphMemory", byte[].class,
+			"offsets", EliasFanoMonotoneLongBigList.class,
+			"offsetType", int.class,
+			"windowSize", int.class,
+			"maxRefCount", int.class,
+			"minIntervalLength", int.class,
+			"zetaK", int.class,
+			"flags", int.class,
+			"outdegreeCoding", int.class,
+			"blockCoding", int.class,
+			"residualCoding", int.class,
+			"referenceCoding", int.class,
+			"blockCountCoding", int.class,
+			"offsetCoding", int.class,
+			"outdegreeIbs", InputBitStream.class };
+	/** The (accessible) no-argument constructor of {@link BVGraph}. */
+	private static final Constructor<BVGraph> CONSTRUCTOR;
+	/** The (accessible) fields of {@link BVGraph} listed in {@link #FIELD_TYPES}, in the same order. */
+	private static final Field[] FIELDS = new Field[FIELD_TYPES.length / 2];
+
+	static {
+		if (BVGraph.BVGRAPH_VERSION != BVGRAPH_VERSION) throw new IllegalStateException("Unsupported BVGraph format version " + BVGraph.BVGRAPH_VERSION + " (expected " + BVGRAPH_VERSION + ")");
+		try {
+			CONSTRUCTOR = BVGraph.class.getDeclaredConstructor();
+			CONSTRUCTOR.setAccessible(true);
+		} catch (final NoSuchMethodException e) {
+			throw new IllegalStateException("Unsupported WebGraph version: BVGraph has no no-argument constructor", e);
+		}
+		for (int i = 0; i < FIELDS.length; i++) {
+			final String name = (String)FIELD_TYPES[2 * i];
+			final Class<?> type = (Class<?>)FIELD_TYPES[2 * i + 1];
+			final Field field = FieldUtils.getField(BVGraph.class, name, true);
+			if (field == null || Modifier.isStatic(field.getModifiers()) || !ClassUtils.isAssignable(type, field.getType(), false)) throw new IllegalStateException("Unsupported WebGraph version: BVGraph has no instance field " + name + " of type " + type.getName());
+			FIELDS[i] = field;
+		}
+		check();
+	}
+
+	private final int windowSize;
+	private final int maxRefCount;
+	private final int minIntervalLength;
+	private final int zetaK;
+
+	private final IntArrayList blocks = new IntArrayList();
+	private final IntArrayList extras = new IntArrayList();
+	private final IntArrayList left = new IntArrayList();
+	private final IntArrayList len = new IntArrayList();
+	private final IntArrayList residuals = new IntArrayList();
+
+	private BVGraphCompressor(final int windowSize, final int maxRefCount, final int minIntervalLength, final int zetaK) {
+		this.windowSize = windowSize;
+		this.maxRefCount = maxRefCount;
+		this.minIntervalLength = minIntervalLength;
+		this.zetaK = zetaK;
+	}
+
+	/**
+	 * Compresses a graph in memory using default parameters.
+	 *
+	 * @param graph a graph.
+	 * @param properties if not {@code null}, a property set that will be filled with the main
+	 *            properties of the compressed graph, as {@link BVGraph#store(ImmutableGraph, CharSequence)}
+	 *            would do.
+	 * @return a compressed in-memory version of {@code graph}.
+	 */
+	public static BVGraph compress(final ImmutableGraph graph, final Properties properties) {
+		return compress(graph, BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH, BVGraph.DEFAULT_ZETA_K, properties);
+	}
+
+	/**
+	 * Compresses a graph in memory.
+	 *
+	 * @param graph a graph.
+	 * @param windowSize the window size (0 for no references).
+	 * @param maxRefCount the maximum reference count.
+	 * @param minIntervalLength the minimum interval length ({@link BVGraph#NO_INTERVALS} for no
+	 *            intervals).
+	 * @param zetaK the parameter of the &zeta; code used for residuals.
+	 * @param properties if not {@code null}, a property set that will be filled with the main
+	 *            properties of the compressed graph.
+	 * @return a compressed in-memory version of {@code graph}.
+	 */
+	public static BVGraph compress(final ImmutableGraph graph, final int windowSize, final int maxRefCount, final int minIntervalLength, final int zetaK, final Properties properties) {
+		final BVGraphCompressor compressor = new BVGraphCompressor(windowSize, maxRefCount, minIntervalLength, zetaK);
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		final LongArrayList offsets = new LongArrayList(graph.numNodes() + 1);
+		final long arcs;
+		final long bits;
+		try {
+			final OutputBitStream obs = new OutputBitStream(fbaos, 0);
+			arcs = compressor.compress(graph, obs, offsets);
+			bits = obs.writtenBits();
+			offsets.add(bits);
+			obs.flush();
+		} catch (final IOException cantHappen) {
+			// Not really I/O
+			throw new RuntimeException(cantHappen);
+		}
+		fbaos.trim();
+
+		final int n = graph.numNodes();
+		if (properties != null) {
+			properties.setProperty("graphclass", BVGraph.class.getName());
+			properties.setProperty("version", Integer.toString(BVGraph.BVGRAPH_VERSION));
+			properties.setProperty("nodes", Integer.toString(n));
+			properties.setProperty("arcs", Long.toString(arcs));
+			properties.setProperty("windowsize", Integer.toString(windowSize));
+			properties.setProperty("maxrefcount", Integer.toString(maxRefCount));
+			properties.setProperty("minintervallength", Integer.toString(minIntervalLength));
+			properties.setProperty("zetak", Integer.toString(zetaK));
+			properties.setProperty("compressionflags", "");
+			properties.setProperty("length", Long.toString(bits));
+			properties.setProperty("bitsperlink", Double.toString(arcs == 0 ? 0 : (double)bits / arcs));
+			properties.setProperty("bitspernode", Double.toString(n == 0 ? 0 : (double)bits / n));
+		}
+
+		// Same order as FIELD_TYPES; offset type 1 means random access
+		return newBVGraph(n, arcs, true, fbaos.array, new EliasFanoMonotoneLongBigList(n + 1, fbaos.array.length * 8L + 1, offsets.iterator()), 1,
+				windowSize, maxRefCount, minIntervalLength, zetaK, 0,
+				CompressionFlags.GAMMA, CompressionFlags.GAMMA, CompressionFlags.ZETA, CompressionFlags.UNARY, CompressionFlags.GAMMA, CompressionFlags.GAMMA,
+				new InputBitStream(fbaos.array));
+	}
+
+	/** Builds a {@link BVGraph} with the given values of the fields listed in {@link #FIELD_TYPES}, in the same order. */
+	private static BVGraph newBVGraph(final Object... values) {
+		try {
+			final BVGraph result = CONSTRUCTOR.newInstance();
+			for (int i = 0; i < FIELDS.length; i++) FIELDS[i].set(result, values[i]);
+			return result;
+		} catch (final ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks that a small graph exercising references, blocks, intervals and residuals is decoded
+	 * correctly by {@link BVGraph}, both sequentially and by random access.
+	 */
+	private static void check() {
+		final ArrayListMutableGraph graph = new ArrayListMutableGraph(64);
+		for (int x = 0; x < 64; x++) {
+			for (int y = 0; y < 64; y++) if (x != y && ((x * 7 + y * 3) % 5 != 0 || Math.abs(x - y) < 8)) graph.addArc(x, y);
+		}
+		final ImmutableGraph expected = graph.immutableView();
+		final BVGraph actual = compress(expected, null);
+		final NodeIterator nodeIterator = actual.nodeIterator();
+		for (int x = 0; x < expected.numNodes(); x++) {
+			nodeIterator.nextInt();
+			final int[] successors = Arrays.copyOf(expected.successorArray(x), expected.outdegree(x));
+			if (!Arrays.equals(successors, Arrays.copyOf(nodeIterator.successorArray(), nodeIterator.outdegree()))
+					|| !Arrays.equals(successors, Arrays.copyOf(actual.successorArray(x), actual.outdegree(x)))) {
+				throw new IllegalStateException("Unsupported WebGraph version: BVGraph decodes incorrectly the successors of node " + x + " of a test graph");
+			}
+		}
+	}
+
+	/**
+	 * Writes the compressed bit stream of a graph.
+	 *
+	 * @return the number of arcs.
+	 */
+	private long compress(final ImmutableGraph graph, final OutputBitStream obs, final LongArrayList offsets) throws IOException {
+		final OutputBitStream bitCount = new OutputBitStream(NullOutputStream.getInstance(), 0);
+		final int cyclicBufferSize = windowSize + 1;
+		final int[][] list = new int[cyclicBufferSize][1024];
+		final int[] listLen = new int[cyclicBufferSize];
+		final int[] refCount = new int[cyclicBufferSize];
+		long arcs = 0;
+
+		final NodeIterator nodeIterator = graph.nodeIterator();
+		for (int i = 0; i < graph.numNodes(); i++) {
+			nodeIterator.nextInt();
+			final int outd = nodeIterator.outdegree();
+			final int currIndex = i % cyclicBufferSize;
+			offsets.add(obs.writtenBits());
+			obs.writeGamma(outd);
+			if (outd > list[currIndex].length) list[currIndex] = IntArrays.ensureCapacity(list[currIndex], outd);
+			System.arraycopy(nodeIterator.successorArray(), 0, list[currIndex], 0, outd);
+			listLen[currIndex] = outd;
+			arcs += outd;
+			if (outd == 0) continue;
+
+			// We try all candidate references in the window, including no reference at all (r = 0)
+			long bestComp = Long.MAX_VALUE;
+			int bestCand = -1, bestRef = -1;
+			refCount[currIndex] = -1;
+			for (int r = 0; r < cyclicBufferSize; r++) {
+				final int cand = (i - r + cyclicBufferSize) % cyclicBufferSize;
+				if (refCount[cand] < maxRefCount && listLen[cand] != 0) {
+					final long t = diffComp(bitCount, i, r, list[cand], listLen[cand], list[currIndex], outd);
+					if (t < bestComp) {
+						bestCand = cand;
+						bestComp = t;
+						bestRef = r;
+					}
+				}
+			}
+			refCount[currIndex] = refCount[bestCand] + 1;
+			diffComp(obs, i, bestRef, list[bestCand], listLen[bestCand], list[currIndex], outd);
+		}
+		return arcs;
+	}
+
+	/**
+	 * Writes the successor list of a node, given a reference list (the node outdegree has already
+	 * been written).
+	 *
+	 * @return the number of bits written.
+	 */
+	private long diffComp(final OutputBitStream obs, final int currNode, final int ref, final int[] refList, int refLen, final int[] currList, final int currLen) throws IOException {
+		final long writtenBitsAtStart = obs.writtenBits();
+		int j = 0, k = 0, currBlockLen = 0;
+		boolean copying = true;
+		if (ref == 0) refLen = 0;
+		blocks.clear();
+		extras.clear();
+
+		// We build the list of blocks alternatively copied and skipped from the reference list
+		while (j < currLen && k < refLen) {
+			if (copying) {
+				if (currList[j] > refList[k]) {
+					blocks.add(currBlockLen);
+					copying = false;
+					currBlockLen = 0;
+				} else if (currList[j] < refList[k]) extras.add(currList[j++]);
+				else {
+					j++;
+					k++;
+					currBlockLen++;
+				}
+			} else {
+				if (currList[j] < refList[k]) extras.add(currList[j++]);
+				else if (currList[j] > refList[k]) {
+					k++;
+					currBlockLen++;
+				} else {
+					blocks.add(currBlockLen);
+					copying = true;
+					currBlockLen = 0;
+				}
+			}
+		}
+		// The last block is implicit, unless we were copying and did not reach the end of the reference list
+		if (copying && k < refLen) blocks.add(currBlockLen);
+		while (j < currLen) extras.add(currList[j++]);
+
+		if (windowSize > 0) obs.writeUnary(ref);
+		if (ref != 0) {
+			final int blockCount = blocks.size();
+			obs.writeGamma(blockCount);
+			// All block lengths except for the first one are decremented
+			for (int i = 0; i < blockCount; i++) obs.writeGamma(i == 0 ? blocks.getInt(i) : blocks.getInt(i) - 1);
+		}
+
+		if (!extras.isEmpty()) {
+			final IntArrayList residual;
+			int prev = 0;
+			if (minIntervalLength != BVGraph.NO_INTERVALS) {
+				intervalize();
+				obs.writeGamma(left.size());
+				for (int i = 0; i < left.size(); i++) {
+					if (i == 0) obs.writeLongGamma(Fast.int2nat((long)left.getInt(i) - currNode));
+					else obs.writeGamma(left.getInt(i) - prev - 1);
+					prev = left.getInt(i) + len.getInt(i);
+					obs.writeGamma(len.getInt(i) - minIntervalLength);
+				}
+				residual = residuals;
+			} else residual = extras;
+
+			for (int i = 0; i < residual.size(); i++) {
+				final int s = residual.getInt(i);
+				if (i == 0) obs.writeLongZeta(Fast.int2nat((long)s - currNode), zetaK);
+				else {
+					if (s == prev) throw new IllegalArgumentException("Repeated successor " + prev + " in successor list of node " + currNode);
+					obs.writeZeta(s - prev - 1, zetaK);
+				}
+				prev = s;
+			}
+		}
+		return obs.writtenBits() - writtenBitsAtStart;
+	}
+
+	/**
+	 * Splits {@link #extras} into intervals of consecutive integers of length at least
+	 * {@link #minIntervalLength}, stored in {@link #left} and {@link #len}, and {@link #residuals}.
+	 */
+	private void intervalize() {
+		left.clear();
+		len.clear();
+		residuals.clear();
+		final int[] v = extras.elements();
+		final int vl = extras.size();
+		for (int i = 0; i < vl; i++) {
+			int j = 0;
+			if (i < vl - 1 && v[i] + 1 == v[i + 1]) {
+				do j++; while (i + j < vl - 1 && v[i + j] + 1 == v[i + j + 1]);
+				j++;
+				// Now j is the number of integers in the interval
+				if (j >= minIntervalLength) {
+					left.add(v[i]);
+					len.add(j);
+					i += j - 1;
+				}
+			}
+			if (j < minIntervalLength) residuals.add(v[i]);
+		}
+	}
+}
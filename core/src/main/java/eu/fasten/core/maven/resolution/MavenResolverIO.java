@@ -69,22 +69,46 @@ public class MavenResolverIO {
     public IMavenResolver loadResolver() {
         LOG.info("Loading MavenResolver (base folder: {})", baseDir);
 
-        var poms = hasSerialization() //
-                ? readFromDisk() //
-                : readFromDB();
+        Set<Pom> poms = null;
+        if (isSnapshotUpToDate()) {
+            try {
+                poms = readFromSnapshot();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not read snapshot {}, falling back to {}", snapshotFile(), dbFile(), e);
+            }
+        } else if (snapshotFile().exists()) {
+            LOG.info("Snapshot {} is older than {}, recreating it", snapshotFile(), dbFile());
+        }
+
+        if (poms == null) {
+            poms = dbFile().exists() //
+                    ? readFromDisk() //
+                    : readFromDB();
 
-        if (!hasSerialization()) {
-            saveToDisk(poms);
+            if (!dbFile().exists()) {
+                saveToDisk(poms);
+            }
+            saveSnapshot(poms);
         }
 
         return initResolver(poms);
     }
 
+    /**
+     * Returns whether the snapshot exists and is at least as recent as the JSON serialization, if any
+     * (e.g., the latter has not been replaced since the snapshot was written).
+     */
+    private boolean isSnapshotUpToDate() {
+        var snapshot = snapshotFile();
+        var json = dbFile();
+        return snapshot.exists() && (!json.exists() || snapshot.lastModified() >= json.lastModified());
+    }
+
     public boolean hasSerialization() {
-        return dbFile().exists();
+        return dbFile().exists() || snapshotFile().exists();
     }
 
-    private Set<Pom> readFromDisk() {
+    public Set<Pom> readFromDisk() {
         var f = dbFile();
         LOG.info("Reading poms from {} ...", f);
         try {
@@ -107,6 +131,30 @@ public class MavenResolverIO {
         }
     }
 
+    /**
+     * Reads the poms from the binary snapshot, which is much faster than reading them from JSON (see
+     * {@link PomSnapshot}).
+     */
+    public Set<Pom> readFromSnapshot() throws IOException {
+        var f = snapshotFile();
+        LOG.info("Reading poms from snapshot {} ...", f);
+        return PomSnapshot.open(f, om).poms();
+    }
+
+    /**
+     * Writes the binary snapshot read by later calls of {@link #loadResolver()}; as the snapshot can be
+     * recreated from JSON or from the DB, failures are logged only.
+     */
+    public void saveSnapshot(Set<Pom> poms) {
+        var to = snapshotFile();
+        LOG.info("Saving snapshot of poms to {} ...", to);
+        try {
+            PomSnapshot.write(poms, to, om);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not save snapshot {}", to, e);
+        }
+    }
+
     private File tmpFile() {
         return Paths.get(baseDir.getAbsolutePath(), "poms.json-tmp").toFile();
     }
@@ -115,6 +163,10 @@ public class MavenResolverIO {
         return Paths.get(baseDir.getAbsolutePath(), "poms.json").toFile();
     }
 
+    private File snapshotFile() {
+        return Paths.get(baseDir.getAbsolutePath(), "poms.snapshot").toFile();
+    }
+
     public Set<Pom> readFromDB() {
         LOG.info("Collecting poms from DB ...");
 
@@ -0,0 +1,544 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fasten.core.maven.resolution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import dev.c0ps.maven.data.Pom;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * A compact binary snapshot of a set of {@link Pom}s, which loads much faster than the same set
+ * serialized as JSON.
+ *
+ * <p>
+ * Each POM is stored as its JSON tree, as mapped by the given {@link ObjectMapper}, so that the snapshot
+ * follows the JSON representation of POMs without depending on the internals of the data classes. All
+ * strings (field names and values, e.g., coordinates, scopes and version constraints) are interned in a
+ * string table, sorted by decreasing frequency, and referenced by varint ids; numbers and sizes (e.g., of
+ * dependency lists) are varints as well. The POMs are sorted by coordinate, and a coordinate index maps
+ * each coordinate to the offset of its POM, so that {@linkplain #find(String, String, String) single POMs}
+ * can be decoded without decoding the whole snapshot. POMs are stored in chunks, each with its CRC32C
+ * checksum, which are memory-mapped and {@linkplain #poms() decoded in parallel}.
+ *
+ * <p>
+ * The layout of a snapshot is:
+ * <ul>
+ * <li>a header: magic number, format version, number of POMs, of strings and of chunks (ints), the length
+ * of the UTF-8 bytes of the strings (an int) and the CRC32C checksum of the tables below (a long);
+ * <li>the string table: the offsets of the strings ({@code strings + 1} ints), and their UTF-8 bytes;
+ * <li>the coordinate index: for each POM, the string ids of its group id, artifact id and version (ints),
+ * and the offset of its record in the file (a long);
+ * <li>the chunk table: for each chunk, its offset in the file (a long), its length and its checksum
+ * (ints);
+ * <li>the chunks, each containing the records of {@link #CHUNK_SIZE} consecutive POMs (fewer in the last
+ * chunk).
+ * </ul>
+ * Multi-byte values in the header and tables are big-endian.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public class PomSnapshot {
+
+    public static final int MAGIC = 0x504f4d53; // "POMS"
+    public static final int FORMAT_VERSION = 1;
+    /** The number of POMs in a chunk. */
+    public static final int CHUNK_SIZE = 4096;
+
+    private static final int HEADER_LENGTH = 32;
+    private static final int INDEX_ENTRY_LENGTH = 20;
+    private static final int CHUNK_ENTRY_LENGTH = 16;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte STRING = 4;
+    private static final byte ARRAY = 5;
+    private static final byte OBJECT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte DECIMAL = 8;
+
+    private final ObjectMapper om;
+    private final String[] strings;
+    private final TextNode[] texts;
+    /** The coordinate index, positioned at its start. */
+    private final ByteBuffer index;
+    private final ByteBuffer[] chunks;
+    private final long[] chunkOffsets;
+    private final int[] chunkChecksums;
+    private final int size;
+
+    private PomSnapshot(ObjectMapper om, String[] strings, ByteBuffer index, ByteBuffer[] chunks, long[] chunkOffsets,
+            int[] chunkChecksums, int size) {
+        this.om = om;
+        this.strings = strings;
+        this.texts = new TextNode[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            texts[i] = new TextNode(strings[i]);
+        }
+        this.index = index;
+        this.chunks = chunks;
+        this.chunkOffsets = chunkOffsets;
+        this.chunkChecksums = chunkChecksums;
+        this.size = size;
+    }
+
+    /**
+     * Maps a snapshot and checks the checksum of its tables; the checksums of the chunks are checked as
+     * they are decoded.
+     *
+     * @throws IOException if the file is not a snapshot, or if it is corrupted.
+     */
+    public static PomSnapshot open(File file, ObjectMapper om) throws IOException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                throw new IOException("Truncated POM snapshot " + file);
+            }
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a POM snapshot (or an unsupported version): " + file);
+            }
+            int size = header.getInt();
+            int numStrings = header.getInt();
+            int numChunks = header.getInt();
+            int stringBytes = header.getInt();
+            long checksum = header.getLong();
+            // The header is not covered by a checksum
+            if (size < 0 || numStrings < 0 || stringBytes < 0 || numChunks != (size + (long) CHUNK_SIZE - 1) / CHUNK_SIZE) {
+                throw new IOException("Corrupted header in POM snapshot " + file);
+            }
+
+            long tablesLength = 4L * (numStrings + 1) + stringBytes + (long) INDEX_ENTRY_LENGTH * size
+                    + (long) CHUNK_ENTRY_LENGTH * numChunks;
+            if (tablesLength > Integer.MAX_VALUE || HEADER_LENGTH + tablesLength > channel.size()) {
+                throw new IOException("Truncated POM snapshot " + file);
+            }
+            var tables = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, tablesLength);
+            var crc = new CRC32C();
+            crc.update(tables.duplicate());
+            if (crc.getValue() != checksum) {
+                throw new IOException("Checksum mismatch in the tables of POM snapshot " + file);
+            }
+
+            var offsets = new int[numStrings + 1];
+            tables.asIntBuffer().get(offsets);
+            tables.position(4 * (numStrings + 1));
+            var utf8 = new byte[stringBytes];
+            tables.get(utf8);
+            var strings = new String[numStrings];
+            for (int i = 0; i < numStrings; i++) {
+                strings[i] = new String(utf8, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+
+            var index = tables.slice();
+            index.limit(INDEX_ENTRY_LENGTH * size);
+            tables.position(tables.position() + INDEX_ENTRY_LENGTH * size);
+
+            var chunks = new ByteBuffer[numChunks];
+            var chunkOffsets = new long[numChunks];
+            var chunkChecksums = new int[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                chunkOffsets[i] = tables.getLong();
+                int length = tables.getInt();
+                chunkChecksums[i] = tables.getInt();
+                if (chunkOffsets[i] < 0 || length < 0 || chunkOffsets[i] + length > channel.size()) {
+                    throw new IOException("Truncated POM snapshot " + file);
+                }
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffsets[i], length);
+            }
+            return new PomSnapshot(om, strings, index, chunks, chunkOffsets, chunkChecksums, size);
+        }
+    }
+
+    /** Returns the number of POMs in the snapshot. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes all the POMs of the snapshot, one chunk per task, in parallel.
+     *
+     * @throws IOException if the checksum of a chunk does not match.
+     */
+    public Set<Pom> poms() throws IOException {
+        try {
+            return IntStream.range(0, chunks.length).parallel() //
+                    .mapToObj(this::decodeChunk) //
+                    .flatMap(List::stream) //
+                    .collect(Collectors.toCollection(HashSet::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Looks up a POM in the coordinate index and decodes it.
+     *
+     * @return the POM with the given coordinate, or {@code null} if the snapshot does not contain it.
+     */
+    public Pom find(String groupId, String artifactId, String version) {
+        int i = indexOf(groupId, artifactId, version);
+        if (i < 0) {
+            return null;
+        }
+        int chunk = i / CHUNK_SIZE;
+        var in = chunks[chunk].duplicate();
+        in.position((int) (index.getLong(i * INDEX_ENTRY_LENGTH + 12) - chunkOffsets[chunk]));
+        return toPom(decode(in));
+    }
+
+    /** Returns the position of a coordinate in the coordinate index, or -1 if the snapshot does not contain it. */
+    int indexOf(String groupId, String artifactId, String version) {
+        var key = new String[] { groupId, artifactId, version };
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareCoordinate(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareCoordinate(int pom, String[] key) {
+        for (int i = 0; i < key.length; i++) {
+            int cmp = strings[index.getInt(pom * INDEX_ENTRY_LENGTH + 4 * i)].compareTo(key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private List<Pom> decodeChunk(int chunk) {
+        var in = chunks[chunk].duplicate();
+        var crc = new CRC32C();
+        crc.update(in.duplicate());
+        if ((int) crc.getValue() != chunkChecksums[chunk]) {
+            throw new UncheckedIOException(new IOException("Checksum mismatch in chunk " + chunk + " of POM snapshot"));
+        }
+        var poms = new ArrayList<Pom>(Math.min(CHUNK_SIZE, size - chunk * CHUNK_SIZE));
+        while (in.hasRemaining()) {
+            poms.add(toPom(decode(in)));
+        }
+        return poms;
+    }
+
+    private Pom toPom(JsonNode node) {
+        try {
+            return om.treeToValue(node, Pom.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private JsonNode decode(ByteBuffer in) {
+        switch (in.get()) {
+        case NULL:
+            return NullNode.getInstance();
+        case FALSE:
+            return BooleanNode.FALSE;
+        case TRUE:
+            return BooleanNode.TRUE;
+        case INTEGER:
+            long value = readVarLong(in);
+            value = (value >>> 1) ^ -(value & 1);
+            return value == (int) value ? IntNode.valueOf((int) value) : LongNode.valueOf(value);
+        case STRING:
+            return texts[readVarInt(in)];
+        case ARRAY:
+            int length = readVarInt(in);
+            var array = new ArrayNode(JsonNodeFactory.instance, length);
+            for (int i = 0; i < length; i++) {
+                array.add(decode(in));
+            }
+            return array;
+        case OBJECT:
+            int fields = readVarInt(in);
+            var object = new ObjectNode(JsonNodeFactory.instance);
+            for (int i = 0; i < fields; i++) {
+                var name = strings[readVarInt(in)];
+                object.set(name, decode(in));
+            }
+            return object;
+        case DOUBLE:
+            return DoubleNode.valueOf(in.getDouble());
+        case DECIMAL:
+            return DecimalNode.valueOf(new BigDecimal(strings[readVarInt(in)]));
+        default:
+            throw new IllegalStateException("Corrupted POM snapshot at offset " + (in.position() - 1));
+        }
+    }
+
+    /**
+     * Writes a snapshot of a set of POMs. The snapshot is written to a temporary file first, and then
+     * moved to the given file, so that a reader never sees a partial snapshot.
+     */
+    public static void write(Collection<Pom> poms, File file, ObjectMapper om) throws IOException {
+        List<JsonNode> trees = poms.parallelStream().<JsonNode>map(om::valueToTree).collect(Collectors.toList());
+        write(trees, file);
+    }
+
+    /** Writes a snapshot of the given JSON trees; see {@link #write(Collection, File, ObjectMapper)}. */
+    static void write(List<JsonNode> trees, File file) throws IOException {
+        // Interned strings, the most frequent first, so that they have the shortest ids
+        var frequencies = new Object2IntOpenHashMap<String>();
+        for (var tree : trees) {
+            countStrings(tree, frequencies);
+            for (var field : new String[] { "groupId", "artifactId", "version" }) {
+                frequencies.addTo(coordinate(tree, field), 1);
+            }
+        }
+        var strings = frequencies.keySet().toArray(new String[0]);
+        Arrays.sort(strings, Comparator.comparingInt(frequencies::getInt).reversed());
+        var ids = new Object2IntOpenHashMap<String>(strings.length);
+        for (int i = 0; i < strings.length; i++) {
+            ids.put(strings[i], i);
+        }
+
+        var order = IntStream.range(0, trees.size()).boxed() //
+                .sorted(Comparator.<Integer, String>comparing(i -> coordinate(trees.get(i), "groupId")) //
+                        .thenComparing(i -> coordinate(trees.get(i), "artifactId")) //
+                        .thenComparing(i -> coordinate(trees.get(i), "version"))) //
+                .mapToInt(Integer::intValue).toArray();
+
+        // Encode chunks in parallel; each one records the offsets of its POMs, relative to its start
+        int numChunks = (order.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        var relativeOffsets = new int[order.length];
+        var chunks = IntStream.range(0, numChunks).parallel().mapToObj(c -> {
+            var out = new ByteArrayOutputStream();
+            for (int i = c * CHUNK_SIZE; i < Math.min(order.length, (c + 1) * CHUNK_SIZE); i++) {
+                relativeOffsets[i] = out.size();
+                encode(trees.get(order[i]), ids, out);
+            }
+            return out.toByteArray();
+        }).toArray(byte[][]::new);
+
+        var utf8 = new byte[strings.length][];
+        int stringBytes = 0;
+        for (int i = 0; i < strings.length; i++) {
+            utf8[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+            stringBytes += utf8[i].length;
+        }
+        long tablesLength = 4L * (strings.length + 1) + stringBytes + (long) INDEX_ENTRY_LENGTH * order.length
+                + (long) CHUNK_ENTRY_LENGTH * numChunks;
+        if (tablesLength > Integer.MAX_VALUE) {
+            throw new IOException("Too many POMs for a snapshot: " + order.length);
+        }
+        var tables = ByteBuffer.allocate((int) tablesLength);
+        int offset = 0;
+        for (var bytes : utf8) {
+            tables.putInt(offset);
+            offset += bytes.length;
+        }
+        tables.putInt(offset);
+        for (var bytes : utf8) {
+            tables.put(bytes);
+        }
+        var chunkOffsets = new long[numChunks];
+        long chunkOffset = HEADER_LENGTH + tablesLength;
+        for (int c = 0; c < numChunks; c++) {
+            chunkOffsets[c] = chunkOffset;
+            chunkOffset += chunks[c].length;
+        }
+        for (int i = 0; i < order.length; i++) {
+            var tree = trees.get(order[i]);
+            tables.putInt(ids.getInt(coordinate(tree, "groupId")));
+            tables.putInt(ids.getInt(coordinate(tree, "artifactId")));
+            tables.putInt(ids.getInt(coordinate(tree, "version")));
+            tables.putLong(chunkOffsets[i / CHUNK_SIZE] + relativeOffsets[i]);
+        }
+        for (int c = 0; c < numChunks; c++) {
+            var crc = new CRC32C();
+            crc.update(chunks[c]);
+            tables.putLong(chunkOffsets[c]);
+            tables.putInt(chunks[c].length);
+            tables.putInt((int) crc.getValue());
+        }
+        tables.flip();
+        var crc = new CRC32C();
+        crc.update(tables.duplicate());
+
+        var header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(order.length).putInt(strings.length).putInt(numChunks)
+                .putInt(stringBytes).putLong(crc.getValue());
+        header.flip();
+
+        var tmp = new File(file.getPath() + "-tmp");
+        try {
+            try (var channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, header);
+                writeFully(channel, tables);
+                for (var chunk : chunks) {
+                    writeFully(channel, ByteBuffer.wrap(chunk));
+                }
+                channel.force(true);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // After a successful move there is nothing left to delete
+            tmp.delete();
+        }
+    }
+
+    /** Decodes the JSON trees of all the POMs in the snapshot, in coordinate order. */
+    List<JsonNode> trees() {
+        var trees = new ArrayList<JsonNode>(size);
+        for (var chunk : chunks) {
+            var in = chunk.duplicate();
+            while (in.hasRemaining()) {
+                trees.add(decode(in));
+            }
+        }
+        return trees;
+    }
+
+    private static String coordinate(JsonNode tree, String field) {
+        return tree.path(field).asText("");
+    }
+
+    private static void countStrings(JsonNode node, Object2IntOpenHashMap<String> frequencies) {
+        if (node.isTextual()) {
+            frequencies.addTo(node.textValue(), 1);
+        } else if (node.isBigDecimal() || node.isBigInteger() && !node.canConvertToLong()) {
+            frequencies.addTo(node.asText(), 1);
+        } else if (node.isArray()) {
+            for (var element : node) {
+                countStrings(element, frequencies);
+            }
+        } else if (node.isObject()) {
+            var fields = node.fields();
+            while (fields.hasNext()) {
+                var field = fields.next();
+                frequencies.addTo(field.getKey(), 1);
+                countStrings(field.getValue(), frequencies);
+            }
+        }
+    }
+
+    private static void encode(JsonNode node, Object2IntOpenHashMap<String> ids, ByteArrayOutputStream out) {
+        if (node.isNull() || node.isMissingNode()) {
+            out.write(NULL);
+        } else if (node.isBoolean()) {
+            out.write(node.booleanValue() ? TRUE : FALSE);
+        } else if (node.isTextual()) {
+            out.write(STRING);
+            writeVarLong(ids.getInt(node.textValue()), out);
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            out.write(INTEGER);
+            long value = node.longValue();
+            writeVarLong((value << 1) ^ (value >> 63), out);
+        } else if (node.isDouble() || node.isFloat()) {
+            out.write(DOUBLE);
+            long bits = Double.doubleToRawLongBits(node.doubleValue());
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+        } else if (node.isNumber()) {
+            out.write(DECIMAL);
+            writeVarLong(ids.getInt(node.asText()), out);
+        } else if (node.isArray()) {
+            out.write(ARRAY);
+            writeVarLong(node.size(), out);
+            for (var element : node) {
+                encode(element, ids, out);
+            }
+        } else if (node.isObject()) {
+            out.write(OBJECT);
+            writeVarLong(node.size(), out);
+            var fields = node.fields();
+            while (fields.hasNext()) {
+                var field = fields.next();
+                writeVarLong(ids.getInt(field.getKey()), out);
+                encode(field.getValue(), ids, out);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON node in POM: " + node.getNodeType());
+        }
+    }
+
+    private static void writeVarLong(long value, ByteArrayOutputStream out) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
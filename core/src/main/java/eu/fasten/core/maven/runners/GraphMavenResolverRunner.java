@@ -72,7 +72,7 @@ public class GraphMavenResolverRunner implements Runnable {
 
         DSLContext dbContext;
         try {
-            dbContext = PostgresConnector.getDSLContext(dbUrl, dbUser, true);
+            dbContext = PostgresConnector.getPooledDSLContext(dbUrl, dbUser, true);
         } catch (SQLException e) {
             logger.error("Could not connect to the database", e);
             return;
@@ -9,11 +9,13 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maven.data.ResolvedRevision;
 import eu.fasten.core.data.Constants;
 import eu.fasten.core.dbconnectors.PostgresConnector;
@@ -22,7 +24,9 @@ import eu.fasten.core.maven.resolution.NativeMavenResolver;
 import picocli.CommandLine;
 
 /**
- * This class is a benchmark for MavenResolver to compare database and online resolution
+ * This class is a benchmark for MavenResolver to compare database and online resolution. With
+ * {@code --load}, it compares instead the time and heap needed to load the poms of the resolver from
+ * {@code poms.json} and from the binary snapshot.
  */
 @CommandLine.Command(name = "MavenResolverBenchmark")
 public class MavenResolverBenchmark implements Runnable {
@@ -54,6 +58,10 @@ public class MavenResolverBenchmark implements Runnable {
             description = "Path to where the serialized graph is stored")
     String graphPath;
 
+    @CommandLine.Option(names = {"-l", "--load"},
+            description = "Compare loading the poms from JSON and from the snapshot in the graph path")
+    boolean compareLoading;
+
     /**
      * NB! Before running main() make sure to run POM Analyzer on the same coordinates as benchmark
      */
@@ -64,6 +72,10 @@ public class MavenResolverBenchmark implements Runnable {
 
     @Override
     public void run() {
+        if (compareLoading) {
+            compareLoading();
+            return;
+        }
         Scanner input;
         try {
             input = new Scanner(new File(file));
@@ -76,7 +88,7 @@ public class MavenResolverBenchmark implements Runnable {
         }
         DSLContext dbContext;
         try {
-            dbContext = PostgresConnector.getDSLContext(dbUrl, dbUser, true);
+            dbContext = PostgresConnector.getPooledDSLContext(dbUrl, dbUser, true);
         } catch (SQLException e) {
             logger.error("Could not connect to the database", e);
             return;
@@ -141,4 +153,36 @@ public class MavenResolverBenchmark implements Runnable {
         logger.info("Online resolution success rate: " + (float) onlineResolutionSuccess / (float) onlineCount);
         logger.info("--------------------------------------------------");
     }
+
+    private void compareLoading() {
+        var io = new MavenResolverIO(null, new File(graphPath));
+        try {
+            var json = measure("JSON", io::readFromDisk);
+            io.saveSnapshot(json);
+            json = null;
+            var snapshot = measure("Snapshot", io::readFromSnapshot);
+            logger.info("Loaded {} poms from the snapshot", snapshot.size());
+        } catch (Exception e) {
+            logger.error("Could not load the poms", e);
+        }
+    }
+
+    private static Set<Pom> measure(String name, Callable<Set<Pom>> loader) throws Exception {
+        var before = usedHeap();
+        var start = System.nanoTime();
+        var poms = loader.call();
+        var elapsed = System.nanoTime() - start;
+        var heap = usedHeap() - before;
+        logger.info("{}: loaded {} poms in {} ms, using {} MiB of heap", name, poms.size(), elapsed / 1_000_000,
+                heap >> 20);
+        return poms;
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
@@ -58,6 +58,6 @@ public class MyRunner {
     }
 
     private static DSLContext getDbContext() throws SQLException {
-        return PostgresConnector.getDSLContext("jdbc:postgresql://localhost:5432/fasten_java", "fasten", false);
+        return PostgresConnector.getPooledDSLContext("jdbc:postgresql://localhost:5432/fasten_java", "fasten", false);
     }
 }
\ No newline at end of file
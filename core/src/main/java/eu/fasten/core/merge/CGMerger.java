@@ -20,22 +20,18 @@ package eu.fasten.core.merge;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.jgrapht.Graphs;
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Record3;
@@ -47,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
+import eu.fasten.core.data.ArrayImmutableDirectedGraph;
 import eu.fasten.core.data.Constants;
 import eu.fasten.core.data.DirectedGraph;
 import eu.fasten.core.data.FastenJavaURI;
@@ -54,8 +51,8 @@ import eu.fasten.core.data.FastenURI;
 import eu.fasten.core.data.JavaNode;
 import eu.fasten.core.data.JavaScope;
 import eu.fasten.core.data.JavaType;
-import eu.fasten.core.data.MergedDirectedGraph;
 import eu.fasten.core.data.PartialJavaCallGraph;
+import eu.fasten.core.data.callableindex.ClassHierarchyFragment;
 import eu.fasten.core.data.callableindex.GraphMetadata;
 import eu.fasten.core.data.callableindex.RocksDao;
 import eu.fasten.core.data.metadatadb.codegen.tables.Callables;
@@ -63,19 +60,16 @@ import eu.fasten.core.data.metadatadb.codegen.tables.ModuleNames;
 import eu.fasten.core.data.metadatadb.codegen.tables.Modules;
 import eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions;
 import eu.fasten.core.data.metadatadb.codegen.tables.Packages;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongLongPair;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
-import it.unimi.dsi.fastutil.longs.LongSets;
 
 public class CGMerger {
 
     private static final Logger logger = LoggerFactory.getLogger(CGMerger.class);
 
-    private final Map<String, List<String>> universalChildren;
-    private final Map<String, List<String>> universalParents;
-    private final Map<String, Map<String, LongSet>> typeDictionary;
+    private final TypeDictionary typeDictionary;
 
     private DSLContext dbContext;
     private RocksDao rocksDao;
@@ -110,21 +104,18 @@ public class CGMerger {
      */
     public CGMerger(final List<PartialJavaCallGraph> dependencySet, boolean withExternals) {
 
-        final var UCH = createUniversalCHA(dependencySet);
-        this.universalParents = UCH.getLeft();
-        this.universalChildren = UCH.getRight();
+        final var dictionary = new TypeDictionary.Builder();
+        createUniversalCHA(dependencySet, dictionary);
         this.allUris = HashBiMap.create();
         if (withExternals) {
             this.externalUris = new HashMap<>();
         }
-        final var graphAndDict = getDirectedGraphsAndTypeDict(dependencySet);
-        this.ercgDependencySet = graphAndDict.getLeft();
-        this.typeDictionary = graphAndDict.getRight();
+        this.ercgDependencySet = getDirectedGraphsAndTypeDict(dependencySet, dictionary);
+        this.typeDictionary = dictionary.build();
     }
 
-    private Pair<List<Pair<DirectedGraph, PartialJavaCallGraph>>, Map<String, Map<String,
-            LongSet>>> getDirectedGraphsAndTypeDict(
-            final List<PartialJavaCallGraph> dependencySet) {
+    private List<Pair<DirectedGraph, PartialJavaCallGraph>> getDirectedGraphsAndTypeDict(
+            final List<PartialJavaCallGraph> dependencySet, final TypeDictionary.Builder dictionary) {
 
         List<Pair<DirectedGraph, PartialJavaCallGraph>> depSet = new ArrayList<>();
         long offset = 0L;
@@ -134,26 +125,22 @@ public class CGMerger {
             depSet.add(ImmutablePair.of(directedDep, dep));
         }
 
-        Map<String, Map<String, LongSet>> typeDict = new HashMap<>();
         for (final var rcg : dependencySet) {
             final var uris = rcg.mapOfFullURIStrings();
             for (final var type : rcg.getClassHierarchy().get(JavaScope.internalTypes).entrySet()) {
                 type.getValue().getDefinedMethods().forEach((signature, node) -> {
                     final var localId = type.getValue().getMethodKey(node);
-                    final var oldType = typeDict.getOrDefault(type.getKey(), new HashMap<>());
-                    final var oldNode = oldType.getOrDefault(node.getSignature(), new LongOpenHashSet());
-                    oldNode.add(this.allUris.inverse().get(uris.get(localId)).longValue());
-                    oldType.put(node.getSignature(), oldNode);
-                    typeDict.put(type.getKey(), oldType);
+                    dictionary.addCallable(type.getKey(), node.getSignature(),
+                        this.allUris.inverse().get(uris.get(localId)).longValue());
                 });
             }
         }
 
-        return ImmutablePair.of(depSet, typeDict);
+        return depSet;
     }
 
     private DirectedGraph ercgToDirectedGraph(final PartialJavaCallGraph ercg, long offset) {
-        final var result = new MergedDirectedGraph();
+        final var result = new ArrayImmutableDirectedGraph.BulkBuilder();
         final var uris = ercg.mapOfFullURIStrings();
         final var internalNodes = getAllInternalNodes(ercg);
 
@@ -163,7 +150,7 @@ public class CGMerger {
             if (!allUris.containsValue(uri)) {
                 final var updatedNode = node + offset;
                 this.allUris.put(updatedNode, uri);
-                result.addVertex(updatedNode);
+                result.addInternalNode(updatedNode);
             }
         }
 
@@ -177,7 +164,7 @@ public class CGMerger {
             }
         }
 
-        return result;
+        return result.build();
     }
 
     private LongSet getAllInternalNodes(PartialJavaCallGraph pcg) {
@@ -198,13 +185,7 @@ public class CGMerger {
         this.dbContext = dbContext;
         this.rocksDao = rocksDao;
         this.dependencySet = getDependenciesIds(dependencySet, dbContext);
-        final var universalCHA = createUniversalCHA(this.dependencySet, dbContext, rocksDao);
-        this.universalChildren = new HashMap<>(universalCHA.getRight().size());
-        universalCHA.getRight()
-                .forEach((k, v) -> this.universalChildren.put(k, new ArrayList<>(v)));
-        this.universalParents = new HashMap<>(universalCHA.getLeft().size());
-        universalCHA.getLeft().forEach((k, v) -> this.universalParents.put(k, new ArrayList<>(v)));
-        this.typeDictionary = createTypeDictionary();
+        this.typeDictionary = createTypeDictionary(getGraphData(this.dependencySet), dbContext);
     }
 
     /**
@@ -219,13 +200,7 @@ public class CGMerger {
         this.dbContext = dbContext;
         this.rocksDao = rocksDao;
         this.dependencySet = dependencySet;
-        final var universalCHA = createUniversalCHA(dependencySet, dbContext, rocksDao);
-        this.universalChildren = new HashMap<>(universalCHA.getRight().size());
-        universalCHA.getRight()
-                .forEach((k, v) -> this.universalChildren.put(k, new ArrayList<>(v)));
-        this.universalParents = new HashMap<>(universalCHA.getLeft().size());
-        universalCHA.getLeft().forEach((k, v) -> this.universalParents.put(k, new ArrayList<>(v)));
-        this.typeDictionary = createTypeDictionary();
+        this.typeDictionary = createTypeDictionary(getGraphData(dependencySet), dbContext);
     }
 
     /**
@@ -253,7 +228,7 @@ public class CGMerger {
             }
         }
         logger.warn("This cg does not exist in the dependency set.");
-        return new MergedDirectedGraph();
+        return new ArrayImmutableDirectedGraph.BulkBuilder().build();
     }
 
     public BiMap<Long, String> getAllUrisFromDB(DirectedGraph dg){
@@ -358,6 +333,7 @@ public class CGMerger {
      * @param callGraph DirectedGraph of the dependency to stitch
      * @param metadata     GraphMetadata of the dependency to stitch
      * @return merged call graph
+     * @throws CancellationException if the calling thread is interrupted during the merge
      */
     public DirectedGraph mergeWithCHA(final DirectedGraph callGraph, final GraphMetadata metadata) {
         if (callGraph == null) {
@@ -370,13 +346,17 @@ public class CGMerger {
         }
 
         final long totalTime = System.currentTimeMillis();
-        var result = new MergedDirectedGraph();
 
         logger.info("Merging graph with {} nodes and {} edges",
             callGraph.numNodes(), callGraph.numArcs());
-        final Set<LongLongPair> edges = ConcurrentHashMap.newKeySet();
 
-        metadata.gid2NodeMetadata.long2ObjectEntrySet().parallelStream().forEach(entry -> {
+        // Worker threads are not interrupted when the calling thread is, so they check it instead
+        final Thread caller = Thread.currentThread();
+        // Each thread accumulates arcs in a separate builder; builders are then combined
+        final var result = metadata.gid2NodeMetadata.long2ObjectEntrySet().parallelStream().collect(ArrayImmutableDirectedGraph.BulkBuilder::new, (edges, entry) -> {
+            if (caller.isInterrupted()) {
+                throw new CancellationException("Merge interrupted");
+            }
             var sourceId = entry.getLongKey();
             var nodeMetadata = entry.getValue();
             for (var receiver : nodeMetadata.receiverRecords) {
@@ -389,23 +369,19 @@ public class CGMerger {
                 if (!resolve(edges, arc, signature, callGraph.isExternal(sourceId))) {
                     // The target could not be resolved, store it as external node
                     if (isWithExternals()) {
-                        addExternal(result, edges, arc);
+                        addExternal(edges, arc);
                     }
                 }
             }
-        });
-
-        for(LongLongPair edge: edges) {
-            addEdge(result, edge.firstLong(), edge.secondLong());
-        }
+        }, ArrayImmutableDirectedGraph.BulkBuilder::addAll);
 
-        return result;
+        return result.build();
     }
 
     /**
      * Add a non resolved edge to the {@link DirectedGraph}.
      */
-    private synchronized void addExternal(final MergedDirectedGraph result, final Set<LongLongPair> edges, Arc arc) {
+    private synchronized void addExternal(final ArrayImmutableDirectedGraph.BulkBuilder edges, Arc arc) {
         for (String type : arc.target.receiverTypes) {
             // Find external node URI
             Map<String, String> typeMap = this.externalUris.get(type);
@@ -419,12 +395,11 @@ public class CGMerger {
                         // Allocate a global id to the external node
                         target = --this.externalGlobaIds;
 
-                        // Add the external node to the graph if not already there
                         this.allUris.put(target, nodeURI);
-                        result.addExternalNode(target);
                     }
 
-                    edges.add(LongLongPair.of(arc.source, target));
+                    edges.addExternalNode(target);
+                    edges.addArc(arc.source, target);
                 }
             }
         }
@@ -461,56 +436,45 @@ public class CGMerger {
      * @param signature     signature of the target
      * @param isCallback    true, if a given arc is a callback
      */
-    private boolean resolve(final Set<LongLongPair> edges,
+    private boolean resolve(final ArrayImmutableDirectedGraph.BulkBuilder edges,
                          final Arc arc,
                          final String signature,
                          final boolean isCallback) {
-	
-	// Cache frequently accessed variables
-    final Map<String, LongSet> emptyMap = Collections.emptyMap();
-	final LongSet emptyLongSet = LongSets.emptySet();
-	Map<String, Map<String, LongSet>> typeDictionary = this.typeDictionary;
-	Map<String, List<String>> universalParents = this.universalParents;
-	Map<String, List<String>> universalChildren = this.universalChildren;
 
-    boolean resolved = false;
+        final TypeDictionary typeDictionary = this.typeDictionary;
+        final int signatureId = typeDictionary.signatureId(signature);
+        boolean resolved = false;
 
         for (String receiverTypeUri : arc.target.receiverTypes) {
-	    switch (arc.target.callType) {
+            final int typeId = typeDictionary.typeId(receiverTypeUri);
+            switch (arc.target.callType) {
                 case VIRTUAL:
                 case INTERFACE:
                     var foundTarget = false;
 
-                    for (final var target : typeDictionary.getOrDefault(receiverTypeUri,
-                            emptyMap).getOrDefault(signature, emptyLongSet)) {
+                    for (final long target : typeDictionary.callables(typeId, signatureId)) {
                         addCall(edges, arc.source, target, isCallback);
                         resolved = true;
                         foundTarget = true;
                     }
                     if (!foundTarget) {
-                        final var parents = universalParents.get(receiverTypeUri);
+                        final var parents = typeDictionary.parents(typeId);
                         if (parents != null) {
-                            for (final var parentUri : parents) {
-                                for (final var target : typeDictionary.getOrDefault(parentUri,
-                                        emptyMap)
-                                        .getOrDefault(signature, emptyLongSet)) {
-                                    addCall(edges, arc.source, target, isCallback);
+                            for (final int parentId : parents) {
+                                final var targets = typeDictionary.callables(parentId, signatureId);
+                                if (targets.length != 0) {
+                                    addCall(edges, arc.source, targets[0], isCallback);
                                     resolved = true;
                                     foundTarget = true;
                                     break;
                                 }
-                                if (foundTarget) {
-                                    break;
-                                }
                             }
                         }
                         if (!foundTarget) {
-                            final var types = universalChildren.get(receiverTypeUri);
+                            final var types = typeDictionary.children(typeId);
                             if (types != null) {
-                                for (final var depTypeUri : types) {
-                                    for (final var target : typeDictionary.getOrDefault(depTypeUri,
-                                            emptyMap)
-                                            .getOrDefault(signature, emptyLongSet)) {
+                                for (final int depTypeId : types) {
+                                    for (final long target : typeDictionary.callables(depTypeId, signatureId)) {
                                         addCall(edges, arc.source, target,
                                                 isCallback);
                                         resolved = true;
@@ -524,8 +488,7 @@ public class CGMerger {
                     logger.warn("OPAL didn't rewrite the dynamic");
                     break;
                 default:
-                    for (final var target : typeDictionary.getOrDefault(receiverTypeUri,
-                            emptyMap).getOrDefault(signature, emptyLongSet)) {
+                    for (final long target : typeDictionary.callables(typeId, signatureId)) {
                         addCall(edges, arc.source, target, isCallback);
                         resolved = true;
                     }
@@ -542,113 +505,152 @@ public class CGMerger {
     }
 
     /**
-     * Create a mapping from types and method signatures to callable IDs.
+     * Create the type dictionary and universal CHA of the dependencies stored in the graph database.
+     *
+     * <p>The class hierarchy fragments precomputed when graphs were stored are merged first; the
+     * metadata database and the graph metadata are used only for dependencies without a fragment.
+     *
+     * @param graphs    call graphs of dependencies, indexed by ID
+     * @param dbContext DSL context
+     * @return the type dictionary
+     */
+    private TypeDictionary createTypeDictionary(final Long2ObjectMap<DirectedGraph> graphs,
+                                                final DSLContext dbContext) {
+        final var dictionary = new TypeDictionary.Builder();
+        final var withoutFragment = mergeClassHierarchyFragments(graphs, dictionary);
+        if (!withoutFragment.isEmpty()) {
+            createUniversalCHA(withoutFragment, dbContext, dictionary);
+            createTypeDictionary(withoutFragment, dictionary);
+        }
+        return dictionary.build();
+    }
+
+    /**
+     * Add to a type dictionary the class hierarchy fragments and signature tables of dependencies.
      *
-     * @return a type dictionary
+     * @param graphs     call graphs of dependencies, indexed by ID
+     * @param dictionary the type dictionary to fill
+     * @return the call graphs of the dependencies without a class hierarchy fragment, indexed by ID
      */
-    private Map<String, Map<String, LongSet>> createTypeDictionary() {
+    private Long2ObjectMap<DirectedGraph> mergeClassHierarchyFragments(final Long2ObjectMap<DirectedGraph> graphs,
+                                                                       final TypeDictionary.Builder dictionary) {
         final long startTime = System.currentTimeMillis();
-        var result = new HashMap<String, Map<String, LongSet>>();
-        int noCGCounter = 0, noMetadaCounter = 0;
-        for (Long dependencyId : dependencySet) {
-            var cg = getGraphData(dependencyId);
-            if (cg == null) {
-                noCGCounter++;
+        final Long2ObjectMap<ClassHierarchyFragment> fragments;
+        try {
+            fragments = rocksDao.getClassHierarchyFragments(graphs.keySet());
+        } catch (RocksDBException e) {
+            throw new RuntimeException("An exception occurred retrieving class hierarchy fragments from rocks DB", e);
+        }
+        final Long2ObjectMap<DirectedGraph> withoutFragment = new Long2ObjectOpenHashMap<>();
+        for (final var entry : graphs.long2ObjectEntrySet()) {
+            final var fragment = fragments.get(entry.getLongKey());
+            if (fragment == null) {
+                withoutFragment.put(entry.getLongKey(), entry.getValue());
                 continue;
             }
-            var metadata = rocksDao.getGraphMetadata(dependencyId, cg);
-            if (metadata == null) {
-                noMetadaCounter++;
-                continue;
+            for (int t = 0; t < fragment.numTypes(); t++) {
+                dictionary.addSuperTypes(fragment.type(t), fragment.superTypes(t));
+            }
+            for (int i = 0; i < fragment.numCallables(); i++) {
+                dictionary.addCallable(fragment.callableType(i), fragment.callableSignature(i), fragment.callableId(i));
             }
+        }
+        logger.info("Merged {} class hierarchy fragments in {} seconds, {} dependencies without a fragment",
+                fragments.size(),
+                new DecimalFormat("#0.000")
+                        .format((System.currentTimeMillis() - startTime) / 1000d),
+                withoutFragment.size());
+        return withoutFragment;
+    }
 
-            final var nodesData = metadata.gid2NodeMetadata;
-            for (final var nodeId : nodesData.keySet()) {
-                final var nodeData = nodesData.get(nodeId.longValue());
-                final var typeUri = nodeData.type;
-                final var signaturesMap = result.getOrDefault(typeUri, new HashMap<>());
-                final var signature = nodeData.signature;
-                final var signatureIds = signaturesMap.getOrDefault(signature,
-                    new LongOpenHashSet());
-                signatureIds.add(nodeId.longValue());
-                signaturesMap.put(signature, signatureIds);
-                result.put(typeUri, signaturesMap);
+    /**
+     * Add to a type dictionary the mapping from types and method signatures to callable IDs.
+     *
+     * @param graphs     call graphs of dependencies, indexed by ID
+     * @param dictionary the type dictionary to fill
+     */
+    private void createTypeDictionary(final Long2ObjectMap<DirectedGraph> graphs,
+                                      final TypeDictionary.Builder dictionary) {
+        final long startTime = System.currentTimeMillis();
+        int numCallables = 0;
+        final Long2ObjectMap<GraphMetadata> metadataMap;
+        try {
+            metadataMap = rocksDao.getGraphMetadata(graphs.keySet());
+        } catch (RocksDBException e) {
+            throw new RuntimeException("An exception occurred retrieving metadata from rocks DB", e);
+        }
+        int noMetadaCounter = graphs.size() - metadataMap.size();
+        for (final var metadata : metadataMap.values()) {
+            for (final var entry : metadata.gid2NodeMetadata.long2ObjectEntrySet()) {
+                final var nodeData = entry.getValue();
+                dictionary.addCallable(nodeData.type, nodeData.signature, entry.getLongKey());
+                numCallables++;
             }
         }
-        logger.info("For {} dependencies failed to retrieve {} graph data and {} metadata " +
-            "from rocks db.", dependencySet.size(), noCGCounter, noMetadaCounter);
+        logger.info("For {} dependencies failed to retrieve {} metadata " +
+            "from rocks db.", graphs.size(), noMetadaCounter);
 
-        logger.info("Created the type dictionary with {} types in {} seconds", result.size(),
+        logger.info("Added {} callables to the type dictionary in {} seconds", numCallables,
                 new DecimalFormat("#0.000")
                         .format((System.currentTimeMillis() - startTime) / 1000d));
-
-        return result;
     }
 
-    private DirectedGraph getGraphData(Long dependencyId) {
-        DirectedGraph cg;
+    /**
+     * Retrieves the call graphs of dependencies with a single batched read.
+     *
+     * @param dependenciesIds dependencies IDs
+     * @return a map from dependency IDs to call graphs; dependencies without a call graph are missing
+     */
+    private Long2ObjectMap<DirectedGraph> getGraphData(final Set<Long> dependenciesIds) {
+        final Long2ObjectMap<DirectedGraph> graphs;
         try {
-            cg = rocksDao.getGraphData(dependencyId);
+            graphs = rocksDao.getGraphData(new LongOpenHashSet(dependenciesIds));
         } catch (RocksDBException e) {
             throw new RuntimeException("An exception occurred retrieving CGs from rocks DB", e);
         }
-        return cg;
+        for (var id : dependenciesIds) {
+            if (!graphs.containsKey(id.longValue())) {
+                logger.error("Couldn't retrieve a call graph with ID: {}", id);
+            }
+        }
+        return graphs;
     }
 
     /**
      * Create a universal CHA for all dependencies including the artifact to resolve.
      *
      * @param dependencies dependencies including the artifact to resolve
-     * @return universal CHA
+     * @param dictionary   the type dictionary that will store the universal CHA
      */
-    private Pair<Map<String, List<String>>, Map<String, List<String>>> createUniversalCHA(
-            final List<PartialJavaCallGraph> dependencies) {
-        final var allPackages = new ArrayList<>(dependencies);
-
-        final var result = new DefaultDirectedGraph<String, DefaultEdge>(DefaultEdge.class);
-        for (final var aPackage : allPackages) {
+    private void createUniversalCHA(final List<PartialJavaCallGraph> dependencies,
+                                    final TypeDictionary.Builder dictionary) {
+        for (final var aPackage : dependencies) {
             for (final var type : aPackage.getClassHierarchy()
                     .get(JavaScope.internalTypes).entrySet()) {
-                if (!result.containsVertex(type.getKey())) {
-                    result.addVertex(type.getKey());
-                }
-                addSuperTypes(result, type.getKey(),
+                dictionary.addSuperTypes(type.getKey(),
                         type.getValue().getSuperClasses()
                                 .stream().map(FastenURI::toString).collect(Collectors.toList()));
-                addSuperTypes(result, type.getKey(),
+                dictionary.addSuperTypes(type.getKey(),
                         type.getValue().getSuperInterfaces()
                                 .stream().map(FastenURI::toString).collect(Collectors.toList()));
             }
         }
-        final Map<String, List<String>> universalParents = new HashMap<>();
-        final Map<String, List<String>> universalChildren = new HashMap<>();
-        for (final var type : result.vertexSet()) {
-
-            final var children = new ArrayList<>(Collections.singletonList(type));
-            children.addAll(getAllChildren(result, type));
-            universalChildren.put(type, children);
-
-            final var parents = new ArrayList<>(Collections.singletonList(type));
-            parents.addAll(getAllParents(result, type));
-            universalParents.put(type, organize(parents));
-        }
-        return ImmutablePair.of(universalParents, universalChildren);
+        dictionary.rootType("/java.lang/Object");
     }
 
     /**
      * Create a universal class hierarchy from all dependencies.
      *
-     * @param dependenciesIds IDs of dependencies
-     * @param dbContext       DSL context
-     * @param rocksDao        rocks DAO
-     * @return universal CHA
+     * @param graphs     call graphs of dependencies, indexed by ID
+     * @param dbContext  DSL context
+     * @param dictionary the type dictionary that will store the universal CHA
      */
-    private Pair<Map<String, Set<String>>, Map<String, Set<String>>> createUniversalCHA(
-            final Set<Long> dependenciesIds, final DSLContext dbContext, final RocksDao rocksDao) {
+    private void createUniversalCHA(final Long2ObjectMap<DirectedGraph> graphs,
+                                    final DSLContext dbContext,
+                                    final TypeDictionary.Builder dictionary) {
         final long startTime = System.currentTimeMillis();
-        var universalCHA = new DefaultDirectedGraph<String, DefaultEdge>(DefaultEdge.class);
 
-        var callables = getCallables(dependenciesIds, rocksDao);
+        var callables = getCallables(graphs);
 
         var modulesIds = dbContext
                 .select(Callables.CALLABLES.MODULE_ID)
@@ -675,116 +677,21 @@ public class CGMerger {
         namespaceResults.forEach(r -> namespaceMap.put(r.value1(), r.value2()));
 
         for (var callable : modules) {
-            if (!universalCHA.containsVertex(namespaceMap.get(callable.value1()))) {
-                universalCHA.addVertex(namespaceMap.get(callable.value1()));
-            }
-
-            try {
-                var superClasses = Arrays.stream(callable.value2()).map(n -> namespaceMap.get(n))
-                        .collect(Collectors.toList());
-                addSuperTypes(universalCHA, namespaceMap.get(callable.value1()), superClasses);
-            } catch (NullPointerException ignore) {
-            }
-            try {
-                var superInterfaces = Arrays.stream(callable.value3()).map(n -> namespaceMap.get(n))
-                        .collect(Collectors.toList());
-                addSuperTypes(universalCHA, namespaceMap.get(callable.value1()), superInterfaces);
-            } catch (NullPointerException ignore) {
+            // Namespaces missing from the database are skipped
+            final var type = namespaceMap.get(callable.value1());
+            if (type == null) {
+                continue;
             }
-        }
-
-        final Map<String, Set<String>> universalParents = new HashMap<>();
-        final Map<String, Set<String>> universalChildren = new HashMap<>();
-        for (final var type : universalCHA.vertexSet()) {
-
-            final var children = new HashSet<>(Collections.singletonList(type));
-            children.addAll(getAllChildren(universalCHA, type));
-            universalChildren.put(type, children);
-
-            final var parents = new HashSet<>(Collections.singletonList(type));
-            parents.addAll(getAllParents(universalCHA, type));
-            universalParents.put(type, parents);
+            dictionary.addSuperTypes(type, Arrays.stream(callable.value2()).map(namespaceMap::get)
+                    .filter(Objects::nonNull).collect(Collectors.toList()));
+            dictionary.addSuperTypes(type, Arrays.stream(callable.value3()).map(namespaceMap::get)
+                    .filter(Objects::nonNull).collect(Collectors.toList()));
         }
 
         logger.info("Created the Universal CHA with {} vertices in {}",
-                universalCHA.vertexSet().size(),
+                dictionary.numHierarchyTypes(),
                 new DecimalFormat("#0.000")
                         .format((System.currentTimeMillis() - startTime) / 1000d));
-
-        return ImmutablePair.of(universalParents, universalChildren);
-    }
-
-    private List<String> organize(ArrayList<String> parents) {
-        final List<String> result = new ArrayList<>();
-        for (String parent : parents) {
-            if (!result.contains(parent) && !parent.equals("/java.lang/Object")) {
-                result.add(parent);
-            }
-        }
-        result.add("/java.lang/Object");
-        return result;
-    }
-
-    /**
-     * Get all parents of a given type.
-     *
-     * @param graph universal CHA
-     * @param type  type uri
-     * @return list of types parents
-     */
-    private List<String> getAllParents(final DefaultDirectedGraph<String, DefaultEdge> graph,
-                                       final String type) {
-        final var children = Graphs.predecessorListOf(graph, type);
-        final List<String> result = new ArrayList<>(children);
-        for (final var child : children) {
-            result.addAll(getAllParents(graph, child));
-        }
-        return result;
-    }
-
-    /**
-     * Get all children of a given type.
-     *
-     * @param graph universal CHA
-     * @param type  type uri
-     * @return list of types children
-     */
-    private List<String> getAllChildren(final DefaultDirectedGraph<String, DefaultEdge> graph,
-                                        final String type) {
-        final var children = Graphs.successorListOf(graph, type);
-        final List<String> result = new ArrayList<>(children);
-        for (final var child : children) {
-            result.addAll(getAllChildren(graph, child));
-        }
-        return result;
-    }
-
-    /**
-     * Add super classes and interfaces to the universal CHA.
-     *
-     * @param result      universal CHA graph
-     * @param sourceTypes source type
-     * @param targetTypes list of target target types
-     */
-    private void addSuperTypes(final DefaultDirectedGraph<String, DefaultEdge> result,
-                               final String sourceTypes,
-                               final List<String> targetTypes) {
-        for (final var superClass : targetTypes) {
-            if (!result.containsVertex(superClass)) {
-                result.addVertex(superClass);
-            }
-            if (!result.containsEdge(sourceTypes, superClass)) {
-                result.addEdge(superClass, sourceTypes);
-            }
-        }
-    }
-
-
-    private void addEdge(final MergedDirectedGraph result,
-                         final long source, final long target) {
-        result.addVertex(source);
-        result.addVertex(target);
-        result.addEdge(source, target);
     }
 
     /**
@@ -794,30 +701,33 @@ public class CGMerger {
      * @return augmented graph
      */
     private DirectedGraph augmentGraphs(final List<DirectedGraph> depGraphs) {
-        var result = new MergedDirectedGraph();
+        final var builder = new ArrayImmutableDirectedGraph.BulkBuilder();
         int numNode = 0;
         for (DirectedGraph depGraph : depGraphs) {
             numNode += depGraph.numNodes();
-            for (LongLongPair longLongPair : depGraph.edgeSet()) {
-                addNode(result, longLongPair.firstLong(), depGraph.isExternal(longLongPair.firstLong()));
-                addNode(result, longLongPair.secondLong(), depGraph.isExternal(longLongPair.secondLong()));
-                result.addEdge(longLongPair.firstLong(), longLongPair.secondLong());
+            for (final var iterator = depGraph.iterator(); iterator.hasNext();) {
+                final long source = iterator.nextLong();
+                final var successors = depGraph.successors(source);
+                if (successors.isEmpty()) {
+                    continue;
+                }
+                if (depGraph.isExternal(source)) {
+                    builder.addExternalNode(source);
+                }
+                for (final long target : successors) {
+                    if (depGraph.isExternal(target)) {
+                        builder.addExternalNode(target);
+                    }
+                    builder.addArc(source, target);
+                }
             }
         }
+        final var result = builder.build();
         logger.info("Number of Augmented nodes: {} edges: {}", numNode, result.numArcs());
 
         return result;
     }
 
-    private void addNode(MergedDirectedGraph result, long node, boolean external)
-    {
-        if (external) {
-            result.addExternalNode(node);
-        } else {
-            result.addInternalNode(node);
-        }
-    }
-
     /**
      * Add a resolved edge to the {@link DirectedGraph}.
      *
@@ -825,15 +735,13 @@ public class CGMerger {
      * @param target        target callable ID
      * @param isCallback    true, if a given arc is a callback
      */
-    private void addCall(final Set<LongLongPair> edges,
-                         Long source, Long target, final boolean isCallback) {
+    private void addCall(final ArrayImmutableDirectedGraph.BulkBuilder edges,
+                         final long source, final long target, final boolean isCallback) {
     	if (isCallback) {
-    	    Long t = source;
-    	    source = target;
-    	    target = t;
+    	    edges.addArc(target, source);
+    	} else {
+    	    edges.addArc(source, target);
     	}
-    
-    	edges.add(LongLongPair.of(source, target));
     }
 
 
@@ -897,20 +805,16 @@ public class CGMerger {
     /**
      * Get callables from dependencies.
      *
-     * @param dependenciesIds dependencies IDs
-     * @param rocksDao        rocks DAO
+     * @param graphs call graphs of dependencies, indexed by ID
      * @return list of callables
      */
-    private List<Long> getCallables(final Set<Long> dependenciesIds, final RocksDao rocksDao) {
+    private List<Long> getCallables(final Long2ObjectMap<DirectedGraph> graphs) {
         var callables = new ArrayList<Long>();
-        for (var id : dependenciesIds) {
-            try {
-                var cg = rocksDao.getGraphData(id);
-                var nodes = cg.nodes();
-                nodes.removeAll(cg.externalNodes());
-                callables.addAll(nodes);
-            } catch (RocksDBException | NullPointerException e) {
-                logger.error("Couldn't retrieve a call graph with ID: {}", id);
+        for (var cg : graphs.values()) {
+            // The node set of a graph may be a view, or shared with the graph: do not modify it
+            for (final var iterator = cg.iterator(); iterator.hasNext();) {
+                final long node = iterator.nextLong();
+                if (cg.isInternal(node)) callables.add(node);
             }
         }
         return callables;
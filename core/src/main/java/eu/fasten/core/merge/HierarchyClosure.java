@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.merge;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+/**
+ * Computes the transitive closure of a class hierarchy (or of any directed graph with dense integer
+ * nodes) without recursion.
+ *
+ * <p>
+ * The closure of a node <var>x</var> with successors <var>s</var><sub>0</sub>,
+ * <var>s</var><sub>1</sub>, &hellip; is the list made of the successors of <var>x</var>, followed by
+ * the closure of <var>s</var><sub>0</sub>, followed by the closure of <var>s</var><sub>1</sub>, and
+ * so on, in which only the first occurrence of each node is kept, and from which <var>x</var> is
+ * excluded. This is the order in which a depth-first recursive visit lists ancestors: when the
+ * successors of a type are its direct supertypes, nearer supertypes come first.
+ *
+ * <p>
+ * Closures are computed once for each node, in reverse topological order, so that the closure of a
+ * node is built by merging the already computed closures of its successors; nodes whose successors
+ * have all been processed are handled in parallel. Nodes that are part of a cycle, or that can reach
+ * a cycle, have no topological order: their closure is computed by a breadth-first visit, and a
+ * warning is logged.
+ */
+public final class HierarchyClosure {
+
+    private static final Logger logger = LoggerFactory.getLogger(HierarchyClosure.class);
+
+    /** Below this number of nodes, a round of the computation is not parallelized. */
+    private static final int PARALLELISM_THRESHOLD = 1024;
+
+    private HierarchyClosure() {
+    }
+
+    /**
+     * Returns the transpose of a graph.
+     *
+     * @param successors the successor lists of a graph.
+     * @return the successor lists of the transpose graph; each list is in increasing order.
+     */
+    public static int[][] transpose(final int[][] successors) {
+        final int n = successors.length;
+        final int[] indegree = new int[n];
+        for (final int[] s : successors) {
+            for (final int y : s) {
+                indegree[y]++;
+            }
+        }
+        final int[][] predecessors = new int[n][];
+        for (int x = 0; x < n; x++) {
+            predecessors[x] = indegree[x] == 0 ? IntArrays.EMPTY_ARRAY : new int[indegree[x]];
+        }
+        final int[] size = new int[n];
+        for (int x = 0; x < n; x++) {
+            for (final int y : successors[x]) {
+                predecessors[y][size[y]++] = x;
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Computes the closure of every node of a graph.
+     *
+     * @param successors the successor lists of a graph; they must not contain duplicates.
+     * @return for each node, its closure; closures must not be modified, as they might be shared.
+     */
+    public static int[][] closure(final int[][] successors) {
+        final int n = successors.length;
+        final int[][] closure = new int[n][];
+        final int[][] predecessors = transpose(successors);
+        final ThreadLocal<BitSet> seen = ThreadLocal.withInitial(() -> new BitSet(n));
+
+        // Number of successors not yet processed
+        final int[] pending = new int[n];
+        final IntArrayList ready = new IntArrayList();
+        for (int x = 0; x < n; x++) {
+            pending[x] = successors[x].length;
+            if (pending[x] == 0) {
+                ready.add(x);
+            }
+        }
+
+        int processed = 0;
+        while (!ready.isEmpty()) {
+            final int[] round = ready.toIntArray();
+            ready.clear();
+            stream(round).forEach(x -> closure[x] = merge(x, successors, closure, seen.get()));
+            processed += round.length;
+            for (final int x : round) {
+                for (final int y : predecessors[x]) {
+                    if (--pending[y] == 0) {
+                        ready.add(y);
+                    }
+                }
+            }
+        }
+
+        if (processed < n) {
+            final int[] cyclic = IntStream.range(0, n).filter(x -> closure[x] == null).toArray();
+            logger.warn("The hierarchy contains cycles: {} nodes are in a cycle, or have an ancestor in a cycle", cyclic.length);
+            stream(cyclic).forEach(x -> closure[x] = visit(x, successors, seen.get()));
+        }
+
+        return closure;
+    }
+
+    private static IntStream stream(final int[] nodes) {
+        final IntStream stream = IntStream.of(nodes);
+        return nodes.length < PARALLELISM_THRESHOLD ? stream : stream.parallel();
+    }
+
+    /** Merges the successors of a node with their closures. */
+    private static int[] merge(final int x, final int[][] successors, final int[][] closure, final BitSet seen) {
+        final int[] s = successors[x];
+        if (s.length == 0) {
+            return IntArrays.EMPTY_ARRAY;
+        }
+        if (s.length == 1 && closure[s[0]].length == 0) {
+            return s;
+        }
+        final IntArrayList result = new IntArrayList();
+        seen.set(x);
+        for (final int y : s) {
+            add(y, result, seen);
+        }
+        for (final int y : s) {
+            for (final int z : closure[y]) {
+                add(z, result, seen);
+            }
+        }
+        return clear(x, result, seen);
+    }
+
+    /** Computes the closure of a node with a breadth-first visit; used for nodes reaching a cycle. */
+    private static int[] visit(final int x, final int[][] successors, final BitSet seen) {
+        final IntArrayList result = new IntArrayList();
+        seen.set(x);
+        for (final int y : successors[x]) {
+            add(y, result, seen);
+        }
+        for (int i = 0; i < result.size(); i++) {
+            for (final int z : successors[result.getInt(i)]) {
+                add(z, result, seen);
+            }
+        }
+        return clear(x, result, seen);
+    }
+
+    private static void add(final int x, final IntArrayList result, final BitSet seen) {
+        if (!seen.get(x)) {
+            seen.set(x);
+            result.add(x);
+        }
+    }
+
+    private static int[] clear(final int x, final IntArrayList result, final BitSet seen) {
+        seen.clear(x);
+        for (int i = 0; i < result.size(); i++) {
+            seen.clear(result.getInt(i));
+        }
+        return result.toIntArray();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.merge;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * An interned type dictionary and universal class hierarchy, as used by {@link CGMerger} to resolve
+ * calls.
+ *
+ * <p>
+ * Types (namespaces) and method signatures are mapped to dense integer identifiers, so that each
+ * string is hashed just once per resolved receiver. The universal class hierarchy is stored as
+ * arrays of type identifiers: the parents of each type (the type itself, followed by its ancestors
+ * in the order computed by {@link HierarchyClosure}, nearer supertypes first) and its children (the
+ * type itself, followed by its descendants). The dictionary is an open-addressed map from pairs (type, signature),
+ * packed in a long, to the sorted array of the identifiers of the matching callables.
+ *
+ * <p>
+ * Instances are created using a {@link Builder}, and they are immutable, so they can be used
+ * concurrently.
+ */
+public class TypeDictionary {
+
+    /** Maps types to their identifiers. */
+    private final Object2IntOpenHashMap<String> type2Id;
+    /** Maps signatures to their identifiers. */
+    private final Object2IntOpenHashMap<String> signature2Id;
+    /** The types, indexed by identifier. */
+    private final String[] types;
+    /** The parents of each type, or {@code null} if the type is not in the class hierarchy. */
+    private final int[][] parents;
+    /** The children of each type, or {@code null} if the type is not in the class hierarchy. */
+    private final int[][] children;
+    /** Maps pairs (type, signature) to the identifiers of the matching callables. */
+    private final Long2ObjectOpenHashMap<long[]> callables;
+
+    private TypeDictionary(final Builder builder) {
+        this.type2Id = builder.type2Id;
+        this.signature2Id = builder.signature2Id;
+        this.types = builder.types.toArray(new String[0]);
+        final int n = types.length;
+
+        // Closure of the hierarchy; every type in the hierarchy is its own first parent and child
+        final int[][] superTypes = new int[n][];
+        for (int t = 0; t < n; t++) {
+            final IntArrayList list = t < builder.superTypes.size() ? builder.superTypes.get(t) : null;
+            superTypes[t] = list == null ? IntArrays.EMPTY_ARRAY : list.toIntArray();
+        }
+        final int[][] ancestors = HierarchyClosure.closure(superTypes);
+        final int[][] descendants = HierarchyClosure.closure(HierarchyClosure.transpose(superTypes));
+        this.parents = new int[n][];
+        this.children = new int[n][];
+        final int root = builder.rootType;
+        for (int t = 0; t < n; t++) {
+            if (t >= builder.superTypes.size() || builder.superTypes.get(t) == null) continue;
+            final IntArrayList p = new IntArrayList(ancestors[t].length + 2);
+            if (t != root) p.add(t);
+            for (final int a : ancestors[t]) if (a != root) p.add(a);
+            if (root != -1) p.add(root);
+            parents[t] = p.toIntArray();
+            children[t] = prepend(t, descendants[t]);
+        }
+
+        // Group callables by (type, signature), removing duplicates
+        final long[] keys = builder.keys.toLongArray();
+        final long[] ids = builder.ids.toLongArray();
+        LongArrays.radixSort(keys, ids);
+        this.callables = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < keys.length;) {
+            final int start = i;
+            int length = 0;
+            for (; i < keys.length && keys[i] == keys[start]; i++) {
+                if (length == 0 || ids[i] != ids[start + length - 1]) ids[start + length++] = ids[i];
+            }
+            callables.put(keys[start], Arrays.copyOfRange(ids, start, start + length));
+        }
+        callables.trim();
+    }
+
+    private static int[] prepend(final int x, final int[] a) {
+        final int[] result = new int[a.length + 1];
+        result[0] = x;
+        System.arraycopy(a, 0, result, 1, a.length);
+        return result;
+    }
+
+    /**
+     * Returns the identifier of a type.
+     *
+     * @param type a type URI.
+     * @return the identifier of {@code type}, or -1 if the type is unknown.
+     */
+    public int typeId(final String type) {
+        return type2Id.getInt(type);
+    }
+
+    /**
+     * Returns the identifier of a method signature.
+     *
+     * @param signature a method signature.
+     * @return the identifier of {@code signature}, or -1 if the signature is unknown.
+     */
+    public int signatureId(final String signature) {
+        return signature2Id.getInt(signature);
+    }
+
+    /**
+     * Returns the type with given identifier.
+     *
+     * @param typeId a type identifier.
+     * @return the associated type URI.
+     */
+    public String type(final int typeId) {
+        return types[typeId];
+    }
+
+    /** @return the number of known types. */
+    public int numTypes() {
+        return types.length;
+    }
+
+    /** @return the number of known signatures. */
+    public int numSignatures() {
+        return signature2Id.size();
+    }
+
+    /** @return the number of pairs (type, signature) with at least one callable. */
+    public int size() {
+        return callables.size();
+    }
+
+    /**
+     * Returns the callables with given type and signature.
+     *
+     * @param typeId a type identifier, or -1.
+     * @param signatureId a signature identifier, or -1.
+     * @return the sorted identifiers of the callables with given type and signature; the array
+     *         must not be modified.
+     */
+    public long[] callables(final int typeId, final int signatureId) {
+        if ((typeId | signatureId) < 0) return LongArrays.EMPTY_ARRAY;
+        final long[] result = callables.get(key(typeId, signatureId));
+        return result == null ? LongArrays.EMPTY_ARRAY : result;
+    }
+
+    /**
+     * Returns the parents of a type in the universal class hierarchy.
+     *
+     * @param typeId a type identifier, or -1.
+     * @return the identifiers of the parents of the type, or {@code null} if the type is not part
+     *         of the class hierarchy; the array must not be modified.
+     */
+    public int[] parents(final int typeId) {
+        return typeId < 0 ? null : parents[typeId];
+    }
+
+    /**
+     * Returns the children of a type in the universal class hierarchy.
+     *
+     * @param typeId a type identifier, or -1.
+     * @return the identifiers of the children of the type, or {@code null} if the type is not part
+     *         of the class hierarchy; the array must not be modified.
+     */
+    public int[] children(final int typeId) {
+        return typeId < 0 ? null : children[typeId];
+    }
+
+    private static long key(final int typeId, final int signatureId) {
+        return (long)typeId << 32 | signatureId;
+    }
+
+    /**
+     * A builder for a {@link TypeDictionary}. Instances are not thread safe.
+     */
+    public static class Builder {
+        private final Object2IntOpenHashMap<String> type2Id = new Object2IntOpenHashMap<>();
+        private final Object2IntOpenHashMap<String> signature2Id = new Object2IntOpenHashMap<>();
+        private final ObjectArrayList<String> types = new ObjectArrayList<>();
+        /** The direct supertypes of each type, or {@code null} if the type is not in the hierarchy. */
+        private final ObjectArrayList<IntArrayList> superTypes = new ObjectArrayList<>();
+        /** The root type, or -1. */
+        private int rootType = -1;
+        /** Keys (type, signature) of callables, parallel to {@link #ids}. */
+        private final LongArrayList keys = new LongArrayList();
+        private final LongArrayList ids = new LongArrayList();
+
+        public Builder() {
+            type2Id.defaultReturnValue(-1);
+            signature2Id.defaultReturnValue(-1);
+        }
+
+        private int internType(final String type) {
+            int id = type2Id.getInt(type);
+            if (id == -1) {
+                type2Id.put(type, id = types.size());
+                types.add(type);
+            }
+            return id;
+        }
+
+        private int internSignature(final String signature) {
+            int id = signature2Id.getInt(signature);
+            if (id == -1) signature2Id.put(signature, id = signature2Id.size());
+            return id;
+        }
+
+        /**
+         * Adds a callable to the dictionary.
+         *
+         * @param type the type URI of the callable.
+         * @param signature the signature of the callable.
+         * @param id the identifier of the callable.
+         * @return this builder.
+         */
+        public Builder addCallable(final String type, final String signature, final long id) {
+            keys.add(key(internType(type), internSignature(signature)));
+            ids.add(id);
+            return this;
+        }
+
+        /**
+         * Adds a type and its direct supertypes to the universal class hierarchy. Duplicate
+         * supertypes are ignored.
+         *
+         * @param type a type URI.
+         * @param superTypes the direct supertypes (superclasses and superinterfaces) of
+         *            {@code type}, in the order in which they should be looked up.
+         * @return this builder.
+         */
+        public Builder addSuperTypes(final String type, final Collection<String> superTypes) {
+            final IntArrayList list = superTypes(internType(type));
+            for (final String superType : superTypes) {
+                final int id = internType(superType);
+                superTypes(id);
+                if (!list.contains(id)) list.add(id);
+            }
+            return this;
+        }
+
+        /** Returns the direct supertypes of a type, adding the type to the hierarchy if necessary. */
+        private IntArrayList superTypes(final int typeId) {
+            if (superTypes.size() <= typeId) superTypes.size(typeId + 1);
+            IntArrayList list = superTypes.get(typeId);
+            if (list == null) superTypes.set(typeId, list = new IntArrayList(2));
+            return list;
+        }
+
+        /**
+         * Sets a root type (e.g., {@code /java.lang/Object}), which will always be the last parent of
+         * every type in the hierarchy, even if it is not one of its ancestors.
+         *
+         * @param rootType the URI of the root type.
+         * @return this builder.
+         */
+        public Builder rootType(final String rootType) {
+            this.rootType = internType(rootType);
+            return this;
+        }
+
+        /** @return the number of types in the universal class hierarchy. */
+        public int numHierarchyTypes() {
+            int n = 0;
+            for (final IntArrayList list : superTypes) if (list != null) n++;
+            return n;
+        }
+
+        /**
+         * Builds the dictionary. The builder should not be used afterwards.
+         *
+         * @return a type dictionary.
+         */
+        public TypeDictionary build() {
+            type2Id.trim();
+            signature2Id.trim();
+            return new TypeDictionary(this);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count of events.
+ */
+public class Counter extends Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, Map<String, String> tags) {
+        super(name, tags);
+    }
+
+    /** Counts one event. */
+    public void increment() {
+        count.increment();
+    }
+
+    /** Counts some events. */
+    public void increment(long events) {
+        count.add(events);
+    }
+
+    /** Returns the number of events counted so far. */
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    String prometheusType() {
+        return "counter";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        writeSample(out, "", null, null, count());
+    }
+
+    @Override
+    public Map<String, Number> values() {
+        return Map.of("Count", count());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value sampled whenever metrics are read.
+ */
+public class Gauge extends Metric {
+
+    private final DoubleSupplier supplier;
+
+    Gauge(String name, Map<String, String> tags, DoubleSupplier supplier) {
+        super(name, tags);
+        this.supplier = supplier;
+    }
+
+    /** Returns the current value of this gauge. */
+    public double value() {
+        return supplier.getAsDouble();
+    }
+
+    @Override
+    String prometheusType() {
+        return "gauge";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        writeSample(out, "", null, null, value());
+    }
+
+    @Override
+    public Map<String, Number> values() {
+        return Map.of("Value", value());
+    }
+}
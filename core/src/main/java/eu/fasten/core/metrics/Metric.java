@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import java.util.Map;
+
+/**
+ * A named metric, identified by its name and by a sorted map of tags.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final Map<String, String> tags;
+
+    Metric(String name, Map<String, String> tags) {
+        this.name = name;
+        this.tags = tags;
+    }
+
+    /** Returns the name of this metric. */
+    public String name() {
+        return name;
+    }
+
+    /** Returns the tags of this metric, sorted by key. */
+    public Map<String, String> tags() {
+        return tags;
+    }
+
+    /** Returns the type of this metric in the Prometheus exposition format. */
+    abstract String prometheusType();
+
+    /** Appends the samples of this metric in the Prometheus exposition format. */
+    abstract void writePrometheus(StringBuilder out);
+
+    /** Returns the current values of this metric, by attribute name (used for JMX). */
+    public abstract Map<String, Number> values();
+
+    /** Appends a sample line, with the tags of this metric plus an optional extra tag. */
+    void writeSample(StringBuilder out, String suffix, String extraKey, String extraValue, double value) {
+        out.append(name).append(suffix);
+        if (!tags.isEmpty() || extraKey != null) {
+            out.append('{');
+            var first = true;
+            for (var tag : tags.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                appendLabel(out, tag.getKey(), tag.getValue());
+            }
+            if (extraKey != null) {
+                if (!first) {
+                    out.append(',');
+                }
+                appendLabel(out, extraKey, extraValue);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Double.POSITIVE_INFINITY) {
+            out.append("+Inf");
+        } else if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static void appendLabel(StringBuilder out, String key, String value) {
+        out.append(key).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return name + tags + values();
+    }
+}
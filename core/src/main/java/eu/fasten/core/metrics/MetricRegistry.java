@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.DoubleSupplier;
+import java.util.regex.Pattern;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A registry of {@linkplain Counter counters}, {@linkplain Timer timers} and {@linkplain Gauge gauges}.
+ *
+ * <p>
+ * Metrics are identified by a name and by tags, given as alternating keys and values; asking twice for
+ * the same metric returns the same instance, so callers can either keep a reference to a metric or look
+ * it up each time. Following Prometheus conventions, names and tag keys must match
+ * <code>[a-zA-Z_][a-zA-Z0-9_]*</code>, timers are named after their unit ({@code _seconds}) and counters
+ * end with {@code _total}.
+ *
+ * <p>
+ * Metrics can be read in the Prometheus text exposition format with {@link #scrape()}. If the registry has
+ * been created with an {@link MBeanServer}, each metric is also registered as an MBean in the given domain,
+ * with its tags as key properties.
+ *
+ * <p>
+ * Plugins and the server record their metrics in the {@linkplain #global() global registry}, which is
+ * registered with the platform MBean server.
+ */
+public class MetricRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricRegistry.class);
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    /** The JMX domain of the global registry. */
+    public static final String JMX_DOMAIN = "eu.fasten";
+
+    private static final MetricRegistry GLOBAL = new MetricRegistry(ManagementFactory.getPlatformMBeanServer(), JMX_DOMAIN);
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final MBeanServer mBeanServer;
+    private final String jmxDomain;
+
+    /**
+     * Creates a registry whose metrics are not registered with JMX.
+     */
+    public MetricRegistry() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param mBeanServer the server metrics will be registered with, or {@code null}.
+     * @param jmxDomain   the domain of the MBeans.
+     */
+    public MetricRegistry(MBeanServer mBeanServer, String jmxDomain) {
+        this.mBeanServer = mBeanServer;
+        this.jmxDomain = jmxDomain;
+    }
+
+    /** Returns the global registry. */
+    public static MetricRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns a counter, creating it if necessary.
+     *
+     * @param name the name of the counter.
+     * @param tags alternating tag keys and values.
+     */
+    public Counter counter(String name, String... tags) {
+        return getOrCreate(Counter.class, name, tags, Counter::new);
+    }
+
+    /**
+     * Returns a timer, creating it if necessary.
+     *
+     * @param name the name of the timer.
+     * @param tags alternating tag keys and values.
+     */
+    public Timer timer(String name, String... tags) {
+        return getOrCreate(Timer.class, name, tags, Timer::new);
+    }
+
+    /**
+     * Returns a gauge, creating it with the given supplier if necessary (if the gauge exists, its
+     * supplier is not changed).
+     *
+     * @param name     the name of the gauge.
+     * @param supplier supplies the value of the gauge whenever it is read.
+     * @param tags     alternating tag keys and values.
+     */
+    public Gauge gauge(String name, DoubleSupplier supplier, String... tags) {
+        return getOrCreate(Gauge.class, name, tags, (n, t) -> new Gauge(n, t, supplier));
+    }
+
+    private <M extends Metric> M getOrCreate(Class<M> type, String name, String[] tags,
+                                             BiFunction<String, Map<String, String>, M> factory) {
+        final String key = key(name, tags);
+        Metric metric = metrics.get(key);
+        if (metric == null) {
+            final var sortedTags = sortedTags(name, tags);
+            final boolean[] created = new boolean[1];
+            metric = metrics.computeIfAbsent(key, k -> {
+                created[0] = true;
+                return factory.apply(name, sortedTags);
+            });
+            if (created[0]) {
+                register(metric);
+            }
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private static String key(String name, String[] tags) {
+        if (tags.length == 0) {
+            return name;
+        }
+        final var key = new StringBuilder(name);
+        final String[] pairs = new String[tags.length / 2];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = tags[2 * i] + '\u0000' + tags[2 * i + 1];
+        }
+        Arrays.sort(pairs);
+        for (var pair : pairs) {
+            key.append('\u0001').append(pair);
+        }
+        return key.toString();
+    }
+
+    private static Map<String, String> sortedTags(String name, String[] tags) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be given as key-value pairs: " + Arrays.toString(tags));
+        }
+        final var sorted = new TreeMap<String, String>();
+        for (int i = 0; i < tags.length; i += 2) {
+            if (!NAME.matcher(tags[i]).matches()) {
+                throw new IllegalArgumentException("Invalid tag key: " + tags[i]);
+            }
+            sorted.put(tags[i], String.valueOf(tags[i + 1]));
+        }
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    /** Returns all metrics, sorted by name and tags. */
+    public List<Metric> getMetrics() {
+        final var sorted = new TreeMap<String, Metric>(metrics);
+        return new ArrayList<>(sorted.values());
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String scrape() {
+        final var out = new StringBuilder();
+        String lastName = null;
+        for (var metric : getMetrics()) {
+            if (!metric.name().equals(lastName)) {
+                out.append("# TYPE ").append(metric.name()).append(' ').append(metric.prometheusType()).append('\n');
+                lastName = metric.name();
+            }
+            metric.writePrometheus(out);
+        }
+        return out.toString();
+    }
+
+    private void register(Metric metric) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            final var properties = new StringBuilder(jmxDomain).append(":type=").append(metric.getClass().getSimpleName())
+                    .append(",name=").append(metric.name());
+            for (var tag : metric.tags().entrySet()) {
+                properties.append(',').append(tag.getKey()).append('=').append(ObjectName.quote(tag.getValue()));
+            }
+            mBeanServer.registerMBean(new MetricMBean(metric), new ObjectName(properties.toString()));
+        } catch (JMException | RuntimeException e) {
+            logger.debug("Could not register metric {} with JMX", metric, e);
+        }
+    }
+
+    /** Exposes the values of a metric as read-only MBean attributes. */
+    private static final class MetricMBean implements DynamicMBean {
+        private final Metric metric;
+
+        private MetricMBean(Metric metric) {
+            this.metric = metric;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            final var value = metric.values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            final var values = metric.values();
+            final var list = new AttributeList();
+            for (var attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final var attributes = metric.values().entrySet().stream()
+                    .map(e -> new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false))
+                    .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(metric.getClass().getName(), metric.name(), attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A histogram of durations.
+ *
+ * <p>
+ * Durations are counted in buckets with exponentially growing upper bounds, from one millisecond
+ * to about 4.6 hours (the last bucket being unbounded), so recording a duration takes constant time
+ * and no allocation. Percentiles are estimated by the upper bound of the bucket containing them.
+ * Durations are exposed in seconds, as customary for Prometheus.
+ */
+public class Timer extends Metric {
+
+    /** The number of bounded buckets: the upper bound of bucket <var>i</var> is 2<sup><var>i</var></sup> ms. */
+    static final int BUCKETS = 25;
+    private static final long NANOS_PER_MILLI = 1_000_000;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS + 1];
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    Timer(String name, Map<String, String> tags) {
+        super(name, tags);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /** Returns the index of the bucket of a duration. */
+    static int bucket(long nanos) {
+        final long millis = nanos / NANOS_PER_MILLI + (nanos % NANOS_PER_MILLI == 0 ? 0 : 1);
+        if (millis <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros(millis - 1));
+    }
+
+    /** Returns the upper bound of a bucket, in nanoseconds. */
+    static long upperBoundNanos(int bucket) {
+        return bucket < BUCKETS ? NANOS_PER_MILLI << bucket : Long.MAX_VALUE;
+    }
+
+    /** Records a duration, in nanoseconds. */
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)].increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Records a duration. */
+    public void record(long duration, TimeUnit unit) {
+        recordNanos(unit.toNanos(duration));
+    }
+
+    /** Runs a task, recording its duration. */
+    public void record(Runnable task) {
+        final long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /** Computes a value, recording the duration of the computation. */
+    public <T> T record(Supplier<T> supplier) {
+        final long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            recordNanos(System.nanoTime() - start);
+        }
+    }
+
+    /** Returns the number of durations recorded. */
+    public long count() {
+        long count = 0;
+        for (var bucket : counts) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /** Returns the sum of the durations recorded, in nanoseconds. */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /** Returns the longest duration recorded, in nanoseconds. */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Estimates a percentile of the durations recorded.
+     *
+     * @param p a fraction between 0 and 1.
+     * @return the upper bound, in nanoseconds, of the bucket containing the percentile (but at most the
+     *         longest duration recorded), or 0 if no duration was recorded.
+     */
+    public long percentileNanos(double p) {
+        final long[] snapshot = new long[counts.length];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += snapshot[i] = counts[i].sum();
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(p * count));
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(upperBoundNanos(i), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    @Override
+    String prometheusType() {
+        return "histogram";
+    }
+
+    @Override
+    void writePrometheus(StringBuilder out) {
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i].sum();
+            writeSample(out, "_bucket", "le", i < BUCKETS ? Double.toString(upperBoundNanos(i) / 1e9) : "+Inf", cumulative);
+        }
+        writeSample(out, "_sum", null, null, totalNanos() / 1e9);
+        writeSample(out, "_count", null, null, cumulative);
+    }
+
+    @Override
+    public Map<String, Number> values() {
+        final var values = new LinkedHashMap<String, Number>();
+        final long count = count();
+        values.put("Count", count);
+        values.put("TotalMillis", totalNanos() / 1e6);
+        values.put("MeanMillis", count == 0 ? 0 : totalNanos() / 1e6 / count);
+        values.put("MaxMillis", maxNanos() / 1e6);
+        values.put("50thPercentileMillis", percentileNanos(.5) / 1e6);
+        values.put("95thPercentileMillis", percentileNanos(.95) / 1e6);
+        values.put("99thPercentileMillis", percentileNanos(.99) / 1e6);
+        return values;
+    }
+}
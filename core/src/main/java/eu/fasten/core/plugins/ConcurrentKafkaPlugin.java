@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.plugins;
+
+/**
+ * A Kafka plug-in that can process several records at the same time should implement this interface.
+ *
+ * The server may then poll several records at once and process them on a pool of workers, each
+ * using its own instance of the plugin obtained through {@link #newWorker()}. Records of the same
+ * partition are always processed in order, by a single worker.
+ */
+public interface ConcurrentKafkaPlugin extends KafkaPlugin {
+
+    /**
+     * Returns a new instance of this plugin that processes records independently of this one.
+     *
+     * The new instance must share the configuration and the resources of this plugin (topics, database
+     * contexts, etc.), but not the state of the record being processed: the server calls
+     * {@link #consume(String, ProcessingLane)}, {@link #produceMultiple(ProcessingLane)} and
+     * {@link #getPluginError()} on different instances from different threads.
+     *
+     * @return a new worker instance of this plugin.
+     */
+    KafkaPlugin newWorker();
+}
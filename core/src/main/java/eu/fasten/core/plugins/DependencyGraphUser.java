@@ -2,6 +2,8 @@ package eu.fasten.core.plugins;
 
 import org.jooq.DSLContext;
 
+import dev.c0ps.maven.resolution.IMavenResolver;
+
 /**
  * A plugin that uses DependencyGraphResolver
  */
@@ -16,4 +18,15 @@ public interface DependencyGraphUser {
      */
     void loadGraphResolver(DSLContext dbContext, String depGraphPath);
 
+    /**
+     * Sets a dependency graph resolver that has already been loaded, so that plugins running in the
+     * same server can share it. Plugins not supporting a shared resolver are handed the database
+     * connection and the path through {@link #loadGraphResolver(DSLContext, String)} instead.
+     *
+     * @param graphResolver a loaded dependency graph resolver, used read-only
+     * @return true if the plugin will use the given resolver
+     */
+    default boolean setGraphResolver(IMavenResolver graphResolver) {
+        return false;
+    }
 }
@@ -18,6 +18,8 @@
 
 package eu.fasten.core.plugins;
 
+import eu.fasten.core.metrics.MetricRegistry;
+import eu.fasten.core.metrics.Timer;
 import org.pf4j.ExtensionPoint;
 
 import java.util.LinkedList;
@@ -92,4 +94,16 @@ public interface FastenPlugin extends ExtensionPoint {
      * closing a stream or setting a big object to null.
      */
     void freeResource();
+
+    /**
+     * Returns a timer for a stage of the work of this plug-in (e.g., the generation of a call graph),
+     * recorded in the global metric registry as {@code fasten_plugin_stage_seconds}.
+     *
+     * @param stage the name of the stage.
+     * @return the timer of the stage.
+     */
+    default Timer stageTimer(String stage) {
+        return MetricRegistry.global().timer("fasten_plugin_stage_seconds",
+                "plugin", getClass().getSimpleName(), "stage", stage);
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.function.LongPredicate;
+
+import eu.fasten.core.data.DenseDirectedGraph;
+import eu.fasten.core.search.SearchEngine.Result;
+import eu.fasten.core.search.predicate.LongBatchPredicate;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * A multi-source breadth-first visit of a {@link DenseDirectedGraph}.
+ *
+ * <p>
+ * The visit works in the LID space of the graph: visited nodes are recorded in a bitset, and the
+ * queue is an array of integers which, at the end of the visit, contains all visited nodes, so
+ * that the bitset can be cleared in time proportional to the size of the visit. Filters are
+ * evaluated in batches, one level of the visit at a time (in chunks of at most {@link #BATCH_SIZE}
+ * callables), so that {@linkplain LongBatchPredicate batch predicates} can amortize their cost.
+ *
+ * <p>
+ * All internal state is reused across visits, so after a few visits no allocation happens except
+ * for new results. Instances are not thread-safe.
+ */
+public final class BreadthFirstVisit {
+	/** The maximum number of callables on which a filter is evaluated at once. */
+	public static final int BATCH_SIZE = 1024;
+	/** The mask of the queue positions at which the visit checks whether the current thread has been interrupted. */
+	private static final int INTERRUPT_CHECK_MASK = 0xFFF;
+
+	/** The bitset of visited LIDs; always cleared between visits. */
+	private long[] seen = LongArrays.EMPTY_ARRAY;
+	/** The queue of the visit, in visit order. */
+	private int[] queue = IntArrays.EMPTY_ARRAY;
+	/** The GIDs of the callables in the current batch. */
+	private final long[] batch = new long[BATCH_SIZE];
+	/** The value of the filter on each element of {@link #batch}. */
+	private final boolean[] accepted = new boolean[BATCH_SIZE];
+	private final Result probe = new Result();
+
+	/**
+	 * Performs a breadth-first visit of the given graph, starting from the provided seed, and adds
+	 * to the provided collection, in visit order, the callables reached satisfying the provided
+	 * filter (except for seed callables), scored using the provided scorer.
+	 *
+	 * <p>
+	 * If the {@linkplain Scorer#isMonotone() scorer is monotone}, the visit stops at the end of the
+	 * first level at which at least {@code limit} callables satisfying the filter have been found.
+	 * In this case, the top {@code limit} results (sorted stably by decreasing score) are the same as
+	 * those of a complete visit.
+	 *
+	 * @param graph a {@link DenseDirectedGraph}.
+	 * @param forward if true, the visit follows arcs; if false, the visit follows arcs backwards.
+	 * @param seed an initial seed; may contain GIDs that do not appear in the graph, which will be
+	 *            ignored.
+	 * @param filter a {@link LongPredicate} that will be used to filter callables.
+	 * @param scorer a scorer that will be used to score the results.
+	 * @param limit the number of results after which a visit with a monotone scorer can stop, or
+	 *            {@link Integer#MAX_VALUE}.
+	 * @param results a collection of {@linkplain Result results} that will be filled during the
+	 *            visit; pre-existing results will not be modified.
+	 * @throws CancellationException if the current thread is interrupted during the visit.
+	 */
+	public void visit(final DenseDirectedGraph graph, final boolean forward, final LongCollection seed, final LongPredicate filter, final Scorer scorer, final int limit, final Collection<Result> results) {
+		final int n = graph.numNodes();
+		if (seen.length < n + 63 >>> 6) seen = new long[n + 63 >>> 6];
+		if (queue.length < n) queue = new int[n];
+		final boolean monotone = scorer.isMonotone();
+
+		int end = 0;
+		try {
+			for (final LongIterator iterator = seed.iterator(); iterator.hasNext();) {
+				final int lid = graph.lid(iterator.nextLong());
+				if (lid != -1 && add(lid)) queue[end++] = lid;
+			}
+
+			// Level d occupies the queue from start (inclusive) to levelEnd (exclusive); seeds are level 0
+			long found = 0;
+			for (int start = 0, d = 0; start < end; d++) {
+				final int levelEnd = end;
+				if (d > 0) {
+					found += filter(graph, start, levelEnd, d, filter, scorer, results);
+					if (monotone && found >= limit) break;
+				}
+
+				for (int i = start; i < levelEnd; i++) {
+					if ((i & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) throw new CancellationException("Visit interrupted");
+					final int x = queue[i];
+					if (forward) {
+						for (int j = 0, outdegree = graph.lidOutdegree(x); j < outdegree; j++) {
+							final int y = graph.lidSuccessor(x, j);
+							if (add(y)) queue[end++] = y;
+						}
+					} else {
+						for (int j = 0, indegree = graph.lidIndegree(x); j < indegree; j++) {
+							final int y = graph.lidPredecessor(x, j);
+							if (add(y)) queue[end++] = y;
+						}
+					}
+				}
+				start = levelEnd;
+			}
+		} finally {
+			for (int i = 0; i < end; i++) seen[queue[i] >>> 6] = 0;
+		}
+	}
+
+	/** Marks a LID as visited, returning true if it was not visited before. */
+	private boolean add(final int lid) {
+		final long mask = 1L << lid;
+		final long word = seen[lid >>> 6];
+		if ((word & mask) != 0) return false;
+		seen[lid >>> 6] = word | mask;
+		return true;
+	}
+
+	/** Filters and scores the callables in the given range of the queue, returning the number of those satisfying the filter. */
+	private int filter(final DenseDirectedGraph graph, final int from, final int to, final int d, final LongPredicate filter, final Scorer scorer, final Collection<Result> results) {
+		int found = 0;
+		for (int b = from; b < to; b += BATCH_SIZE) {
+			final int length = Math.min(BATCH_SIZE, to - b);
+			for (int i = 0; i < length; i++) batch[i] = graph.gid(queue[b + i]);
+			LongBatchPredicate.evaluate(filter, batch, length, accepted);
+
+			for (int i = 0; i < length; i++) {
+				if (!accepted[i]) continue;
+				found++;
+				// A callable already in the results keeps the score it was first found with, as in
+				// SearchEngine.bfs(): levels are filtered in order, so within a visit that is the score at
+				// the smallest distance, and across visits sharing the results the first visit wins.
+				probe.gid = batch[i];
+				if (!results.contains(probe)) results.add(new Result(batch[i], scorer.score(graph, batch[i], d)));
+			}
+		}
+		return found;
+	}
+}
@@ -41,4 +41,19 @@ public interface Scorer {
 	 */
 	public double score(DirectedGraph graph, long gid, int distance);
 
+	/**
+	 * Returns whether this scorer is monotone, that is, whether every callable at a given distance
+	 * scores at least as much as every callable at a larger distance, in the same graph.
+	 *
+	 * <p>
+	 * Visits with a monotone scorer can stop as soon as they have found enough results, as
+	 * results at larger distances cannot rank higher.
+	 *
+	 * @implSpec This implementation returns false.
+	 * @return whether this scorer is monotone.
+	 */
+	public default boolean isMonotone() {
+		return false;
+	}
+
 }
\ No newline at end of file
@@ -26,8 +26,20 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.LongPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -45,6 +57,7 @@ import com.martiansoftware.jsap.Parameter;
 import com.martiansoftware.jsap.SimpleJSAP;
 import com.martiansoftware.jsap.UnflaggedOption;
 
+import eu.fasten.core.data.DenseDirectedGraph;
 import eu.fasten.core.data.DirectedGraph;
 import eu.fasten.core.data.FastenJavaURI;
 import eu.fasten.core.data.FastenURI;
@@ -58,13 +71,14 @@ import dev.c0ps.maven.resolution.IMavenResolver;
 import eu.fasten.core.maven.resolution.MavenResolverIO;
 import eu.fasten.core.merge.CGMerger;
 import eu.fasten.core.search.predicate.CachingPredicateFactory;
+import eu.fasten.core.search.predicate.LongBatchPredicate;
 import eu.fasten.core.search.predicate.PredicateFactory;
 import eu.fasten.core.search.predicate.PredicateFactory.MetadataSource;
 import it.unimi.dsi.fastutil.HashCommon;
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
 import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.longs.LongSets;
@@ -92,8 +106,14 @@ public class SearchEngine {
 
 	private static final int DEFAULT_LIMIT = 10;
 
-	/** Maximum number of stitched graphs in the cache. */
-	private static final int STITCHED_MAX_SIZE = 1024;
+	/** Default fraction of the maximum heap size above which {@link #to} does not start processing new dependents in parallel. */
+	private static final double DEFAULT_MAX_HEAP_FRACTION = 0.75;
+
+	/** Interval between checks of the heap usage when a dependent is waiting to be processed. */
+	private static final long HEAP_POLL_MILLIS = 100;
+
+	/** Per-thread visit state, reused across visits. */
+	private static final ThreadLocal<BreadthFirstVisit> VISIT = ThreadLocal.withInitial(BreadthFirstVisit::new);
 
 	/** The regular expression for commands. */
 	private static Pattern COMMAND_REGEXP = Pattern.compile("\\$\\s*(.*)\\s*");
@@ -167,8 +187,8 @@ public class SearchEngine {
 	private final ObjectArrayList<String> predicateFiltersSpec = new ObjectArrayList<>();
 
 
-	/** LRU cache of stitched graphs. */
-	private final Long2ObjectLinkedOpenHashMap<DirectedGraph> stitchedGraphCache = new Long2ObjectLinkedOpenHashMap<>();
+	/** Cache of stitched graphs, keyed by revision and dependency set. */
+	private StitchedGraphCache stitchedGraphCache = StitchedGraphCache.getInstance();
 
 	/** Time spent during resolution (dependency and dependents). */
 	private long resolveTime;
@@ -176,9 +196,26 @@ public class SearchEngine {
 	private long stitchingTime;
 	/** Time spent during {@linkplain #bfs visits}. */
 	private long visitTime;
-	/** Throwables thrown by mergeWithCHA(). */
+	/** Throwables thrown by mergeWithCHA(), and timeouts of dependents processed in parallel. */
 	private final List<Throwable> throwables = new ArrayList<>();
 
+	/** The number of dependents processed in parallel by {@link #to}; if 1, dependents are processed sequentially. */
+	private int parallelism = 1;
+	/** The pool processing dependents in parallel, or {@code null} if {@link #parallelism} is 1. */
+	private ExecutorService dependentPool;
+	/** The executor cancelling dependents whose processing takes too long, or {@code null} if {@link #parallelism} is 1. */
+	private ScheduledExecutorService watchdog;
+	/** Maximum time in milliseconds spent processing a dependent in parallel, or 0 for no limit. */
+	private long dependentTimeout;
+	/** The fraction of the maximum heap size above which no new dependent is processed in parallel, unless no dependent is being processed. */
+	private double maxHeapFraction = DEFAULT_MAX_HEAP_FRACTION;
+	/** The lock protecting {@link #runningDependents}. */
+	private final Object heapLock = new Object();
+	/** The number of dependents being processed in parallel. */
+	private int runningDependents;
+	/** The lock serializing the use of {@link #resolver}, whose thread safety is not documented. */
+	private final Object resolverLock = new Object();
+
 	/**
 	 * Creates a new search engine using a given JDBC URI, database name and path to RocksDB.
 	 *
@@ -195,7 +232,7 @@ public class SearchEngine {
 	 *            {@link TrivialScorer} will be used instead.
 	 */
 	public SearchEngine(final String jdbcURI, final String database, final String rocksDb, final String resolverGraph, final String scorer) throws Exception {
-		this(PostgresConnector.getDSLContext(jdbcURI, database, false), new RocksDao(rocksDb, true), resolverGraph, scorer == null ? TrivialScorer.getInstance() : ObjectParser.fromSpec(scorer, Scorer.class));
+		this(PostgresConnector.getPooledDSLContext(jdbcURI, database, false), new RocksDao(rocksDb, true), resolverGraph, scorer == null ? TrivialScorer.getInstance() : ObjectParser.fromSpec(scorer, Scorer.class));
 	}
 
 	/**
@@ -241,6 +278,9 @@ public class SearchEngine {
 				"\t$not                            The last filter is substituted by its negation (not)\n" +
 				"\t$limit <LIMIT>                  Print at most <LIMIT> results (-1 for infinity)\n" +
 				"\t$maxDependents <LIMIT>          Maximum number of dependents considered in coreachable query resolution (-1 for infinity)\n" +
+				"\t$parallelism <THREADS>          Number of dependents processed in parallel in coreachable query resolution (1 for sequential)\n" +
+				"\t$timeout <SECONDS>              Maximum time spent processing a dependent in parallel (0 for infinity)\n" +
+				"\t$cache                          Print statistics about the stitched-graph cache\n" +
 				"\t±<URI>                          Find reachable (+) or coreachable (-) callables from the given callable <URI> satisfying all filters\n" +
 				"";
 		try {
@@ -258,6 +298,15 @@ public class SearchEngine {
 				maxDependents = Long.parseLong(commandAndArgs[1]);
 				if (maxDependents < 0) maxDependents = Long.MAX_VALUE;
 				break;
+			case "parallelism":
+				setParallelism(Integer.parseInt(commandAndArgs[1]));
+				break;
+			case "timeout":
+				setDependentTimeout(TimeUnit.SECONDS.toMillis(Long.parseLong(commandAndArgs[1])));
+				break;
+			case "cache":
+				System.err.println("Stitched-graph cache: " + stitchedGraphCache);
+				break;
 
 			case "clear":
 				predicateFilters.clear();
@@ -361,22 +410,28 @@ public class SearchEngine {
 	}
 
 	/**
-	 * Use the given {@link CGMerger} to get the stitched graph for the given revision.
+	 * Gets the stitched graph for the given revision, using a {@link CGMerger} built on the given
+	 * dependency set if the graph is not in the {@linkplain StitchedGraphCache cache}.
 	 *
-	 * @param dm the {@link CGMerger} to be used.
+	 * @param dependencyIds the database identifiers of the revisions in the dependency set.
 	 * @param id the database identifier of a revision.
-	 * @return the stitched graph for the revision with database identifier {@code id}, or {@code null}
-	 *         if {@link CGMerger#mergeWithCHA(long)} returns {@code null} (usually because the
-	 *         provided artifact is not present in the graph database).
+	 * @return the stitched graph for the revision with database identifier {@code id}, as a
+	 *         {@link DenseDirectedGraph}, or {@code null} if {@link CGMerger#mergeWithCHA(long)}
+	 *         returns {@code null} (usually because the provided artifact is not present in the
+	 *         graph database).
 	 */
-	private DirectedGraph getStitchedGraph(final CGMerger dm, final long id) {
-		DirectedGraph result = stitchedGraphCache.getAndMoveToFirst(id);
+	private DirectedGraph getStitchedGraph(final LongSet dependencyIds, final long id) {
+		// Stitched graphs are stale as soon as graphs are written to the database
+		final String database = rocksDao.path();
+		final long epoch = rocksDao.epoch();
+		DirectedGraph result = stitchedGraphCache.get(database, epoch, id, dependencyIds);
 		if (result == null) {
+			final var dm = new CGMerger(dependencyIds, context, rocksDao);
 			result = dm.mergeWithCHA(id);
 			if (result != null) {
+				result = DenseDirectedGraph.copyOf(result);
 				LOGGER.info("Graph id: " + id + " stitched graph nodes: " + result.numNodes() + " stitched graph arcs: " + result.numArcs());
-				stitchedGraphCache.putAndMoveToFirst(id, result);
-				if (stitchedGraphCache.size() > STITCHED_MAX_SIZE) stitchedGraphCache.removeLast();
+				stitchedGraphCache.put(database, epoch, id, dependencyIds, result);
 			}
 		}
 		return result;
@@ -397,6 +452,38 @@ public class SearchEngine {
 	 *            pre-existing results will not be modified.
 	 */
 	protected static void bfs(final DirectedGraph graph, final boolean forward, final LongCollection seed, final LongPredicate filter, final Scorer scorer, final Collection<Result> results) {
+		bfs(graph, forward, seed, filter, scorer, Integer.MAX_VALUE, results);
+	}
+
+	/**
+	 * Performs a breadth-first visit of the given graph, starting from the provided seed, using the
+	 * provided predicate and returning a collection of {@link Result} instances scored using the
+	 * provided scorer and satisfying the provided filter, possibly stopping early if the scorer is
+	 * {@linkplain Scorer#isMonotone() monotone}.
+	 *
+	 * <p>
+	 * Visits of a {@link DenseDirectedGraph} are delegated to a (thread-local)
+	 * {@link BreadthFirstVisit}.
+	 *
+	 * @param graph a {@link DirectedGraph}.
+	 * @param forward if true, the visit follows arcs; if false, the visit follows arcs backwards.
+	 * @param seed an initial seed; may contain GIDs that do not appear in the graph, which will be
+	 *            ignored.
+	 * @param filter a {@link LongPredicate} that will be used to filter callables.
+	 * @param scorer a scorer that will be used to score the results.
+	 * @param limit the number of results after which a visit with a monotone scorer can stop, or
+	 *            {@link Integer#MAX_VALUE}.
+	 * @param results a list of {@linkplain Result results} that will be filled during the visit;
+	 *            pre-existing results will not be modified.
+	 * @throws CancellationException if the current thread is interrupted during the visit.
+	 * @see BreadthFirstVisit#visit(DenseDirectedGraph, boolean, LongCollection, LongPredicate, Scorer, int, Collection)
+	 */
+	protected static void bfs(final DirectedGraph graph, final boolean forward, final LongCollection seed, final LongPredicate filter, final Scorer scorer, final int limit, final Collection<Result> results) {
+		if (graph instanceof DenseDirectedGraph) {
+			VISIT.get().visit((DenseDirectedGraph)graph, forward, seed, filter, scorer, limit, results);
+			return;
+		}
+
 		final LongArrayFIFOQueue queue = new LongArrayFIFOQueue(seed.size());
 		seed.forEach(x -> queue.enqueue(x)); // Load initial state
 		final LongOpenHashSet seen = new LongOpenHashSet();
@@ -409,6 +496,7 @@ public class SearchEngine {
 		while (!queue.isEmpty()) {
 			final long gid = queue.dequeueLong();
 			if (gid == sentinel) {
+				if (Thread.currentThread().isInterrupted()) throw new CancellationException("Visit interrupted");
 				d++;
 				sentinel = -1;
 			}
@@ -441,7 +529,7 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	private List<Result> fromCallable(final long gid) throws RocksDBException {
-		return fromCallable(gid, predicateFilters.stream().reduce(x -> true, LongPredicate::and));
+		return from(Util.getRevision(gid, context), LongSets.singleton(gid), predicateFilters.stream().reduce(LongBatchPredicate.TRUE, LongPredicate::and), limit);
 	}
 
 	/**
@@ -464,7 +552,7 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	private List<Result> fromRevision(final FastenURI revisionUri) throws RocksDBException {
-		return fromRevision(revisionUri, predicateFilters.stream().reduce(x -> true, LongPredicate::and));
+		return fromRevision(revisionUri, predicateFilters.stream().reduce(LongBatchPredicate.TRUE, LongPredicate::and), limit);
 	}
 
 	/**
@@ -476,10 +564,14 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	public List<Result> fromRevision(final FastenURI revisionUri, final LongPredicate filter) throws RocksDBException {
+		return fromRevision(revisionUri, filter, Integer.MAX_VALUE);
+	}
+
+	private List<Result> fromRevision(final FastenURI revisionUri, final LongPredicate filter, final int limit) throws RocksDBException {
 		// Fetch revision id
 		final long rev = Util.getRevisionId(revisionUri, context);
 		if (rev == -1) throw new IllegalArgumentException("Unknown revision " + revisionUri);
-		return from(rev, null, filter);
+		return from(rev, null, filter, limit);
 	}
 
 	/**
@@ -492,7 +584,28 @@ public class SearchEngine {
 	 * @param filter a {@link LongPredicate} that will be used to filter callables.
 	 * @return a list of {@linkplain Result results}.
 	 */
-	public List<Result> from(final long rev, LongCollection seed, final LongPredicate filter) throws RocksDBException {
+	public List<Result> from(final long rev, final LongCollection seed, final LongPredicate filter) throws RocksDBException {
+		return from(rev, seed, filter, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Computes the callables satisfying the given predicate and reachable from the provided seed, in
+	 * the stitched graph associated with the provided revision, and returns the top results in a
+	 * ranked list.
+	 *
+	 * <p>
+	 * The results are the first {@code limit} elements of the list returned by
+	 * {@link #from(long, LongCollection, LongPredicate)}, but if the scorer is
+	 * {@linkplain Scorer#isMonotone() monotone} the visit stops as soon as they have been found.
+	 *
+	 * @param rev the database id of a revision.
+	 * @param seed a collection of GIDs that will be used as a seed for the visit; if {@code null}, the
+	 *            entire set of GIDs of the specified revision will be used as a seed.
+	 * @param filter a {@link LongPredicate} that will be used to filter callables.
+	 * @param limit the maximum number of results.
+	 * @return a list of {@linkplain Result results}.
+	 */
+	public List<Result> from(final long rev, LongCollection seed, final LongPredicate filter, final int limit) throws RocksDBException {
 		final var graph = rocksDao.getGraphData(rev);
 		if (graph == null) throw new NoSuchElementException("Revision associated with callable missing from the graph database");
 		if (seed == null) seed = graph.nodes();
@@ -511,8 +624,7 @@ public class SearchEngine {
 		LOGGER.debug("Found " + dependencySet.size() + " dependencies");
 
 		stitchingTime -= System.nanoTime();
-		final var dm = new CGMerger(LongOpenHashSet.toSet(dependencySet.stream().mapToLong(x -> x.id)), context, rocksDao);
-		final var stitchedGraph = getStitchedGraph(dm, rev);
+		final var stitchedGraph = getStitchedGraph(LongOpenHashSet.toSet(dependencySet.stream().mapToLong(x -> x.id)), rev);
 		stitchingTime += System.nanoTime();
 
 		if (stitchedGraph == null) throw new NullPointerException("mergeWithCHA() returned null");
@@ -522,14 +634,25 @@ public class SearchEngine {
 		final ObjectLinkedOpenHashSet<Result> results = new ObjectLinkedOpenHashSet<>();
 
 		visitTime -= System.nanoTime();
-		bfs(stitchedGraph, true, seed, filter, scorer, results);
+		bfs(stitchedGraph, true, seed, filter, scorer, limit, results);
 		visitTime += System.nanoTime();
 
 		LOGGER.debug("Found " + results.size() + " reachable nodes");
 
+		return top(results, limit);
+	}
+
+	/**
+	 * Ranks results by decreasing score, keeping the relative order of results with the same score.
+	 *
+	 * @param results a collection of {@linkplain Result results}.
+	 * @param limit the maximum number of results.
+	 * @return a list containing the top {@code limit} results.
+	 */
+	protected static List<Result> top(final Collection<Result> results, final int limit) {
 		final Result[] array = results.toArray(new Result[0]);
 		Arrays.sort(array, (x, y) -> Double.compare(y.score, x.score));
-		return Arrays.asList(array);
+		return Arrays.asList(array.length > limit ? Arrays.copyOf(array, limit) : array);
 	}
 
 	/**
@@ -540,7 +663,7 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	private List<Result> toCallable(final long gid) throws RocksDBException {
-		return toCallable(gid, predicateFilters.stream().reduce(x -> true, LongPredicate::and));
+		return to(Util.getRevision(gid, context), LongSets.singleton(gid), predicateFilters.stream().reduce(LongBatchPredicate.TRUE, LongPredicate::and), limit);
 	}
 
 	/**
@@ -563,7 +686,7 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	private List<Result> toRevision(final FastenURI revisionUri) throws RocksDBException {
-		return toRevision(revisionUri, predicateFilters.stream().reduce(x -> true, LongPredicate::and));
+		return toRevision(revisionUri, predicateFilters.stream().reduce(LongBatchPredicate.TRUE, LongPredicate::and), limit);
 	}
 
 	/**
@@ -575,10 +698,14 @@ public class SearchEngine {
 	 * @return a list of {@linkplain Result results}.
 	 */
 	public List<Result> toRevision(final FastenURI revisionUri, final LongPredicate filter) throws RocksDBException {
+		return toRevision(revisionUri, filter, Integer.MAX_VALUE);
+	}
+
+	private List<Result> toRevision(final FastenURI revisionUri, final LongPredicate filter, final int limit) throws RocksDBException {
 		// Fetch revision id
 		final long rev = Util.getRevisionId(revisionUri, context);
 		if (rev == -1) throw new IllegalArgumentException("Unknown revision " + revisionUri);
-		return to(rev, null, filter);
+		return to(rev, null, filter, limit);
 	}
 
 	/**
@@ -591,7 +718,32 @@ public class SearchEngine {
 	 * @param filter a {@link LongPredicate} that will be used to filter callables.
 	 * @return a list of {@linkplain Result results}.
 	 */
-	public List<Result> to(final long revId, LongCollection seed, final LongPredicate filter) throws RocksDBException {
+	public List<Result> to(final long revId, final LongCollection seed, final LongPredicate filter) throws RocksDBException {
+		return to(revId, seed, filter, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Computes the callables satisfying the given predicate and coreachable from the provided seed, in
+	 * the stitched graph associated with the provided revision, and returns the top results in a
+	 * ranked list.
+	 *
+	 * <p>
+	 * The results are the first {@code limit} elements of the list returned by
+	 * {@link #to(long, LongCollection, LongPredicate)}. Unlike {@link #from(long, LongCollection,
+	 * LongPredicate, int)}, the visits are always complete, even if the scorer is
+	 * {@linkplain Scorer#isMonotone() monotone}: monotonicity holds only within the stitched graph of
+	 * a dependent, and a callable found by several dependents keeps the score of the first one, so a
+	 * callable lying beyond the cut-off of a dependent might rank lower than in another dependent.
+	 *
+	 * @param revId the database id of a revision.
+	 * @param seed a collection of GIDs that will be used as a seed for the visit; if {@code null}, the
+	 *            entire set of GIDs of the specified revision will be used as a seed.
+	 * @param filter a {@link LongPredicate} that will be used to filter callables; it must be thread
+	 *            safe if dependents are processed {@linkplain #setParallelism(int) in parallel}.
+	 * @param limit the maximum number of results.
+	 * @return a list of {@linkplain Result results}.
+	 */
+	public List<Result> to(final long revId, LongCollection seed, final LongPredicate filter, final int limit) throws RocksDBException {
 		throwables.clear();
 		final var graph = rocksDao.getGraphData(revId);
 		if (graph == null) throw new NoSuchElementException("Revision associated with callable missing from the graph database");
@@ -621,70 +773,295 @@ public class SearchEngine {
 
 		final ObjectLinkedOpenHashSet<Result> results = new ObjectLinkedOpenHashSet<>();
 
-		long trueDependents = 0;
+		final long trueDependents;
+		if (parallelism == 1) {
+			long n = 0;
+			for (final var iterator = dependentIds.iterator(); iterator.hasNext();) {
+				final DependentVisit visit = visitDependent(iterator.nextLong(), revId, seed, filter, results);
+				if (visit == null) continue;
+				if (visit.throwable != null) throwables.add(visit.throwable);
+				if (visit.trueDependent) n++;
+				resolveTime += visit.resolveTime;
+				stitchingTime += visit.stitchingTime;
+				visitTime += visit.visitTime;
+			}
+			trueDependents = n;
+		} else trueDependents = visitDependentsInParallel(dependentIds.toLongArray(), revId, seed, filter, results);
 
-		for (final var iterator = dependentIds.iterator(); iterator.hasNext();) {
-			final long dependentId = iterator.nextLong();
+		LOGGER.debug("Found " + trueDependents + " true dependents");
+		LOGGER.debug("Found overall " + results.size() + " coreachable nodes");
 
-			data = Util.getGroupArtifactVersion(dependentId, context);
+		return top(results, limit);
+	}
 
-			if (data == null) {
-				LOGGER.warn("Dependent with id " + dependentId + " not found in the database");
-				continue;
-			}
+	/** The outcome of the processing of a dependent by {@link #to}. */
+	private static final class DependentVisit {
+		/** Whether the dependent depends on the revision. */
+		private boolean trueDependent;
+		/** The results found, if they were not added to a shared collection. */
+		private Collection<Result> results;
+		/** The throwable thrown by mergeWithCHA(), if any. */
+		private Throwable throwable;
+		/** Time spent during resolution. */
+		private long resolveTime;
+		/** Time spent stitching the graph of the dependent. */
+		private long stitchingTime;
+		/** Time spent visiting the stitched graph. */
+		private long visitTime;
+	}
 
-			groupId = data[0];
-			artifactId = data[1];
-			version = data[2];
+	/**
+	 * Stitches the graph of a dependent and adds to a collection the callables satisfying the given
+	 * predicate and coreachable from the provided seed.
+	 *
+	 * @param dependentId the database id of a dependent.
+	 * @param revId the database id of the revision of which {@code dependentId} is a dependent.
+	 * @param seed a collection of GIDs that will be used as a seed for the visit.
+	 * @param filter a {@link LongPredicate} that will be used to filter callables.
+	 * @param results a collection of {@linkplain Result results} that will be filled during the visit.
+	 * @return the outcome of the processing, or {@code null} if the dependent is not in the metadata
+	 *         database.
+	 */
+	private DependentVisit visitDependent(final long dependentId, final long revId, final LongCollection seed, final LongPredicate filter, final Collection<Result> results) {
+		final DependentVisit visit = new DependentVisit();
+		final String[] data = Util.getGroupArtifactVersion(dependentId, context);
 
-			LOGGER.debug("Analyzing dependent " + groupId + ":" + artifactId + ":" + version);
+		if (data == null) {
+			LOGGER.warn("Dependent with id " + dependentId + " not found in the database");
+			return null;
+		}
 
-			resolveTime -= System.nanoTime();
-			final Set<ResolvedRevision> dependencySet = resolver.resolveDependencies(groupId, artifactId, version, resolve().includeTransitiveDeps());
-			resolveTime += System.nanoTime();
+		final String groupId = data[0];
+		final String artifactId = data[1];
+		final String version = data[2];
 
-			LOGGER.debug("Dependent has " + graph.numNodes() + " nodes");
+		LOGGER.debug("Analyzing dependent " + groupId + ":" + artifactId + ":" + version);
 
-			LOGGER.debug("Found " + dependencySet.size() + " dependencies");
+		visit.resolveTime -= System.nanoTime();
+		final Set<ResolvedRevision> dependencySet;
+		synchronized (resolverLock) {
+			dependencySet = resolver.resolveDependencies(groupId, artifactId, version, resolve().includeTransitiveDeps());
+		}
+		visit.resolveTime += System.nanoTime();
 
-			final LongOpenHashSet dependencyIds = LongOpenHashSet.toSet(dependencySet.stream().mapToLong(x -> x.id));
-			if (dependentId != revId && !dependencyIds.contains(revId)) {
-				LOGGER.debug("False dependent");
-				continue; // We cannot possibly reach the callable
-			}
+		LOGGER.debug("Found " + dependencySet.size() + " dependencies");
 
-			trueDependents++;
+		final LongOpenHashSet dependencyIds = LongOpenHashSet.toSet(dependencySet.stream().mapToLong(x -> x.id));
+		if (dependentId != revId && !dependencyIds.contains(revId)) {
+			LOGGER.debug("False dependent");
+			return visit; // We cannot possibly reach the callable
+		}
 
-			stitchingTime -= System.nanoTime();
-			final var dm = new CGMerger(dependencyIds, context, rocksDao);
+		visit.trueDependent = true;
 
-			DirectedGraph stitchedGraph = null;
-			try {
-				stitchedGraph = getStitchedGraph(dm, dependentId);
-			} catch(final Throwable t) {
-				throwables.add(t);
-				LOGGER.error("mergeWithCHA threw an exception", t);
+		visit.stitchingTime -= System.nanoTime();
+		DirectedGraph stitchedGraph = null;
+		try {
+			stitchedGraph = getStitchedGraph(dependencyIds, dependentId);
+		} catch(final CancellationException e) {
+			// The dependent timed out
+			throw e;
+		} catch(final Throwable t) {
+			visit.throwable = t;
+			LOGGER.error("mergeWithCHA threw an exception", t);
+		}
+		visit.stitchingTime += System.nanoTime();
+
+		if (stitchedGraph == null) return visit;
+
+		LOGGER.debug("Stiched graph has " + stitchedGraph.numNodes() + " nodes");
+		final int sizeBefore = results.size();
+
+		visit.visitTime -= System.nanoTime();
+		bfs(stitchedGraph, false, seed, filter, scorer, results);
+		visit.visitTime += System.nanoTime();
+
+		LOGGER.debug("Found " + (results.size() - sizeBefore) + " coreachable nodes");
+		return visit;
+	}
+
+	/**
+	 * Processes dependents in parallel, with the same results as sequential processing.
+	 *
+	 * <p>
+	 * Each dependent is stitched and visited, with the filter, into a collection of its own; so, only
+	 * the callables satisfying the filter are kept while other dependents are processed. Which
+	 * callables a visit finds does not depend on the results of other visits: thus, merging the
+	 * results in the calling thread following the order of {@code dependents}, and keeping the first
+	 * score found for each callable, gives exactly the results of a sequential visit. Dependents
+	 * exceeding the {@linkplain #setDependentTimeout(long) timeout} are skipped, and a
+	 * {@link TimeoutException} is added to {@link #throwables}.
+	 *
+	 * @param dependents the database ids of the dependents.
+	 * @param revId the database id of the revision of which {@code dependents} are dependents.
+	 * @param seed a collection of GIDs that will be used as a seed for the visits.
+	 * @param filter a thread-safe {@link LongPredicate} that will be used to filter callables.
+	 * @param results a collection of {@linkplain Result results} that will be filled.
+	 * @return the number of true dependents.
+	 */
+	private long visitDependentsInParallel(final long[] dependents, final long revId, final LongCollection seed, final LongPredicate filter, final ObjectLinkedOpenHashSet<Result> results) {
+		// Graph node sets might not support concurrent access; a linked set keeps the visit order
+		final LongCollection sharedSeed = new LongLinkedOpenHashSet(seed);
+		final DependentTask[] tasks = new DependentTask[dependents.length];
+		for (int i = 0; i < dependents.length; i++) {
+			final long dependentId = dependents[i];
+			tasks[i] = new DependentTask(() -> {
+				final ObjectLinkedOpenHashSet<Result> dependentResults = new ObjectLinkedOpenHashSet<>();
+				final DependentVisit visit = visitDependent(dependentId, revId, sharedSeed, filter, dependentResults);
+				if (visit != null) visit.results = dependentResults;
+				return visit;
+			});
+			dependentPool.execute(tasks[i]);
+		}
+
+		long trueDependents = 0;
+		try {
+			for (int i = 0; i < tasks.length; i++) {
+				final DependentVisit visit;
+				try {
+					visit = tasks[i].get();
+				} catch (final CancellationException e) {
+					final TimeoutException timeout = new TimeoutException("Dependent with id " + dependents[i] + " timed out after " + dependentTimeout + " ms");
+					throwables.add(timeout);
+					LOGGER.error(timeout.getMessage());
+					continue;
+				}
+				if (visit == null) continue;
+				if (visit.throwable != null) throwables.add(visit.throwable);
+				if (visit.trueDependent) trueDependents++;
+				resolveTime += visit.resolveTime;
+				stitchingTime += visit.stitchingTime;
+				visitTime += visit.visitTime;
+				if (visit.results == null) continue;
+				// Callables already in the results keep their score, as in a sequential visit
+				for (final Result result : visit.results) results.add(result);
+				// Let the results of the dependent be collected
+				visit.results = null;
 			}
-			stitchingTime += System.nanoTime();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (final DependentTask task : tasks) task.cancel(true);
+		}
+		return trueDependents;
+	}
 
-			if (stitchedGraph == null) continue;
+	/**
+	 * A task processing a dependent in parallel, which waits for the heap usage to drop below
+	 * {@link #maxHeapFraction} before starting, and which is cancelled after
+	 * {@link #dependentTimeout} milliseconds.
+	 *
+	 * <p>
+	 * Cancellation interrupts the thread processing the dependent; stitching ({@link CGMerger#mergeWithCHA(long)}) and
+	 * visits ({@link #bfs}) check for interrupts and abort with a {@link CancellationException},
+	 * so the thread, and its slot in {@link #runningDependents}, are released shortly afterwards.
+	 */
+	private final class DependentTask extends FutureTask<DependentVisit> {
+		public DependentTask(final Callable<DependentVisit> callable) {
+			super(callable);
+		}
 
-			LOGGER.debug("Stiched graph has " + stitchedGraph.numNodes() + " nodes");
-			final int sizeBefore = results.size();
+		@Override
+		public void run() {
+			if (isDone()) return;
+			try {
+				admit();
+			} catch (final InterruptedException e) {
+				cancel(false);
+				return;
+			}
+			final ScheduledFuture<?> timeout = dependentTimeout == 0 ? null : watchdog.schedule(() -> cancel(true), dependentTimeout, TimeUnit.MILLISECONDS);
+			try {
+				super.run();
+			} finally {
+				if (timeout != null) timeout.cancel(false);
+				synchronized (heapLock) {
+					runningDependents--;
+					heapLock.notifyAll();
+				}
+			}
+		}
+	}
 
-			visitTime -= System.nanoTime();
-			bfs(stitchedGraph, false, seed, filter, scorer, results);
-			visitTime += System.nanoTime();
+	/** Waits until no dependent is being processed, or the heap usage is below {@link #maxHeapFraction}. */
+	private void admit() throws InterruptedException {
+		final Runtime runtime = Runtime.getRuntime();
+		synchronized (heapLock) {
+			while (runningDependents > 0 && runtime.totalMemory() - runtime.freeMemory() > maxHeapFraction * runtime.maxMemory()) heapLock.wait(HEAP_POLL_MILLIS);
+			runningDependents++;
+		}
+	}
 
-			LOGGER.debug("Found " + (results.size() - sizeBefore) + " coreachable nodes");
+	/**
+	 * Sets the number of dependents processed in parallel by {@link #to}.
+	 *
+	 * <p>
+	 * When dependents are processed in parallel, the {@linkplain Scorer scorer} and the filters must be
+	 * thread safe (as those built by {@link CachingPredicateFactory} are); results are the same as
+	 * with sequential processing, but the resolve, stitching and visit times are summed over all
+	 * threads.
+	 *
+	 * @param parallelism the number of dependents processed in parallel; 1 (the default) processes
+	 *            dependents sequentially in the calling thread.
+	 */
+	public void setParallelism(final int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("Nonpositive parallelism: " + parallelism);
+		if (dependentPool != null) {
+			dependentPool.shutdownNow();
+			watchdog.shutdownNow();
+			dependentPool = null;
+			watchdog = null;
 		}
+		this.parallelism = parallelism;
+		if (parallelism > 1) {
+			final ThreadFactory threadFactory = r -> {
+				final Thread thread = new Thread(r, SearchEngine.class.getSimpleName() + "-dependent");
+				thread.setDaemon(true);
+				return thread;
+			};
+			dependentPool = Executors.newFixedThreadPool(parallelism, threadFactory);
+			watchdog = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		}
+	}
 
-		LOGGER.debug("Found " + trueDependents + " true dependents");
-		LOGGER.debug("Found overall " + results.size() + " coreachable nodes");
+	/**
+	 * Sets the maximum time spent processing a dependent in parallel; dependents exceeding this time
+	 * are skipped, and their stitching or visit is aborted. Time spent waiting for the heap usage to
+	 * drop is not counted, and neither is time spent resolving dependencies or loading graphs from the
+	 * databases, which is not interruptible.
+	 *
+	 * @param timeout the maximum time in milliseconds, or 0 for no limit (the default).
+	 * @see #setParallelism(int)
+	 */
+	public void setDependentTimeout(final long timeout) {
+		if (timeout < 0) throw new IllegalArgumentException("Negative timeout: " + timeout);
+		this.dependentTimeout = timeout;
+	}
 
-		final Result[] array = results.toArray(new Result[0]);
-		Arrays.sort(array, (x, y) -> Double.compare(y.score, x.score));
-		return Arrays.asList(array);
+	/**
+	 * Sets the fraction of the maximum heap size above which no new dependent starts being processed
+	 * in parallel until the heap usage drops, unless no other dependent is being processed.
+	 *
+	 * @param maxHeapFraction a fraction of the maximum heap size, in (0..1].
+	 * @see #setParallelism(int)
+	 */
+	public void setMaxHeapFraction(final double maxHeapFraction) {
+		if (!(maxHeapFraction > 0 && maxHeapFraction <= 1)) throw new IllegalArgumentException("Invalid heap fraction: " + maxHeapFraction);
+		this.maxHeapFraction = maxHeapFraction;
+	}
+
+	/**
+	 * Sets the cache of stitched graphs (by default, the {@linkplain StitchedGraphCache#getInstance()
+	 * process-wide instance}).
+	 *
+	 * @param stitchedGraphCache a cache of stitched graphs.
+	 */
+	public void setStitchedGraphCache(final StitchedGraphCache stitchedGraphCache) {
+		this.stitchedGraphCache = Objects.requireNonNull(stitchedGraphCache);
 	}
 
 	@SuppressWarnings("boxing")
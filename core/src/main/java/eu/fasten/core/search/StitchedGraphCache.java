@@ -0,0 +1,592 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.fasten.core.data.Constants;
+import eu.fasten.core.data.DenseDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
+import eu.fasten.core.data.callableindex.GraphCache;
+import eu.fasten.core.data.callableindex.MappedCallGraphData;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/**
+ * A concurrent LRU cache of stitched graphs, keyed by database, revision and dependency set, and
+ * bounded by (estimated) bytes.
+ *
+ * <p>
+ * A stitched graph depends on the graph database it has been stitched from, on its contents, and on
+ * the dependency set it has been stitched against, so keys are made of a database (e.g., the
+ * {@linkplain eu.fasten.core.data.callableindex.RocksDao#path() path} of a graph database), of an
+ * epoch of the database, which must increase whenever graphs are written to it (e.g., the
+ * {@linkplain eu.fasten.core.data.callableindex.RocksDao#epoch() RocksDB sequence number}), of the
+ * database id of a revision and of its (sorted) dependency set; 64-bit fingerprints of the database
+ * and of the dependency set are used for hashing and to name spill files. As soon as a newer epoch
+ * of a database is used, the graphs of older epochs are removed from memory and their spill files
+ * are deleted, and they are not cached anymore. Like {@link GraphCache}, the cache is
+ * divided into a fixed number of segments, each with its own lock, its own LRU order and an equal
+ * share of the capacity. A graph whose estimated size is larger than half a segment is not admitted
+ * into memory, so a single huge graph can evict at most half of a segment.
+ *
+ * <p>
+ * Optionally, graphs can be spilled to a directory, in which they are written in
+ * {@linkplain MappedCallGraphData mapped format} when they are evicted from memory, or when they are
+ * too large to be admitted into memory. Writes happen asynchronously in a background thread, so
+ * queries never pay for them; if too many graphs are waiting to be written, further graphs are not
+ * spilled. Graphs missing from memory are looked up in the spill directory, so warm queries survive
+ * restarts. The spill directory is bounded, too: when the overall size of its spill files exceeds
+ * the given maximum, the least recently used files (by modification time, which is updated whenever
+ * a file is read) are deleted. Graphs still in memory when the process exits are not spilled, unless
+ * the cache is {@linkplain #close() closed}.
+ *
+ * <p>
+ * The {@linkplain #getInstance() process-wide instance} has capacity given by the environment
+ * variable {@value Constants#stitchedGraphCacheSizeEnvVariable} (in bytes; 0 disables in-memory
+ * caching), or by one eighth of the maximum heap size if the variable is not set, and spills to the
+ * directory given by the environment variable {@value Constants#stitchedGraphCacheDirEnvVariable},
+ * if set, up to the size given by the environment variable
+ * {@value Constants#stitchedGraphCacheDirSizeEnvVariable} (in bytes), or eight times the in-memory
+ * capacity if the variable is not set.
+ */
+public final class StitchedGraphCache implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StitchedGraphCache.class);
+
+	/** The number of segments; must be a power of two. */
+	private static final int SEGMENTS = 16;
+	/** The extension of spill files. */
+	public static final String EXTENSION = ".stitched" + MappedCallGraphData.EXTENSION;
+	/** The maximum number of evicted graphs waiting to be spilled. */
+	private static final int SPILL_QUEUE_SIZE = 8;
+
+	private static volatile StitchedGraphCache instance;
+
+	private static final class Key {
+		private final String database;
+		private final long epoch;
+		private final long revision;
+		private final long[] dependencies;
+		private final long fingerprint;
+
+		private Key(final String database, final long epoch, final long revision, final LongCollection dependencies) {
+			this.database = database;
+			this.epoch = epoch;
+			this.revision = revision;
+			this.dependencies = dependencies.toLongArray();
+			LongArrays.radixSort(this.dependencies);
+			long h = dependencies.size();
+			for (final long d : this.dependencies) h = HashCommon.mix(h ^ d) + d;
+			this.fingerprint = h;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key k = (Key)o;
+			return revision == k.revision && epoch == k.epoch && fingerprint == k.fingerprint && Arrays.equals(dependencies, k.dependencies) && database.equals(k.database);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)HashCommon.mix(revision ^ fingerprint ^ HashCommon.mix(epoch) ^ database.hashCode());
+		}
+	}
+
+	private static final class Entry {
+		private final DirectedGraph graph;
+		private final long weight;
+
+		private Entry(final DirectedGraph graph, final long weight) {
+			this.graph = graph;
+			this.weight = weight;
+		}
+	}
+
+	private static final class Segment {
+		private final Object2ObjectLinkedOpenHashMap<Key, Entry> map = new Object2ObjectLinkedOpenHashMap<>();
+		private long weight;
+	}
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final long maxSegmentWeight;
+	/** The spill directory, or {@code null}. */
+	private final File spillDirectory;
+	/** The maximum overall size in bytes of the spill files. */
+	private final long maxSpillBytes;
+	/** The overall size in bytes of the spill files, as far as this cache knows. */
+	private final AtomicLong spillBytes = new AtomicLong();
+	/** The single-thread executor writing spill files, or {@code null}. */
+	private final ThreadPoolExecutor spiller;
+	/** The newest epoch used so far for each database; guarded by itself. */
+	private final Object2LongOpenHashMap<String> epochs = new Object2LongOpenHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder spillHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	private final LongAdder spills = new LongAdder();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maxWeight the maximum overall (estimated) size in bytes of the graphs kept in memory;
+	 *            graphs larger than {@code maxWeight / 32} are not kept in memory.
+	 * @param spillDirectory a directory where graphs are spilled, or {@code null}.
+	 * @param maxSpillBytes the maximum overall size in bytes of the spill files in
+	 *            {@code spillDirectory}.
+	 */
+	public StitchedGraphCache(final long maxWeight, final File spillDirectory, final long maxSpillBytes) {
+		if (maxWeight < 0) throw new IllegalArgumentException("Negative maximum weight: " + maxWeight);
+		if (maxSpillBytes < 0) throw new IllegalArgumentException("Negative maximum spill size: " + maxSpillBytes);
+		if (spillDirectory != null && !spillDirectory.isDirectory()) throw new IllegalArgumentException("Not a directory: " + spillDirectory);
+		this.maxSegmentWeight = maxWeight / SEGMENTS;
+		this.spillDirectory = spillDirectory;
+		this.maxSpillBytes = maxSpillBytes;
+		for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+		if (spillDirectory == null) spiller = null;
+		else {
+			// The queue is unbounded so that close() can schedule all graphs; evictions are bounded by spill()
+			spiller = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+				final Thread t = new Thread(r, "StitchedGraphCache-spiller");
+				t.setDaemon(true);
+				return t;
+			}, (r, e) -> LOGGER.debug("Cache closed; not spilling a stitched graph"));
+			for (final File file : spillFiles()) spillBytes.addAndGet(file.length());
+			spiller.execute(this::trimSpill);
+		}
+	}
+
+	/**
+	 * Creates a new cache without spill directory.
+	 *
+	 * @param maxWeight the maximum overall (estimated) size in bytes of the graphs kept in memory;
+	 *            graphs larger than {@code maxWeight / 32} are not kept in memory.
+	 */
+	public StitchedGraphCache(final long maxWeight) {
+		this(maxWeight, null, 0);
+	}
+
+	/**
+	 * Returns the process-wide instance.
+	 *
+	 * @return the process-wide instance.
+	 */
+	public static StitchedGraphCache getInstance() {
+		if (instance == null) {
+			synchronized (StitchedGraphCache.class) {
+				if (instance == null) {
+					final String size = System.getenv(Constants.stitchedGraphCacheSizeEnvVariable);
+					final String dir = System.getenv(Constants.stitchedGraphCacheDirEnvVariable);
+					final String dirSize = System.getenv(Constants.stitchedGraphCacheDirSizeEnvVariable);
+					final long maxWeight = size != null ? Long.parseLong(size) : Runtime.getRuntime().maxMemory() / 8;
+					final long maxSpillBytes = dirSize != null ? Long.parseLong(dirSize) : 8 * maxWeight;
+					LOGGER.info("Stitched graph cache size: " + maxWeight + " bytes" + (dir != null ? ", spilling to " + dir + " up to " + maxSpillBytes + " bytes" : ""));
+					instance = new StitchedGraphCache(maxWeight, dir != null ? new File(dir) : null, maxSpillBytes);
+				}
+			}
+		}
+		return instance;
+	}
+
+	private Segment segment(final Key key) {
+		return segments[key.hashCode() & SEGMENTS - 1];
+	}
+
+	/**
+	 * Returns the cached stitched graph of a revision.
+	 *
+	 * @param database the database the revision has been stitched from.
+	 * @param epoch the epoch of {@code database}.
+	 * @param revision the database id of a revision.
+	 * @param dependencies the dependency set against which the revision has been stitched.
+	 * @return the cached stitched graph, or {@code null}.
+	 */
+	public DirectedGraph get(final String database, final long epoch, final long revision, final LongCollection dependencies) {
+		final Key key = new Key(database, epoch, revision, dependencies);
+		if (isStale(key)) {
+			misses.increment();
+			return null;
+		}
+		final Segment segment = segment(key);
+		final Entry entry;
+		synchronized (segment) {
+			entry = segment.map.getAndMoveToFirst(key);
+		}
+		if (entry != null) {
+			hits.increment();
+			return entry.graph;
+		}
+		final DirectedGraph graph = spillDirectory != null ? readSpill(key) : null;
+		if (graph == null) {
+			misses.increment();
+			return null;
+		}
+		spillHits.increment();
+		admit(key, graph, false);
+		return graph;
+	}
+
+	/**
+	 * Caches the stitched graph of a revision.
+	 *
+	 * <p>
+	 * The graph must be safe for concurrent use and it must not be modified afterwards.
+	 *
+	 * @param database the database the revision has been stitched from.
+	 * @param epoch the epoch of {@code database}.
+	 * @param revision the database id of a revision.
+	 * @param dependencies the dependency set against which the revision has been stitched.
+	 * @param graph the stitched graph.
+	 */
+	public void put(final String database, final long epoch, final long revision, final LongCollection dependencies, final DirectedGraph graph) {
+		final Key key = new Key(database, epoch, revision, dependencies);
+		if (!isStale(key)) admit(key, graph, true);
+	}
+
+	/**
+	 * Returns whether the epoch of a key is older than the newest epoch of its database; if it is
+	 * newer, removes from memory the graphs of the database with older epochs and schedules the
+	 * deletion of their spill files.
+	 */
+	private boolean isStale(final Key key) {
+		synchronized (epochs) {
+			if (epochs.containsKey(key.database)) {
+				final long newest = epochs.getLong(key.database);
+				if (key.epoch < newest) return true;
+				if (key.epoch == newest) return false;
+			}
+			epochs.put(key.database, key.epoch);
+		}
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				for (final var iterator = segment.map.object2ObjectEntrySet().fastIterator(); iterator.hasNext();) {
+					final var entry = iterator.next();
+					if (entry.getKey().epoch < key.epoch && entry.getKey().database.equals(key.database)) {
+						segment.weight -= entry.getValue().weight;
+						iterator.remove();
+					}
+				}
+			}
+		}
+		// Also spill files written before a restart
+		if (spiller != null && !spiller.isShutdown()) spiller.execute(() -> deleteStaleSpills(key.database, key.epoch));
+		return false;
+	}
+
+	/**
+	 * Admits a graph into memory, spilling the graphs evicted to make room for it, or the graph
+	 * itself if it is too large and {@code spill} is true.
+	 */
+	private void admit(final Key key, final DirectedGraph graph, final boolean spill) {
+		final long weight = GraphCache.weight(graph);
+		if (weight > maxSegmentWeight / 2) {
+			rejections.increment();
+			if (spill) spill(key, graph);
+			return;
+		}
+		final Segment segment = segment(key);
+		final List<Key> evictedKeys = new ArrayList<>();
+		final List<DirectedGraph> evictedGraphs = new ArrayList<>();
+		synchronized (segment) {
+			final Entry old = segment.map.putAndMoveToFirst(key, new Entry(graph, weight));
+			if (old != null) segment.weight -= old.weight;
+			segment.weight += weight;
+			while (segment.weight > maxSegmentWeight) {
+				evictedKeys.add(segment.map.lastKey());
+				final Entry evicted = segment.map.removeLast();
+				evictedGraphs.add(evicted.graph);
+				segment.weight -= evicted.weight;
+				evictions.increment();
+			}
+		}
+		for (int i = 0; i < evictedKeys.size(); i++) spill(evictedKeys.get(i), evictedGraphs.get(i));
+	}
+
+	/**
+	 * Schedules a graph to be written to the spill directory, if any, unless {@link #SPILL_QUEUE_SIZE}
+	 * graphs are already waiting.
+	 */
+	private void spill(final Key key, final DirectedGraph graph) {
+		if (spiller == null) return;
+		if (spiller.getQueue().size() < SPILL_QUEUE_SIZE) spiller.execute(() -> writeSpill(key, graph));
+		else LOGGER.debug("Spill queue full; not spilling a stitched graph");
+	}
+
+	/**
+	 * Returns the spill file of a revision stitched against a dependency set.
+	 *
+	 * @param database the database the revision has been stitched from.
+	 * @param epoch the epoch of {@code database}.
+	 * @param revision the database id of a revision.
+	 * @param dependencies the dependency set against which the revision has been stitched.
+	 * @return the spill file, or {@code null} if this cache does not spill graphs.
+	 */
+	public File spillFile(final String database, final long epoch, final long revision, final LongCollection dependencies) {
+		return spillDirectory == null ? null : spillFile(new Key(database, epoch, revision, dependencies));
+	}
+
+	private File spillFile(final Key key) {
+		return new File(spillDirectory, spillPrefix(key.database) + Long.toHexString(key.epoch) + "-" + key.revision + "-" + Long.toHexString(key.fingerprint) + EXTENSION);
+	}
+
+	/** Returns the prefix of the names of the spill files of a database. */
+	private static String spillPrefix(final String database) {
+		long h = database.length();
+		for (int i = 0; i < database.length(); i++) h = HashCommon.mix(h ^ database.charAt(i)) + database.charAt(i);
+		return Long.toHexString(h) + "-";
+	}
+
+	/**
+	 * Deletes the spill files of a database with an epoch older than the given one. Runs in the
+	 * spiller thread only.
+	 */
+	private void deleteStaleSpills(final String database, final long epoch) {
+		final String prefix = spillPrefix(database);
+		for (final File file : spillFiles()) {
+			final String name = file.getName();
+			if (!name.startsWith(prefix)) continue;
+			final int end = name.indexOf('-', prefix.length());
+			final long fileEpoch;
+			try {
+				fileEpoch = Long.parseUnsignedLong(name.substring(prefix.length(), end), 16);
+			} catch (final RuntimeException e) {
+				continue;
+			}
+			if (fileEpoch >= epoch) continue;
+			final long length = file.length();
+			if (file.delete()) spillBytes.addAndGet(-length);
+		}
+	}
+
+	/**
+	 * Writes a spill file, made of the length of the UTF-8 encoding of the database (an int), the
+	 * encoding, the epoch (a long), the number of dependencies (an int), the sorted dependencies (a
+	 * long each) and the graph in mapped format.
+	 */
+	private void writeSpill(final Key key, final DirectedGraph graph) {
+		if (isStale(key)) return;
+		final File file = spillFile(key);
+		if (file.exists()) {
+			// The graph has been promoted from the spill file; just mark the file as recently used
+			file.setLastModified(System.currentTimeMillis());
+			return;
+		}
+		final byte[] mapped = MappedCallGraphData.toByteArray(graph);
+		final byte[] database = key.database.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + database.length + Long.BYTES + Integer.BYTES + Long.BYTES * key.dependencies.length);
+		header.putInt(database.length).put(database).putLong(key.epoch);
+		header.putInt(key.dependencies.length);
+		for (final long d : key.dependencies) header.putLong(d);
+		header.flip();
+		File tmp = null;
+		try {
+			tmp = File.createTempFile(file.getName(), ".tmp", spillDirectory);
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+				channel.write(new ByteBuffer[] { header, ByteBuffer.wrap(mapped) });
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			spills.increment();
+			if (spillBytes.addAndGet(file.length()) > maxSpillBytes) trimSpill();
+		} catch (final IOException e) {
+			LOGGER.warn("Could not spill stitched graph to " + file, e);
+			if (tmp != null) tmp.delete();
+		}
+	}
+
+	/** Returns the spill files in the spill directory. */
+	private File[] spillFiles() {
+		final File[] files = spillDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		return files == null ? new File[0] : files;
+	}
+
+	/**
+	 * Deletes the least recently used spill files until their overall size is within bounds. Runs in
+	 * the spiller thread only.
+	 */
+	private void trimSpill() {
+		final File[] files = spillFiles();
+		final long[] lastModified = new long[files.length];
+		final Integer[] perm = new Integer[files.length];
+		long bytes = 0;
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			perm[i] = Integer.valueOf(i);
+			bytes += files[i].length();
+		}
+		Arrays.sort(perm, Comparator.comparingLong(i -> lastModified[i.intValue()]));
+		for (int i = 0; i < perm.length && bytes > maxSpillBytes; i++) {
+			final File file = files[perm[i].intValue()];
+			final long length = file.length();
+			if (file.delete()) bytes -= length;
+		}
+		spillBytes.set(bytes);
+	}
+
+	/**
+	 * Reads a spill file; the graph is copied to the heap as a {@link DenseDirectedGraph}, as if it
+	 * had just been stitched.
+	 */
+	private DirectedGraph readSpill(final Key key) {
+		final File file = spillFile(key);
+		if (!file.exists()) return null;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			final byte[] database = new byte[buffer.getInt()];
+			buffer.get(database);
+			// Different databases with the same fingerprint
+			if (!key.database.equals(new String(database, StandardCharsets.UTF_8)) || buffer.getLong() != key.epoch) return null;
+			final long[] dependencies = new long[buffer.getInt()];
+			for (int i = 0; i < dependencies.length; i++) dependencies[i] = buffer.getLong();
+			// Different dependency sets with the same fingerprint
+			if (!Arrays.equals(dependencies, key.dependencies)) return null;
+			file.setLastModified(System.currentTimeMillis());
+			return DenseDirectedGraph.copyOf(new MappedCallGraphData(buffer));
+		} catch (final IOException | RuntimeException e) {
+			LOGGER.warn("Could not read spilled stitched graph " + file, e);
+			return null;
+		}
+	}
+
+	/** Removes all graphs from memory; spill files are left untouched. */
+	public void clear() {
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				segment.map.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	/**
+	 * Spills to the spill directory, if any, all graphs in memory, waits for all pending writes and
+	 * stops spilling. The cache can still be used afterwards, but evicted graphs will not be spilled
+	 * anymore.
+	 */
+	@Override
+	public void close() {
+		if (spiller == null || spiller.isShutdown()) return;
+		for (final Segment segment : segments) {
+			final List<Key> keys;
+			final List<Entry> entries;
+			synchronized (segment) {
+				keys = new ArrayList<>(segment.map.keySet());
+				entries = new ArrayList<>(segment.map.values());
+			}
+			for (int i = 0; i < keys.size(); i++) {
+				final Key key = keys.get(i);
+				final DirectedGraph graph = entries.get(i).graph;
+				spiller.execute(() -> writeSpill(key, graph));
+			}
+		}
+		spiller.shutdown();
+		try {
+			spiller.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** @return the number of lookups that found a graph in memory. */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/** @return the number of lookups that found a graph in the spill directory. */
+	public long spillHits() {
+		return spillHits.sum();
+	}
+
+	/** @return the number of lookups that did not find a graph. */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/** @return the number of graphs evicted from memory. */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/** @return the number of graphs not admitted into memory because of their size. */
+	public long rejections() {
+		return rejections.sum();
+	}
+
+	/** @return the number of graphs written to the spill directory. */
+	public long spills() {
+		return spills.sum();
+	}
+
+	/** @return the number of graphs in memory. */
+	public int size() {
+		int size = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	/** @return the overall (estimated) size in bytes of the graphs in memory. */
+	public long weight() {
+		long weight = 0;
+		for (final Segment segment : segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+	/** @return the maximum overall (estimated) size in bytes of the graphs in memory. */
+	public long maxWeight() {
+		return maxSegmentWeight * SEGMENTS;
+	}
+
+	@Override
+	public String toString() {
+		return "[size: " + size() + ", weight: " + weight() + "/" + maxWeight() + ", hits: " + hits() + ", spill hits: " + spillHits() + ", misses: " + misses() + ", evictions: " + evictions() + ", rejections: " + rejections() + ", spills: " + spills() + "]";
+	}
+}
@@ -17,88 +17,265 @@
 
 package eu.fasten.core.search.predicate;
 
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
 import org.jooq.DSLContext;
 import org.jooq.JSONB;
-import org.jooq.Record1;
+import org.jooq.Record;
 import org.jooq.Record2;
-import org.jooq.Record3;
-import org.jooq.SelectConditionStep;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.impl.DSL;
 import org.json.JSONObject;
 
 import eu.fasten.core.data.metadatadb.codegen.tables.Callables;
 import eu.fasten.core.data.metadatadb.codegen.tables.Modules;
 import eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions;
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 /**
  * A predicate factory that builds search predicates resolving them against a specific database
  * instance.
  *
  * <p>This class keeps a LRU cache of the metadata returned most recently, and also of the association
- * between callable IDs, module IDs and package version IDs.
+ * between callable IDs, module IDs and package version IDs. Metadata are parsed once, when they are
+ * retrieved, and caches are bounded by a number of entries.
+ *
+ * <p>When predicates built by this factory are {@linkplain LongBatchPredicate#test(long[], int, boolean[]) evaluated on a batch},
+ * the metadata of all callables in the batch missing from the caches are retrieved with a few queries of the form
+ * {@code WHERE id = ANY(?)}, each on at most {@link #PREFETCH_CHUNK_SIZE} ids, instead of a query per callable.
+ *
+ * <p>Instances of this class are thread-safe: caches are divided into segments, each with its own lock.
  */
 public class CachingPredicateFactory extends TrivialPredicateFactory {
-	/** Maximum size of all metadata caches (all maps are kept trimmed to this size). */
-	private static final int METADATA_MAP_MAXSIZE = 1024;
-	/** Maximum size of all ID association caches (all maps are kept trimmed to this size). */
-	private static final int LONG_MAP_MAXSIZE = 1024*1024;
+	/** Default maximum number of entries of each metadata cache. */
+	public static final int DEFAULT_METADATA_CACHE_SIZE = 64 * 1024;
+	/** Maximum number of entries of each ID association cache. */
+	private static final int ID_CACHE_SIZE = 1024 * 1024;
+	/** Maximum number of ids in a single query. */
+	public static final int PREFETCH_CHUNK_SIZE = 4096;
+	/** The number of segments of each cache; must be a power of two. */
+	private static final int SEGMENTS = 16;
+	/** The value cached for entities without metadata. */
+	private static final JSONObject NO_METADATA = new JSONObject();
+	/** The value cached for missing entities in ID association caches. */
+	private static final long NO_ID = -2;
+
+	/** A concurrent LRU cache from ids to parsed metadata. */
+	private static final class MetadataCache {
+		private final Long2ObjectLinkedOpenHashMap<?>[] segments = new Long2ObjectLinkedOpenHashMap<?>[SEGMENTS];
+		private final int maxSegmentSize;
+
+		private MetadataCache(final int maxSize) {
+			for (int i = 0; i < SEGMENTS; i++) segments[i] = new Long2ObjectLinkedOpenHashMap<JSONObject>();
+			maxSegmentSize = Math.max(1, maxSize / SEGMENTS);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Long2ObjectLinkedOpenHashMap<JSONObject> segment(final long id) {
+			return (Long2ObjectLinkedOpenHashMap<JSONObject>)segments[(int)HashCommon.mix(id) & SEGMENTS - 1];
+		}
+
+		/** Returns the cached metadata, {@link #NO_METADATA}, or {@code null} if the id is not cached. */
+		private JSONObject get(final long id) {
+			final var segment = segment(id);
+			synchronized (segment) {
+				return segment.getAndMoveToFirst(id);
+			}
+		}
+
+		private void put(final long id, final JSONObject metadata) {
+			final var segment = segment(id);
+			synchronized (segment) {
+				segment.putAndMoveToFirst(id, metadata);
+				if (segment.size() > maxSegmentSize) segment.removeLast();
+			}
+		}
+	}
+
+	/** A concurrent LRU cache associating ids with ids. */
+	private static final class IdCache {
+		private final Long2LongLinkedOpenHashMap[] segments = new Long2LongLinkedOpenHashMap[SEGMENTS];
+		private final int maxSegmentSize;
+
+		private IdCache(final int maxSize) {
+			for (int i = 0; i < SEGMENTS; i++) {
+				segments[i] = new Long2LongLinkedOpenHashMap();
+				segments[i].defaultReturnValue(-1);
+			}
+			maxSegmentSize = Math.max(1, maxSize / SEGMENTS);
+		}
+
+		private Long2LongLinkedOpenHashMap segment(final long id) {
+			return segments[(int)HashCommon.mix(id) & SEGMENTS - 1];
+		}
+
+		/** Returns the cached id, {@link #NO_ID}, or -1 if the id is not cached. */
+		private long get(final long id) {
+			final var segment = segment(id);
+			synchronized (segment) {
+				return segment.getAndMoveToFirst(id);
+			}
+		}
+
+		private void put(final long id, final long value) {
+			final var segment = segment(id);
+			synchronized (segment) {
+				segment.putAndMoveToFirst(id, value);
+				if (segment.size() > maxSegmentSize) segment.removeLastLong();
+			}
+		}
+	}
+
 	/** LRU cache of the last metadata from the {@link Callables#CALLABLES} table. */
-	private final Long2ObjectLinkedOpenHashMap<JSONObject> callableGID2callableMetadata;
+	private final MetadataCache callableGID2callableMetadata;
 	/** LRU cache of the last metadata from the {@link Modules#MODULES} table. */
-	private final Long2ObjectLinkedOpenHashMap<JSONObject> moduleGID2moduleMetadata;
+	private final MetadataCache moduleGID2moduleMetadata;
 	/** LRU cache of the last metadata from the {@link PackageVersions#PACKAGE_VERSIONS} table. */
-	private final Long2ObjectLinkedOpenHashMap<JSONObject> packageVersionGID2packageVersionMetadata;
+	private final MetadataCache packageVersionGID2packageVersionMetadata;
 	/**
 	 * LRU cache of the map between {@linkplain Callables#CALLABLES GIDs} and
 	 * {@linkplain Modules#MODULES module database ids}.
 	 */
-	private final Long2LongLinkedOpenHashMap callableGID2moduleGID;
+	private final IdCache callableGID2moduleGID;
 	/**
 	 * LRU cache of the map between {@linkplain Modules#MODULES module database ids} and
 	 * {@linkplains PackageVersions#PACKAGE_VERSIONS revision ids}.
 	 */
-	private final Long2LongLinkedOpenHashMap moduleGID2packageVersionGID;
+	private final IdCache moduleGID2packageVersionGID;
 
 	/** A factory for predicates that will be matched against a given database.
 	 *
 	 * @param dbContext the db context that will be used to match predicates.
 	 */
 	public CachingPredicateFactory(final DSLContext dbContext) {
+		this(dbContext, DEFAULT_METADATA_CACHE_SIZE);
+	}
+
+	/** A factory for predicates that will be matched against a given database.
+	 *
+	 * @param dbContext the db context that will be used to match predicates.
+	 * @param metadataCacheSize the maximum number of entries of each metadata cache.
+	 */
+	public CachingPredicateFactory(final DSLContext dbContext, final int metadataCacheSize) {
 		super(dbContext);
-		this.callableGID2callableMetadata = new Long2ObjectLinkedOpenHashMap<>();
-		this.moduleGID2moduleMetadata = new Long2ObjectLinkedOpenHashMap<>();
-		this.packageVersionGID2packageVersionMetadata = new Long2ObjectLinkedOpenHashMap<>();
-		this.callableGID2moduleGID = new Long2LongLinkedOpenHashMap();
-		callableGID2moduleGID.defaultReturnValue(-1);
-		this.moduleGID2packageVersionGID = new Long2LongLinkedOpenHashMap();
-		moduleGID2packageVersionGID.defaultReturnValue(-1);
+		this.callableGID2callableMetadata = new MetadataCache(metadataCacheSize);
+		this.moduleGID2moduleMetadata = new MetadataCache(metadataCacheSize);
+		this.packageVersionGID2packageVersionMetadata = new MetadataCache(metadataCacheSize);
+		this.callableGID2moduleGID = new IdCache(ID_CACHE_SIZE);
+		this.moduleGID2packageVersionGID = new IdCache(ID_CACHE_SIZE);
+	}
+
+	/** Returns the distinct elements of an array satisfying a predicate.
+	 *
+	 * @param a an array.
+	 * @param length the number of elements of {@code a} to consider.
+	 * @param predicate a predicate.
+	 * @return the distinct elements among the first {@code length} of {@code a} satisfying {@code predicate}.
+	 */
+	private static long[] select(final long[] a, final int length, final LongPredicate predicate) {
+		final LongOpenHashSet result = new LongOpenHashSet();
+		for (int i = 0; i < length; i++) if (predicate.test(a[i])) result.add(a[i]);
+		return result.toLongArray();
+	}
+
+	/** Retrieves and caches the metadata of the given ids from a table, in chunks.
+	 *
+	 * @param table the table.
+	 * @param idField the id field of {@code table}.
+	 * @param metadataField the metadata field of {@code table}.
+	 * @param cache the cache that will be filled.
+	 * @param ids the ids to retrieve; all ids will be cached, possibly with value {@link #NO_METADATA}.
+	 */
+	private <R extends Record> void fetchMetadata(final Table<R> table, final TableField<R, Long> idField, final TableField<R, JSONB> metadataField, final MetadataCache cache, final long[] ids) {
+		for (int start = 0; start < ids.length; start += PREFETCH_CHUNK_SIZE) {
+			final long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + PREFETCH_CHUNK_SIZE));
+			final LongOpenHashSet missing = new LongOpenHashSet(chunk);
+			for (final Record2<Long, JSONB> record : dbContext.select(idField, metadataField).from(table).where(idField.eq(DSL.any(boxed(chunk)))).fetch()) {
+				final long id = record.component1().longValue();
+				final JSONB jsonb = record.component2();
+				cache.put(id, jsonb == null || jsonb.data() == null ? NO_METADATA : new JSONObject(jsonb.data()));
+				missing.remove(id);
+			}
+			for (final long id : missing) cache.put(id, NO_METADATA);
+		}
+	}
+
+	/** Retrieves and caches the association between ids given by a table, in chunks.
+	 *
+	 * @param table the table.
+	 * @param idField the id field of {@code table}.
+	 * @param valueField the field of {@code table} containing the associated id.
+	 * @param cache the cache that will be filled.
+	 * @param ids the ids to retrieve; all ids will be cached, possibly with value {@link #NO_ID}.
+	 */
+	private <R extends Record> void fetchIds(final Table<R> table, final TableField<R, Long> idField, final TableField<R, Long> valueField, final IdCache cache, final long[] ids) {
+		for (int start = 0; start < ids.length; start += PREFETCH_CHUNK_SIZE) {
+			final long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + PREFETCH_CHUNK_SIZE));
+			final LongOpenHashSet missing = new LongOpenHashSet(chunk);
+			for (final Record2<Long, Long> record : dbContext.select(idField, valueField).from(table).where(idField.eq(DSL.any(boxed(chunk)))).fetch()) {
+				final long id = record.component1().longValue();
+				cache.put(id, record.component2().longValue());
+				missing.remove(id);
+			}
+			for (final long id : missing) cache.put(id, NO_ID);
+		}
 	}
 
-	/** Puts a given key/value pair in a map, and guarantees that the pair is in the first
-	 *  position, ensuring also that the map size does not exceed a given maximum.
+	private static Long[] boxed(final long[] a) {
+		final Long[] result = new Long[a.length];
+		for (int i = 0; i < a.length; i++) result[i] = Long.valueOf(a[i]);
+		return result;
+	}
+
+	/** Returns the ids associated by a cache with the given ids, fetching them if necessary.
 	 *
-	 * @param map the map to be modified.
-	 * @param key the key.
-	 * @param value the value associated to the key.
-	 * @param maxSize the maximum size.
+	 * @return the distinct ids associated with {@code ids}; ids that cannot be associated are skipped.
 	 */
-	private static <T> void putLRUMap(final Long2ObjectLinkedOpenHashMap<T> map, final long key, final T value, final int maxSize) {
-		map.putAndMoveToFirst(key, value);
-		if (map.size() > maxSize) map.removeLast();
+	private <R extends Record> long[] associatedIds(final Table<R> table, final TableField<R, Long> idField, final TableField<R, Long> valueField, final IdCache cache, final long[] ids) {
+		fetchIds(table, idField, valueField, cache, select(ids, ids.length, x -> cache.get(x) == -1));
+		final LongOpenHashSet result = new LongOpenHashSet();
+		for (final long id : ids) {
+			final long value = cache.get(id);
+			if (value >= 0) result.add(value);
+		}
+		return result.toLongArray();
 	}
 
-	/** Puts a given key/value pair in a map, and guarantees that the pair is in the first
-	 *  position, ensuring also that the map size does not exceed a given maximum.
+	/** Retrieves and caches the metadata of a batch of callables for a specific source, using a few queries
+	 *  for all callables whose metadata are not cached.
 	 *
-	 * @param map the map to be modified.
-	 * @param key the key.
-	 * @param value the value associated to the key.
-	 * @param maxSize the maximum size.
+	 * @param source the source of the metadata we want to obtain.
+	 * @param callableGIDs an array containing the callable GIDs.
+	 * @param length the number of GIDs in {@code callableGIDs}.
 	 */
-	private static void putLRUMap(final Long2LongLinkedOpenHashMap map, final long key, final long value, final int maxSize) {
-		map.putAndMoveToFirst(key, value);
-		if (map.size() > maxSize) map.removeLastLong();
+	@Override
+	protected void prefetch(final MetadataSource source, final long[] callableGIDs, final int length) {
+		switch(source) {
+		case CALLABLE:
+			fetchMetadata(Callables.CALLABLES, Callables.CALLABLES.ID, Callables.CALLABLES.METADATA, callableGID2callableMetadata,
+					select(callableGIDs, length, x -> callableGID2callableMetadata.get(x) == null));
+			break;
+		case MODULE: {
+			final long[] moduleGIDs = associatedIds(Callables.CALLABLES, Callables.CALLABLES.ID, Callables.CALLABLES.MODULE_ID, callableGID2moduleGID, Arrays.copyOf(callableGIDs, length));
+			fetchMetadata(Modules.MODULES, Modules.MODULES.ID, Modules.MODULES.METADATA, moduleGID2moduleMetadata,
+					select(moduleGIDs, moduleGIDs.length, x -> moduleGID2moduleMetadata.get(x) == null));
+			break;
+		}
+		case PACKAGE_VERSION: {
+			final long[] moduleGIDs = associatedIds(Callables.CALLABLES, Callables.CALLABLES.ID, Callables.CALLABLES.MODULE_ID, callableGID2moduleGID, Arrays.copyOf(callableGIDs, length));
+			final long[] packageVersionGIDs = associatedIds(Modules.MODULES, Modules.MODULES.ID, Modules.MODULES.PACKAGE_VERSION_ID, moduleGID2packageVersionGID, moduleGIDs);
+			fetchMetadata(PackageVersions.PACKAGE_VERSIONS, PackageVersions.PACKAGE_VERSIONS.ID, PackageVersions.PACKAGE_VERSIONS.METADATA, packageVersionGID2packageVersionMetadata,
+					select(packageVersionGIDs, packageVersionGIDs.length, x -> packageVersionGID2packageVersionMetadata.get(x) == null));
+			break;
+		}
+		default:
+			break;
+		}
 	}
 
 	/** Returns the metadata field of a given callable.
@@ -108,18 +285,25 @@ public class CachingPredicateFactory extends TrivialPredicateFactory {
 	 */
 	@Override
 	protected JSONObject getCallableMetadata(final long callableGID) {
-		JSONObject jsonMetadata = callableGID2callableMetadata.get(callableGID);
-		if (jsonMetadata == null) {
-			final SelectConditionStep<Record1<JSONB>> rs = dbContext.select(Callables.CALLABLES.METADATA).from(Callables.CALLABLES).where(Callables.CALLABLES.ID.eq(callableGID));
-			if (rs != null) {
-				final Record1<JSONB> record = rs.fetchOne();
-				if (record != null) {
-					jsonMetadata = new JSONObject(record.component1().data());
-				}
-			}
-			putLRUMap(callableGID2callableMetadata, callableGID, jsonMetadata, METADATA_MAP_MAXSIZE);
+		JSONObject jsonMetadata;
+		// A loop, as a concurrent thread might evict the metadata right after they have been fetched
+		while ((jsonMetadata = callableGID2callableMetadata.get(callableGID)) == null) {
+			fetchMetadata(Callables.CALLABLES, Callables.CALLABLES.ID, Callables.CALLABLES.METADATA, callableGID2callableMetadata, new long[] { callableGID });
 		}
-		return jsonMetadata;
+		return jsonMetadata == NO_METADATA ? null : jsonMetadata;
+	}
+
+	/** Returns the module database id of a given callable.
+	 *
+	 * @param callableGID the callable GID.
+	 * @return the module database id of the callable, or a negative value if the callable does not exist.
+	 */
+	private long getModuleGID(final long callableGID) {
+		long moduleGID;
+		while ((moduleGID = callableGID2moduleGID.get(callableGID)) == -1) {
+			fetchIds(Callables.CALLABLES, Callables.CALLABLES.ID, Callables.CALLABLES.MODULE_ID, callableGID2moduleGID, new long[] { callableGID });
+		}
+		return moduleGID;
 	}
 
 	/** Returns the metadata field of the package version corresponding to a given callable.
@@ -129,19 +313,13 @@ public class CachingPredicateFactory extends TrivialPredicateFactory {
 	 */
 	@Override
 	protected JSONObject getModuleMetadata(final long callableGID) {
-		long moduleGID = callableGID2moduleGID.get(callableGID);
-		JSONObject jsonMetadata = moduleGID >= 0? moduleGID2moduleMetadata.get(moduleGID) : null;
-		if (jsonMetadata == null) {
-			final Record2<JSONB, Long> queryResult = dbContext.select(Modules.MODULES.METADATA, Modules.MODULES.ID)
-					.from(Callables.CALLABLES)
-					.join(Modules.MODULES).on(Callables.CALLABLES.MODULE_ID.eq(Modules.MODULES.ID))
-					.where(Callables.CALLABLES.ID.eq(callableGID)).fetchOne();
-			moduleGID = queryResult.component2().longValue();
-			jsonMetadata = moduleGID >=0? new JSONObject(queryResult.component1().data()) : null;
-			putLRUMap(callableGID2moduleGID, callableGID, moduleGID, LONG_MAP_MAXSIZE);
-			putLRUMap(moduleGID2moduleMetadata, moduleGID, jsonMetadata, METADATA_MAP_MAXSIZE);
-		}
-		return jsonMetadata;
+		final long moduleGID = getModuleGID(callableGID);
+		if (moduleGID < 0) return null;
+		JSONObject jsonMetadata;
+		while ((jsonMetadata = moduleGID2moduleMetadata.get(moduleGID)) == null) {
+			fetchMetadata(Modules.MODULES, Modules.MODULES.ID, Modules.MODULES.METADATA, moduleGID2moduleMetadata, new long[] { moduleGID });
+		}
+		return jsonMetadata == NO_METADATA ? null : jsonMetadata;
 	}
 
 	/** Returns the metadata field of the package version corresponding to a given callable.
@@ -151,23 +329,18 @@ public class CachingPredicateFactory extends TrivialPredicateFactory {
 	 */
 	@Override
 	protected JSONObject getPackageVersionMetadata(final long callableGID) {
-		long moduleGID = callableGID2moduleGID.get(callableGID);
-		long packageVersionGID = callableGID >= 0? moduleGID2packageVersionGID.get(moduleGID) : -1;
-		JSONObject jsonMetadata = packageVersionGID >= 0? packageVersionGID2packageVersionMetadata.get(packageVersionGID) : null;
-		if (jsonMetadata == null ) {
-			final Record3<JSONB, Long, Long> queryResult = dbContext.select(PackageVersions.PACKAGE_VERSIONS.METADATA, PackageVersions.PACKAGE_VERSIONS.ID, Modules.MODULES.ID)
-					.from(Callables.CALLABLES)
-					.join(Modules.MODULES).on(Callables.CALLABLES.MODULE_ID.eq(Modules.MODULES.ID))
-					.join(PackageVersions.PACKAGE_VERSIONS).on(Modules.MODULES.PACKAGE_VERSION_ID.eq(PackageVersions.PACKAGE_VERSIONS.ID))
-					.where(Callables.CALLABLES.ID.eq(callableGID)).fetchOne();
-			packageVersionGID = queryResult.component2().longValue();
-			moduleGID = queryResult.component3().longValue();
-			jsonMetadata = packageVersionGID >= 0 && moduleGID >= 0? new JSONObject(queryResult.component1().data()) : null;
-			putLRUMap(callableGID2moduleGID, callableGID, moduleGID, LONG_MAP_MAXSIZE);
-			putLRUMap(moduleGID2packageVersionGID, moduleGID, packageVersionGID, LONG_MAP_MAXSIZE);
-			putLRUMap(packageVersionGID2packageVersionMetadata, packageVersionGID, jsonMetadata, METADATA_MAP_MAXSIZE);
-		}
-		return jsonMetadata;
+		final long moduleGID = getModuleGID(callableGID);
+		if (moduleGID < 0) return null;
+		long packageVersionGID;
+		while ((packageVersionGID = moduleGID2packageVersionGID.get(moduleGID)) == -1) {
+			fetchIds(Modules.MODULES, Modules.MODULES.ID, Modules.MODULES.PACKAGE_VERSION_ID, moduleGID2packageVersionGID, new long[] { moduleGID });
+		}
+		if (packageVersionGID < 0) return null;
+		JSONObject jsonMetadata;
+		while ((jsonMetadata = packageVersionGID2packageVersionMetadata.get(packageVersionGID)) == null) {
+			fetchMetadata(PackageVersions.PACKAGE_VERSIONS, PackageVersions.PACKAGE_VERSIONS.ID, PackageVersions.PACKAGE_VERSIONS.METADATA, packageVersionGID2packageVersionMetadata, new long[] { packageVersionGID });
+		}
+		return jsonMetadata == NO_METADATA ? null : jsonMetadata;
 	}
 
 	public static void main(final String[] args) {
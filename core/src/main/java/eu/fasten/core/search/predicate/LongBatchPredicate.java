@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search.predicate;
+
+import java.util.Objects;
+import java.util.function.LongPredicate;
+
+/**
+ * A {@link LongPredicate} that can be evaluated more efficiently on many arguments at once (e.g.,
+ * because evaluation requires a query to a database).
+ *
+ * <p>
+ * Visits collect the callables to filter and evaluate predicates implementing this interface on
+ * all of them using {@link #test(long[], int, boolean[])}. The {@linkplain #and(LongPredicate)
+ * conjunction}, {@linkplain #or(LongPredicate) disjunction} and {@linkplain #negate() negation}
+ * of batch predicates are batch predicates, too.
+ */
+public interface LongBatchPredicate extends LongPredicate {
+
+	/** A batch predicate that is always true, suitable as the identity of conjunctions. */
+	public static final LongBatchPredicate TRUE = x -> true;
+
+	/**
+	 * Evaluates this predicate on a batch of arguments.
+	 *
+	 * @implSpec This implementation calls {@link #test(long)} on each argument.
+	 *
+	 * @param values an array containing the arguments.
+	 * @param length the number of arguments in {@code values}.
+	 * @param result an array of at least {@code length} elements that will be filled with the
+	 *            value of this predicate on each argument.
+	 */
+	public default void test(final long[] values, final int length, final boolean[] result) {
+		for (int i = 0; i < length; i++) result[i] = test(values[i]);
+	}
+
+	/**
+	 * Evaluates a predicate on a batch of arguments, in a single batch if the predicate is a
+	 * {@link LongBatchPredicate}.
+	 *
+	 * @param predicate a predicate.
+	 * @param values an array containing the arguments.
+	 * @param length the number of arguments in {@code values}.
+	 * @param result an array of at least {@code length} elements that will be filled with the
+	 *            value of {@code predicate} on each argument.
+	 */
+	public static void evaluate(final LongPredicate predicate, final long[] values, final int length, final boolean[] result) {
+		if (predicate instanceof LongBatchPredicate) ((LongBatchPredicate)predicate).test(values, length, result);
+		else for (int i = 0; i < length; i++) result[i] = predicate.test(values[i]);
+	}
+
+	/**
+	 * Evaluates a predicate on the arguments of a batch whose result is {@code value}, and stores the
+	 * result of the predicate in their place.
+	 */
+	private static void evaluateWhere(final LongPredicate predicate, final long[] values, final int length, final boolean[] result, final boolean value) {
+		int n = 0;
+		for (int i = 0; i < length; i++) if (result[i] == value) n++;
+		if (n == 0) return;
+		final long[] subset = new long[n];
+		final boolean[] subsetResult = new boolean[n];
+		for (int i = 0, j = 0; i < length; i++) if (result[i] == value) subset[j++] = values[i];
+		evaluate(predicate, subset, n, subsetResult);
+		for (int i = 0, j = 0; i < length; i++) if (result[i] == value) result[i] = subsetResult[j++];
+	}
+
+	@Override
+	public default LongBatchPredicate and(final LongPredicate other) {
+		Objects.requireNonNull(other);
+		return new LongBatchPredicate() {
+			@Override
+			public boolean test(final long value) {
+				return LongBatchPredicate.this.test(value) && other.test(value);
+			}
+
+			@Override
+			public void test(final long[] values, final int length, final boolean[] result) {
+				LongBatchPredicate.this.test(values, length, result);
+				evaluateWhere(other, values, length, result, true);
+			}
+		};
+	}
+
+	@Override
+	public default LongBatchPredicate or(final LongPredicate other) {
+		Objects.requireNonNull(other);
+		return new LongBatchPredicate() {
+			@Override
+			public boolean test(final long value) {
+				return LongBatchPredicate.this.test(value) || other.test(value);
+			}
+
+			@Override
+			public void test(final long[] values, final int length, final boolean[] result) {
+				LongBatchPredicate.this.test(values, length, result);
+				evaluateWhere(other, values, length, result, false);
+			}
+		};
+	}
+
+	@Override
+	public default LongBatchPredicate negate() {
+		return new LongBatchPredicate() {
+			@Override
+			public boolean test(final long value) {
+				return !LongBatchPredicate.this.test(value);
+			}
+
+			@Override
+			public void test(final long[] values, final int length, final boolean[] result) {
+				LongBatchPredicate.this.test(values, length, result);
+				for (int i = 0; i < length; i++) result[i] = !result[i];
+			}
+		};
+	}
+}
@@ -17,9 +17,7 @@
 
 package eu.fasten.core.search.predicate;
 
-import java.util.function.LongPredicate;
-
 /** A predicate that determines whether the metadata associated with a given callable satisfy a certain
- * condition. 
+ * condition. Since metadata are stored in a database, such predicates can be {@linkplain LongBatchPredicate evaluated in batches}.
  */
-public interface MetadataContains extends LongPredicate {}
\ No newline at end of file
+public interface MetadataContains extends LongBatchPredicate {}
\ No newline at end of file
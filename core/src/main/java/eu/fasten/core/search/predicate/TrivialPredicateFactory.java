@@ -18,6 +18,7 @@
 package eu.fasten.core.search.predicate;
 
 import java.util.NoSuchElementException;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 
 import org.jooq.DSLContext;
@@ -97,6 +98,44 @@ public class TrivialPredicateFactory implements PredicateFactory {
 					.where(Callables.CALLABLES.ID.eq(callableGID)));
 	}
 
+	/**
+	 * Prepares for the retrieval of the metadata of a batch of callables for a specific source.
+	 * Predicates built by this factory call this method before being
+	 * {@linkplain LongBatchPredicate#test(long[], int, boolean[]) evaluated on a batch}.
+	 *
+	 * @implSpec This implementation does nothing.
+	 *
+	 * @param source the source of the metadata we want to obtain.
+	 * @param callableGIDs an array containing the {@linkplain Callables#CALLABLES GIDs} of the
+	 *            callables under consideration.
+	 * @param length the number of GIDs in {@code callableGIDs}.
+	 */
+	protected void prefetch(final MetadataSource source, final long[] callableGIDs, final int length) {
+	}
+
+	/**
+	 * Returns a predicate on the metadata from a given source that {@linkplain #prefetch prefetches}
+	 * metadata when evaluated on a batch.
+	 *
+	 * @param source the source of the metadata.
+	 * @param predicate a predicate.
+	 * @return a predicate equivalent to {@code predicate}.
+	 */
+	private MetadataContains prefetching(final MetadataSource source, final LongPredicate predicate) {
+		return new MetadataContains() {
+			@Override
+			public boolean test(final long callableGID) {
+				return predicate.test(callableGID);
+			}
+
+			@Override
+			public void test(final long[] callableGIDs, final int length, final boolean[] result) {
+				prefetch(source, callableGIDs, length);
+				MetadataContains.super.test(callableGIDs, length, result);
+			}
+		};
+	}
+
 	/**
 	 * Returns the metadata of a given callable for a specific source.
 	 *
@@ -124,7 +163,7 @@ public class TrivialPredicateFactory implements PredicateFactory {
 	 */
 	@Override
 	public MetadataContains metadataContains(final MetadataSource source, final String key, final Predicate<String> valuePredicate) {
-		return t -> getMetadata(source, t) != null && getMetadata(source, t).has(key) && valuePredicate.test(getMetadata(source, t).get(key).toString());
+		return prefetching(source, t -> getMetadata(source, t) != null && getMetadata(source, t).has(key) && valuePredicate.test(getMetadata(source, t).get(key).toString()));
 	}
 
 	/** A predicate that holds true if a given metadata contains a specific key.
@@ -163,11 +202,11 @@ public class TrivialPredicateFactory implements PredicateFactory {
 	 */
 	@Override
 	public MetadataContains metadataQueryJSONPointer(final MetadataSource source, final String jsonPointer, final Predicate<String> valuePredicate) {
-		return t -> {
+		return prefetching(source, t -> {
 			final var md = getMetadata(source, t);
 			final var qr = md != null? md.query(jsonPointer) : null;
 			return md != null && qr != null && valuePredicate.test(qr.toString());
-		};
+		});
 	}
 
 
@@ -21,6 +21,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -178,6 +179,35 @@ public class VariableLengthByteCoder {
 		return ((long)is.read() << 56 | (long)is.read() << 48 | (long)is.read() << 40 | (long)is.read() << 32 | (long)is.read() << 24 | is.read() << 16 | is.read() << 8 | is.read());
 	}
 
+	/**
+	 * Reads a long written by {@link #writeLong(long, OutputStream)} from the current position of a
+	 * {@link ByteBuffer}, advancing the position.
+	 *
+	 * <p>
+	 * This method makes it possible to decode data directly from a heap, direct or memory-mapped
+	 * buffer, without wrapping it into an {@link InputStream}.
+	 *
+	 * @param buffer a byte buffer.
+	 * @return the next nonnegative long written by {@link #writeLong(long, OutputStream)}.
+	 * @throws java.nio.BufferUnderflowException if reading happens past the limit of the buffer.
+	 */
+	public static long readLong(final ByteBuffer buffer) {
+		final long x = buffer.get() & 0xFF;
+		if (x < 0x80) return x;
+		if (x < 0xC0) return ((x & ~0xC0) << 8 | next(buffer)) + UPPER_BOUND_1;
+		if (x < 0xE0) return ((x & ~0xE0) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_2;
+		if (x < 0xF0) return ((x & ~0xF0) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_3;
+		if (x < 0xF8) return ((x & ~0xF8) << 32 | next(buffer) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_4;
+		if (x < 0xFC) return ((x & ~0xFC) << 40 | next(buffer) << 32 | next(buffer) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_5;
+		if (x < 0xFE) return ((x & ~0xFE) << 48 | next(buffer) << 40 | next(buffer) << 32 | next(buffer) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_6;
+		if (x < 0xFF) return (next(buffer) << 48 | next(buffer) << 40 | next(buffer) << 32 | next(buffer) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer)) + UPPER_BOUND_7;
+		return (next(buffer) << 56 | next(buffer) << 48 | next(buffer) << 40 | next(buffer) << 32 | next(buffer) << 24 | next(buffer) << 16 | next(buffer) << 8 | next(buffer));
+	}
+
+	private static long next(final ByteBuffer buffer) {
+		return buffer.get() & 0xFFL;
+	}
+
 	/**
 	 * Writes a byte array by encoding its length using {@link #writeLong(long, OutputStream)}, and then
 	 * writing the array.
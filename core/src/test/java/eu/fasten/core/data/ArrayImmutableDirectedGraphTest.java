@@ -18,6 +18,8 @@
 
 package eu.fasten.core.data;
 
+import java.util.Random;
+
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.junit.jupiter.api.Assertions;
@@ -104,4 +106,54 @@ public class ArrayImmutableDirectedGraphTest {
 		final ArrayImmutableDirectedGraph graph = builder.build();
 		assertEquals(2, graph.numNodes());
 	}
+
+	@Test
+	public void testBulk() {
+		final ArrayImmutableDirectedGraph.BulkBuilder bulk = new ArrayImmutableDirectedGraph.BulkBuilder();
+		final ArrayImmutableDirectedGraph.BulkBuilder other = new ArrayImmutableDirectedGraph.BulkBuilder();
+		final ArrayImmutableDirectedGraph.Builder builder = new ArrayImmutableDirectedGraph.Builder();
+		final Random random = new Random(0);
+		final long[] node = new long[1000];
+		for (int i = 0; i < node.length; i++) {
+			node[i] = random.nextLong();
+			if (i % 10 == 0) builder.addExternalNode(node[i]);
+			else builder.addInternalNode(node[i]);
+		}
+		// Isolated nodes must be added explicitly
+		bulk.addInternalNode(node[1]);
+		bulk.addExternalNode(node[0]);
+		final LongOpenHashSet arcs = new LongOpenHashSet();
+		for (int i = 0; i < 10000; i++) {
+			final int x = random.nextInt(node.length), y = random.nextInt(node.length);
+			if (x < 2 || y < 2) continue;
+			if (arcs.add((long)x << 32 | y)) builder.addArc(node[x], node[y]);
+			final ArrayImmutableDirectedGraph.BulkBuilder b = i % 2 == 0 ? bulk : other;
+			b.addArc(node[x], node[y]);
+			if (x % 10 == 0) b.addExternalNode(node[x]);
+			if (y % 10 == 0) b.addExternalNode(node[y]);
+		}
+		// Nodes with no arcs in the first builder will not appear in the bulk graph
+		final ArrayImmutableDirectedGraph expected = builder.build();
+		final ArrayImmutableDirectedGraph graph = bulk.addAll(other).build();
+
+		assertEquals(expected.numArcs(), graph.numArcs());
+		for (final long x : graph) {
+			assertTrue(expected.nodes().contains(x));
+			assertEquals(expected.successors(x), graph.successors(x));
+			assertEquals(expected.predecessors(x), graph.predecessors(x));
+			assertEquals(expected.isExternal(x), graph.isExternal(x));
+		}
+		for (final long x : expected) if (expected.outdegree(x) + expected.indegree(x) != 0) assertTrue(graph.nodes().contains(x));
+		assertTrue(graph.isInternal(node[1]));
+		assertTrue(graph.isExternal(node[0]));
+
+		// Building twice gives the same graph
+		final ArrayImmutableDirectedGraph again = bulk.build();
+		assertEquals(graph.nodes(), again.nodes());
+		for (final long x : graph) assertEquals(graph.successors(x), again.successors(x));
+
+		final ArrayImmutableDirectedGraph empty = new ArrayImmutableDirectedGraph.BulkBuilder().build();
+		assertEquals(0, empty.numNodes());
+		assertEquals(0, empty.numArcs());
+	}
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class DenseDirectedGraphTest {
+
+	@Test
+	public void testCopy() {
+		final Random random = new Random(0);
+		final ArrayImmutableDirectedGraph.Builder builder = new ArrayImmutableDirectedGraph.Builder();
+		final LongOpenHashSet nodes = new LongOpenHashSet();
+		while (nodes.size() < 200) nodes.add(random.nextInt(1000));
+		for (final long x : nodes) {
+			if (random.nextBoolean()) builder.addInternalNode(x);
+			else builder.addExternalNode(x);
+		}
+		final long[] n = nodes.toLongArray();
+		final LongOpenHashSet arcs = new LongOpenHashSet();
+		for (int i = 0; i < 1000; i++) {
+			final long x = n[random.nextInt(n.length)], y = n[random.nextInt(n.length)];
+			if (arcs.add(x << 32 | y)) builder.addArc(x, y);
+		}
+		final ArrayImmutableDirectedGraph graph = builder.build();
+		final DenseDirectedGraph dense = DenseDirectedGraph.copyOf(graph);
+
+		assertEquals(graph.numNodes(), dense.numNodes());
+		assertEquals(graph.numArcs(), dense.numArcs());
+		assertEquals(graph.nodes(), dense.nodes());
+		assertEquals(graph.externalNodes(), dense.externalNodes());
+		assertEquals(new LongArrayList(graph.iterator()), new LongArrayList(dense.iterator()));
+		for (final long x : graph.nodes()) {
+			assertEquals(graph.successors(x), dense.successors(x));
+			assertEquals(graph.predecessors(x), dense.predecessors(x));
+			assertEquals(graph.outdegree(x), dense.outdegree(x));
+			assertEquals(graph.indegree(x), dense.indegree(x));
+			assertEquals(graph.isInternal(x), dense.isInternal(x));
+
+			final int lid = dense.lid(x);
+			assertEquals(x, dense.gid(lid));
+			for (int i = 0; i < dense.lidOutdegree(lid); i++) {
+				assertEquals(graph.successors(x).getLong(i), dense.gid(dense.lidSuccessor(lid, i)));
+				if (i > 0) assertTrue(dense.lidSuccessor(lid, i - 1) < dense.lidSuccessor(lid, i));
+			}
+			for (int i = 0; i < dense.lidIndegree(lid); i++) assertEquals(graph.predecessors(x).getLong(i), dense.gid(dense.lidPredecessor(lid, i)));
+		}
+
+		assertEquals(-1, dense.lid(1000));
+		assertThrows(IllegalArgumentException.class, () -> dense.successors(1000));
+		assertSame(dense, DenseDirectedGraph.copyOf(dense));
+	}
+
+	@Test
+	public void testUnsortedSource() {
+		final ArrayImmutableDirectedGraph.Builder builder = new ArrayImmutableDirectedGraph.Builder();
+		for (long x = 0; x < 100; x++) builder.addInternalNode(x * 7 % 100);
+		for (long x = 1; x < 100; x++) builder.addArc(0, x * 13 % 100);
+		final DenseDirectedGraph dense = DenseDirectedGraph.copyOf(builder.build(false));
+		assertEquals(new LongArrayList(LongIterators.fromTo(1, 100)), dense.successors(0));
+		for (long x = 1; x < 100; x++) assertEquals(LongArrayList.of(0), dense.predecessors(x));
+	}
+}
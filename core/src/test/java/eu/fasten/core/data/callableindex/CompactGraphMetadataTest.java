@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.callableindex.GraphMetadata.NodeMetadata;
+import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord;
+import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord.CallType;
+import eu.fasten.core.utils.VariableLengthByteCoder;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class CompactGraphMetadataTest {
+
+	private static Long2ObjectOpenHashMap<NodeMetadata> randomMetadata(final int n, final long seed) {
+		final Random random = new Random(seed);
+		final Long2ObjectOpenHashMap<NodeMetadata> map = new Long2ObjectOpenHashMap<>();
+		while (map.size() < n) {
+			final List<ReceiverRecord> records = new ArrayList<>();
+			for (int r = random.nextInt(4); r-- != 0;) {
+				final List<String> types = new ArrayList<>();
+				for (int t = random.nextInt(3); t-- != 0;) types.add("/java.lang/Type" + random.nextInt(20));
+				records.add(new ReceiverRecord(random.nextInt(1000), CallType.values()[random.nextInt(CallType.values().length)], "/java.lang/Type" + random.nextInt(20) + ".m" + random.nextInt(10) + "()V", types));
+			}
+			map.put(random.nextInt(1 << 20), new NodeMetadata("/p/Type" + random.nextInt(20), "m" + random.nextInt(50) + "()V", records));
+		}
+		return map;
+	}
+
+	@Test
+	public void testRoundTrip() {
+		final Long2ObjectOpenHashMap<NodeMetadata> map = randomMetadata(1000, 0);
+		final byte[] array = CompactGraphMetadata.toByteArray(map);
+		assertTrue(CompactGraphMetadata.isCompact(array));
+		final CompactGraphMetadata metadata = new CompactGraphMetadata(array);
+		assertEquals(array.length, metadata.size());
+
+		assertEquals(map.size(), metadata.gid2NodeMetadata.size());
+		assertEquals(map.keySet(), new LongOpenHashSet(metadata.gid2NodeMetadata.keySet()));
+		for (final var e : map.long2ObjectEntrySet()) {
+			assertTrue(metadata.gid2NodeMetadata.containsKey(e.getLongKey()));
+			final NodeMetadata nodeMetadata = metadata.gid2NodeMetadata.get(e.getLongKey());
+			assertEquals(e.getValue(), nodeMetadata);
+			for (int i = 0; i < nodeMetadata.receiverRecords.size(); i++) {
+				assertEquals(e.getValue().receiverRecords.get(i).receiverSignature, nodeMetadata.receiverRecords.get(i).receiverSignature);
+			}
+		}
+		assertEquals(map, new Long2ObjectOpenHashMap<>(metadata.gid2NodeMetadata));
+		assertEquals(map.size(), metadata.gid2NodeMetadata.long2ObjectEntrySet().parallelStream().filter(e -> map.get(e.getLongKey()).equals(e.getValue())).count());
+
+		assertFalse(metadata.gid2NodeMetadata.containsKey(-1));
+		assertNull(metadata.gid2NodeMetadata.get(-1));
+		assertThrows(UnsupportedOperationException.class, () -> metadata.gid2NodeMetadata.put(0, null));
+	}
+
+	@Test
+	public void testEmpty() {
+		final CompactGraphMetadata metadata = new CompactGraphMetadata(CompactGraphMetadata.toByteArray(new Long2ObjectOpenHashMap<>()));
+		assertTrue(metadata.gid2NodeMetadata.isEmpty());
+		assertNull(metadata.gid2NodeMetadata.get(0));
+	}
+
+	@Test
+	public void testOriginalFormat() throws IOException {
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		VariableLengthByteCoder.writeString("/p/Type", fbaos);
+		VariableLengthByteCoder.writeString("m()V", fbaos);
+		VariableLengthByteCoder.writeLong(0, fbaos);
+		fbaos.trim();
+		assertFalse(CompactGraphMetadata.isCompact(fbaos.array));
+		assertThrows(IllegalArgumentException.class, () -> new CompactGraphMetadata(fbaos.array));
+	}
+}
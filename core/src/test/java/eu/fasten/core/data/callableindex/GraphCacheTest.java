@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+
+import eu.fasten.core.data.ArrayImmutableDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
+import eu.fasten.core.metrics.MetricRegistry;
+
+public class GraphCacheTest {
+
+	private static DirectedGraph graph(final long first, final int n) {
+		final var builder = new ArrayImmutableDirectedGraph.Builder();
+		for (int i = 0; i < n; i++) builder.addInternalNode(first + i);
+		for (int i = 1; i < n; i++) builder.addArc(first + i - 1, first + i);
+		return builder.build();
+	}
+
+	@Test
+	public void testNamespaces() {
+		final GraphCache cache = new GraphCache(1 << 20);
+		final int a = cache.newNamespace();
+		final int b = cache.newNamespace();
+		final DirectedGraph g = graph(0, 10);
+		cache.putGraph(a, 1, g, cache.stamp(a, 1));
+		assertSame(g, cache.getGraph(a, 1));
+		assertNull(cache.getGraph(b, 1));
+		assertNull(cache.getMetadata(a, 1));
+		assertEquals(1, cache.hits());
+		assertEquals(2, cache.misses());
+		assertEquals(GraphCache.weight(g), cache.weight());
+
+		cache.putGraph(b, 1, g, cache.stamp(b, 1));
+		cache.invalidate(a);
+		assertNull(cache.getGraph(a, 1));
+		assertSame(g, cache.getGraph(b, 1));
+		cache.invalidate(b, 1);
+		assertNull(cache.getGraph(b, 1));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testStamps() {
+		final GraphCache cache = new GraphCache(1 << 20);
+		final int namespace = cache.newNamespace();
+		final DirectedGraph g = graph(0, 10);
+
+		// An invalidation happening while loading prevents caching
+		long stamp = cache.stamp(namespace, 1);
+		cache.invalidate(namespace, 1);
+		cache.putGraph(namespace, 1, g, stamp);
+		assertNull(cache.getGraph(namespace, 1));
+		assertEquals(0, cache.size());
+
+		stamp = cache.stamp(namespace, 1);
+		cache.invalidate(namespace);
+		cache.putGraph(namespace, 1, g, stamp);
+		assertNull(cache.getGraph(namespace, 1));
+
+		stamp = cache.stamp(namespace, 1);
+		cache.clear();
+		cache.putGraph(namespace, 1, g, stamp);
+		assertNull(cache.getGraph(namespace, 1));
+
+		stamp = cache.stamp(namespace, 1);
+		cache.putGraph(namespace, 1, g, stamp);
+		assertSame(g, cache.getGraph(namespace, 1));
+	}
+
+	@Test
+	public void testEviction() {
+		final long weight = GraphCache.weight(graph(0, 10));
+		// Each segment can hold two graphs
+		final GraphCache cache = new GraphCache(16 * 2 * weight);
+		final int namespace = cache.newNamespace();
+		for (int i = 0; i < 1000; i++) cache.putGraph(namespace, i, graph(i * 10, 10), cache.stamp(namespace, i));
+		assertTrue(cache.size() <= 32);
+		assertTrue(cache.weight() <= cache.maxWeight());
+		assertEquals(1000 - cache.size(), cache.evictions());
+
+		// Too large
+		cache.putGraph(namespace, 1000, graph(0, 100), cache.stamp(namespace, 1000));
+		assertNull(cache.getGraph(namespace, 1000));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testMetrics() {
+		final GraphCache cache = new GraphCache(1 << 20);
+		final MetricRegistry registry = new MetricRegistry();
+		cache.registerMetrics(registry, "cache", "test");
+		final int namespace = cache.newNamespace();
+		final DirectedGraph g = graph(0, 10);
+		cache.putGraph(namespace, 1, g, cache.stamp(namespace, 1));
+		cache.getGraph(namespace, 1);
+		cache.getGraph(namespace, 2);
+		cache.getGraph(namespace, 3);
+		assertEquals(1, registry.gauge("fasten_graph_cache_hits", () -> -1, "cache", "test").value());
+		assertEquals(2, registry.gauge("fasten_graph_cache_misses", () -> -1, "cache", "test").value());
+		assertEquals(1, registry.gauge("fasten_graph_cache_entries", () -> -1, "cache", "test").value());
+		assertEquals(GraphCache.weight(g), registry.gauge("fasten_graph_cache_weight_bytes", () -> -1, "cache", "test").value());
+		assertTrue(registry.scrape().contains("fasten_graph_cache_evictions{cache=\"test\"} 0"));
+	}
+
+	@Test
+	public void testRocksDao() throws IOException, RocksDBException {
+		final File dir = Files.createTempDirectory(GraphCacheTest.class.getSimpleName()).toFile();
+		final GraphCache cache = new GraphCache(1 << 24);
+		try (var rocksDao = new RocksDao(dir.toString(), false)) {
+			rocksDao.setGraphCache(cache);
+			final List<Long> nodes = new ArrayList<>();
+			for (long i = 0; i < 200; i++) nodes.add(i);
+			final List<List<Long>> edges = new ArrayList<>();
+			for (long i = 1; i < 200; i++) edges.add(List.of(i - 1, i));
+			rocksDao.saveToRocksDb(1, nodes, 100, edges);
+			rocksDao.saveToRocksDb(2, List.of(1L, 2L), 1, List.of(List.of(1L, 2L)));
+
+			final DirectedGraph big = rocksDao.getGraphData(1);
+			final DirectedGraph bigAgain = rocksDao.getGraphData(1);
+			// Compressed graphs are copied, so that they can be used by different threads
+			assertNotSame(big, bigAgain);
+			assertEquals(big, bigAgain);
+			assertSame(rocksDao.getGraphData(2), rocksDao.getGraphData(2));
+			assertEquals(2, cache.misses());
+			assertEquals(2, cache.hits());
+
+			// Overwriting invalidates
+			rocksDao.saveToRocksDb(2, List.of(1L, 2L, 3L), 1, List.of(List.of(1L, 3L)));
+			assertEquals(3, rocksDao.getGraphData(2).numNodes());
+
+			assertTrue(rocksDao.deleteCallGraph(1));
+			assertNull(rocksDao.getGraphData(1));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.GOV3LongFunction;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.util.XoRoShiRo128PlusPlusRandomGenerator;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.Transform;
+import it.unimi.dsi.webgraph.examples.ErdosRenyiGraph;
+
+public class MappedCallGraphDataTest {
+
+	@Test
+	public void test() throws IOException {
+		final ImmutableGraph graph = new ArrayListMutableGraph(new ErdosRenyiGraph(100, .1)).immutableView();
+		final ImmutableGraph transpose = Transform.transpose(graph);
+
+		final long[] LID2GID = new long[graph.numNodes()];
+		final XoRoShiRo128PlusPlusRandomGenerator g = new XoRoShiRo128PlusPlusRandomGenerator(0);
+		for(int i = 0; i< LID2GID.length; i++) LID2GID[i] = g.nextLong();
+		final GOV3LongFunction GID2LID = new GOV3LongFunction.Builder().keys(LongArrayList.wrap(LID2GID)).build();
+		final CallGraphData callGraphData = new CallGraphData(graph, transpose, null, null, LID2GID, GID2LID, 50, 100);
+
+		final byte[] array = MappedCallGraphData.toByteArray(callGraphData);
+		assertEquals(MappedCallGraphData.FORMAT, array[0]);
+		final MappedCallGraphData mapped = new MappedCallGraphData(ByteBuffer.wrap(array));
+		assertEquals(array.length, mapped.size);
+		assertEquals(callGraphData.numNodes(), mapped.numNodes());
+		assertEquals(callGraphData.numArcs(), mapped.numArcs());
+
+		for(final long node : callGraphData.nodes()) {
+			assertTrue(mapped.nodes().contains(node));
+			assertEquals(new LongOpenHashSet(callGraphData.successors(node)), new LongOpenHashSet(mapped.successors(node)));
+			assertEquals(new LongOpenHashSet(callGraphData.predecessors(node)), new LongOpenHashSet(mapped.predecessors(node)));
+			assertEquals(callGraphData.outdegree(node), mapped.outdegree(node));
+			assertEquals(callGraphData.indegree(node), mapped.indegree(node));
+			assertEquals(callGraphData.isInternal(node), mapped.isInternal(node));
+			assertEquals(callGraphData.isExternal(node), mapped.isExternal(node));
+		}
+
+		assertEquals(new LongOpenHashSet(LID2GID), new LongOpenHashSet(mapped.iterator()));
+		assertEquals(new LongOpenHashSet(Arrays.copyOfRange(LID2GID, 50, 100)), mapped.externalNodes());
+		assertEquals(50, mapped.externalNodes().size());
+		assertFalse(mapped.nodes().contains(LID2GID[0] + 1));
+		assertFalse(mapped.isInternal(LID2GID[0] + 1));
+		assertFalse(mapped.isExternal(LID2GID[0] + 1));
+		assertThrows(IllegalArgumentException.class, () -> mapped.successors(LID2GID[0] + 1));
+
+		assertEquals(callGraphData, mapped);
+		assertEquals(mapped, callGraphData);
+		assertFalse(mapped.equals(Long.valueOf(0)));
+		assertFalse(mapped.equals(new CallGraphData(transpose.copy(), graph.copy(), null, null, LID2GID, GID2LID, 50, 100)));
+
+		// Buffers need not start at position zero
+		final ByteBuffer shifted = ByteBuffer.allocateDirect(array.length + 3);
+		shifted.position(3);
+		shifted.put(array).position(3);
+		assertEquals(mapped, new MappedCallGraphData(shifted));
+
+		final File file = File.createTempFile(MappedCallGraphDataTest.class.getSimpleName(), MappedCallGraphData.EXTENSION);
+		file.deleteOnExit();
+		Files.write(file.toPath(), array);
+		final MappedCallGraphData fromFile = MappedCallGraphData.map(file);
+		assertEquals(mapped, fromFile);
+		assertEquals(mapped.toString(), fromFile.toString());
+		assertEquals(mapped.hashCode(), fromFile.hashCode());
+	}
+
+	@Test
+	public void testWrongFormat() {
+		final byte[] array = new byte[64];
+		array[0] = 1;
+		assertThrows(IllegalArgumentException.class, () -> new MappedCallGraphData(ByteBuffer.wrap(array)));
+	}
+}
@@ -21,22 +21,37 @@ package eu.fasten.core.data.callableindex;
 import static eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord.CallType.DYNAMIC;
 import static eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord.CallType.STATIC;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.io.FileUtils;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.DBOptions;
+import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 
+import com.fasterxml.jackson.core.JsonFactory;
+
 import eu.fasten.core.data.callableindex.GraphMetadata.ReceiverRecord;
+import eu.fasten.core.data.metadatadb.codegen.enums.CallType;
+import eu.fasten.core.data.metadatadb.codegen.tables.records.CallSitesRecord;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
@@ -332,4 +347,294 @@ public class RocksDaoTest {
         assertEquals(graph2.getEdges().size(), graphData2.numArcs());
         assertEquals(new LongOpenHashSet(List.of(258L)), graphData2.externalNodes());
     }
+
+    private static List<List<Long>> randomEdges(final List<Long> nodes, final long seed) {
+        final var random = new Random(seed);
+        final var edges = new ArrayList<List<Long>>();
+        final var seen = new HashSet<List<Long>>();
+        for (int i = 0; i < nodes.size() * 4; i++) {
+            final var edge = List.of(nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())));
+            if (seen.add(edge)) edges.add(edge);
+        }
+        return edges;
+    }
+
+    @Test
+    public void rewriteInMappedFormatTest() throws IOException, RocksDBException {
+        final List<Long> nodes = new LongArrayList();
+        for (long i = 0; i < 300; i++) nodes.add(1000 + 7 * i);
+        final var edges = randomEdges(nodes, 0);
+        final var original = rocksDao.saveToRocksDb(42, nodes, 200, edges);
+
+        assertTrue(rocksDao.rewriteInMappedFormat(42, null));
+        assertFalse(rocksDao.rewriteInMappedFormat(42, null));
+        final var graphData = rocksDao.getGraphData(42);
+        assertTrue(graphData instanceof MappedCallGraphData);
+        assertEquals(original, graphData);
+        assertEquals(edges.size(), graphData.numArcs());
+        assertEquals(new LongOpenHashSet(nodes.subList(200, 300)), graphData.externalNodes());
+    }
+
+    @Test
+    public void sidecarTest() throws IOException, RocksDBException {
+        final List<Long> nodes = new LongArrayList();
+        for (long i = 0; i < 300; i++) nodes.add(5000 + 3 * i);
+        final var original = rocksDao.saveToRocksDb(43, nodes, 150, randomEdges(nodes, 1));
+        // Small graphs are left alone
+        rocksDao.saveToRocksDb(44, List.of(1L, 2L), 1, List.of(List.of(1L, 2L)));
+
+        final File sidecarDir = new File(rocksDaoDir, "sidecar");
+        assertTrue(sidecarDir.mkdir());
+        final var indices = new LongArrayList();
+        rocksDao.forEachGraphIndex(indices::add);
+        assertEquals(LongArrayList.wrap(new long[] { 43, 44 }), indices);
+        assertTrue(rocksDao.rewriteInMappedFormat(43, sidecarDir));
+        assertFalse(rocksDao.rewriteInMappedFormat(44, sidecarDir));
+        assertTrue(RocksDao.sidecarFile(sidecarDir, 43).exists());
+        assertFalse(RocksDao.sidecarFile(sidecarDir, 44).exists());
+
+        assertFalse(rocksDao.getGraphData(43) instanceof MappedCallGraphData);
+        rocksDao.setSidecarDirectory(sidecarDir);
+        final var graphData = rocksDao.getGraphData(43);
+        assertTrue(graphData instanceof MappedCallGraphData);
+        assertEquals(original, graphData);
+        assertEquals(new LongArrayList(List.of(2L)), rocksDao.getGraphData(44).successors(1L));
+    }
+
+    @Test
+    public void staleSidecarTest() throws IOException, RocksDBException {
+        final List<Long> nodes = new LongArrayList();
+        for (long i = 0; i < 300; i++) nodes.add(5000 + 3 * i);
+        rocksDao.saveToRocksDb(45, nodes, 150, randomEdges(nodes, 2));
+        final File sidecarDir = new File(rocksDaoDir, "sidecar");
+        assertTrue(sidecarDir.mkdir());
+        rocksDao.setSidecarDirectory(sidecarDir);
+        assertTrue(rocksDao.rewriteInMappedFormat(45, sidecarDir));
+        assertTrue(rocksDao.getGraphData(45) instanceof MappedCallGraphData);
+
+        // Saving the graph again deletes the sidecar file
+        final var resaved = rocksDao.saveToRocksDb(45, nodes, 150, randomEdges(nodes, 3));
+        assertFalse(RocksDao.sidecarFile(sidecarDir, 45).exists());
+        assertEquals(resaved, rocksDao.getGraphData(45));
+
+        // A sidecar file left behind by a writer that does not know about it is ignored
+        assertTrue(rocksDao.rewriteInMappedFormat(45, sidecarDir));
+        rocksDao.setSidecarDirectory(null);
+        final var rewritten = rocksDao.saveToRocksDb(45, nodes, 100, randomEdges(nodes, 4));
+        rocksDao.setSidecarDirectory(sidecarDir);
+        assertTrue(RocksDao.sidecarFile(sidecarDir, 45).exists());
+        final var graphData = rocksDao.getGraphData(45);
+        assertFalse(graphData instanceof MappedCallGraphData);
+        assertEquals(rewritten, graphData);
+
+        // A sidecar file rewritten from another value is ignored, whatever the length of the values
+        final var other = rocksDao.saveToRocksDb(46, nodes, 100, randomEdges(nodes, 5));
+        assertTrue(rocksDao.rewriteInMappedFormat(46, sidecarDir));
+        Files.copy(RocksDao.sidecarFile(sidecarDir, 46).toPath(), RocksDao.sidecarFile(sidecarDir, 45).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        rocksDao.setSidecarDirectory(sidecarDir);
+        assertFalse(rocksDao.getGraphData(45) instanceof MappedCallGraphData);
+        assertEquals(rewritten, rocksDao.getGraphData(45));
+        assertTrue(rocksDao.getGraphData(46) instanceof MappedCallGraphData);
+        assertEquals(other, rocksDao.getGraphData(46));
+
+        // Deleting the graph deletes the sidecar file
+        assertTrue(rocksDao.rewriteInMappedFormat(45, sidecarDir));
+        assertTrue(rocksDao.deleteCallGraph(45));
+        assertFalse(RocksDao.sidecarFile(sidecarDir, 45).exists());
+        assertNull(rocksDao.getGraphData(45));
+    }
+
+    @Test
+    public void batchedReadTest() throws IOException, RocksDBException {
+        final var json = new JSONObject("{" +
+                "\"index\": 7," +
+                "\"product\": \"test\"," +
+                "\"version\": \"0.0.1\"," +
+                "\"nodes\": [0, 1, 2]," +
+                "\"numInternalNodes\": 2," +
+                "\"edges\": [[0, 1], [1, 2]]," +
+                "\"callsites_info\": {\"[0, 1]\": {\"line\": 5, \"call_type\": \"static\", \"receiver_type_ids\": [1]}}," +
+                "\"gid_to_uri\": {\"0\": \"/java.lang/String.get()long\", \"1\": \"/java.lang/Object.hashCode()int\", \"2\": \"/my.package/Klass.method(int)int\"}," +
+                "\"types_map\": {\"1\": \"/java.lang/String\"}" +
+                "}");
+        rocksDao.saveToRocksDb(ExtendedGidGraph.getGraph(json));
+        for (long index = 1; index <= 4; index++) {
+            final List<Long> nodes = new LongArrayList();
+            for (long i = 0; i < 60 * index; i++) nodes.add(index * 1000 + i);
+            rocksDao.saveToRocksDb(index, nodes, nodes.size() / 2, randomEdges(nodes, index));
+        }
+        rocksDao.setGraphCache(null);
+        rocksDao.setDecodingParallelism(4);
+
+        final var graphs = rocksDao.getGraphData(LongList.of(1, 2, 3, 4, 7, 99, 1));
+        assertEquals(new LongOpenHashSet(new long[] { 1, 2, 3, 4, 7 }), graphs.keySet());
+        for (final long index : graphs.keySet()) {
+            final var expected = rocksDao.getGraphData(index);
+            final var actual = graphs.get(index);
+            assertEquals(expected.nodes(), actual.nodes());
+            assertEquals(expected.externalNodes(), actual.externalNodes());
+            for (final long node : expected.nodes()) assertEquals(expected.successors(node), actual.successors(node));
+        }
+
+        final var metadata = rocksDao.getGraphMetadata(LongList.of(1, 7, 99));
+        assertEquals(new LongOpenHashSet(new long[] { 7 }), metadata.keySet());
+        final var graphMetadata = rocksDao.getGraphMetadata(7, graphs.get(7));
+        for (final long node : graphs.get(7).nodes()) {
+            assertEquals(graphMetadata.gid2NodeMetadata.get(node), metadata.get(7).gid2NodeMetadata.get(node));
+        }
+        assertTrue(rocksDao.getGraphData(LongList.of()).isEmpty());
+    }
+
+    public static ExtendedGidGraph randomExtendedGidGraph(final long index, final int numNodes, final long seed) {
+        final List<Long> nodes = new LongArrayList();
+        final var gid2Uri = new HashMap<Long, String>();
+        for (long i = 0; i < numNodes; i++) {
+            nodes.add(index * 10000 + i);
+            gid2Uri.put(index * 10000 + i, "/my.package/Klass" + i % 7 + ".method" + i + "(int)int");
+        }
+        final var random = new Random(seed);
+        final var callSites = new ArrayList<CallSitesRecord>();
+        for (final var edge : randomEdges(nodes, seed)) {
+            callSites.add(new CallSitesRecord(edge.get(0), edge.get(1), random.nextInt(100), CallType.values()[random.nextInt(5)],
+                    new Long[] { (long)random.nextInt(3) }, null));
+        }
+        final var typeMap = new HashMap<Long, String>();
+        for (long i = 0; i < 3; i++) typeMap.put(i, "/my.package/Type" + i);
+        return new ExtendedGidGraph(index, "test", "0.0.1", nodes, numNodes / 2, callSites, gid2Uri, typeMap);
+    }
+
+    @Test
+    public void classHierarchyFragmentTest() throws IOException, RocksDBException {
+        final var graph = randomExtendedGidGraph(5, 30, 4);
+        final var typeHierarchy = new HashMap<String, List<String>>();
+        typeHierarchy.put("/my.package/Klass0", List.of("/java.lang/Object"));
+        typeHierarchy.put("/my.package/Klass1", List.of("/my.package/Klass0", "/my.package/Interface", "/java.lang/Comparable"));
+        typeHierarchy.put("/my.package/Interface", List.of());
+        final var withHierarchy = new ExtendedGidGraph(graph.getIndex(), "test", "0.0.1", graph.getNodes(), graph.getNumInternalNodes(),
+                new ArrayList<>(graph.getCallsInfo().values()), graph.getGidToUriMap(), graph.getTypeMap(), typeHierarchy);
+
+        // The class hierarchy goes through both parsers
+        assertEquals(typeHierarchy, ExtendedGidGraph.getGraph(withHierarchy.toJSON()).getTypeHierarchy());
+        final var parsed = ExtendedGidGraph.getGraph(new JsonFactory().createParser(withHierarchy.toJSON().toString()));
+        assertEquals(typeHierarchy, parsed.getTypeHierarchy());
+        assertNull(ExtendedGidGraph.getGraph(graph.toJSON()).getTypeHierarchy());
+
+        rocksDao.saveToRocksDb(parsed);
+        rocksDao.saveToRocksDb(randomExtendedGidGraph(6, 10, 5));
+        final var fragments = rocksDao.getClassHierarchyFragments(LongList.of(5, 6, 7));
+        assertEquals(new LongOpenHashSet(new long[] { 5 }), fragments.keySet());
+        final var fragment = fragments.get(5);
+        final var actualHierarchy = new HashMap<String, List<String>>();
+        for (int t = 0; t < fragment.numTypes(); t++) actualHierarchy.put(fragment.type(t), fragment.superTypes(t));
+        assertEquals(typeHierarchy, actualHierarchy);
+
+        // The signature table agrees with the metadata
+        final var metadata = rocksDao.getGraphMetadata(LongList.of(5)).get(5).gid2NodeMetadata;
+        assertEquals(metadata.size(), fragment.numCallables());
+        for (int i = 0; i < fragment.numCallables(); i++) {
+            final var nodeMetadata = metadata.get(fragment.callableId(i));
+            assertEquals(nodeMetadata.type, fragment.callableType(i));
+            assertEquals(nodeMetadata.signature, fragment.callableSignature(i));
+            if (i > 0) assertTrue(fragment.callableId(i - 1) < fragment.callableId(i));
+        }
+
+        // Storing the graph again without a class hierarchy removes the fragment
+        rocksDao.saveToRocksDb(graph);
+        assertTrue(rocksDao.getClassHierarchyFragments(LongList.of(5)).isEmpty());
+        rocksDao.saveToRocksDb(parsed);
+        assertTrue(rocksDao.deleteCallGraph(5));
+        assertTrue(rocksDao.getClassHierarchyFragments(LongList.of(5)).isEmpty());
+    }
+
+    @Test
+    public void unknownLineTest() throws IOException, RocksDBException {
+        final var graph = randomExtendedGidGraph(8, 20, 6);
+        final var callSites = new ArrayList<>(graph.getCallsInfo().values());
+        final var unknown = callSites.get(0);
+        unknown.setLine(null);
+        final var withUnknownLine = new ExtendedGidGraph(graph.getIndex(), "test", "0.0.1", graph.getNodes(), graph.getNumInternalNodes(),
+                callSites, graph.getGidToUriMap(), graph.getTypeMap());
+
+        // Both parsers read the null line written by toJSON()
+        final var json = withUnknownLine.toJSON();
+        assertTrue(json.toString().contains("\"line\":null"));
+        assertEquals(withUnknownLine.getCallsInfo(), ExtendedGidGraph.getGraph(json).getCallsInfo());
+        final var parsed = ExtendedGidGraph.getGraph(new JsonFactory().createParser(json.toString()));
+        assertEquals(withUnknownLine.getCallsInfo(), parsed.getCallsInfo());
+
+        rocksDao.saveToRocksDb(parsed);
+        final var metadata = rocksDao.getGraphMetadata(LongList.of(8)).get(8).gid2NodeMetadata.get(unknown.getSourceId().longValue());
+        assertTrue(metadata.receiverRecords.stream().anyMatch(r -> r.line == 0));
+    }
+
+    @Test
+    public void readOnlyWithoutHierarchyTest() throws IOException, RocksDBException {
+        final File dir = Files.createTempDirectory(RocksDaoTest.class.getSimpleName()).toFile();
+        try {
+            // A database with graphs and metadata, but without the class hierarchy column family
+            final var handles = new ArrayList<ColumnFamilyHandle>();
+            try (var options = new DBOptions().setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+                    var legacy = RocksDB.open(options, dir.toString(), List.of(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY),
+                            new ColumnFamilyDescriptor("metadata".getBytes())), handles)) {
+                handles.forEach(ColumnFamilyHandle::close);
+            }
+            try (var readOnly = new RocksDao(dir.toString(), true)) {
+                assertTrue(readOnly.getGraphData(LongList.of(1)).isEmpty());
+                assertTrue(readOnly.getClassHierarchyFragments(LongList.of(1)).isEmpty());
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void ingestTest() throws IOException, RocksDBException {
+        final var graphs = List.of(randomExtendedGidGraph(3, 300, 0), randomExtendedGidGraph(1, 10, 1), randomExtendedGidGraph(2, 500, 2));
+        final var values = new Long2ObjectOpenHashMap<RocksDao.EncodedGraph>();
+        for (final var graph : graphs) {
+            // Go through the streaming parser
+            final var parser = new JsonFactory().createParser(graph.toJSON().toString());
+            final var parsed = ExtendedGidGraph.getGraph(parser);
+            assertEquals(graph.getNodes(), parsed.getNodes());
+            assertEquals(graph.getNumInternalNodes(), parsed.getNumInternalNodes());
+            assertEquals(graph.getCallsInfo(), parsed.getCallsInfo());
+            assertEquals(graph.getGidToUriMap(), parsed.getGidToUriMap());
+            assertEquals(graph.getTypeMap(), parsed.getTypeMap());
+            values.put(parsed.getIndex(), rocksDao.encode(parsed));
+        }
+        final File tempDir = new File(rocksDaoDir, "tmp");
+        assertTrue(tempDir.mkdir());
+        rocksDao.ingest(values, tempDir);
+        assertEquals(0, tempDir.list().length);
+
+        final File referenceDir = Files.createTempDirectory(RocksDaoTest.class.getSimpleName()).toFile();
+        try (var reference = new RocksDao(referenceDir.toString(), false)) {
+            for (final var graph : graphs) {
+                reference.saveToRocksDb(graph);
+                final var expected = reference.getGraphData(graph.getIndex());
+                final var actual = rocksDao.getGraphData(graph.getIndex());
+                assertEquals(graph.getNodes().size() > 100, actual instanceof MappedCallGraphData);
+                assertEquals(expected.nodes(), actual.nodes());
+                assertEquals(expected.externalNodes(), actual.externalNodes());
+                assertEquals(expected.numArcs(), actual.numArcs());
+                for (final long node : expected.nodes()) {
+                    assertEquals(new LongOpenHashSet(expected.successors(node)), new LongOpenHashSet(actual.successors(node)));
+                }
+                final var expectedMetadata = reference.getGraphMetadata(graph.getIndex(), expected);
+                final var actualMetadata = rocksDao.getGraphMetadata(graph.getIndex(), actual);
+                for (final long node : expected.nodes()) {
+                    assertEquals(expectedMetadata.gid2NodeMetadata.get(node), actualMetadata.gid2NodeMetadata.get(node));
+                }
+            }
+        } finally {
+            FileUtils.deleteDirectory(referenceDir);
+        }
+
+        // Ingestion replaces existing values
+        values.clear();
+        values.put(1, rocksDao.encode(randomExtendedGidGraph(1, 20, 3)));
+        rocksDao.ingest(values, tempDir);
+        assertEquals(20, rocksDao.getGraphData(1).numNodes());
+        assertEquals(20, rocksDao.getGraphMetadata(LongList.of(1)).get(1).gid2NodeMetadata.size());
+    }
 }
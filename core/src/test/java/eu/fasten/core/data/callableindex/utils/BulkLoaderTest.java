@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex.utils;
+
+import static eu.fasten.core.data.callableindex.RocksDaoTest.randomExtendedGidGraph;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import eu.fasten.core.data.callableindex.ExtendedGidGraph;
+import eu.fasten.core.data.callableindex.RocksDao;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class BulkLoaderTest {
+
+    @TempDir
+    public Path tempDir;
+
+    private static ExtendedGidGraph withHierarchy(final ExtendedGidGraph graph, final Map<String, List<String>> typeHierarchy) {
+        return new ExtendedGidGraph(graph.getIndex(), "test", "0.0.1", graph.getNodes(), graph.getNumInternalNodes(),
+                new ArrayList<>(graph.getCallsInfo().values()), graph.getGidToUriMap(), graph.getTypeMap(), typeHierarchy);
+    }
+
+    @Test
+    public void classHierarchyFragmentsAreIngested() throws Exception {
+        final var typeHierarchy = new HashMap<String, List<String>>();
+        typeHierarchy.put("/my.package/Klass0", List.of("/java.lang/Object"));
+        typeHierarchy.put("/my.package/Klass1", List.of("/my.package/Klass0", "/java.lang/Comparable"));
+        final var graph1 = withHierarchy(randomExtendedGidGraph(1, 200, 0), typeHierarchy);
+        final var graph2 = randomExtendedGidGraph(2, 20, 1);
+        final var graph3 = withHierarchy(randomExtendedGidGraph(3, 20, 2), Map.of("/my.package/Klass2", List.of()));
+
+        final File input = tempDir.resolve("graphs.json").toFile();
+        Files.writeString(input.toPath(), new JSONArray(List.of(graph1.toJSON(), graph2.toJSON())).toString());
+        final File other = tempDir.resolve("other.json").toFile();
+        Files.writeString(other.toPath(), graph3.toJSON().toString());
+        final File db = tempDir.resolve("db").toFile();
+
+        try (var rocksDao = new RocksDao(db.toString(), false)) {
+            // A fragment stored earlier for a graph now loaded without a class hierarchy is stale
+            rocksDao.saveToRocksDb(withHierarchy(graph2, typeHierarchy));
+
+            final var loader = new BulkLoader();
+            loader.threads = 2;
+            loader.batchSize = 2;
+            assertEquals(3, loader.load(rocksDao, List.of(input.toPath(), other.toPath()), db));
+
+            final var fragments = rocksDao.getClassHierarchyFragments(LongList.of(1, 2, 3));
+            assertEquals(new LongOpenHashSet(new long[] { 1, 3 }), fragments.keySet());
+            final var fragment = fragments.get(1);
+            final var actualHierarchy = new HashMap<String, List<String>>();
+            for (int t = 0; t < fragment.numTypes(); t++) actualHierarchy.put(fragment.type(t), fragment.superTypes(t));
+            assertEquals(typeHierarchy, actualHierarchy);
+            assertEquals(graph1.getNodes().size(), rocksDao.getGraphData(1).numNodes());
+            assertTrue(fragments.get(3).numCallables() > 0);
+        }
+    }
+}
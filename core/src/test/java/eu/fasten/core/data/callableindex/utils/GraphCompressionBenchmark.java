@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data.callableindex.utils;
+
+import eu.fasten.core.data.Constants;
+import eu.fasten.core.index.BVGraphCompressor;
+import it.unimi.dsi.util.XoRoShiRo128PlusPlusRandomGenerator;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.Transform;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.io.FileUtils;
+import picocli.CommandLine;
+
+/**
+ * Compares the compression of graphs and of their transposes using temporary files (i.e.,
+ * {@link BVGraph#store(ImmutableGraph, CharSequence)} followed by
+ * {@link BVGraph#load(CharSequence)}, as {@link eu.fasten.core.data.callableindex.RocksDao} used to
+ * do) with in-memory compression using {@link BVGraphCompressor}, on random graphs of sizes around
+ * {@link Constants#MIN_COMPRESSED_GRAPH_SIZE}.
+ */
+@CommandLine.Command(name = "GraphCompressionBenchmark")
+public class GraphCompressionBenchmark implements Runnable {
+
+    @CommandLine.Option(names = {"-n", "--nodes"},
+        paramLabel = "NODES",
+        split = ",",
+        description = "Numbers of nodes of the graphs (default: fractions and multiples of the minimum compressed graph size)")
+    List<Integer> sizes = List.of(Constants.MIN_COMPRESSED_GRAPH_SIZE / 2, Constants.MIN_COMPRESSED_GRAPH_SIZE + 1,
+        2 * Constants.MIN_COMPRESSED_GRAPH_SIZE, 10 * Constants.MIN_COMPRESSED_GRAPH_SIZE, 100 * Constants.MIN_COMPRESSED_GRAPH_SIZE);
+
+    @CommandLine.Option(names = {"-d", "--degree"},
+        paramLabel = "DEGREE",
+        description = "Average outdegree (default: ${DEFAULT-VALUE})")
+    int degree = 4;
+
+    @CommandLine.Option(names = {"-w", "--warmup"},
+        paramLabel = "WARMUP",
+        description = "Warmup iterations per size (default: ${DEFAULT-VALUE})")
+    int warmup = 50;
+
+    @CommandLine.Option(names = {"-i", "--iterations"},
+        paramLabel = "ITERATIONS",
+        description = "Measured iterations per size (default: ${DEFAULT-VALUE})")
+    int iterations = 200;
+
+    /** Prevents the JIT from eliminating the compression. */
+    private long sink;
+
+    public static void main(String[] args) {
+        final int exitCode = new CommandLine(new GraphCompressionBenchmark()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        System.out.format("%10s%14s%14s%10s%14s\n", "Nodes", "Files (us)", "Memory (us)", "Speedup", "Bits/arc");
+        System.out.println("--------------------------------------------------------------");
+        try {
+            for (final int n : sizes) {
+                final ImmutableGraph graph = randomGraph(n, degree, n);
+                for (int i = 0; i < warmup; i++) {
+                    sink += compressWithFiles(graph);
+                    sink += compressInMemory(graph);
+                }
+                long files = 0, memory = 0;
+                // Interleave the two methods, so that they experience the same conditions
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    sink += compressWithFiles(graph);
+                    files += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    sink += compressInMemory(graph);
+                    memory += System.nanoTime() - start;
+                }
+                final Properties properties = new Properties();
+                BVGraphCompressor.compress(graph, properties);
+                System.out.format("%10d%14.1f%14.1f%10.2f%14.3f\n", n, files / 1E3 / iterations, memory / 1E3 / iterations,
+                    (double)files / memory, Double.parseDouble(properties.getProperty("bitsperlink")));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static ImmutableGraph randomGraph(final int n, final int degree, final long seed) {
+        final XoRoShiRo128PlusPlusRandomGenerator random = new XoRoShiRo128PlusPlusRandomGenerator(seed);
+        final ArrayListMutableGraph graph = new ArrayListMutableGraph(n);
+        for (long a = (long)n * degree; a-- != 0;) {
+            final int x = random.nextInt(n);
+            // Call graphs have some locality
+            final int y = Math.floorMod(x + (int)Math.round(random.nextGaussian() * 20), n);
+            try {
+                graph.addArc(x, y);
+            } catch (IllegalArgumentException duplicate) {
+                // Ignore duplicate arcs
+            }
+        }
+        return graph.immutableView();
+    }
+
+    /** Compresses a graph and its transpose as {@code RocksDao} used to do. */
+    private static long compressWithFiles(final ImmutableGraph graph) throws IOException {
+        final File dir = Files.createTempDirectory(GraphCompressionBenchmark.class.getSimpleName()).toFile();
+        try {
+            final String basename = new File(dir, "graph").toString();
+            long result = 0;
+            for (final ImmutableGraph g : new ImmutableGraph[] {graph, Transform.transpose(graph)}) {
+                BVGraph.store(g, basename);
+                final Properties properties = new Properties();
+                try (FileInputStream propertyFile = new FileInputStream(basename + BVGraph.PROPERTIES_EXTENSION)) {
+                    properties.load(propertyFile);
+                }
+                result += BVGraph.load(basename).numArcs() + properties.size();
+            }
+            return result;
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static long compressInMemory(final ImmutableGraph graph) {
+        long result = 0;
+        for (final ImmutableGraph g : new ImmutableGraph[] {graph, Transform.transpose(graph)}) {
+            final Properties properties = new Properties();
+            result += BVGraphCompressor.compress(g, properties).numArcs() + properties.size();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dbconnectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import eu.fasten.core.metrics.MetricRegistry;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+public class PooledConnectionProviderTest {
+
+    private static class Factory implements PooledConnectionProvider.ConnectionFactory {
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        @Override
+        public Connection newConnection() {
+            opened.incrementAndGet();
+            return new MockConnection(ctx -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                concurrent.decrementAndGet();
+                return new MockResult[] {new MockResult(1)};
+            });
+        }
+    }
+
+    @Test
+    public void testReuse() {
+        var factory = new Factory();
+        var pool = new PooledConnectionProvider(factory, 4, true, 1000);
+        var first = pool.acquire();
+        pool.release(first);
+        assertSame(first, pool.acquire());
+        var second = pool.acquire();
+        assertNotSame(first, second);
+        pool.release(second);
+        pool.release(first);
+        assertEquals(2, factory.opened.get());
+        assertEquals(2, pool.openConnections());
+        assertEquals(2, pool.idleConnections());
+        assertEquals(3, pool.waits());
+        pool.close();
+        assertEquals(0, pool.openConnections());
+        assertThrows(DataAccessException.class, pool::acquire);
+    }
+
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        var factory = new Factory();
+        var pool = new PooledConnectionProvider(factory, 3, true, 10_000);
+        DSLContext context = DSL.using(pool, SQLDialect.POSTGRES);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        var futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 20; j++) {
+                    context.execute("update t set x = 1");
+                }
+            }));
+        }
+        for (var future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertTrue(factory.maxConcurrent.get() <= 3);
+        assertTrue(factory.opened.get() <= 3);
+        assertEquals(16 * 20, pool.waits());
+        assertTrue(pool.maxWaitNanos() > 0);
+        assertTrue(pool.totalWaitNanos() >= pool.maxWaitNanos());
+        assertEquals(0, pool.timeouts());
+    }
+
+    @Test
+    public void testMetrics() {
+        var pool = new PooledConnectionProvider(new Factory(), 2, true, 10);
+        var registry = new MetricRegistry();
+        pool.registerMetrics(registry, "database", "test");
+        var first = pool.acquire();
+        pool.acquire();
+        assertThrows(DataAccessException.class, pool::acquire);
+        pool.release(first);
+        assertEquals(2, registry.gauge("fasten_db_pool_max_connections", () -> -1, "database", "test").value());
+        assertEquals(2, registry.gauge("fasten_db_pool_open_connections", () -> -1, "database", "test").value());
+        assertEquals(1, registry.gauge("fasten_db_pool_idle_connections", () -> -1, "database", "test").value());
+        assertEquals(3, registry.gauge("fasten_db_pool_acquires", () -> -1, "database", "test").value());
+        assertEquals(1, registry.gauge("fasten_db_pool_acquire_timeouts", () -> -1, "database", "test").value());
+        assertTrue(registry.scrape().contains("fasten_db_pool_wait_seconds{database=\"test\"}"));
+    }
+
+    @Test
+    public void testTimeout() {
+        var pool = new PooledConnectionProvider(new Factory(), 1, true, 10);
+        var connection = pool.acquire();
+        assertThrows(DataAccessException.class, pool::acquire);
+        assertEquals(1, pool.timeouts());
+        pool.release(connection);
+        pool.release(pool.acquire());
+    }
+
+    @Test
+    public void testReset() throws SQLException {
+        var pool = new PooledConnectionProvider(new Factory(), 1, false, 1000);
+        var connection = pool.acquire();
+        assertFalse(connection.getAutoCommit());
+        connection.setAutoCommit(true);
+        pool.release(connection);
+        assertFalse(pool.acquire().getAutoCommit());
+    }
+
+    @Test
+    public void testClosedConnectionIsDiscarded() throws SQLException {
+        var factory = new Factory();
+        var pool = new PooledConnectionProvider(factory, 1, true, 1000);
+        var connection = pool.acquire();
+        connection.close();
+        pool.release(connection);
+        assertEquals(0, pool.openConnections());
+        assertNotSame(connection, pool.acquire());
+        assertEquals(2, factory.opened.get());
+    }
+
+    @Test
+    public void testFailingFactory() {
+        var pool = new PooledConnectionProvider(() -> {
+            throw new SQLException("down");
+        }, 1, true, 10);
+        for (int i = 0; i < 3; i++) {
+            var e = assertThrows(DataAccessException.class, pool::acquire);
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        // Permits are given back on failure
+        assertEquals(0, pool.timeouts());
+    }
+}
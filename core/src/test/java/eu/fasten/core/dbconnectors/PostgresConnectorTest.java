@@ -10,6 +10,8 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.containers.wait.strategy.Wait;
 import java.sql.SQLException;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class PostgresConnectorTest {
@@ -62,6 +64,31 @@ public class PostgresConnectorTest {
                                 postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(), true)));
     }
 
+    @Test
+    public void Given_CorrectKbCredentials_When_PooledContextIsCreated_Then_QueriesShouldUseThePool() {
+
+        var context = assertDoesNotThrow(() ->
+                SystemLambda.withEnvironmentVariable(Constants.pgPasswordEnvVariable, KB_PASSWORD).execute(() ->
+                        PostgresConnector.getPooledDSLContext(
+                                postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(), true, 2, 100)));
+        context.selectOne().fetch();
+        var pool = PostgresConnector.getPool(context);
+        assertNotNull(pool);
+        // The connection opened to check the credentials is reused by the query
+        assertEquals(1, pool.openConnections());
+        assertEquals(2, pool.waits());
+        pool.close();
+    }
+
+    @Test
+    public void Given_WrongKbPassword_When_PooledContextIsCreated_Then_SQLExceptionShouldBeThrown() {
+
+        assertThrows(SQLException.class, () ->
+                SystemLambda.withEnvironmentVariable(Constants.pgPasswordEnvVariable, "wrongpassword").execute(() ->
+                        PostgresConnector.getPooledDSLContext(
+                                postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(), true)));
+    }
+
     @AfterAll
     static void stopPostgresContainer() {
         postgreSQLContainer.stop();
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.Revision;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactDependencyGraphTest {
+
+    private static final Revision A1 = new Revision(1, "g:a", "1.0", new Timestamp(10));
+    private static final Revision A2 = new Revision(2, "g:a", "1.1", new Timestamp(20));
+    private static final Revision B1 = new Revision(3, "g:b", "2.0", new Timestamp(15));
+    private static final Revision C1 = new Revision(4, "g:c", "3.0", new Timestamp(30));
+    private static final Revision D1 = new Revision(5, "g:aa", "1.0", null);
+
+    /** C1 and B1 depend on A1, C1 depends on B1 and A2, D1 depends on C1. */
+    static Graph<Revision, DependencyEdge> graph() {
+        var graph = new DefaultDirectedGraph<Revision, DependencyEdge>(DependencyEdge.class);
+        for (var r : new Revision[]{A1, A2, B1, C1, D1}) {
+            graph.addVertex(r);
+        }
+        for (var e : new Revision[][]{{B1, A1}, {C1, A1}, {C1, B1}, {C1, A2}, {D1, C1}}) {
+            graph.addEdge(e[0], e[1], new DependencyEdge(e[0], e[1]));
+        }
+        return graph;
+    }
+
+    static CompactDependencyGraph store(Graph<Revision, DependencyEdge> graph, Path dir) throws IOException {
+        var file = dir.resolve("graph" + CompactDependencyGraph.EXTENSION).toFile();
+        CompactDependencyGraph.store(graph, file);
+        return CompactDependencyGraph.load(file);
+    }
+
+    @Test
+    public void roundTrip(@TempDir Path dir) throws IOException {
+        var graph = graph();
+        var compact = store(graph, dir);
+        assertEquals(5, compact.numNodes());
+        assertEquals(5, compact.numArcs());
+
+        for (var revision : graph.vertexSet()) {
+            int id = compact.id(revision.packageName, revision.version.toString());
+            var copy = compact.revision(id);
+            assertEquals(revision, copy);
+            assertEquals(revision.id, copy.id);
+            assertEquals(revision.createdAt, copy.createdAt);
+
+            assertEquals(graph.outDegreeOf(revision), compact.dependencyCount(id));
+            var dependencies = new HashSet<Revision>();
+            for (int i = 0; i < compact.dependencyCount(id); i++) {
+                dependencies.add(compact.revision(compact.dependency(id, i)));
+            }
+            var expected = new HashSet<Revision>();
+            graph.outgoingEdgesOf(revision).forEach(e -> expected.add(e.target));
+            assertEquals(expected, dependencies);
+
+            var dependents = new HashSet<Revision>();
+            for (int i = 0; i < compact.dependentCount(id); i++) {
+                dependents.add(compact.revision(compact.dependent(id, i)));
+            }
+            expected.clear();
+            graph.incomingEdgesOf(revision).forEach(e -> expected.add(e.source));
+            assertEquals(expected, dependents);
+        }
+        // Dependents are sorted by timestamp
+        assertEquals(B1, compact.revision(compact.dependent(0, 0)));
+        assertEquals(C1, compact.revision(compact.dependent(0, 1)));
+    }
+
+    @Test
+    public void versionPrefixes(@TempDir Path dir) throws IOException {
+        var graph = new DefaultDirectedGraph<Revision, DependencyEdge>(DependencyEdge.class);
+        var rc = new Revision(1, "g:p", "1.2-rc1", new Timestamp(10));
+        var patch = new Revision(2, "g:p", "1.2.1", new Timestamp(20));
+        graph.addVertex(rc);
+        graph.addVertex(patch);
+        var compact = store(graph, dir);
+        // Versions having the requested one as a prefix do not match it
+        assertEquals(-1, compact.id("g:p", "1.2"));
+        assertEquals(-1, compact.id("g:p", "1"));
+        assertEquals(rc, compact.revision(compact.id("g:p", "1.2-rc1")));
+        assertEquals(patch, compact.revision(compact.id("g:p", "1.2.1")));
+
+        var release = new Revision(3, "g:p", "1.2", new Timestamp(30));
+        graph.addVertex(release);
+        compact = store(graph, dir);
+        assertEquals(release, compact.revision(compact.id("g:p", "1.2")));
+        assertEquals(rc, compact.revision(compact.id("g:p", "1.2-rc1")));
+        assertEquals(-1, compact.id("g:p", "1.2-rc"));
+    }
+
+    @Test
+    public void firstDependent(@TempDir Path dir) throws IOException {
+        var compact = store(graph(), dir);
+        int a1 = compact.id("g:a", "1.0");
+        assertEquals(0, compact.firstDependent(a1, Long.MIN_VALUE));
+        assertEquals(0, compact.firstDependent(a1, 15));
+        assertEquals(1, compact.firstDependent(a1, 16));
+        assertEquals(1, compact.firstDependent(a1, 30));
+        assertEquals(2, compact.firstDependent(a1, 31));
+        // g:aa:1.0 has no timestamp
+        int c1 = compact.id("g:c", "3.0");
+        assertEquals(0, compact.firstDependent(c1, Long.MIN_VALUE));
+        assertEquals(1, compact.firstDependent(c1, 0));
+        assertEquals(0, compact.firstDependent(compact.id("g:aa", "1.0"), 0));
+    }
+
+    @Test
+    public void lookup(@TempDir Path dir) throws IOException {
+        var compact = store(graph(), dir);
+        // Ids follow the lexicographical order of coordinates
+        assertEquals(0, compact.id("g:a", "1.0"));
+        assertEquals(1, compact.id("g:a", "1.1"));
+        assertEquals(2, compact.id("g:aa", "1.0"));
+        assertEquals(4, compact.id("g:c", "3.0"));
+        // Equal Maven versions with a different spelling
+        assertEquals(0, compact.id("g:a", "1.0.0"));
+        assertEquals(1, compact.id("g:a", "1.1.0"));
+        assertEquals(-1, compact.id("g:a", "1.2"));
+        assertEquals(-1, compact.id("g:", "1.0"));
+        assertEquals(-1, compact.id("g:d", "1.0"));
+        assertEquals(Long.MIN_VALUE, compact.createdAt(2));
+    }
+
+    @Test
+    public void revisionsOfPackage(@TempDir Path dir) throws IOException {
+        var compact = store(graph(), dir);
+        assertArrayEquals(new int[]{0, 2}, compact.revisions("g:a"));
+        assertArrayEquals(new int[]{2, 3}, compact.revisions("g:aa"));
+        assertArrayEquals(new int[]{5, 5}, compact.revisions("g:d"));
+        assertArrayEquals(new int[]{0, 0}, compact.revisions("a"));
+    }
+
+    @Test
+    public void storeWithAdditions(@TempDir Path dir) throws IOException {
+        var compact = store(graph(), dir);
+        var e1 = new Revision(6, "g:e", "1.0", new Timestamp(40));
+        var e2 = new Revision(7, "g:e", "1.0-rc1", new Timestamp(35));
+        var file = dir.resolve("graph" + CompactDependencyGraph.EXTENSION).toFile();
+        // B1 and the edge from C1 to A1 are in the graph already
+        CompactDependencyGraph.store(compact, List.of(e1, e2, B1), List.of(new DependencyEdge(e1, A2),
+                new DependencyEdge(B1, e1), new DependencyEdge(C1, A1)), file);
+        var updated = CompactDependencyGraph.load(file);
+
+        assertEquals(7, updated.numNodes());
+        assertEquals(7, updated.numArcs());
+        // A version which is a prefix of another one is found exactly
+        int e = updated.id("g:e", "1.0");
+        assertEquals(5, e);
+        assertEquals(6, updated.id("g:e", "1.0-rc1"));
+        assertEquals(e1.id, updated.databaseId(e));
+        assertEquals(40, updated.createdAt(e));
+        int a2 = updated.id("g:a", "1.1");
+        assertEquals(2, updated.dependentCount(a2));
+        assertEquals(updated.id("g:c", "3.0"), updated.dependent(a2, 0));
+        assertEquals(e, updated.dependent(a2, 1));
+        int b1 = updated.id("g:b", "2.0");
+        assertEquals(2, updated.dependencyCount(b1));
+        assertEquals(e, updated.dependency(b1, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> CompactDependencyGraph.store(updated, List.of(),
+                List.of(new DependencyEdge(A1, new Revision("g:f", "1.0", null))), file));
+    }
+
+    @Test
+    public void emptyGraph(@TempDir Path dir) throws IOException {
+        var compact = store(new DefaultDirectedGraph<>(DependencyEdge.class), dir);
+        assertEquals(0, compact.numNodes());
+        assertEquals(-1, compact.id("g:a", "1.0"));
+    }
+
+    @Test
+    public void invalidFile(@TempDir Path dir) throws IOException {
+        var file = dir.resolve("invalid").toFile();
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> CompactDependencyGraph.load(file));
+        Files.write(file.toPath(), new byte[64]);
+        assertThrows(IOException.class, () -> CompactDependencyGraph.load(file));
+
+        var valid = dir.resolve("graph" + CompactDependencyGraph.EXTENSION).toFile();
+        CompactDependencyGraph.store(graph(), valid);
+        var truncated = Files.readAllBytes(valid.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(truncated, truncated.length - 1));
+        assertThrows(IOException.class, () -> CompactDependencyGraph.load(file));
+    }
+}
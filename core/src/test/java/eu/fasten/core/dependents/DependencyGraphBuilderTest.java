@@ -22,9 +22,20 @@ import eu.fasten.core.dependents.data.Dependency;
 import eu.fasten.core.dependents.data.Revision;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.json.JSONArray;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DependencyGraphBuilderTest {
 
@@ -146,4 +157,69 @@ public class DependencyGraphBuilderTest {
         actual = graphBuilder.findMatchingRevisions(revisions, constraints);
         assertEquals(expected, actual);
     }
+
+    /**
+     * Loads the fixture, which contains rows of package versions with their dependencies, in the same way
+     * as {@link DependencyGraphBuilder#getDependencyList}.
+     */
+    static Map<Revision, List<Dependency>> loadFixture() throws IOException {
+        var rows = new JSONArray(new String(DependencyGraphBuilderTest.class.getResourceAsStream(
+                "/dependents/dependency-graph-fixture.json").readAllBytes(), StandardCharsets.UTF_8));
+        var dependencies = new HashMap<Revision, List<Dependency>>();
+        for (int i = 0; i < rows.length(); i++) {
+            var row = rows.getJSONObject(i);
+            var revision = new Revision(row.getLong("id"), row.getString("package"), row.getString("version"),
+                    new Timestamp(row.getLong("createdAt")));
+            var list = new ArrayList<Dependency>();
+            var json = row.getJSONArray("dependencies");
+            for (int j = 0; j < json.length(); j++) {
+                list.add(Dependency.fromJSON(json.getJSONObject(j)));
+            }
+            dependencies.merge(revision, list.isEmpty() ? List.of(Dependency.empty) : list, (x, y) -> {
+                var z = new ArrayList<Dependency>(x);
+                z.addAll(y);
+                return z;
+            });
+        }
+        return dependencies;
+    }
+
+    /**
+     * Checks the edges generated from the fixture against those generated by the builder based on
+     * {@link DependencyGraphBuilder#findMatchingRevisions}. The graph itself is not compared, as it
+     * keeps a single edge between revisions whose versions are equal for Maven (e.g., 1.0 and 1.0.0),
+     * depending on the order in which edges are added.
+     */
+    @Test
+    public void generateEdgesGoldenTest() throws IOException {
+        var dependencies = loadFixture();
+        var edges = graphBuilder.generateEdges(dependencies);
+        var actual = edges.stream().map(e -> e.source + " -> " + e.target)
+                .collect(Collectors.toCollection(TreeSet::new));
+        var expected = new String(DependencyGraphBuilderTest.class.getResourceAsStream(
+                "/dependents/dependency-graph-edges.txt").readAllBytes(), StandardCharsets.UTF_8).lines()
+                .collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), edges.size());
+
+        var graph = graphBuilder.buildDependencyGraph(dependencies);
+        assertEquals(dependencies.keySet(), graph.vertexSet());
+        assertTrue(graph.edgeSet().stream().allMatch(e -> expected.contains(e.source + " -> " + e.target)));
+    }
+
+    @Test
+    public void versionRangeIndexMatchesFindMatchingRevisionsTest() throws IOException {
+        var dependencies = loadFixture();
+        var index = new VersionRangeIndex(dependencies.keySet());
+        var byPackage = dependencies.keySet().stream().collect(Collectors.groupingBy(r -> r.packageName));
+        for (var list : dependencies.values()) {
+            for (var dependency : list) {
+                var expected = graphBuilder.findMatchingRevisions(byPackage.get(dependency.packageName),
+                        dependency.versionConstraints);
+                var actual = index.findMatchingRevisions(dependency);
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual), dependency.toString());
+                assertEquals(expected.size(), actual.size(), dependency.toString());
+            }
+        }
+    }
 }
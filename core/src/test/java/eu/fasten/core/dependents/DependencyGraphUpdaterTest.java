@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.Dependency;
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.Revision;
+import eu.fasten.core.dependents.utils.DependencyGraphUtilities;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.jgrapht.Graph;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DependencyGraphUpdaterTest {
+
+    private static Map<Revision, List<Dependency>> fixture;
+    private static Graph<Revision, DependencyEdge> expected;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        fixture = DependencyGraphBuilderTest.loadFixture();
+        expected = new DependencyGraphBuilder().buildDependencyGraph(fixture);
+    }
+
+    /** Returns the revisions of the fixture with database ids in the given range. */
+    private static Map<Revision, List<Dependency>> revisions(long from, long to) {
+        return fixture.entrySet().stream().filter(e -> e.getKey().id >= from && e.getKey().id < to)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /** Looks up dependents in the fixture, as {@link DependencyGraphBuilder#getDependents} does in the database. */
+    private static Map<Revision, List<Dependency>> dependents(Collection<String> packageNames) {
+        var dependents = new HashMap<Revision, List<Dependency>>();
+        fixture.forEach((revision, dependencies) -> {
+            var matching = dependencies.stream().filter(d -> packageNames.contains(d.packageName))
+                    .collect(Collectors.toList());
+            if (!matching.isEmpty()) {
+                dependents.put(revision, matching);
+            }
+        });
+        return dependents;
+    }
+
+    /**
+     * Returns the edges of a graph, with versions in canonical form, as the builder keeps a single edge
+     * between revisions whose versions are spelled differently but equal for Maven.
+     */
+    private static Set<String> edges(Graph<Revision, DependencyEdge> graph) {
+        return graph.edgeSet().stream().map(e -> canonical(e.source.packageName, e.source.version.toString())
+                + " -> " + canonical(e.target.packageName, e.target.version.toString())).collect(Collectors.toSet());
+    }
+
+    private static Set<String> edges(CompactDependencyGraph graph) {
+        var edges = new HashSet<String>();
+        for (int i = 0; i < graph.numNodes(); i++) {
+            for (int j = 0; j < graph.dependencyCount(i); j++) {
+                int target = graph.dependency(i, j);
+                edges.add(canonical(graph.packageName(i), graph.version(i)) + " -> "
+                        + canonical(graph.packageName(target), graph.version(target)));
+            }
+        }
+        return edges;
+    }
+
+    private static String canonical(String packageName, String version) {
+        return packageName + ":" + new ComparableVersion(version).getCanonical();
+    }
+
+    @Test
+    public void incrementalUpdatesMatchFullBuild(@TempDir Path dir) throws Exception {
+        var path = dir.resolve("graph").toString();
+        var base = new DependencyGraphBuilder().buildDependencyGraph(revisions(0, 150));
+        DependencyGraphUtilities.serializeDependencyGraph(base, path);
+        var compactFile = new File(path + CompactDependencyGraph.EXTENSION);
+        CompactDependencyGraph.store(base, compactFile);
+
+        var updater = new DependencyGraphUpdater(path, CompactDependencyGraph.load(compactFile),
+                DependencyGraphUpdaterTest::dependents);
+        assertEquals(revisions(0, 150).keySet().stream().mapToLong(r -> r.id).max().orElseThrow(), updater.watermark());
+        assertNull(updater.checkpoint());
+
+        assertEquals(0, updater.add(revisions(0, 150)));
+        var batch = revisions(150, 210);
+        assertEquals(batch.size(), updater.add(batch));
+        assertEquals(batch.keySet().stream().mapToLong(r -> r.id).max().orElseThrow(), updater.watermark());
+        var first = updater.checkpoint();
+        assertEquals(batch.size(), first.revisions.size());
+        assertEquals(0, updater.pending());
+
+        assertEquals(revisions(210, Long.MAX_VALUE).size(), updater.add(revisions(210, Long.MAX_VALUE)));
+        var second = updater.checkpoint();
+        assertEquals(fixture.size(), updater.graph().numNodes());
+        assertEquals(edges(expected), edges(updater.graph()));
+
+        // The delta log is replayed when the compact graph is recreated from the serialized graph
+        assertEquals(List.of(first, second), DependencyGraphUtilities.readDeltas(path));
+        Files.delete(compactFile.toPath());
+        var replayed = DependencyGraphUtilities.loadCompactDependencyGraph(null, path);
+        assertEquals(fixture.size(), replayed.numNodes());
+        assertEquals(edges(expected), edges(replayed));
+    }
+
+    @Test
+    public void revisionsBelowTheWatermarkAreAdded(@TempDir Path dir) throws Exception {
+        // A revision with dependents and dependencies, committed after the revisions with larger ids
+        var late = fixture.keySet().stream().filter(r -> r.id < 150 && !expected.incomingEdgesOf(r).isEmpty()
+                && !expected.outgoingEdgesOf(r).isEmpty()).findFirst().orElseThrow();
+        var early = revisions(0, 150);
+        early.remove(late);
+
+        var path = dir.resolve("graph").toString();
+        var base = new DependencyGraphBuilder().buildDependencyGraph(early);
+        DependencyGraphUtilities.serializeDependencyGraph(base, path);
+        var compactFile = new File(path + CompactDependencyGraph.EXTENSION);
+        CompactDependencyGraph.store(base, compactFile);
+        var updater = new DependencyGraphUpdater(path, CompactDependencyGraph.load(compactFile),
+                DependencyGraphUpdaterTest::dependents);
+        assertThrows(IllegalArgumentException.class, () -> updater.setPollOverlap(-1));
+
+        assertEquals(revisions(150, 210).size(), updater.add(revisions(150, 210)));
+        updater.checkpoint();
+        var watermark = updater.watermark();
+        assertTrue(late.id < watermark);
+
+        // Polling again the ids below the watermark finds it, together with revisions known already
+        assertEquals(1, updater.add(revisions(late.id, 210)));
+        assertEquals(watermark, updater.watermark());
+        updater.checkpoint();
+        updater.add(revisions(210, Long.MAX_VALUE));
+        updater.checkpoint();
+        assertEquals(fixture.size(), updater.graph().numNodes());
+        assertEquals(edges(expected), edges(updater.graph()));
+    }
+
+    @Test
+    public void resolverRefreshesUpdatedGraph(@TempDir Path dir) throws Exception {
+        var path = dir.resolve("graph").toString();
+        var base = new DependencyGraphBuilder().buildDependencyGraph(revisions(0, 200));
+        DependencyGraphUtilities.serializeDependencyGraph(base, path);
+        var compactFile = new File(path + CompactDependencyGraph.EXTENSION);
+        CompactDependencyGraph.store(base, compactFile);
+        // Make sure that the checkpoint changes the modification time
+        assertTrue(new File(path + ".nodes").setLastModified(compactFile.lastModified() - 20_000));
+        assertTrue(compactFile.setLastModified(compactFile.lastModified() - 10_000));
+
+        var resolver = new GraphResolver();
+        resolver.buildDependencyGraph(null, path);
+        assertFalse(resolver.refresh());
+        var updater = new DependencyGraphUpdater(path, CompactDependencyGraph.load(compactFile),
+                DependencyGraphUpdaterTest::dependents);
+        updater.add(revisions(200, Long.MAX_VALUE));
+        updater.checkpoint();
+        assertTrue(resolver.refresh());
+        assertFalse(resolver.refresh());
+
+        // A revision added by the update has the same dependents as in the full graph
+        var revision = fixture.keySet().stream().filter(r -> r.id >= 200 && !expected.incomingEdgesOf(r).isEmpty())
+                .findFirst().orElseThrow();
+        var dependents = resolver.resolveDependents(revision.packageName, revision.version.toString(), 0, false);
+        assertFalse(dependents.isEmpty());
+        for (var dependent : dependents) {
+            assertTrue(fixture.get(dependent).stream().anyMatch(d -> d.packageName.equals(revision.packageName)));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.Revision;
+import eu.fasten.core.dependents.utils.DependencyGraphUtilities;
+import org.jgrapht.Graph;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the time spent visiting transitive dependents on a synthetic dependency graph, using the
+ * former JGraphT-based visit of {@link GraphResolver}, a sequential {@link DependentsVisit}, and a
+ * {@link DependentsVisit} expanding large levels in parallel.
+ *
+ * <p>
+ * The graph has power-law in-degrees, as Maven Central: see {@link #powerLawGraph(int, int, long)}.
+ * Each iteration visits the dependents of the most popular revisions and of a fixed set of random
+ * revisions, using as cut-off the timestamp of the revision, as {@link GraphResolver} does.
+ */
+@CommandLine.Command(name = "DependentsBenchmark", mixinStandardHelpOptions = true)
+public class DependentsBenchmark implements Runnable {
+
+    @CommandLine.Option(names = {"-n", "--revisions"},
+            paramLabel = "N",
+            defaultValue = "50000",
+            description = "Number of revisions (the legacy visit of popular roots takes seconds already on 50000)")
+    int n;
+
+    @CommandLine.Option(names = {"-d", "--degree"},
+            paramLabel = "D",
+            defaultValue = "8",
+            description = "Average number of dependencies of a revision")
+    int degree;
+
+    @CommandLine.Option(names = {"-w", "--warmup"},
+            paramLabel = "N",
+            defaultValue = "2",
+            description = "Number of warmup iterations")
+    int warmup;
+
+    @CommandLine.Option(names = {"-i", "--iterations"},
+            paramLabel = "N",
+            defaultValue = "5",
+            description = "Number of measured iterations")
+    int iterations;
+
+    @CommandLine.Option(names = {"-r", "--roots"},
+            paramLabel = "N",
+            defaultValue = "5",
+            description = "Number of popular roots (and of random roots)")
+    int roots;
+
+    @CommandLine.Option(names = {"-t", "--threads"},
+            paramLabel = "N",
+            defaultValue = "4",
+            description = "Number of threads of parallel visits")
+    int threads;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new DependentsBenchmark()).execute(args));
+    }
+
+    /**
+     * Generates a random dependency graph. Revision <var>i</var> is created at time <var>i</var> and has
+     * a geometrically distributed number of dependencies, chosen among previous revisions with a strong
+     * bias towards the oldest ones, so that a few revisions have most dependents.
+     */
+    static Graph<Revision, DependencyEdge> powerLawGraph(int n, int degree, long seed) {
+        final var random = new Random(seed);
+        final var revisions = new Revision[n];
+        final var graph = new DefaultDirectedGraph<Revision, DependencyEdge>(DependencyEdge.class);
+        for (int i = 0; i < n; i++) {
+            revisions[i] = new Revision(i, "g:p" + i / 4, Integer.toString(i % 4), new Timestamp(i));
+            graph.addVertex(revisions[i]);
+            if (i == 0) {
+                continue;
+            }
+            final int dependencies = (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - 1. / (degree + 1)));
+            for (int j = 0; j < dependencies; j++) {
+                final var target = revisions[(int) (i * Math.pow(random.nextDouble(), 3))];
+                if (!graph.containsEdge(revisions[i], target)) {
+                    graph.addEdge(revisions[i], target, new DependencyEdge(revisions[i], target));
+                }
+            }
+        }
+        return graph;
+    }
+
+    @Override
+    public void run() {
+        final File file;
+        final Graph<Revision, DependencyEdge> graph;
+        final CompactDependencyGraph compact;
+        try {
+            graph = powerLawGraph(n, degree, 0);
+            file = File.createTempFile(DependentsBenchmark.class.getSimpleName(), CompactDependencyGraph.EXTENSION);
+            file.deleteOnExit();
+            CompactDependencyGraph.store(graph, file);
+            compact = CompactDependencyGraph.load(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        final var dependents = DependencyGraphUtilities.invertDependencyGraph(graph);
+        System.out.println("Graph: " + compact.numNodes() + " revisions, " + compact.numArcs() + " dependencies");
+
+        final var popular = graph.vertexSet().stream()
+                .sorted(Comparator.comparingInt(graph::inDegreeOf).reversed())
+                .limit(roots).collect(Collectors.toList());
+        final var random = new Random(0);
+        final var all = graph.vertexSet().toArray(new Revision[0]);
+        final var sample = random.ints(roots, 0, all.length).mapToObj(i -> all[i]).collect(Collectors.toList());
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final var sequential = new DependentsVisit(compact);
+        final var parallel = new DependentsVisit(compact, pool, threads, DependentsVisit.DEFAULT_PARALLEL_THRESHOLD);
+        try {
+            for (var set : List.of(popular, sample)) {
+                final long[] legacyTime = new long[iterations], sequentialTime = new long[iterations], parallelTime = new long[iterations];
+                long legacyResults = 0, sequentialResults = 0, parallelResults = 0;
+                for (int i = -warmup; i < iterations; i++) {
+                    legacyResults = sequentialResults = parallelResults = 0;
+                    final long start = System.nanoTime();
+                    for (var root : set) {
+                        legacyResults += legacyBFS(dependents, root, root.createdAt.getTime()).size();
+                    }
+                    final long afterLegacy = System.nanoTime();
+                    for (var root : set) {
+                        sequentialResults += sequential.visit(compact.id(root.packageName, root.version.toString()), root.createdAt.getTime(), true);
+                    }
+                    final long afterSequential = System.nanoTime();
+                    for (var root : set) {
+                        parallelResults += parallel.visit(compact.id(root.packageName, root.version.toString()), root.createdAt.getTime(), true);
+                    }
+                    final long end = System.nanoTime();
+                    if (i >= 0) {
+                        legacyTime[i] = afterLegacy - start;
+                        sequentialTime[i] = afterSequential - afterLegacy;
+                        parallelTime[i] = end - afterSequential;
+                    }
+                }
+                if (legacyResults != sequentialResults || legacyResults != parallelResults) {
+                    throw new AssertionError("Results differ: " + legacyResults + ", " + sequentialResults + ", " + parallelResults);
+                }
+                Arrays.sort(legacyTime);
+                Arrays.sort(sequentialTime);
+                Arrays.sort(parallelTime);
+
+                System.out.println();
+                System.out.println((set == popular ? "Popular" : "Random") + " roots: " + legacyResults + " dependents per iteration");
+                System.out.format("%14s%14s%14s\n", "", "median (ms)", "min (ms)");
+                System.out.format("%14s%14.3f%14.3f\n", "legacy", legacyTime[iterations / 2] / 1E6, legacyTime[0] / 1E6);
+                System.out.format("%14s%14.3f%14.3f\n", "sequential", sequentialTime[iterations / 2] / 1E6, sequentialTime[0] / 1E6);
+                System.out.format("%14s%14.3f%14.3f\n", "parallel", parallelTime[iterations / 2] / 1E6, parallelTime[0] / 1E6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The visit formerly performed by {@link GraphResolver#dependentBFS}. */
+    private static HashSet<Revision> legacyBFS(Graph<Revision, DependencyEdge> dependents, Revision root, long timestamp) {
+        final var workQueue = new ArrayDeque<>(filter(Graphs.successorListOf(dependents, root), timestamp));
+        final var result = new HashSet<>(workQueue);
+        while (!workQueue.isEmpty()) {
+            final var rev = workQueue.poll();
+            result.add(rev);
+            for (var dependent : filter(Graphs.successorListOf(dependents, rev), timestamp)) {
+                if (!result.contains(dependent)) {
+                    workQueue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Revision> filter(List<Revision> successors, long timestamp) {
+        return successors.stream().filter(r -> r.createdAt.getTime() >= timestamp).collect(Collectors.toList());
+    }
+}
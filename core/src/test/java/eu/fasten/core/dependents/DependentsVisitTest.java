@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.DependencyEdge;
+import eu.fasten.core.dependents.data.Revision;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.AsSubgraph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.EdgeReversedGraph;
+import org.jgrapht.traverse.BreadthFirstIterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DependentsVisitTest {
+
+    private static Set<Integer> dependents(DependentsVisit visit) {
+        var result = new HashSet<Integer>();
+        for (int i = 0; i < visit.size(); i++) {
+            assertTrue(result.add(visit.dependent(i)), "Dependent " + visit.dependent(i) + " found twice");
+        }
+        return result;
+    }
+
+    @Test
+    public void diamond(@TempDir Path dir) throws IOException {
+        // r0 <- r1, r2 <- r3 <- r4, with r3 depending on both r1 and r2, and r0 <- r2 <- r4
+        var revisions = new Revision[5];
+        var graph = new DefaultDirectedGraph<Revision, DependencyEdge>(DependencyEdge.class);
+        for (int i = 0; i < revisions.length; i++) {
+            revisions[i] = new Revision(i, "g:r" + i, "1.0", new Timestamp(10 * i));
+            graph.addVertex(revisions[i]);
+        }
+        for (int[] e : new int[][]{{1, 0}, {2, 0}, {3, 1}, {3, 2}, {4, 3}, {4, 2}}) {
+            graph.addEdge(revisions[e[0]], revisions[e[1]], new DependencyEdge(revisions[e[0]], revisions[e[1]]));
+        }
+        var visit = new DependentsVisit(CompactDependencyGraphTest.store(graph, dir));
+
+        // Ids coincide with indices, as coordinates are in lexicographical order
+        assertEquals(4, visit.visit(0, 0, true));
+        assertEquals(List.of(1, 2, 3, 4), List.of(visit.dependent(0), visit.dependent(1), visit.dependent(2), visit.dependent(3)));
+        assertEquals(2, visit.visit(0, 0, false));
+        assertEquals(Set.of(1, 2), dependents(visit));
+        // The cut-off also applies to transitive dependents
+        assertEquals(0, visit.visit(0, 30, true));
+        assertEquals(2, visit.visit(1, 20, true));
+        assertEquals(Set.of(3, 4), dependents(visit));
+        assertEquals(0, visit.visit(4, 0, true));
+        // The state of the previous visit does not leak
+        assertEquals(2, visit.visit(2, 0, true));
+        assertEquals(Set.of(3, 4), dependents(visit));
+    }
+
+    @Test
+    public void parallelVisitsMatchSequentialVisits(@TempDir Path dir) throws IOException {
+        Graph<Revision, DependencyEdge> graph = DependentsBenchmark.powerLawGraph(5000, 4, 0);
+        var compact = CompactDependencyGraphTest.store(graph, dir);
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var sequential = new DependentsVisit(compact);
+            var parallel = new DependentsVisit(compact, pool, 4, 1);
+            var random = new Random(0);
+            for (int k = 0; k < 50; k++) {
+                int root = k < 10 ? k : random.nextInt(compact.numNodes());
+                long timestamp = random.nextBoolean() ? 0 : compact.createdAt(root);
+                sequential.visit(root, timestamp, true);
+                parallel.visit(root, timestamp, true);
+                var expected = dependents(sequential);
+                assertEquals(expected, dependents(parallel));
+
+                // Check against a plain visit of the graph
+                var revision = compact.revision(root);
+                var reachable = new HashSet<Integer>();
+                var reversed = new EdgeReversedGraph<>(new AsSubgraph<>(graph, graph.vertexSet().stream()
+                        .filter(r -> r.equals(revision) || r.createdAt.getTime() >= timestamp).collect(Collectors.toSet())));
+                new BreadthFirstIterator<>(reversed, revision).forEachRemaining(r -> {
+                    if (!r.equals(revision)) {
+                        reachable.add(compact.id(r.packageName, r.version.toString()));
+                    }
+                });
+                assertEquals(reachable, expected);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void failedParallelExpansionsLeaveNoState(@TempDir Path dir) throws IOException {
+        Graph<Revision, DependencyEdge> graph = DependentsBenchmark.powerLawGraph(5000, 4, 0);
+        var compact = CompactDependencyGraphTest.store(graph, dir);
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var sequential = new DependentsVisit(compact);
+            var parallel = new DependentsVisit(compact, pool, 4, 1);
+            int failed = 0;
+            for (int root = 0; root < 10; root++) {
+                if (compact.dependentCount(root) == 0) {
+                    continue;
+                }
+                failed++;
+                // The visit waits for its tasks before failing, so the next visit starts from a clean state
+                Thread.currentThread().interrupt();
+                final int r = root;
+                assertThrows(RuntimeException.class, () -> parallel.visit(r, 0, true));
+                assertTrue(Thread.interrupted());
+
+                sequential.visit(root, 0, true);
+                parallel.visit(root, 0, true);
+                assertEquals(dependents(sequential), dependents(parallel));
+            }
+            assertTrue(failed > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -24,7 +24,10 @@ import org.apache.commons.math3.util.Pair;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import java.sql.Timestamp;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 import static java.util.Collections.emptyList;
@@ -40,21 +43,20 @@ public class GraphResolverTest {
     }
 
     @Test
-    public void filterDependentsByTimestampTest() {
-        var successors = List.of(
-                new Revision("a", "1", new Timestamp(1)),
-                new Revision("a", "2", new Timestamp(2)),
-                new Revision("a", "3", new Timestamp(3)),
-                new Revision("b", "2", new Timestamp(2)),
-                new Revision("b", "3", new Timestamp(3)),
-                new Revision("b", "4", new Timestamp(4))
-        );
-        var expected = List.of(
-                new Revision("a", "3", new Timestamp(3)),
-                new Revision("b", "3", new Timestamp(3)),
-                new Revision("b", "4", new Timestamp(4))
-        );
-        var actual = graphResolver.filterDependentsByTimestamp(successors, 3);
-        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+    public void dependentBFSTest(@TempDir Path dir) throws IOException {
+        graphResolver = new GraphResolver(CompactDependencyGraphTest.store(CompactDependencyGraphTest.graph(), dir));
+
+        var direct = graphResolver.dependentBFS("g:a", "1.0", 0, false);
+        assertEquals(Set.of("g:b:2.0", "g:c:3.0"), direct.stream().map(Revision::toString).collect(Collectors.toSet()));
+
+        // g:aa:1.0 has no timestamp, so it is never returned
+        var transitive = graphResolver.dependentBFS("g:a", "1.0", 0, true);
+        assertEquals(List.of("g:b:2.0", "g:c:3.0"), transitive.stream().map(Revision::toString).collect(Collectors.toList()));
+
+        var after = graphResolver.resolveDependents("g:a", "1.0", 20, true);
+        assertEquals(Set.of("g:c:3.0"), after.stream().map(Revision::toString).collect(Collectors.toSet()));
+
+        assertTrue(graphResolver.dependentBFS("g:c", "3.0", 0, true).isEmpty());
+        assertThrows(RuntimeException.class, () -> graphResolver.dependentBFS("g:d", "1.0", 0, true));
     }
 }
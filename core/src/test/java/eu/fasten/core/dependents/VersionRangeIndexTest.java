@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.dependents;
+
+import eu.fasten.core.dependents.data.Dependency;
+import eu.fasten.core.dependents.data.Revision;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VersionRangeIndexTest {
+
+    private final VersionRangeIndex index = new VersionRangeIndex(List.of(
+            new Revision("a", "2.0", new Timestamp(2)),
+            new Revision("a", "1.0-SNAPSHOT", new Timestamp(0)),
+            new Revision("a", "1.10", new Timestamp(4)),
+            new Revision("a", "1.0", new Timestamp(1)),
+            new Revision("a", "1.9", new Timestamp(3)),
+            new Revision("b", "1.0", new Timestamp(1))
+    ));
+
+    private int[] spans(String spec) {
+        return index.spans("a", Dependency.VersionConstraint.resolveMultipleVersionConstraints(spec));
+    }
+
+    @Test
+    public void sortedByVersion() {
+        assertEquals(List.of("1.0-SNAPSHOT", "1.0", "1.9", "1.10", "2.0"),
+                Arrays.stream(index.revisions("a")).map(r -> r.version.toString()).collect(Collectors.toList()));
+        assertEquals(0, index.revisions("c").length);
+    }
+
+    @Test
+    public void spans() {
+        assertArrayEquals(new int[]{1, 2}, spans("1.0"));
+        assertArrayEquals(new int[]{1, 2}, spans("[1.0.0]"));
+        assertArrayEquals(new int[]{2, 4}, spans("(1.0,2.0)"));
+        assertArrayEquals(new int[]{1, 5}, spans("[1.0,)"));
+        assertArrayEquals(new int[]{0, 2}, spans("(,1.9)"));
+        // Overlapping and adjacent ranges are merged
+        assertArrayEquals(new int[]{0, 4}, spans("(,1.9],[1.9,1.10]"));
+        assertArrayEquals(new int[]{0, 2, 4, 5}, spans("[2.0,),(,1.0]"));
+        assertArrayEquals(new int[]{}, spans("[3.0,)"));
+        assertArrayEquals(new int[]{}, spans("${project.version}"));
+        // Maven's ordering is not transitive on some versions: 1.a > 1.0, but 1.a < 1.0-SNAPSHOT
+        assertArrayEquals(new int[]{0, 1, 2, 3}, spans("[1.a,1.9]"));
+        assertArrayEquals(new int[]{}, index.spans("c", Dependency.VersionConstraint.resolveMultipleVersionConstraints("1.0")));
+    }
+
+    @Test
+    public void findMatchingRevisions() {
+        var matches = index.findMatchingRevisions(new Dependency("a", "(,1.0],[1.10,)"));
+        assertEquals(List.of("1.0-SNAPSHOT", "1.0", "1.10", "2.0"),
+                matches.stream().map(r -> r.version.toString()).collect(Collectors.toList()));
+        assertEquals(List.of(new Revision("b", "1.0", new Timestamp(1))), index.findMatchingRevisions(new Dependency("b", "1.0")));
+    }
+}
@@ -0,0 +1,138 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.io.InputBitStream;
+import it.unimi.dsi.io.NullInputStream;
+import it.unimi.dsi.lang.MutableString;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.Transform;
+import it.unimi.dsi.webgraph.examples.ErdosRenyiGraph;
+
+public class BVGraphCompressorTest {
+
+	private static void assertSameGraph(final ImmutableGraph expected, final ImmutableGraph actual) {
+		assertEquals(expected.numNodes(), actual.numNodes());
+		assertEquals(expected.numArcs(), actual.numArcs());
+		for (int x = 0; x < expected.numNodes(); x++) {
+			assertEquals(expected.outdegree(x), actual.outdegree(x));
+			assertArrayEquals(expected.successorArray(x), actual.successorArray(x));
+		}
+	}
+
+	private static void check(final ImmutableGraph graph, final int windowSize, final int maxRefCount, final int minIntervalLength) throws IOException, IllegalAccessException {
+		final File dir = Files.createTempDirectory(BVGraphCompressorTest.class.getSimpleName()).toFile();
+		try {
+			final String basename = new File(dir, "graph").toString();
+			BVGraph.store(graph, basename, windowSize, maxRefCount, minIntervalLength, BVGraph.DEFAULT_ZETA_K, 0, 1);
+			final BVGraph stored = BVGraph.load(basename);
+			final Properties properties = new Properties();
+			final BVGraph compressed = BVGraphCompressor.compress(graph, windowSize, maxRefCount, minIntervalLength, BVGraph.DEFAULT_ZETA_K, properties);
+
+			// The bit streams are identical
+			assertArrayEquals(Files.readAllBytes(new File(basename + BVGraph.GRAPH_EXTENSION).toPath()), (byte[])FieldUtils.readField(compressed, "graphMemory", true));
+			final LongBigList storedOffsets = (LongBigList)FieldUtils.readField(stored, "offsets", true);
+			final LongBigList offsets = (LongBigList)FieldUtils.readField(compressed, "offsets", true);
+			assertEquals(storedOffsets, offsets);
+
+			final Properties storedProperties = new Properties();
+			try (var reader = Files.newBufferedReader(new File(basename + BVGraph.PROPERTIES_EXTENSION).toPath())) {
+				storedProperties.load(reader);
+			}
+			for (final String key : new String[] { "nodes", "arcs", "windowsize", "maxrefcount", "minintervallength", "zetak", "graphclass" }) {
+				assertEquals(storedProperties.getProperty(key), properties.getProperty(key), key);
+			}
+
+			assertSameGraph(graph, compressed);
+			assertSameGraph(graph, compressed.copy());
+			assertSameGraph(graph, kryoRoundTrip(compressed));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private static BVGraph kryoRoundTrip(final BVGraph graph) {
+		final Kryo kryo = new Kryo();
+		kryo.register(BVGraph.class, new BVGraphSerializer(kryo));
+		kryo.register(byte[].class);
+		kryo.register(InputBitStream.class);
+		kryo.register(NullInputStream.class);
+		kryo.register(EliasFanoMonotoneLongBigList.class, new JavaSerializer());
+		kryo.register(MutableString.class, new FieldSerializer<>(kryo, MutableString.class));
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
+		kryo.writeObject(bbo, graph);
+		bbo.flush();
+		return kryo.readObject(new Input(fbaos.array, 0, (int)fbaos.length), BVGraph.class);
+	}
+
+	@Test
+	public void testRandom() throws IOException, IllegalAccessException {
+		for (final int n : new int[] { 1, 10, 101, 1000 }) {
+			for (final double p : new double[] { .001, .01, .1 }) {
+				final ImmutableGraph graph = new ArrayListMutableGraph(new ErdosRenyiGraph(n, p, n, false)).immutableView();
+				check(graph, BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH);
+				check(Transform.transpose(graph), BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH);
+				check(graph, 0, 0, BVGraph.NO_INTERVALS);
+				check(graph, 2, 1, 2);
+			}
+		}
+	}
+
+	@Test
+	public void testIntervalsAndReferences() throws IOException, IllegalAccessException {
+		// Similar, mostly consecutive successor lists
+		final ArrayListMutableGraph mutableGraph = new ArrayListMutableGraph(500);
+		for (int x = 0; x < 500; x++) {
+			for (int y = x / 10 * 10; y < Math.min(500, x / 10 * 10 + 20); y++) if (y % 7 != x % 7) mutableGraph.addArc(x, y);
+		}
+		final ImmutableGraph graph = mutableGraph.immutableView();
+		check(graph, BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH);
+		check(graph, 1, Integer.MAX_VALUE, 2);
+	}
+
+	@Test
+	public void testEmpty() throws IOException, IllegalAccessException {
+		check(new ArrayListMutableGraph(0).immutableView(), BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH);
+		check(new ArrayListMutableGraph(10).immutableView(), BVGraph.DEFAULT_WINDOW_SIZE, BVGraph.DEFAULT_MAX_REF_COUNT, BVGraph.DEFAULT_MIN_INTERVAL_LENGTH);
+	}
+}
@@ -19,9 +19,13 @@ import static eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions.PACK
 import static dev.c0ps.maven.data.Scope.COMPILE;
 import static org.jooq.SQLDialect.POSTGRES;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.sql.SQLException;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -157,6 +161,76 @@ public class MavenResolverIOTest {
         assertEquals(0, data.numExecutes);
     }
 
+    @Test
+    public void writesSnapshot() throws IOException {
+        data.add(pom(234));
+        sut.loadResolver();
+
+        var actuals = PomSnapshot.open(new File(tempDir, "poms.snapshot"), OM).poms();
+        var expecteds = Set.of(pom(234));
+        assertEquals(expecteds, actuals);
+    }
+
+    @Test
+    public void readsFromSnapshot() throws IOException {
+        var pom1 = pom(234, 2);
+        var pom2 = pom(2);
+        PomSnapshot.write(Set.of(pom1, pom2), new File(tempDir, "poms.snapshot"), OM);
+
+        var r = sut.loadResolver();
+        var rev1 = pom1.toRevision();
+        var rev2 = pom2.toRevision();
+
+        var actualDeps = r.resolveDependencies(rev1);
+        var expectedDeps = Set.of(new ResolvedRevision(rev2, COMPILE));
+        assertEquals(expectedDeps, actualDeps);
+
+        assertEquals(0, data.numExecutes);
+        assertFalse(new File(tempDir, "poms.json").exists());
+    }
+
+    @Test
+    public void staleSnapshotIsReplaced() throws IOException {
+        var snapshot = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(Set.of(pom(1)), snapshot, OM);
+        var json = new File(tempDir, "poms.json");
+        OM.writeValue(json, Set.of(pom(2)));
+        assertTrue(snapshot.setLastModified(json.lastModified() - 10_000));
+
+        sut.loadResolver();
+        assertEquals(Set.of(pom(2)), PomSnapshot.open(snapshot, OM).poms());
+        assertEquals(0, data.numExecutes);
+    }
+
+    @Test
+    public void corruptedSnapshotFallsBackToJson() throws IOException {
+        var snapshot = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(Set.of(pom(1)), snapshot, OM);
+        // A number of POMs inconsistent with the number of chunks
+        try (var raf = new RandomAccessFile(snapshot, "rw")) {
+            raf.seek(8);
+            raf.writeInt(-1);
+        }
+        var json = new File(tempDir, "poms.json");
+        OM.writeValue(json, Set.of(pom(2)));
+        assertTrue(json.setLastModified(snapshot.lastModified() - 10_000));
+
+        sut.loadResolver();
+        assertEquals(Set.of(pom(2)), PomSnapshot.open(snapshot, OM).poms());
+        assertEquals(0, data.numExecutes);
+    }
+
+    @Test
+    public void snapshotFindsPomsByCoordinate() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(Set.of(pom(1, 2), pom(2)), f, OM);
+
+        var snapshot = PomSnapshot.open(f, OM);
+        assertEquals(pom(1, 2), snapshot.find("g1", "a1", "v1"));
+        assertEquals(pom(2), snapshot.find("g2", "a2", "v2"));
+        assertNull(snapshot.find("g1", "a1", "v2"));
+    }
+
     private Pom pom(int i, int... deps) {
         var pom = new PomBuilder();
         pom.groupId = "g" + i;
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fasten.core.maven.resolution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PomSnapshotTest {
+
+    private static final ObjectMapper OM = new ObjectMapper();
+
+    @TempDir
+    public File tempDir;
+
+    @Test
+    public void treesRoundTrip() throws IOException {
+        var trees = trees(PomSnapshot.CHUNK_SIZE + 10);
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees, f);
+
+        var sut = PomSnapshot.open(f, OM);
+        assertEquals(trees.size(), sut.size());
+        var expecteds = new ArrayList<>(trees);
+        expecteds.sort(Comparator.<JsonNode, String>comparing(t -> t.get("groupId").textValue()) //
+                .thenComparing(t -> t.get("artifactId").textValue()) //
+                .thenComparing(t -> t.get("version").textValue()));
+        assertEquals(expecteds, sut.trees());
+    }
+
+    @Test
+    public void coordinatesAreIndexed() throws IOException {
+        var trees = trees(100);
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees, f);
+
+        var sut = PomSnapshot.open(f, OM);
+        var decoded = sut.trees();
+        for (var tree : trees) {
+            var i = sut.indexOf(tree.get("groupId").textValue(), tree.get("artifactId").textValue(), tree.get("version").textValue());
+            assertEquals(tree, decoded.get(i));
+        }
+        assertEquals(-1, sut.indexOf("g0", "a1", "1.0"));
+        assertEquals(-1, sut.indexOf("x", "y", "z"));
+    }
+
+    @Test
+    public void stringsAreInterned() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees(10), f);
+
+        var decoded = PomSnapshot.open(f, OM).trees();
+        var scope0 = decoded.get(0).get("dependencies").get(0).get("scope").textValue();
+        var scope1 = decoded.get(1).get("dependencies").get(0).get("scope").textValue();
+        assertSame(scope0, scope1);
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(List.of(), f);
+
+        var sut = PomSnapshot.open(f, OM);
+        assertEquals(0, sut.size());
+        assertEquals(0, sut.poms().size());
+        assertEquals(-1, sut.indexOf("g", "a", "v"));
+    }
+
+    @Test
+    public void corruptedChunkIsDetected() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees(10), f);
+        flip(f, f.length() - 1);
+
+        var sut = PomSnapshot.open(f, OM);
+        assertThrows(IOException.class, sut::poms);
+    }
+
+    @Test
+    public void corruptedTablesAreDetected() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees(10), f);
+        flip(f, 40);
+
+        assertThrows(IOException.class, () -> PomSnapshot.open(f, OM));
+    }
+
+    @Test
+    public void corruptedHeaderIsDetected() throws IOException {
+        var f = new File(tempDir, "poms.snapshot");
+        PomSnapshot.write(trees(10), f);
+        for (var pos : new long[] { 8, 12, 16, 20 }) {
+            // Number of POMs, of strings, of chunks, and length of the strings
+            flip(f, pos);
+            assertThrows(IOException.class, () -> PomSnapshot.open(f, OM));
+            flip(f, pos);
+        }
+        assertEquals(10, PomSnapshot.open(f, OM).size());
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws IOException {
+        var f = new File(tempDir, "poms.json");
+        Files.writeString(f.toPath(), "[{\"groupId\":\"g\",\"artifactId\":\"a\",\"version\":\"v\"}]");
+
+        assertThrows(IOException.class, () -> PomSnapshot.open(f, OM));
+    }
+
+    @Test
+    public void failedWriteLeavesNoTemporaryFile() throws IOException {
+        // A non-empty directory cannot be replaced by the snapshot
+        var f = new File(tempDir, "poms.snapshot");
+        assertTrue(new File(f, "child").mkdirs());
+
+        assertThrows(IOException.class, () -> PomSnapshot.write(trees(10), f));
+        assertFalse(new File(f.getPath() + "-tmp").exists());
+    }
+
+    private static void flip(File f, long pos) throws IOException {
+        try (var raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(pos);
+            var b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xFF);
+        }
+    }
+
+    private static List<JsonNode> trees(int n) {
+        var trees = new ArrayList<JsonNode>();
+        for (var i = n - 1; i >= 0; i--) {
+            var pom = OM.createObjectNode();
+            pom.put("groupId", "g" + i % 7);
+            pom.put("artifactId", "a" + i);
+            pom.put("version", "1." + i);
+            pom.put("releaseDate", 1_600_000_000_000L + i);
+            pom.put("id", -i);
+            pom.put("projectName", "pröject ✓ " + i);
+            pom.putNull("repoUrl");
+            pom.put("score", i / 3.0);
+            var deps = pom.putArray("dependencies");
+            for (var j = 0; j < i % 4 + 1; j++) {
+                var dep = deps.addObject();
+                dep.put("groupId", "g" + j);
+                dep.put("artifactId", "a" + j);
+                dep.putArray("versionConstraints").add("[1.0," + j + ".0)");
+                dep.put("scope", "COMPILE");
+                dep.put("optional", j % 2 == 0);
+            }
+            pom.putArray("dependencyManagement");
+            trees.add(pom);
+        }
+        return trees;
+    }
+}
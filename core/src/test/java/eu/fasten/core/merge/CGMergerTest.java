@@ -27,7 +27,9 @@ import eu.fasten.core.data.metadatadb.codegen.tables.Callables;
 import eu.fasten.core.data.metadatadb.codegen.tables.ModuleNames;
 import eu.fasten.core.data.metadatadb.codegen.tables.Modules;
 import eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongLongImmutablePair;
 import it.unimi.dsi.fastutil.longs.LongLongPair;
 import it.unimi.dsi.fastutil.longs.LongSet;
@@ -173,6 +175,12 @@ public class CGMergerTest {
         var rocksDao = Mockito.mock(RocksDao.class);
         Mockito.when(rocksDao.getGraphData(42)).thenReturn(directedGraph);
         Mockito.when(rocksDao.getGraphMetadata(42, directedGraph)).thenReturn(graphMetadata);
+        Mockito.when(rocksDao.getGraphData(Mockito.any(LongCollection.class)))
+                .thenReturn(Long2ObjectMaps.singleton(42, directedGraph));
+        Mockito.when(rocksDao.getGraphMetadata(Mockito.any(LongCollection.class)))
+                .thenReturn(Long2ObjectMaps.singleton(42, graphMetadata));
+        Mockito.when(rocksDao.getClassHierarchyFragments(Mockito.any(LongCollection.class)))
+                .thenReturn(Long2ObjectMaps.emptyMap());
         var pckgs = List.of("group1:art1:ver1", "group2:art2:ver2");
         var id = new HashSet<>(Collections.singletonList(42l));
         var mergerMock = Mockito.mock(CGMerger.class);
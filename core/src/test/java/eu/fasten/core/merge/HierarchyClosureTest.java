@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.merge;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+public class HierarchyClosureTest {
+
+    /** The recursive definition of the closure, as in the original implementation. */
+    private static List<Integer> recursive(final int[][] successors, final int x) {
+        final List<Integer> result = new ArrayList<>();
+        for (final int y : successors[x]) result.add(y);
+        for (final int y : successors[x]) result.addAll(recursive(successors, y));
+        return result;
+    }
+
+    private static int[] distinct(final List<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    @Test
+    public void testDiamond() {
+        // 3 -> 1, 3 -> 2, 1 -> 0, 2 -> 0
+        final int[][] successors = {{}, {0}, {0}, {1, 2}};
+        final int[][] closure = HierarchyClosure.closure(successors);
+        assertArrayEquals(new int[] {}, closure[0]);
+        assertArrayEquals(new int[] {0}, closure[1]);
+        assertArrayEquals(new int[] {1, 2, 0}, closure[3]);
+
+        final int[][] transpose = HierarchyClosure.transpose(successors);
+        assertArrayEquals(new int[] {1, 2}, transpose[0]);
+        assertArrayEquals(new int[] {3}, transpose[1]);
+        assertArrayEquals(new int[] {}, transpose[3]);
+        assertArrayEquals(new int[] {1, 2, 3}, HierarchyClosure.closure(transpose)[0]);
+    }
+
+    @Test
+    public void testRandomDag() {
+        final Random random = new Random(0);
+        final int n = 3000;
+        final int[][] successors = new int[n][];
+        for (int x = 0; x < n; x++) {
+            final IntOpenHashSet s = new IntOpenHashSet();
+            // Successors have smaller indices, so the graph is acyclic
+            for (int i = x == 0 ? 0 : random.nextInt(3); i-- != 0;) s.add(random.nextInt(x));
+            successors[x] = s.toIntArray();
+        }
+        final int[][] closure = HierarchyClosure.closure(successors);
+        for (int x = 0; x < n; x += 7) assertArrayEquals(distinct(recursive(successors, x)), closure[x]);
+    }
+
+    @Test
+    public void testDeep() {
+        // A long chain, handled in n rounds
+        final int n = 5000;
+        final int[][] successors = new int[n][];
+        successors[0] = new int[0];
+        for (int x = 1; x < n; x++) successors[x] = new int[] {x - 1};
+        final int[][] closure = HierarchyClosure.closure(successors);
+        assertEquals(n - 1, closure[n - 1].length);
+        assertEquals(n - 2, closure[n - 1][0]);
+        assertEquals(0, closure[n - 1][n - 2]);
+        assertEquals(n - 1, HierarchyClosure.closure(HierarchyClosure.transpose(successors))[0].length);
+    }
+
+    @Test
+    public void testCycle() {
+        // 0 -> 1 -> 2 -> 0, 3 -> 0, 4 -> 4, 5 is acyclic
+        final int[][] successors = {{1}, {2}, {0}, {0}, {4}, {}};
+        final int[][] closure = HierarchyClosure.closure(successors);
+        assertArrayEquals(new int[] {1, 2}, closure[0]);
+        assertArrayEquals(new int[] {2, 0}, closure[1]);
+        assertArrayEquals(new int[] {0, 1, 2}, closure[3]);
+        assertArrayEquals(new int[] {}, closure[4]);
+        assertArrayEquals(new int[] {}, closure[5]);
+    }
+}
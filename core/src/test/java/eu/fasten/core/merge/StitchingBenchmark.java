@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.merge;
+
+import eu.fasten.core.data.PartialJavaCallGraph;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Measures the time spent by {@link CGMerger} to build its type dictionary and universal CHA, and to
+ * stitch a set of dependencies with {@link CGMerger#mergeAllDeps()}.
+ *
+ * <p>
+ * The dependency set is given as a list of revision call graph files, or of directories
+ * containing such files (with extension {@code .json}); for instance,
+ * {@code src/test/resources/merge/efficiencyTests/jpacman-framework-6f703ad}.
+ */
+@CommandLine.Command(name = "StitchingBenchmark", mixinStandardHelpOptions = true)
+public class StitchingBenchmark implements Runnable {
+
+    @CommandLine.Option(names = {"-w", "--warmup"},
+            paramLabel = "N",
+            defaultValue = "3",
+            description = "Number of warmup iterations")
+    int warmup;
+
+    @CommandLine.Option(names = {"-i", "--iterations"},
+            paramLabel = "N",
+            defaultValue = "10",
+            description = "Number of measured iterations")
+    int iterations;
+
+    @CommandLine.Option(names = {"-e", "--externals"},
+            description = "Keep unresolved external calls")
+    boolean withExternals;
+
+    @CommandLine.Parameters(paramLabel = "FILE",
+            arity = "1..*",
+            description = "Revision call graph files, or directories containing them")
+    List<File> files;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new StitchingBenchmark()).execute(args));
+    }
+
+    @Override
+    public void run() {
+        final List<PartialJavaCallGraph> depSet = new ArrayList<>();
+        try {
+            for (final var file : files) {
+                final var inputs = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".json")) : new File[] {file};
+                Arrays.sort(inputs);
+                for (final var input : inputs) {
+                    depSet.add(new PartialJavaCallGraph(new JSONObject(Files.readString(input.toPath()))));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.println("Dependency set: " + depSet.size() + " call graphs, "
+                + depSet.stream().mapToInt(PartialJavaCallGraph::getNodeCount).sum() + " nodes");
+
+        final long[] construction = new long[iterations], merge = new long[iterations];
+        long arcs = 0;
+        for (int i = -warmup; i < iterations; i++) {
+            final long start = System.nanoTime();
+            final var merger = new CGMerger(depSet, withExternals);
+            final long built = System.nanoTime();
+            arcs = merger.mergeAllDeps().numArcs();
+            final long end = System.nanoTime();
+            if (i >= 0) {
+                construction[i] = built - start;
+                merge[i] = end - built;
+            }
+        }
+        Arrays.sort(construction);
+        Arrays.sort(merge);
+
+        System.out.println("Merged graph: " + arcs + " arcs");
+        System.out.format("%14s%14s%14s\n", "", "median (ms)", "min (ms)");
+        System.out.format("%14s%14.3f%14.3f\n", "construction", construction[iterations / 2] / 1E6, construction[0] / 1E6);
+        System.out.format("%14s%14.3f%14.3f\n", "mergeAllDeps", merge[iterations / 2] / 1E6, merge[0] / 1E6);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.merge;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TypeDictionaryTest {
+
+    @Test
+    public void testCallables() {
+        final var dictionary = new TypeDictionary.Builder()
+                .addCallable("/p/A", "m()V", 3)
+                .addCallable("/p/A", "m()V", 1)
+                .addCallable("/p/A", "m()V", 3)
+                .addCallable("/p/A", "n()V", 2)
+                .addCallable("/p/B", "m()V", 4)
+                .build();
+
+        assertEquals(2, dictionary.numTypes());
+        assertEquals(2, dictionary.numSignatures());
+        assertEquals(3, dictionary.size());
+
+        final int a = dictionary.typeId("/p/A"), b = dictionary.typeId("/p/B");
+        final int m = dictionary.signatureId("m()V"), n = dictionary.signatureId("n()V");
+        assertEquals("/p/A", dictionary.type(a));
+        assertArrayEquals(new long[] {1, 3}, dictionary.callables(a, m));
+        assertArrayEquals(new long[] {2}, dictionary.callables(a, n));
+        assertArrayEquals(new long[] {4}, dictionary.callables(b, m));
+        assertArrayEquals(new long[0], dictionary.callables(b, n));
+
+        assertEquals(-1, dictionary.typeId("/p/C"));
+        assertEquals(-1, dictionary.signatureId("o()V"));
+        assertArrayEquals(new long[0], dictionary.callables(-1, m));
+        assertArrayEquals(new long[0], dictionary.callables(a, -1));
+    }
+
+    @Test
+    public void testHierarchy() {
+        // C extends B implements I, B extends A, D is not in the hierarchy
+        final var dictionary = new TypeDictionary.Builder()
+                .addCallable("/p/A", "m()V", 1)
+                .addCallable("/p/D", "m()V", 2)
+                .addSuperTypes("/p/C", List.of("/p/B"))
+                .addSuperTypes("/p/C", List.of("/p/I", "/p/B"))
+                .addSuperTypes("/p/B", List.of("/p/A"))
+                .rootType("/java.lang/Object")
+                .build();
+
+        final int a = dictionary.typeId("/p/A"), b = dictionary.typeId("/p/B"), c = dictionary.typeId("/p/C");
+        final int i = dictionary.typeId("/p/I"), d = dictionary.typeId("/p/D"), o = dictionary.typeId("/java.lang/Object");
+        // Nearer supertypes come first, the root type comes last
+        assertArrayEquals(new int[] {c, b, i, a, o}, dictionary.parents(c));
+        assertArrayEquals(new int[] {a, o}, dictionary.parents(a));
+        assertArrayEquals(new int[] {a, b, c}, dictionary.children(a));
+        assertArrayEquals(new int[] {c}, dictionary.children(c));
+        assertNull(dictionary.parents(d));
+        assertNull(dictionary.children(d));
+        assertNull(dictionary.parents(-1));
+        assertNull(dictionary.children(-1));
+        assertArrayEquals(new long[] {1}, dictionary.callables(a, dictionary.signatureId("m()V")));
+    }
+}
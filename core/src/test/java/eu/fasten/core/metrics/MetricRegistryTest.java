@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+public class MetricRegistryTest {
+
+    @Test
+    public void testIdentity() {
+        var registry = new MetricRegistry();
+        var counter = registry.counter("events_total", "plugin", "A", "result", "hit");
+        assertSame(counter, registry.counter("events_total", "result", "hit", "plugin", "A"));
+        assertTrue(counter != registry.counter("events_total", "plugin", "A", "result", "miss"));
+        assertThrows(IllegalArgumentException.class, () -> registry.timer("events_total", "plugin", "A", "result", "hit"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("invalid-name"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("events_total", "plugin"));
+    }
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, Timer.bucket(0));
+        assertEquals(0, Timer.bucket(1_000_000));
+        assertEquals(1, Timer.bucket(1_000_001));
+        assertEquals(1, Timer.bucket(2_000_000));
+        assertEquals(2, Timer.bucket(3_000_000));
+        assertEquals(10, Timer.bucket(1_000_000_000));
+        assertEquals(Timer.BUCKETS, Timer.bucket(Long.MAX_VALUE));
+        for (int i = 0; i < Timer.BUCKETS; i++) {
+            assertEquals(i, Timer.bucket(Timer.upperBoundNanos(i)));
+            assertEquals(i + 1, Timer.bucket(Timer.upperBoundNanos(i) + 1));
+        }
+    }
+
+    @Test
+    public void testTimer() {
+        var timer = new MetricRegistry().timer("latency_seconds");
+        for (int i = 1; i <= 100; i++) {
+            timer.record(i, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(100, timer.count());
+        assertEquals(5050, TimeUnit.NANOSECONDS.toMillis(timer.totalNanos()));
+        assertEquals(100, TimeUnit.NANOSECONDS.toMillis(timer.maxNanos()));
+        // The median (50 ms) is in the bucket (32 ms, 64 ms]
+        assertEquals(64, TimeUnit.NANOSECONDS.toMillis(timer.percentileNanos(.5)));
+        // The maximum caps the last bucket
+        assertEquals(100, TimeUnit.NANOSECONDS.toMillis(timer.percentileNanos(.99)));
+        assertEquals(42, (int) timer.record(() -> 42));
+        assertEquals(101, timer.count());
+    }
+
+    @Test
+    public void testScrape() {
+        var registry = new MetricRegistry();
+        registry.counter("events_total", "plugin", "A\"\\").increment(3);
+        var value = new AtomicLong(7);
+        registry.gauge("lag_records", value::get, "partition", "0");
+        registry.timer("latency_seconds").record(1500, TimeUnit.MILLISECONDS);
+        value.set(8);
+
+        var scrape = registry.scrape();
+        assertTrue(scrape.contains("# TYPE events_total counter\nevents_total{plugin=\"A\\\"\\\\\"} 3\n"), scrape);
+        assertTrue(scrape.contains("# TYPE lag_records gauge\nlag_records{partition=\"0\"} 8\n"), scrape);
+        assertTrue(scrape.contains("# TYPE latency_seconds histogram\n"), scrape);
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"1.024\"} 0\n"), scrape);
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"2.048\"} 1\n"), scrape);
+        assertTrue(scrape.contains("latency_seconds_bucket{le=\"+Inf\"} 1\n"), scrape);
+        assertTrue(scrape.contains("latency_seconds_sum 1.5\n"), scrape);
+        assertTrue(scrape.contains("latency_seconds_count 1\n"), scrape);
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        var server = MBeanServerFactory.newMBeanServer();
+        var registry = new MetricRegistry(server, "test");
+        registry.counter("events_total", "plugin", "A").increment(2);
+        registry.timer("latency_seconds", "plugin", "A").record(10, TimeUnit.MILLISECONDS);
+
+        assertEquals(2L, server.getAttribute(new ObjectName("test:type=Counter,name=events_total,plugin=\"A\""), "Count"));
+        var timer = new ObjectName("test:type=Timer,name=latency_seconds,plugin=\"A\"");
+        assertEquals(1L, server.getAttribute(timer, "Count"));
+        assertEquals(10.0, server.getAttribute(timer, "MaxMillis"));
+    }
+}
@@ -2,16 +2,27 @@ package eu.fasten.core.search;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 import org.junit.jupiter.api.Test;
 
 import eu.fasten.core.data.ArrayImmutableDirectedGraph;
+import eu.fasten.core.data.DenseDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
 import eu.fasten.core.search.SearchEngine.Result;
 import it.unimi.dsi.bits.Fast;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 public class SearchEngineTest {
@@ -49,5 +60,183 @@ public class SearchEngineTest {
 		}
     }
 
+    private static List<ArrayImmutableDirectedGraph> randomGraphs(final Random random, final int count, final int numNodes, final int numArcs) {
+		final List<ArrayImmutableDirectedGraph> graphs = new ArrayList<>();
+		for (int g = 0; g < count; g++) {
+			final ArrayImmutableDirectedGraph.Builder builder = new ArrayImmutableDirectedGraph.Builder();
+			final LongOpenHashSet nodes = new LongOpenHashSet();
+			for (int x = 0; x < numNodes; x++) if (random.nextInt(4) != 0 || x < 3) nodes.add(x);
+			for (final long x : nodes) builder.addInternalNode(x);
+			final long[] n = nodes.toLongArray();
+			final LongOpenHashSet arcs = new LongOpenHashSet();
+			for (int i = 0; i < numArcs; i++) {
+				final long x = n[random.nextInt(n.length)], y = n[random.nextInt(n.length)];
+				if (arcs.add(x << 32 | y)) builder.addArc(x, y);
+			}
+			graphs.add(builder.build());
+		}
+		return graphs;
+    }
+
+    @Test
+    void testSeparateVisits() {
+		// Merging in order filtered visits performed separately, as dependents processed in parallel are,
+		// must give the same results, in the same order and with the same scores, as visits sharing the results
+		final Scorer monotone = new Scorer() {
+			@Override
+			public double score(final DirectedGraph graph, final long gid, final int distance) {
+				return 1. / (distance + 1);
+			}
 
+			@Override
+			public boolean isMonotone() {
+				return true;
+			}
+		};
+		final List<DenseDirectedGraph> graphs = new ArrayList<>();
+		for (final var graph : randomGraphs(new Random(0), 10, 100, 300)) graphs.add(DenseDirectedGraph.copyOf(graph));
+		final LongList seed = LongList.of(0, 1, 2);
+
+		for (final Scorer scorer : new Scorer[] { TrivialScorer.getInstance(), monotone }) {
+			for (final int limit : new int[] { 1, 5, 20, Integer.MAX_VALUE }) {
+				final ObjectLinkedOpenHashSet<Result> expected = new ObjectLinkedOpenHashSet<>();
+				for (final var graph : graphs) SearchEngine.bfs(graph, false, seed, x -> x % 3 != 0, scorer, limit, expected);
+
+				final ObjectLinkedOpenHashSet<Result> actual = new ObjectLinkedOpenHashSet<>();
+				for (final var graph : graphs) {
+					final ObjectLinkedOpenHashSet<Result> visit = new ObjectLinkedOpenHashSet<>();
+					SearchEngine.bfs(graph, false, seed, x -> x % 3 != 0, scorer, limit, visit);
+					for (final Result r : visit) assertTrue(r.gid % 3 != 0);
+					for (final Result r : visit) actual.add(r);
+				}
+
+				assertTrue(expected.size() > 0);
+				assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+				final var e = expected.iterator();
+				for (final Result r : actual) assertEquals(e.next().score, r.score);
+			}
+		}
+    }
+
+    @Test
+    void testLimitAcrossDependents() {
+		// A callable shallow in a dependent, but first found deep in another one, keeps the deep score,
+		// so the top results of a limited search must not depend on where the visit of a dependent would stop
+		final Scorer monotone = new Scorer() {
+			@Override
+			public double score(final DirectedGraph graph, final long gid, final int distance) {
+				return 1. / (distance + 1);
+			}
+
+			@Override
+			public boolean isMonotone() {
+				return true;
+			}
+		};
+		// First dependent: 1 and 2 at distance 2, 3 at distance 5 from the seed 0
+		final var first = new ArrayImmutableDirectedGraph.Builder();
+		for (final long node : new long[] { 0, 1, 2, 3, 10, 11, 12 }) first.addInternalNode(node);
+		first.addArc(10, 0);
+		first.addArc(1, 10);
+		first.addArc(2, 10);
+		first.addArc(11, 1);
+		first.addArc(12, 11);
+		first.addArc(3, 12);
+		// Second dependent: 3 at distance 1
+		final var second = new ArrayImmutableDirectedGraph.Builder();
+		second.addInternalNode(0);
+		second.addInternalNode(3);
+		second.addArc(3, 0);
+		final List<DirectedGraph> dependents = List.of(first.build(), second.build());
+		final LongList seed = LongList.of(0);
+
+		for (final boolean dense : new boolean[] { false, true }) {
+			final ObjectLinkedOpenHashSet<Result> results = new ObjectLinkedOpenHashSet<>();
+			for (final var graph : dependents) SearchEngine.bfs(dense ? DenseDirectedGraph.copyOf(graph) : graph, false, seed, x -> x < 10, monotone, results);
+			final List<Result> all = SearchEngine.top(results, Integer.MAX_VALUE);
+			final List<Result> limited = SearchEngine.top(results, 2);
+			assertEquals(all.subList(0, 2), limited);
+			assertEquals(List.of(new Result(1, 0), new Result(2, 0)), limited);
+
+			// Stopping the visit of each dependent would rank 3 first
+			final ObjectLinkedOpenHashSet<Result> cut = new ObjectLinkedOpenHashSet<>();
+			for (final var graph : dependents) SearchEngine.bfs(dense ? DenseDirectedGraph.copyOf(graph) : graph, false, seed, x -> x < 10, monotone, 2, cut);
+			assertEquals(3, SearchEngine.top(cut, 2).get(0).gid);
+		}
+    }
+
+    @Test
+    void testDenseBfs() {
+		// Visits of dense graphs must give the same results, in the same order, as generic visits
+		final Random random = new Random(0);
+		final LongList seed = LongList.of(0, 1, 2, 1000);
+		for (final var graph : randomGraphs(random, 20, 200, 400)) {
+			final DenseDirectedGraph dense = DenseDirectedGraph.copyOf(graph);
+			for (final boolean forward : new boolean[] { true, false }) {
+				final ObjectLinkedOpenHashSet<Result> expected = new ObjectLinkedOpenHashSet<>();
+				final ObjectLinkedOpenHashSet<Result> actual = new ObjectLinkedOpenHashSet<>();
+				expected.add(new Result(5, -1));
+				actual.add(new Result(5, -1));
+				SearchEngine.bfs(graph, forward, seed, x -> x % 3 != 0, TrivialScorer.getInstance(), expected);
+				SearchEngine.bfs(dense, forward, seed, x -> x % 3 != 0, TrivialScorer.getInstance(), actual);
+				assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+				final var e = expected.iterator();
+				for (final Result r : actual) assertEquals(e.next().score, r.score);
+			}
+		}
+    }
+
+    @Test
+    void testInterruptedBfs() {
+		// Visits abort when the current thread is interrupted, so dependents can be cancelled
+		final LongList seed = LongList.of(0, 1, 2);
+		final var graph = randomGraphs(new Random(2), 1, 200, 400).iterator().next();
+		final DenseDirectedGraph dense = DenseDirectedGraph.copyOf(graph);
+		try {
+			Thread.currentThread().interrupt();
+			assertThrows(CancellationException.class, () -> SearchEngine.bfs(graph, true, seed, x -> true, TrivialScorer.getInstance(), new ObjectLinkedOpenHashSet<>()));
+			assertThrows(CancellationException.class, () -> SearchEngine.bfs(dense, true, seed, x -> true, TrivialScorer.getInstance(), new ObjectLinkedOpenHashSet<>()));
+		} finally {
+			Thread.interrupted();
+		}
+		// The visit state is reset after an aborted visit
+		final ObjectLinkedOpenHashSet<Result> expected = new ObjectLinkedOpenHashSet<>();
+		final ObjectLinkedOpenHashSet<Result> actual = new ObjectLinkedOpenHashSet<>();
+		SearchEngine.bfs(graph, true, seed, x -> true, TrivialScorer.getInstance(), expected);
+		SearchEngine.bfs(dense, true, seed, x -> true, TrivialScorer.getInstance(), actual);
+		assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+    }
+
+    @Test
+    void testTopK() {
+		// With a monotone scorer, the top results of a truncated visit are those of a complete visit
+		final Scorer scorer = new Scorer() {
+			@Override
+			public double score(final DirectedGraph graph, final long gid, final int distance) {
+				return 1. / (distance + 1);
+			}
+
+			@Override
+			public boolean isMonotone() {
+				return true;
+			}
+		};
+		final Comparator<Result> byScore = (x, y) -> Double.compare(y.score, x.score);
+		final LongList seed = LongList.of(0);
+		for (final var graph : randomGraphs(new Random(1), 20, 1000, 1500)) {
+			final DenseDirectedGraph dense = DenseDirectedGraph.copyOf(graph);
+			final ObjectLinkedOpenHashSet<Result> complete = new ObjectLinkedOpenHashSet<>();
+			SearchEngine.bfs(dense, true, seed, x -> x % 2 == 0, scorer, complete);
+			final List<Result> expected = new ArrayList<>(complete);
+			expected.sort(byScore);
+			for (final int limit : new int[] { 1, 5, 20 }) {
+				final ObjectLinkedOpenHashSet<Result> truncated = new ObjectLinkedOpenHashSet<>();
+				SearchEngine.bfs(dense, true, seed, x -> x % 2 == 0, scorer, limit, truncated);
+				final List<Result> actual = new ArrayList<>(truncated);
+				actual.sort(byScore);
+				assertTrue(actual.size() <= expected.size());
+				assertEquals(expected.subList(0, Math.min(limit, expected.size())), actual.subList(0, Math.min(limit, actual.size())));
+			}
+		}
+    }
 }
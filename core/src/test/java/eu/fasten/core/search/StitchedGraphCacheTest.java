@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.ArrayImmutableDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
+import eu.fasten.core.data.callableindex.GraphCache;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+public class StitchedGraphCacheTest {
+	private static final String DB = "/graphs";
+
+	private static DirectedGraph graph(final long first, final int n) {
+		final var builder = new ArrayImmutableDirectedGraph.Builder();
+		for (int i = 0; i < n; i++) builder.addInternalNode(first + i);
+		builder.addExternalNode(first + n);
+		for (int i = 1; i <= n; i++) builder.addArc(first + i - 1, first + i);
+		for (int i = 2; i <= n; i += 2) builder.addArc(first + i, first);
+		return builder.build();
+	}
+
+	@Test
+	public void testDependencySets() {
+		final StitchedGraphCache cache = new StitchedGraphCache(1 << 20);
+		final DirectedGraph g = graph(0, 10), h = graph(0, 20);
+		cache.put(DB, 0, 1, LongSet.of(1, 2, 3), g);
+		cache.put(DB, 0, 1, LongSet.of(1, 2), h);
+		// Order does not matter
+		assertSame(g, cache.get(DB, 0, 1, LongArrayList.wrap(new long[] { 3, 1, 2 })));
+		assertSame(h, cache.get(DB, 0, 1, LongSet.of(2, 1)));
+		assertNull(cache.get(DB, 0, 1, LongSet.of(1, 2, 4)));
+		assertNull(cache.get(DB, 0, 2, LongSet.of(1, 2, 3)));
+		assertEquals(2, cache.hits());
+		assertEquals(2, cache.misses());
+		assertEquals(2, cache.size());
+		assertEquals(GraphCache.weight(g) + GraphCache.weight(h), cache.weight());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testDatabasesAndEpochs() throws IOException {
+		final File dir = Files.createTempDirectory(StitchedGraphCacheTest.class.getSimpleName()).toFile();
+		try {
+			final DirectedGraph g = graph(0, 10), h = graph(0, 20);
+			final StitchedGraphCache cache = new StitchedGraphCache(1 << 20, dir, Long.MAX_VALUE);
+			cache.put(DB, 5, 1, LongSet.of(1, 2), g);
+			// Other databases do not see the graph
+			assertNull(cache.get("/other", 5, 1, LongSet.of(1, 2)));
+			cache.put("/other", 5, 1, LongSet.of(1, 2), h);
+			assertSame(g, cache.get(DB, 5, 1, LongSet.of(1, 2)));
+			assertSame(h, cache.get("/other", 5, 1, LongSet.of(1, 2)));
+			cache.close();
+			assertTrue(cache.spillFile(DB, 5, 1, LongSet.of(1, 2)).exists());
+			assertTrue(cache.spillFile("/other", 5, 1, LongSet.of(1, 2)).exists());
+
+			// After a restart, a newer epoch makes graphs and spill files of older epochs stale
+			final StitchedGraphCache restarted = new StitchedGraphCache(1 << 20, dir, Long.MAX_VALUE);
+			assertNotNull(restarted.get(DB, 5, 1, LongSet.of(1, 2)));
+			assertEquals(1, restarted.size());
+			assertNull(restarted.get(DB, 6, 1, LongSet.of(1, 2)));
+			assertEquals(0, restarted.size());
+			assertNull(restarted.get(DB, 5, 1, LongSet.of(1, 2)));
+			restarted.put(DB, 5, 2, LongSet.of(), g);
+			assertEquals(0, restarted.size());
+			restarted.close();
+			assertFalse(restarted.spillFile(DB, 5, 1, LongSet.of(1, 2)).exists());
+			assertFalse(restarted.spillFile(DB, 5, 2, LongSet.of()).exists());
+			assertTrue(restarted.spillFile("/other", 5, 1, LongSet.of(1, 2)).exists());
+			assertNotNull(restarted.get("/other", 5, 1, LongSet.of(1, 2)));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testBoundAndAdmission() {
+		final DirectedGraph small = graph(0, 10);
+		final long w = GraphCache.weight(small);
+		// Each of the 16 segments can hold four small graphs
+		final StitchedGraphCache cache = new StitchedGraphCache(16 * 4 * w);
+		for (int i = 0; i < 1000; i++) cache.put(DB, 0, i, LongSet.of(i), small);
+		assertTrue(cache.weight() <= cache.maxWeight());
+		assertTrue(cache.evictions() > 0);
+		assertEquals(1000, cache.size() + cache.evictions());
+		assertNotNull(cache.get(DB, 0, 999, LongSet.of(999)));
+
+		// A graph larger than half a segment is not admitted and does not evict anything
+		final int size = cache.size();
+		cache.put(DB, 0, -1, LongSet.of(), graph(0, 100));
+		assertEquals(1, cache.rejections());
+		assertEquals(size, cache.size());
+		assertNull(cache.get(DB, 0, -1, LongSet.of()));
+	}
+
+	@Test
+	public void testSpill() throws IOException {
+		final File dir = Files.createTempDirectory(StitchedGraphCacheTest.class.getSimpleName()).toFile();
+		try {
+			final DirectedGraph g = graph(1000, 50);
+			final LongOpenHashSet dependencies = new LongOpenHashSet(new long[] { 5, 1, 3 });
+			final StitchedGraphCache first = new StitchedGraphCache(1 << 20, dir, 1 << 20);
+			first.put(DB, 0, 7, dependencies, g);
+			// Graphs in memory are spilled only on eviction, or when closing
+			assertFalse(first.spillFile(DB, 0, 7, dependencies).exists());
+			first.close();
+			assertEquals(1, first.spills());
+			assertTrue(first.spillFile(DB, 0, 7, dependencies).exists());
+
+			// A new cache (e.g., after a restart) finds the graph on disk; no memory, so nothing is admitted
+			final StitchedGraphCache cache = new StitchedGraphCache(0, dir, 1 << 20);
+			final DirectedGraph h = cache.get(DB, 0, 7, LongSet.of(1, 3, 5));
+			assertEquals(1, cache.spillHits());
+			assertEquals(1, cache.rejections());
+			assertNull(cache.get(DB, 0, 7, LongSet.of(1, 3)));
+			assertEquals(1, cache.misses());
+			cache.close();
+			assertEquals(0, cache.spills());
+
+			assertEquals(g.numNodes(), h.numNodes());
+			assertEquals(g.numArcs(), h.numArcs());
+			assertEquals(g.externalNodes(), h.externalNodes());
+			for (final long x : g.nodes()) {
+				assertEquals(g.successors(x), h.successors(x));
+				assertEquals(g.predecessors(x), h.predecessors(x));
+			}
+
+			// With memory, the graph is promoted
+			final StitchedGraphCache promoting = new StitchedGraphCache(1 << 20, dir, 1 << 20);
+			final DirectedGraph k = promoting.get(DB, 0, 7, dependencies);
+			assertSame(k, promoting.get(DB, 0, 7, dependencies));
+			assertEquals(1, promoting.spillHits());
+			assertEquals(1, promoting.hits());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testCloseSpillsAllGraphs() throws IOException {
+		final File dir = Files.createTempDirectory(StitchedGraphCacheTest.class.getSimpleName()).toFile();
+		try {
+			final StitchedGraphCache cache = new StitchedGraphCache(1 << 20, dir, Long.MAX_VALUE);
+			// More graphs than the evicted graphs that can wait to be spilled
+			for (int i = 0; i < 100; i++) cache.put(DB, 0, i, LongSet.of(i), graph(0, 10));
+			assertEquals(0, cache.evictions());
+			cache.close();
+			assertEquals(100, cache.spills());
+			for (int i = 0; i < 100; i++) assertTrue(cache.spillFile(DB, 0, i, LongSet.of(i)).exists());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSpillOnEviction() throws IOException {
+		final File dir = Files.createTempDirectory(StitchedGraphCacheTest.class.getSimpleName()).toFile();
+		try {
+			final DirectedGraph small = graph(0, 10);
+			// Each of the 16 segments can hold two small graphs
+			final StitchedGraphCache cache = new StitchedGraphCache(16 * 2 * GraphCache.weight(small), dir, Long.MAX_VALUE);
+			for (int i = 0; i < 100; i++) cache.put(DB, 0, i, LongSet.of(i), small);
+			cache.close();
+			assertTrue(cache.evictions() > 0);
+			assertTrue(cache.spills() > 0);
+
+			final StitchedGraphCache restarted = new StitchedGraphCache(0, dir, Long.MAX_VALUE);
+			int spilled = 0;
+			for (int i = 0; i < 100; i++) {
+				if (!restarted.spillFile(DB, 0, i, LongSet.of(i)).exists()) continue;
+				assertEquals(small.numArcs(), restarted.get(DB, 0, i, LongSet.of(i)).numArcs());
+				spilled++;
+			}
+			assertEquals(cache.spills(), spilled);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testSpillBound() throws IOException {
+		final File dir = Files.createTempDirectory(StitchedGraphCacheTest.class.getSimpleName()).toFile();
+		try {
+			final DirectedGraph g = graph(1000, 50);
+			final long now = System.currentTimeMillis();
+			final StitchedGraphCache unbounded = new StitchedGraphCache(0, dir, Long.MAX_VALUE);
+			unbounded.put(DB, 0, 1, LongSet.of(), g);
+			unbounded.put(DB, 0, 2, LongSet.of(), g);
+			unbounded.close();
+			final File first = unbounded.spillFile(DB, 0, 1, LongSet.of()), second = unbounded.spillFile(DB, 0, 2, LongSet.of());
+			assertTrue(first.setLastModified(now - 20000));
+			assertTrue(second.setLastModified(now - 10000));
+
+			// Room for two and a half files; reading the first file makes the second one the least recently used
+			final StitchedGraphCache cache = new StitchedGraphCache(0, dir, first.length() * 5 / 2);
+			assertNotNull(cache.get(DB, 0, 1, LongSet.of()));
+			cache.put(DB, 0, 3, LongSet.of(), g);
+			cache.close();
+			assertEquals(1, cache.spills());
+			assertTrue(first.exists());
+			assertFalse(second.exists());
+			assertTrue(cache.spillFile(DB, 0, 3, LongSet.of()).exists());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
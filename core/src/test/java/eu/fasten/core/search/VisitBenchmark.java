@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search;
+
+import eu.fasten.core.data.ArrayImmutableDirectedGraph;
+import eu.fasten.core.data.DenseDirectedGraph;
+import eu.fasten.core.data.DirectedGraph;
+import eu.fasten.core.data.PartialJavaCallGraph;
+import eu.fasten.core.merge.CGMerger;
+import eu.fasten.core.search.SearchEngine.Result;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+/**
+ * Measures the time spent by {@link SearchEngine#bfs} visiting a stitched graph, both in its generic
+ * form and as a {@link DenseDirectedGraph}, and the time spent by a top-k visit with a
+ * {@linkplain Scorer#isMonotone() monotone} scorer.
+ *
+ * <p>
+ * The stitched graph is built with {@link CGMerger#mergeAllDeps()} from a dependency set given as a
+ * list of revision call graph files, or of directories containing such files (with extension
+ * {@code .json}); for instance, {@code src/test/resources/merge/efficiencyTests/jpacman-framework-6f703ad}.
+ * Each iteration performs a forward and a backward visit from each of a fixed set of random seeds.
+ */
+@CommandLine.Command(name = "VisitBenchmark", mixinStandardHelpOptions = true)
+public class VisitBenchmark implements Runnable {
+
+    @CommandLine.Option(names = {"-w", "--warmup"},
+            paramLabel = "N",
+            defaultValue = "3",
+            description = "Number of warmup iterations")
+    int warmup;
+
+    @CommandLine.Option(names = {"-i", "--iterations"},
+            paramLabel = "N",
+            defaultValue = "10",
+            description = "Number of measured iterations")
+    int iterations;
+
+    @CommandLine.Option(names = {"-s", "--seeds"},
+            paramLabel = "N",
+            defaultValue = "100",
+            description = "Number of seeds (each visit starts from a single callable)")
+    int seeds;
+
+    @CommandLine.Option(names = {"-k", "--limit"},
+            paramLabel = "K",
+            defaultValue = "10",
+            description = "Number of results of top-k visits")
+    int limit;
+
+    @CommandLine.Parameters(paramLabel = "FILE",
+            arity = "1..*",
+            description = "Revision call graph files, or directories containing them")
+    List<File> files;
+
+    /** A scorer depending on distance only. */
+    private static final Scorer DISTANCE_SCORER = new Scorer() {
+        @Override
+        public double score(final DirectedGraph graph, final long gid, final int distance) {
+            return 1. / (distance + 1);
+        }
+
+        @Override
+        public boolean isMonotone() {
+            return true;
+        }
+    };
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new VisitBenchmark()).execute(args));
+    }
+
+    @Override
+    public void run() {
+        final List<PartialJavaCallGraph> depSet = new ArrayList<>();
+        try {
+            for (final var file : files) {
+                final var inputs = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".json")) : new File[] {file};
+                Arrays.sort(inputs);
+                for (final var input : inputs) {
+                    depSet.add(new PartialJavaCallGraph(new JSONObject(Files.readString(input.toPath()))));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        final var generic = ArrayImmutableDirectedGraph.copyOf(new CGMerger(depSet).mergeAllDeps(), true);
+        final var dense = DenseDirectedGraph.copyOf(generic);
+        System.out.println("Stitched graph: " + generic.numNodes() + " nodes, " + generic.numArcs() + " arcs");
+
+        final long[] nodes = generic.nodes().toLongArray();
+        Arrays.sort(nodes);
+        final Random random = new Random(0);
+        final LongList[] seed = new LongList[seeds];
+        for (int i = 0; i < seeds; i++) seed[i] = LongList.of(nodes[random.nextInt(nodes.length)]);
+
+        final long[] genericTime = new long[iterations], denseTime = new long[iterations], topKTime = new long[iterations];
+        long genericResults = 0, denseResults = 0, topKResults = 0;
+        for (int i = -warmup; i < iterations; i++) {
+            genericResults = denseResults = topKResults = 0;
+            long start = System.nanoTime();
+            for (final LongList s : seed) genericResults += visit(generic, s, TrivialScorer.getInstance(), Integer.MAX_VALUE);
+            final long afterGeneric = System.nanoTime();
+            for (final LongList s : seed) denseResults += visit(dense, s, TrivialScorer.getInstance(), Integer.MAX_VALUE);
+            final long afterDense = System.nanoTime();
+            for (final LongList s : seed) topKResults += visit(dense, s, DISTANCE_SCORER, limit);
+            final long end = System.nanoTime();
+            if (i >= 0) {
+                genericTime[i] = afterGeneric - start;
+                denseTime[i] = afterDense - afterGeneric;
+                topKTime[i] = end - afterDense;
+            }
+        }
+        if (genericResults != denseResults) throw new AssertionError("Generic visits found " + genericResults + " results, dense visits " + denseResults);
+        Arrays.sort(genericTime);
+        Arrays.sort(denseTime);
+        Arrays.sort(topKTime);
+
+        System.out.println("Results per iteration: " + denseResults + " (top-" + limit + ": " + topKResults + ")");
+        System.out.format("%14s%14s%14s\n", "", "median (ms)", "min (ms)");
+        System.out.format("%14s%14.3f%14.3f\n", "generic", genericTime[iterations / 2] / 1E6, genericTime[0] / 1E6);
+        System.out.format("%14s%14.3f%14.3f\n", "dense", denseTime[iterations / 2] / 1E6, denseTime[0] / 1E6);
+        System.out.format("%14s%14.3f%14.3f\n", "dense top-k", topKTime[iterations / 2] / 1E6, topKTime[0] / 1E6);
+    }
+
+    private static int visit(final DirectedGraph graph, final LongList seed, final Scorer scorer, final int limit) {
+        final ObjectLinkedOpenHashSet<Result> results = new ObjectLinkedOpenHashSet<>();
+        SearchEngine.bfs(graph, true, seed, x -> true, scorer, limit, results);
+        SearchEngine.bfs(graph, false, seed, x -> true, scorer, limit, results);
+        return results.size();
+    }
+}
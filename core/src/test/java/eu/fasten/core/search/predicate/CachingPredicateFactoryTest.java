@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.search.predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.JSONB;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockExecuteContext;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.metadatadb.codegen.tables.Callables;
+import eu.fasten.core.data.metadatadb.codegen.tables.Modules;
+import eu.fasten.core.data.metadatadb.codegen.tables.PackageVersions;
+import eu.fasten.core.search.predicate.PredicateFactory.MetadataSource;
+
+public class CachingPredicateFactoryTest {
+	/** Callables 0..N-1 exist; callable x is in module x / 10, which is in package version x / 100. */
+	private static final int N = 10000;
+
+	/**
+	 * Answers the queries of {@link CachingPredicateFactory}: callables with even GID have metadata
+	 * {@code {"even": true}}, modules have metadata {@code {"module": id}}, and package versions
+	 * have metadata {@code {"version": id}}.
+	 */
+	private static class Provider implements MockDataProvider {
+		private final DSLContext context = DSL.using(SQLDialect.POSTGRES);
+		private int queries;
+
+		@Override
+		public MockResult[] execute(final MockExecuteContext ctx) {
+			queries++;
+			final String sql = ctx.sql();
+			final long[] ids = ids(ctx.bindings()[0]);
+			if (sql.contains("\"metadata\"")) {
+				final boolean packageVersions = sql.contains("\"package_versions\""), modules = !packageVersions && sql.contains("\"modules\"");
+				final Field<Long> idField = packageVersions ? PackageVersions.PACKAGE_VERSIONS.ID : modules ? Modules.MODULES.ID : Callables.CALLABLES.ID;
+				final Field<JSONB> metadataField = packageVersions ? PackageVersions.PACKAGE_VERSIONS.METADATA : modules ? Modules.MODULES.METADATA : Callables.CALLABLES.METADATA;
+				final Result<Record2<Long, JSONB>> result = context.newResult(idField, metadataField);
+				for (final long id : ids) {
+					if (!packageVersions && !modules && id >= N) continue;
+					final String json = packageVersions ? "{\"version\": " + id + "}" : modules ? "{\"module\": " + id + "}" : id % 2 == 0 ? "{\"even\": true}" : null;
+					result.add(context.newRecord(idField, metadataField).values(Long.valueOf(id), json == null ? null : JSONB.valueOf(json)));
+				}
+				return new MockResult[] { new MockResult(result.size(), result) };
+			}
+			final boolean callables = sql.contains("\"module_id\"");
+			final Field<Long> idField = callables ? Callables.CALLABLES.ID : Modules.MODULES.ID;
+			final Field<Long> valueField = callables ? Callables.CALLABLES.MODULE_ID : Modules.MODULES.PACKAGE_VERSION_ID;
+			final Result<Record2<Long, Long>> result = context.newResult(idField, valueField);
+			for (final long id : ids) {
+				if (callables && id >= N) continue;
+				result.add(context.newRecord(idField, valueField).values(Long.valueOf(id), Long.valueOf(id / 10)));
+			}
+			return new MockResult[] { new MockResult(result.size(), result) };
+		}
+	}
+
+	/** Parses an array binding, which the mock connection receives in PostgreSQL literal form (e.g., <code>{"1","2"}</code>). */
+	private static long[] ids(final Object binding) {
+		final String literal = binding.toString();
+		return Arrays.stream(literal.substring(1, literal.length() - 1).split(",")).mapToLong(x -> Long.parseLong(x.replace("\"", ""))).toArray();
+	}
+
+	private static boolean[] evaluate(final LongPredicate predicate, final long[] gids) {
+		final boolean[] result = new boolean[gids.length];
+		LongBatchPredicate.evaluate(predicate, gids, gids.length, result);
+		return result;
+	}
+
+	@Test
+	public void testBatchCallableMetadata() {
+		final Provider provider = new Provider();
+		final CachingPredicateFactory factory = new CachingPredicateFactory(DSL.using(new MockConnection(provider), SQLDialect.POSTGRES));
+		final MetadataContains even = factory.metadataContains(MetadataSource.CALLABLE, "even");
+
+		final long[] gids = new long[N + 10];
+		for (int i = 0; i < gids.length; i++) gids[i] = i;
+		final boolean[] result = evaluate(even, gids);
+		// One query per chunk
+		assertEquals((gids.length + CachingPredicateFactory.PREFETCH_CHUNK_SIZE - 1) / CachingPredicateFactory.PREFETCH_CHUNK_SIZE, provider.queries);
+		for (int i = 0; i < gids.length; i++) assertEquals(i < N && i % 2 == 0, result[i]);
+
+		// Everything is cached now
+		for (int i = 0; i < gids.length; i++) assertEquals(i < N && i % 2 == 0, even.test(i));
+		assertEquals((gids.length + CachingPredicateFactory.PREFETCH_CHUNK_SIZE - 1) / CachingPredicateFactory.PREFETCH_CHUNK_SIZE, provider.queries);
+	}
+
+	@Test
+	public void testBatchPackageVersionMetadata() {
+		final Provider provider = new Provider();
+		final CachingPredicateFactory factory = new CachingPredicateFactory(DSL.using(new MockConnection(provider), SQLDialect.POSTGRES));
+		final MetadataContains version = factory.metadataContains(MetadataSource.PACKAGE_VERSION, "version", "3");
+		final MetadataContains module = factory.metadataQueryJSONPointer(MetadataSource.MODULE, "/module", x -> x.equals("42"));
+
+		final long[] gids = new long[1000];
+		for (int i = 0; i < gids.length; i++) gids[i] = i * 10 + 5;
+		final boolean[] result = evaluate(version, gids);
+		// Module ids, package version ids, package version metadata
+		assertEquals(3, provider.queries);
+		for (int i = 0; i < gids.length; i++) assertEquals(gids[i] / 100 == 3, result[i]);
+
+		final boolean[] moduleResult = evaluate(module, gids);
+		// Module metadata only
+		assertEquals(4, provider.queries);
+		for (int i = 0; i < gids.length; i++) assertEquals(gids[i] / 10 == 42, moduleResult[i]);
+
+		assertFalse(version.test(N + 1));
+		assertTrue(version.test(301));
+	}
+
+	@Test
+	public void testComposition() {
+		final CachingPredicateFactory factory = new CachingPredicateFactory(DSL.using(new MockConnection(new Provider()), SQLDialect.POSTGRES), 16);
+		final MetadataContains even = factory.metadataContains(MetadataSource.CALLABLE, "even");
+		final MetadataContains version = factory.metadataContains(MetadataSource.PACKAGE_VERSION, "version", "3");
+		final LongPredicate[] predicates = { even.and(version), even.or(version.negate()), even.negate().and(x -> x % 3 == 0), LongBatchPredicate.TRUE.and(even).and(version) };
+
+		final long[] gids = new long[2000];
+		for (int i = 0; i < gids.length; i++) gids[i] = i;
+		for (final LongPredicate predicate : predicates) {
+			assertTrue(predicate instanceof LongBatchPredicate);
+			final boolean[] result = evaluate(predicate, gids);
+			for (int i = 0; i < gids.length; i++) assertEquals(predicate.test(gids[i]), result[i]);
+		}
+	}
+}
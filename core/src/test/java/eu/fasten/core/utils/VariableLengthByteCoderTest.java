@@ -27,6 +27,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.junit.jupiter.api.Test;
 
@@ -80,6 +81,20 @@ public class VariableLengthByteCoderTest {
 		for (int i = 0; i < 100000; i++) assertEquals(r.nextInt() & (-1L >>> 32), readLong(fbais));
 	}
 
+	@Test
+	public void testByteBuffer() throws IOException {
+		final XoRoShiRo128PlusRandomGenerator r = new XoRoShiRo128PlusRandomGenerator(0);
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		for (final long x : TEST_SEQUENCE) writeLong(x, fbaos);
+		for (int i = 0; i < 100000; i++) writeLong(r.nextLong() & (-1L >>> 1), fbaos);
+		fbaos.flush();
+		r.setSeed(0);
+		final ByteBuffer buffer = ByteBuffer.wrap(fbaos.array, 0, fbaos.length);
+		for (final long x : TEST_SEQUENCE) assertEquals(x, readLong(buffer));
+		for (int i = 0; i < 100000; i++) assertEquals(r.nextLong() & (-1L >>> 1), readLong(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+
 	@Test
 	public void testByteArrays() throws IOException {
 		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
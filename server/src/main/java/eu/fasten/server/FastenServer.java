@@ -19,10 +19,15 @@
 package eu.fasten.server;
 
 import ch.qos.logback.classic.Level;
+import dev.c0ps.maven.resolution.IMavenResolver;
+import eu.fasten.core.data.callableindex.RocksDao;
 import eu.fasten.core.dbconnectors.PostgresConnector;
 import eu.fasten.core.dbconnectors.RocksDBConnector;
+import eu.fasten.core.maven.resolution.MavenResolverIO;
+import eu.fasten.core.metrics.MetricRegistry;
 import eu.fasten.core.plugins.CallableIndexConnector;
 import eu.fasten.core.plugins.CallableIndexReader;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
 import eu.fasten.core.plugins.DBConnector;
 import eu.fasten.core.plugins.DataWriter;
 import eu.fasten.core.plugins.DependencyGraphUser;
@@ -30,6 +35,7 @@ import eu.fasten.core.plugins.FastenPlugin;
 import eu.fasten.core.plugins.KafkaPlugin;
 import eu.fasten.server.connectors.KafkaConnector;
 import eu.fasten.server.plugins.FastenServerPlugin;
+import eu.fasten.server.plugins.PluginSupervisor;
 import eu.fasten.server.plugins.kafka.FastenKafkaPlugin;
 import org.apache.commons.lang3.ObjectUtils;
 import org.jooq.DSLContext;
@@ -39,6 +45,8 @@ import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import picocli.CommandLine.Option;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.sql.SQLException;
@@ -46,13 +54,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Supplier;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 
 @CommandLine.Command(name = "FastenServer", mixinStandardHelpOptions = true)
-public class FastenServer implements Runnable {
+public class FastenServer implements Callable<Integer> {
 
     @Option(names = {"-p", "--plugin_dir"},
         paramLabel = "DIR",
@@ -154,6 +162,34 @@ public class FastenServer implements Runnable {
     boolean consumeTimeoutExit;
 
 
+    @Option(names = {"-cw", "--consume_workers"},
+        paramLabel = "consumeWorkers",
+        description = "Number of records processed at the same time by plugins supporting concurrent consumption. "
+            + "Records of the same partition are always processed in order.",
+        defaultValue = "1"
+    )
+    int consumeWorkers;
+
+    @Option(names = {"-cb", "--consume_batch"},
+        paramLabel = "consumeBatch",
+        description = "Maximum number of records polled at once by plugins supporting concurrent consumption. "
+            + "Defaults to four times the number of consume workers.",
+        defaultValue = "-1"
+    )
+    int consumeBatch;
+
+    @Option(names = {"-kr", "--keep_running"},
+        description = "Keep the other plugins running when a plugin fails, instead of stopping all of them.")
+    boolean keepRunningOnFailure;
+
+    @Option(names = {"-mp", "--metrics_port"},
+        paramLabel = "port",
+        description = "Port of an HTTP endpoint exposing metrics at /metrics in the Prometheus format. "
+            + "Metrics are always available through JMX.",
+        defaultValue = "-1"
+    )
+    int metricsPort;
+
     @Option(names = {"-ls", "--local_storage"},
         paramLabel = "localStorage",
         description = "Enables local storage which stores record currently processed. This ensure that records that were processed before won't be processed again (e.g. when the pod crashes). "
@@ -168,7 +204,7 @@ public class FastenServer implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(FastenServer.class);
 
     @Override
-    public void run() {
+    public Integer call() {
         setLoggingLevel();
         if (!isDeployed) {
             showSysInfo();
@@ -199,7 +235,36 @@ public class FastenServer implements Runnable {
 
         var kafkaServerPlugins = setupKafkaPlugins(kafkaPlugins);
 
-        kafkaServerPlugins.forEach(FastenServerPlugin::start);
+        startMetricsServer();
+
+        var supervisor = new PluginSupervisor(kafkaServerPlugins, !keepRunningOnFailure,
+                PluginSupervisor.DEFAULT_SHUTDOWN_TIMEOUT_MILLIS);
+        supervisor.start();
+        try {
+            if (!supervisor.awaitTermination()) {
+                logger.error("Plugins {} failed", supervisor.getFailures().keySet());
+                return 1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            supervisor.stop();
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Starts the HTTP endpoint exposing metrics, if a port has been provided.
+     */
+    private void startMetricsServer() {
+        if (metricsPort < 0) {
+            return;
+        }
+        try {
+            new MetricsHttpServer(MetricRegistry.global(), metricsPort);
+        } catch (IOException e) {
+            logger.error("Couldn't start the metrics endpoint on port {}", metricsPort, e);
+        }
     }
 
     private void printPluginStatistics(List<FastenPlugin> fastenPlugins,
@@ -252,6 +317,8 @@ public class FastenServer implements Runnable {
 
         return kafkaPlugins.stream().filter(x -> plugins.contains(x.getClass().getSimpleName()))
             .map(k -> {
+                var workers = k instanceof ConcurrentKafkaPlugin ? consumeWorkers : 1;
+                var maxPollRecords = workers == 1 ? 1 : (consumeBatch > 0 ? consumeBatch : 4 * workers);
                 var consumerNormProperties = KafkaConnector.kafkaConsumerProperties(
                         kafkaServers,
                         (consumerGroup.equals("undefined") ? k.getClass().getCanonicalName() :
@@ -260,7 +327,8 @@ public class FastenServer implements Runnable {
                         "",
                         k.getSessionTimeout(),
                         k.getMaxConsumeTimeout(),
-                        k.isStaticMembership());
+                        k.isStaticMembership(),
+                        maxPollRecords);
                 var consumerPrioProperties = KafkaConnector.kafkaConsumerProperties(
                         kafkaServers,
                         (consumerGroup.equals("undefined") ? k.getClass().getCanonicalName() :
@@ -269,7 +337,8 @@ public class FastenServer implements Runnable {
                         "_priority",
                         k.getSessionTimeout(),
                         k.getMaxConsumeTimeout(),
-                        k.isStaticMembership());
+                        k.isStaticMembership(),
+                        maxPollRecords);
                 var producerProperties = KafkaConnector.kafkaProducerProperties(
                         kafkaServers,
                         k.getClass().getCanonicalName());
@@ -283,7 +352,8 @@ public class FastenServer implements Runnable {
                         consumeTimeoutExit,
                         localStorage,
                         (localStorageDir != null) ? localStorageDir :
-                                "/mnt/fasten/local_storage/" + k.getClass().getSimpleName());
+                                "/mnt/fasten/local_storage/" + k.getClass().getSimpleName(),
+                        workers);
             }).collect(Collectors.toList());
     }
 
@@ -299,32 +369,52 @@ public class FastenServer implements Runnable {
             return;
         }
 
-        Supplier<Map<String, DSLContext>> s = () -> {
-            var connectionPool = new HashMap<String, DSLContext>();
-            for (String configKey : dbUrls.keySet()) {
-                final var jdbcUrl = dbUrls.get(configKey);
-                final var connection = getDSLContext(jdbcUrl);
-                connectionPool.put(configKey, connection);
-            }
-            return connectionPool;
-        };
-        dbPlugins.forEach(p -> p.setDBConnection(s.get()));
+        if (dbPlugins.isEmpty()) {
+            return;
+        }
+
+        // Contexts are pooled, so they are safely shared by all plugins
+        var connectionPool = new HashMap<String, DSLContext>();
+        for (String configKey : dbUrls.keySet()) {
+            final var jdbcUrl = dbUrls.get(configKey);
+            final var connection = getDSLContext(jdbcUrl);
+            PostgresConnector.getPool(connection).registerMetrics(MetricRegistry.global(), "database", configKey);
+            connectionPool.put(configKey, connection);
+        }
+        dbPlugins.forEach(p -> p.setDBConnection(new HashMap<>(connectionPool)));
     }
 
+    /**
+     * Loads the dependency graph once, and shares it among all plugins supporting a shared resolver.
+     *
+     * @param plugins list of plugins using the dependency graph
+     */
     private void loadDependencyGraphResolvers(List<DependencyGraphUser> plugins) {
-        plugins.forEach(p -> {
-            if (dbUrls == null || depGraphPath == null) {
-                throw new IllegalArgumentException("Couldn't load dependency graph. Make sure that you have "
-                        + "provided a valid DB URL, username, password, "
-                        + "and a path to the serialized dependency graph.");
+        if (plugins.isEmpty()) {
+            return;
+        }
+        if (dbUrls == null || depGraphPath == null) {
+            throw new IllegalArgumentException("Couldn't load dependency graph. Make sure that you have "
+                    + "provided a valid DB URL, username, password, "
+                    + "and a path to the serialized dependency graph.");
+        }
+        DSLContext dbContext = getDSLContext(dbUrls.get("mvn"));
+        IMavenResolver graphResolver = null;
+        try {
+            logger.info("Loading the shared dependency graph from {}", depGraphPath);
+            graphResolver = new MavenResolverIO(dbContext, new File(depGraphPath)).loadResolver();
+        } catch (RuntimeException e) {
+            logger.error("Couldn't load the shared dependency graph, plug-ins will load their own", e);
+        }
+        for (var p : plugins) {
+            if (graphResolver == null || !p.setGraphResolver(graphResolver)) {
+                p.loadGraphResolver(dbContext, depGraphPath);
             }
-            DSLContext dbContext = getDSLContext(dbUrls.get("mvn"));
-            p.loadGraphResolver(dbContext, depGraphPath);
-        });
+        }
     }
 
     /**
-     * Get a DB connection for a given DB URL
+     * Get a pooled DB context for a given DB URL
      *
      * @param dbURL JDBC URI
      * @throws SQLException
@@ -335,7 +425,7 @@ public class FastenServer implements Runnable {
         try {
             final var dbUrl = "jdbc:postgresql://" + uri.getHost() + uri.getPath();
             return PostgresConnector
-                .getDSLContext(dbUrl, uri.getUserInfo(), true);
+                .getPooledDSLContext(dbUrl, uri.getUserInfo(), true);
         } catch (SQLException e) {
             throw new RuntimeException("Could not connect to DB url: "+ dbURL, e);
         }
@@ -347,10 +437,15 @@ public class FastenServer implements Runnable {
      * @param graphDbPlugins list of Graph DB plugins
      */
     private void makeGraphDBConnection(List<CallableIndexConnector> graphDbPlugins) {
+        // RocksDB can be opened for writing only once, so all plugins share the same access object
+        var rocksDao = new RocksDao[1];
         graphDbPlugins.forEach((p) -> {
             if (ObjectUtils.allNotNull(graphDbDir)) {
                 try {
-                    p.setRocksDao(RocksDBConnector.createRocksDBAccessObject(graphDbDir));
+                    if (rocksDao[0] == null) {
+                        rocksDao[0] = RocksDBConnector.createRocksDBAccessObject(graphDbDir);
+                    }
+                    p.setRocksDao(rocksDao[0]);
                     logger.debug("Set Graph DB connection successfully for plug-in {}",
                         p.getClass().getSimpleName());
                 } catch (RuntimeException e) {
@@ -370,10 +465,14 @@ public class FastenServer implements Runnable {
      * @param graphDbPlugins list of Graph DB plugins
      */
     private void makeReadOnlyGraphDBConnection(List<CallableIndexReader> graphDbPlugins) {
+        var rocksDao = new RocksDao[1];
         graphDbPlugins.forEach((p) -> {
             if (ObjectUtils.allNotNull(graphDbDir)) {
                 try {
-                    p.setRocksDao(RocksDBConnector.createReadOnlyRocksDBAccessObject(graphDbDir));
+                    if (rocksDao[0] == null) {
+                        rocksDao[0] = RocksDBConnector.createReadOnlyRocksDBAccessObject(graphDbDir);
+                    }
+                    p.setRocksDao(rocksDao[0]);
                     logger.debug("Set Graph DB connection successfully for plug-in {}",
                         p.getClass().getSimpleName());
                 } catch (RuntimeException e) {
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.fasten.core.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal HTTP server exposing the metrics of a registry at {@code /metrics}, in the Prometheus
+ * text format, so that they can be scraped by Prometheus.
+ */
+public class MetricsHttpServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    /** The path at which metrics are exposed. */
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+
+    /**
+     * Starts serving the metrics of a registry.
+     *
+     * @param registry the registry to expose.
+     * @param port     the port to listen on (0 for an ephemeral port).
+     * @throws IOException if the server cannot be started.
+     */
+    public MetricsHttpServer(MetricRegistry registry, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, exchange -> handle(exchange, registry));
+        // A single daemon thread is enough for a scraper, and it does not prevent the JVM from exiting
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            var thread = new Thread(r, "metrics-http-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        logger.info("Serving metrics at http://localhost:{}{}", getPort(), PATH);
+    }
+
+    private static void handle(HttpExchange exchange, MetricRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            var body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /** Returns the port the server is listening on. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
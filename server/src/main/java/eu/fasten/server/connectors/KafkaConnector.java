@@ -44,6 +44,24 @@ public class KafkaConnector {
      */
     public static Properties kafkaConsumerProperties(List<String> serverAddresses, String groupId, String clientIdSuffix,
                                                      long sessionTimeout, long maxPollInterval, boolean staticMemberShip) {
+        return kafkaConsumerProperties(serverAddresses, groupId, clientIdSuffix, sessionTimeout, maxPollInterval,
+                staticMemberShip, 1);
+    }
+
+    /**
+     * Returns Kafka properties.
+     *
+     * @param serverAddresses  broker address
+     * @param groupId          group id
+     * @param sessionTimeout   a value for `session.timeout.ms`.
+     * @param maxPollInterval  a value for `max.poll.interval.ms`.
+     * @param staticMemberShip if static membership should be enabled.
+     * @param maxPollRecords   a value for `max.poll.records`.
+     * @return Kafka Properties
+     */
+    public static Properties kafkaConsumerProperties(List<String> serverAddresses, String groupId, String clientIdSuffix,
+                                                     long sessionTimeout, long maxPollInterval, boolean staticMemberShip,
+                                                     int maxPollRecords) {
         String deserializer = StringDeserializer.class.getName();
         Properties properties = new Properties();
 
@@ -55,7 +73,7 @@ public class KafkaConnector {
         properties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, deserializer);
         properties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         properties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
-        properties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "1");
+        properties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
         properties.setProperty(ConsumerConfig.FETCH_MAX_BYTES_CONFIG, "50000000"); //Set max read size to 50 MB.
         properties.setProperty(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, "5000"); // 5 seconds
 
@@ -95,6 +113,10 @@ public class KafkaConnector {
                 StringSerializer.class.getName());
         p.setProperty(ProducerConfig.MAX_REQUEST_SIZE_CONFIG,
                 "50000000"); //Set produce size to 50MB.
+        // Messages are sent asynchronously and flushed before offsets are committed, so let the
+        // producer wait a little to batch them.
+        p.setProperty(ProducerConfig.LINGER_MS_CONFIG, "20");
+        p.setProperty(ProducerConfig.BATCH_SIZE_CONFIG, "1048576"); // 1 MB
         return p;
     }
 }
@@ -29,4 +29,11 @@ public interface FastenServerPlugin extends Runnable {
      * Stops the fasten plugin.
      */
     void stop();
+
+    /**
+     * Returns the name of the fasten plugin, used to identify it in logs and threads.
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
 }
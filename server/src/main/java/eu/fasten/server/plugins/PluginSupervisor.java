@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.server.plugins;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs several fasten plugins in the same JVM, each on its own thread.
+ *
+ * <p>A plugin that fails (i.e., whose {@link FastenServerPlugin#start()} throws) does not take the
+ * JVM down with it: its failure is recorded and, if requested, the other plugins are asked to stop,
+ * so that they can finish the record they are working on and commit their offsets. When the JVM is
+ * shut down (e.g., on SIGTERM), all plugins are asked to stop and are given some time to do so
+ * before the JVM exits.
+ */
+public class PluginSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PluginSupervisor.class);
+
+    /** The default time given to plugins to stop when the JVM is shut down. */
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+
+    private final List<? extends FastenServerPlugin> plugins;
+    private final boolean stopAllOnFailure;
+    private final long shutdownTimeoutMillis;
+    private final List<Thread> threads = new ArrayList<>();
+    private final Map<String, Throwable> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+    private Thread shutdownHook;
+
+    /**
+     * Creates a supervisor for some plugins.
+     *
+     * @param plugins               the plugins to run.
+     * @param stopAllOnFailure      whether all plugins should be stopped when one of them fails.
+     * @param shutdownTimeoutMillis the time given to plugins to stop when the JVM is shut down.
+     */
+    public PluginSupervisor(List<? extends FastenServerPlugin> plugins, boolean stopAllOnFailure,
+                            long shutdownTimeoutMillis) {
+        this.plugins = plugins;
+        this.stopAllOnFailure = stopAllOnFailure;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * Starts each plugin on its own thread, and registers a shutdown hook stopping them.
+     */
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("The plugins have already been started");
+        }
+        for (var plugin : plugins) {
+            var thread = new Thread(() -> supervise(plugin), "plugin-" + plugin.name());
+            threads.add(thread);
+        }
+        shutdownHook = new Thread(this::shutdown, "plugin-supervisor-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        threads.forEach(Thread::start);
+        logger.info("Started {} plugins: {}", plugins.size(),
+                plugins.stream().map(FastenServerPlugin::name).collect(Collectors.joining(", ")));
+    }
+
+    private void supervise(FastenServerPlugin plugin) {
+        try {
+            plugin.start();
+            logger.info("Plugin {} terminated", plugin.name());
+        } catch (Throwable t) {
+            failures.put(plugin.name(), t);
+            logger.error("Plugin {} failed", plugin.name(), t);
+            if (stopAllOnFailure) {
+                logger.info("Stopping all plugins after the failure of {}", plugin.name());
+                stop();
+            }
+        }
+    }
+
+    /**
+     * Asks all plugins to stop. Plugins stop asynchronously: use {@link #awaitTermination()} to wait for them.
+     */
+    public void stop() {
+        for (var plugin : plugins) {
+            try {
+                plugin.stop();
+            } catch (RuntimeException e) {
+                logger.error("Could not stop plugin {}", plugin.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Waits for all plugins to terminate.
+     *
+     * @return true if no plugin failed.
+     */
+    public boolean awaitTermination() throws InterruptedException {
+        for (var thread : threads) {
+            thread.join();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down
+        }
+        return failures.isEmpty();
+    }
+
+    /**
+     * Returns the failures of the plugins, by plugin name.
+     */
+    public Map<String, Throwable> getFailures() {
+        synchronized (failures) {
+            return new LinkedHashMap<>(failures);
+        }
+    }
+
+    private void shutdown() {
+        logger.info("Stopping all plugins before shutting down the JVM");
+        stop();
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (var thread : threads) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (thread.isAlive()) {
+                logger.warn("Thread {} did not stop within {} ms", thread.getName(), shutdownTimeoutMillis);
+            }
+        }
+    }
+}
@@ -18,18 +18,22 @@
 
 package eu.fasten.server.plugins.kafka;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
 import eu.fasten.core.exceptions.UnrecoverableError;
+import eu.fasten.core.metrics.MetricRegistry;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
 import eu.fasten.core.plugins.KafkaPlugin;
 import eu.fasten.core.plugins.KafkaPlugin.ProcessingLane;
 import eu.fasten.core.plugins.KafkaPlugin.SingleRecord;
 import eu.fasten.server.plugins.FastenServerPlugin;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.kafka.clients.consumer.CommitFailedException;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.PartitionInfo;
@@ -47,20 +51,41 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class FastenKafkaPlugin implements FastenServerPlugin {
 
     private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
 
+    // How often the consumers are kept alive while workers process records.
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(5);
+
+    // Maximum number of messages sent but not yet acknowledged by the brokers; further sends block.
+    private static final int MAX_IN_FLIGHT_MESSAGES = 1024;
+
+    // The host name is resolved once, as it is part of every message.
+    private static final String HOST = getHostName();
+
+    // Used to check inputs and payloads, which are spliced verbatim into messages.
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final Logger logger = LoggerFactory.getLogger(FastenKafkaPlugin.class);
     private final KafkaPlugin plugin;
 
@@ -69,6 +94,16 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
     private KafkaConsumer<String, String> connPrio;
     private KafkaProducer<String, String> producer;
 
+    // Bounds the messages sent but not yet acknowledged (see emitMessage).
+    private final Semaphore inFlightMessages = new Semaphore(MAX_IN_FLIGHT_MESSAGES);
+    private final AtomicLong failedMessages = new AtomicLong();
+    // The value of failedMessages at the last commit attempt (see doCommitSync).
+    private long failedMessagesAtLastCommit;
+
+    private final MetricRegistry metrics = MetricRegistry.global();
+    /** The last known lag of each partition, keyed by lane, topic and partition. */
+    private final Map<List<String>, Double> lags = new ConcurrentHashMap<>();
+
     private List<String> normTopics;
     private List<String> prioTopics;
     private final String outputTopic;
@@ -90,6 +125,14 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
     // possible.
     private final ExecutorService executorService = Executors.newCachedThreadPool();
 
+    // Number of workers processing records concurrently, if the plugin supports it (1 means that
+    // records are processed one at a time by the polling thread).
+    private final int consumeWorkers;
+
+    // Plugin instances used by the workers, and the pool running the workers; created on first use.
+    private BlockingQueue<KafkaPlugin> workerPlugins;
+    private ExecutorService workerPool;
+
     private boolean hadMessagesOnLastPollCycle;
 
     /**
@@ -103,7 +146,32 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
             Properties producerProperties, KafkaPlugin plugin, int skipOffsets, String writeDirectory, String writeLink,
             String outputTopic, boolean consumeTimeoutEnabled, long consumeTimeout, boolean exitOnTimeout,
             boolean enableLocalStorage, String localStorageDir) {
+        this(enableKafka, consumerNormProperties, consumerPrioProperties, producerProperties, plugin, skipOffsets,
+                writeDirectory, writeLink, outputTopic, consumeTimeoutEnabled, consumeTimeout, exitOnTimeout,
+                enableLocalStorage, localStorageDir, 1);
+    }
+
+    /**
+     * Constructs a FastenKafkaConsumer that processes the records of a poll concurrently.
+     *
+     * Concurrent processing is used only if the plugin {@linkplain ConcurrentKafkaPlugin supports it};
+     * the number of records returned by a poll is set by `max.poll.records` in the consumer
+     * properties.
+     *
+     * @param consumerNormProperties properties of a consumer
+     * @param plugin                 Kafka plugin
+     * @param skipOffsets            skip offset number
+     * @param consumeWorkers         number of records processed at the same time
+     */
+    public FastenKafkaPlugin(boolean enableKafka, Properties consumerNormProperties, Properties consumerPrioProperties,
+            Properties producerProperties, KafkaPlugin plugin, int skipOffsets, String writeDirectory, String writeLink,
+            String outputTopic, boolean consumeTimeoutEnabled, long consumeTimeout, boolean exitOnTimeout,
+            boolean enableLocalStorage, String localStorageDir, int consumeWorkers) {
+        if (consumeWorkers < 1) {
+            throw new IllegalArgumentException("The number of consume workers must be positive: " + consumeWorkers);
+        }
         this.plugin = plugin;
+        this.consumeWorkers = consumeWorkers;
 
         if (enableKafka) {
             this.connNorm = new KafkaConsumer<>(consumerNormProperties);
@@ -131,7 +199,7 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
 
         // If the write link is not null, and local storage is enabled. Initialize it.
         if (enableLocalStorage) {
-            this.localStorage = new LocalStorage(localStorageDir);
+            this.localStorage = LocalStorage.create(localStorageDir);
         } else {
             this.localStorage = null;
         }
@@ -150,7 +218,16 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
             boolean enableLocalStorage, String localStorageDir) {
         this(true, consumerNormProperties, consumerPrioProperties, producerProperties, plugin, skipOffsets,
                 writeDirectory, writeLink, outputTopic, consumeTimeoutEnabled, consumeTimeout, exitOnTimeout,
-                enableLocalStorage, localStorageDir);
+                enableLocalStorage, localStorageDir, 1);
+    }
+
+    public FastenKafkaPlugin(Properties consumerNormProperties, Properties consumerPrioProperties,
+            Properties producerProperties, KafkaPlugin plugin, int skipOffsets, String writeDirectory, String writeLink,
+            String outputTopic, boolean consumeTimeoutEnabled, long consumeTimeout, boolean exitOnTimeout,
+            boolean enableLocalStorage, String localStorageDir, int consumeWorkers) {
+        this(true, consumerNormProperties, consumerPrioProperties, producerProperties, plugin, skipOffsets,
+                writeDirectory, writeLink, outputTopic, consumeTimeoutEnabled, consumeTimeout, exitOnTimeout,
+                enableLocalStorage, localStorageDir, consumeWorkers);
     }
 
     @Override
@@ -179,8 +256,20 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
                 }
             }
         } finally {
+            if (workerPool != null) {
+                workerPool.shutdownNow();
+            }
+            // Closing the producer sends all pending messages.
+            producer.close();
             connNorm.close();
             connPrio.close();
+            if (localStorage != null) {
+                try {
+                    localStorage.close();
+                } catch (IOException e) {
+                    logger.error("Could not close local storage", e);
+                }
+            }
             logger.info("Plugin {} stopped gracefully", plugin.name());
         }
     }
@@ -213,6 +302,11 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
         shouldFinishProcessing.set(true);
     }
 
+    @Override
+    public String name() {
+        return plugin.getClass().getSimpleName();
+    }
+
     /**
      * Consumes a message from a Kafka topics and passes it to a plugin.
      */
@@ -229,25 +323,13 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
             // processed
             sendHeartBeat(connNorm);
 
-            var prioRecords = connPrio.poll(prioTimeout);
-            ArrayList<ImmutablePair<Long, Integer>> priorityMessagesProcessed = new ArrayList<>();
-            String topicName = null;
+            var prioRecords = poll(connPrio, prioTimeout, ProcessingLane.PRIORITY);
+            var priorityMessagesProcessed = processRecords(prioRecords, ProcessingLane.PRIORITY, connPrio, connNorm);
 
-            for (var r : prioRecords) {
+            if (!priorityMessagesProcessed.isEmpty()) {
                 hadMessagesOnLastPollCycle = true;
-                topicName = r.topic();
-                logger.info("Read priority message offset {} from partition {}.", r.offset(), r.partition());
-                processRecord(r, ProcessingLane.PRIORITY);
-                logger.info("Successfully processed priority message offset {} from partition {}.", r.offset(),
-                        r.partition());
-
-                priorityMessagesProcessed.add(new ImmutablePair<>(r.offset(), r.partition()));
-            }
-            doCommitSync(ProcessingLane.PRIORITY);
-
-            if (localStorage != null && topicName != null) {
-                localStorage.clear(priorityMessagesProcessed.stream().map((x) -> x.right).collect(Collectors.toList()), topicName);
             }
+            clearLocalStorage(priorityMessagesProcessed);
         }
 
         if(hadMessagesOnLastPollCycle) {
@@ -256,46 +338,250 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
 
         if (!normTopics.isEmpty()) {
             sendHeartBeat(connPrio);
-            var records = connNorm.poll(normTimeout);
+            var records = poll(connNorm, normTimeout, ProcessingLane.NORMAL);
 
-            // Keep a list of all records and offsets we processed (by default this is only
-            // 1).
-            ArrayList<ImmutablePair<Long, Integer>> messagesProcessed = new ArrayList<ImmutablePair<Long, Integer>>();
-            String topicName = null;
+            // Keep a list of all records we processed (by default this is only 1).
+            var messagesProcessed = processRecords(records, ProcessingLane.NORMAL, connNorm, connPrio);
 
-            // Although we loop through all records, by default we only poll 1 record.
-            for (var r : records) {
+            if (!messagesProcessed.isEmpty()) {
                 hadMessagesOnLastPollCycle = true;
-                topicName = r.topic();
-                logger.info("Read normal message offset {} from partition {}.", r.offset(), r.partition());
-                processRecord(r, ProcessingLane.NORMAL);
-                logger.info("Successfully processed normal message offset {} from partition {}.", r.offset(),
-                        r.partition());
 
-                messagesProcessed.add(new ImmutablePair<>(r.offset(), r.partition()));
+                // More logging.
+                String allOffsets = messagesProcessed.stream().map(ConsumerRecord::offset).map(Object::toString)
+                        .collect(Collectors.joining(", "));
+                String allPartitions = messagesProcessed.stream().map(ConsumerRecord::partition).map(Object::toString)
+                        .collect(Collectors.joining(", "));
+                logger.info("Committed offsets [" + allOffsets + "] of partitions [" + allPartitions + "].");
             }
 
-            // Commit only after _all_ records are processed.
-            // For most plugins, this loop will only process 1 record (since
-            // max.poll.records is 1).
-            doCommitSync(ProcessingLane.NORMAL);
+            clearLocalStorage(messagesProcessed);
+        }
+    }
 
-            // More logging.
-            String allOffsets = messagesProcessed.stream().map((x) -> x.left).map(Object::toString)
-                    .collect(Collectors.joining(", "));
-            String allPartitions = messagesProcessed.stream().map((x) -> x.right).map(Object::toString)
-                    .collect(Collectors.joining(", "));
+    /**
+     * Polls a consumer, recording the duration of the poll and, if records were returned, the lag of
+     * its partitions. The overall duration of empty polls is the time the plugin spent idle.
+     */
+    private ConsumerRecords<String, String> poll(KafkaConsumer<String, String> consumer, Duration timeout,
+            ProcessingLane lane) {
+        long start = System.nanoTime();
+        var records = consumer.poll(timeout);
+        metrics.timer("fasten_kafka_poll_seconds", "plugin", name(), "lane", laneName(lane),
+                "result", records.isEmpty() ? "empty" : "records").recordNanos(System.nanoTime() - start);
+        if (!records.isEmpty()) {
+            updateLags(consumer, lane);
+        }
+        return records;
+    }
 
-            if (!records.isEmpty()) {
-                logger.info("Committed offsets [" + allOffsets + "] of partitions [" + allPartitions + "].");
+    /**
+     * Copies the lag of the partitions assigned to a consumer from its `records-lag` metric, registering
+     * a gauge the first time a partition is seen. Partitions no longer assigned have an unknown lag.
+     */
+    private void updateLags(KafkaConsumer<String, String> consumer, ProcessingLane lane) {
+        var seen = new ArrayList<List<String>>();
+        for (var entry : consumer.metrics().entrySet()) {
+            var metricName = entry.getKey();
+            var value = entry.getValue().metricValue();
+            if (!"records-lag".equals(metricName.name()) || !metricName.tags().containsKey("partition")
+                    || !(value instanceof Double)) {
+                continue;
+            }
+            var key = List.of(laneName(lane), metricName.tags().get("topic"), metricName.tags().get("partition"));
+            seen.add(key);
+            if (lags.put(key, (Double) value) == null) {
+                metrics.gauge("fasten_kafka_lag_records", () -> lags.getOrDefault(key, Double.NaN),
+                        "plugin", name(), "lane", key.get(0), "topic", key.get(1), "partition", key.get(2));
+            }
+        }
+        lags.replaceAll((key, lag) -> key.get(0).equals(laneName(lane)) && !seen.contains(key) ? Double.NaN : lag);
+    }
+
+    /**
+     * If local storage is enabled, clears the hashes of processed records after their offsets are committed.
+     */
+    private void clearLocalStorage(List<ConsumerRecord<String, String>> processed) {
+        if (localStorage == null || processed.isEmpty()) {
+            return;
+        }
+        var committedOffsets = new HashMap<String, Map<Integer, Long>>();
+        for (var record : processed) {
+            committedOffsets.computeIfAbsent(record.topic(), t -> new HashMap<>())
+                    .merge(record.partition(), record.offset() + 1, Math::max);
+        }
+        committedOffsets.forEach(localStorage::clear);
+    }
+
+    /**
+     * Processes the records returned by a poll and commits their offsets.
+     *
+     * If the plugin supports concurrent consumption and more than one worker is configured, records are
+     * processed concurrently; otherwise, they are processed one at a time by the calling thread.
+     *
+     * @param records       the polled records
+     * @param lane          the lane of the records
+     * @param consumer      the consumer that returned the records
+     * @param otherConsumer the consumer of the other lane, which must be kept alive meanwhile
+     * @return the records that have been processed, and whose offsets have been committed
+     */
+    private List<ConsumerRecord<String, String>> processRecords(ConsumerRecords<String, String> records, ProcessingLane lane,
+            KafkaConsumer<String, String> consumer, KafkaConsumer<String, String> otherConsumer) {
+        if (consumeWorkers > 1 && plugin instanceof ConcurrentKafkaPlugin) {
+            return processConcurrently(records, lane, consumer, otherConsumer);
+        }
+
+        var messagesProcessed = new ArrayList<ConsumerRecord<String, String>>();
+        // Although we loop through all records, by default we only poll 1 record.
+        for (var r : records) {
+            logger.info("Read {} message offset {} from partition {}.", laneName(lane), r.offset(), r.partition());
+            processRecord(plugin, r, lane);
+            logger.info("Successfully processed {} message offset {} from partition {}.", laneName(lane), r.offset(),
+                    r.partition());
+            messagesProcessed.add(r);
+        }
+
+        // Commit only after _all_ records are processed.
+        // For most plugins, this loop will only process 1 record (since
+        // max.poll.records is 1).
+        if (!doCommitSync(lane)) {
+            rewind(consumer, messagesProcessed);
+            return List.of();
+        }
+        return messagesProcessed;
+    }
+
+    /**
+     * Processes the records returned by a poll on the worker pool, and commits, for each partition, the
+     * offset following the last record processed.
+     *
+     * The records of each partition are processed in order by a single worker, and a worker stops at the
+     * first record that fails with an exception. The offset committed for a partition never goes beyond
+     * records that have not been processed; such records are rewound, so that they will be polled again,
+     * and the first exception is rethrown after the commit.
+     */
+    private List<ConsumerRecord<String, String>> processConcurrently(ConsumerRecords<String, String> records,
+            ProcessingLane lane, KafkaConsumer<String, String> consumer, KafkaConsumer<String, String> otherConsumer) {
+        if (workerPool == null) {
+            startWorkers();
+        }
+
+        // For each partition, the records fully processed so far
+        var processed = new HashMap<TopicPartition, List<ConsumerRecord<String, String>>>();
+        var tasks = new ArrayList<Future<?>>();
+        for (var partition : records.partitions()) {
+            var done = Collections.synchronizedList(new ArrayList<ConsumerRecord<String, String>>());
+            processed.put(partition, done);
+            tasks.add(workerPool.submit(() -> {
+                var worker = workerPlugins.take();
+                try {
+                    for (var r : records.records(partition)) {
+                        logger.info("Read {} message offset {} from partition {}.", laneName(lane), r.offset(), r.partition());
+                        processRecord(worker, r, lane);
+                        logger.info("Successfully processed {} message offset {} from partition {}.", laneName(lane),
+                                r.offset(), r.partition());
+                        done.add(r);
+                    }
+                } finally {
+                    workerPlugins.add(worker);
+                }
+                return null;
+            }));
+        }
+
+        // Wait for all partitions, keeping the consumers alive; a failing partition does not stop the others
+        Throwable failure = null;
+        var interrupted = false;
+        for (var task : tasks) {
+            while (!interrupted) {
+                try {
+                    task.get(KEEP_ALIVE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    keepAlive(consumer);
+                    keepAlive(otherConsumer);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    tasks.forEach(t -> t.cancel(true));
+                    interrupted = true;
+                    failure = new RuntimeException("Interrupted while processing records", e);
+                } catch (ExecutionException e) {
+                    var cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof RuntimeException || cause instanceof Error ? cause
+                                : new RuntimeException(cause);
+                    }
+                    break;
+                }
             }
+        }
 
-            // If local storage is enabled, clear the correct partitions after offsets are
-            // committed.
-            if (localStorage != null && topicName != null) {
-                localStorage.clear(messagesProcessed.stream().map((x) -> x.right).collect(Collectors.toList()), topicName);
+        var offsets = new HashMap<TopicPartition, OffsetAndMetadata>();
+        var messagesProcessed = new ArrayList<ConsumerRecord<String, String>>();
+        for (var entry : processed.entrySet()) {
+            var partition = entry.getKey();
+            List<ConsumerRecord<String, String>> done;
+            synchronized (entry.getValue()) {
+                done = new ArrayList<>(entry.getValue());
+            }
+            if (!done.isEmpty()) {
+                offsets.put(partition, new OffsetAndMetadata(done.get(done.size() - 1).offset() + 1));
+                messagesProcessed.addAll(done);
+            }
+            var all = records.records(partition);
+            if (done.size() < all.size() && consumer.assignment().contains(partition)) {
+                consumer.seek(partition, all.get(done.size()).offset());
+            }
+        }
+        if (!doCommitSync(lane, offsets)) {
+            rewind(consumer, messagesProcessed);
+            messagesProcessed.clear();
+        }
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return messagesProcessed;
+    }
+
+    /**
+     * Rewinds the partitions of processed records whose offsets have not been committed because some
+     * output messages could not be sent, so that the records will be polled and processed again. The
+     * records are also removed from local storage, as otherwise they would be skipped.
+     */
+    private void rewind(KafkaConsumer<String, String> consumer, List<ConsumerRecord<String, String>> processed) {
+        var firstOffsets = new HashMap<TopicPartition, Long>();
+        for (var record : processed) {
+            firstOffsets.merge(new TopicPartition(record.topic(), record.partition()), record.offset(), Math::min);
+            if (localStorage != null) {
+                localStorage.delete(record.value(), record.partition(), record.topic());
             }
         }
+        firstOffsets.forEach((partition, offset) -> {
+            if (consumer.assignment().contains(partition)) {
+                consumer.seek(partition, offset);
+            }
+        });
+        logger.warn("Rewound offsets {} so that records whose output could not be sent are processed again", firstOffsets);
+    }
+
+    /**
+     * Creates the worker pool, together with a plugin instance for each worker (the first one being the
+     * plugin itself).
+     */
+    private void startWorkers() {
+        workerPlugins = new ArrayBlockingQueue<>(consumeWorkers);
+        workerPlugins.add(plugin);
+        for (int i = 1; i < consumeWorkers; i++) {
+            workerPlugins.add(((ConcurrentKafkaPlugin) plugin).newWorker());
+        }
+        workerPool = Executors.newFixedThreadPool(consumeWorkers);
+        logger.info("Processing records of {} with {} workers", plugin.name(), consumeWorkers);
+    }
+
+    private static String laneName(ProcessingLane lane) {
+        return lane == ProcessingLane.PRIORITY ? "priority" : "normal";
     }
 
     /**
@@ -313,6 +599,10 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
      * This strategy provides at-least-once semantics.
      */
     public void processRecord(ConsumerRecord<String, String> record, ProcessingLane lane) {
+        processRecord(plugin, record, lane);
+    }
+
+    private void processRecord(KafkaPlugin plugin, ConsumerRecord<String, String> record, ProcessingLane lane) {
         long consumeTimestamp = System.currentTimeMillis();
 
         try {
@@ -320,12 +610,14 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
                 if (localStorage.exists(record.value(), record.partition(), record.topic())) { // This plugin already consumed this
                     // record before, we will not process it
                     // now.
+                    metrics.counter("fasten_local_storage_lookups_total", "plugin", name(), "result", "hit").increment();
                     String hash = localStorage.getSHA1(record.value());
                     logger.info("Already processed record with hash: {}, skipping it now.", hash);
                     plugin.setPluginError(new ExistsInLocalStorageException());
                 } else {
+                    metrics.counter("fasten_local_storage_lookups_total", "plugin", name(), "result", "miss").increment();
                     try {
-                        localStorage.store(record.value(), record.partition(), record.topic());
+                        localStorage.store(record.value(), record.partition(), record.topic(), record.offset());
                     } catch (IOException e) {
                         // We couldn't store the message SHA. Will just continue processing, but log the
                         // error.
@@ -336,7 +628,7 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
                         logger.error("Trying to store the hash of a record, but failed due to an IOException", e);
                     } finally { // Event if we hit an IOException, we will execute this finally block.
                         if (consumeTimeoutEnabled) {
-                            consumeWithTimeout(record.value(), consumeTimeout, exitOnTimeout, lane);
+                            consumeWithTimeout(plugin, record.value(), consumeTimeout, exitOnTimeout, lane);
                         } else {
                             plugin.consume(record.value(), lane);
                         }
@@ -344,7 +636,7 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
                 }
             } else { // If local storage is not enabled.
                 if (consumeTimeoutEnabled) {
-                    consumeWithTimeout(record.value(), consumeTimeout, exitOnTimeout, lane);
+                    consumeWithTimeout(plugin, record.value(), consumeTimeout, exitOnTimeout, lane);
                 } else {
                     plugin.consume(record.value(), lane);
                 }
@@ -365,7 +657,7 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
         }
 
         // We always produce, it does not matter if local storage is enabled or not.
-        handleProducing(record.value(), consumeTimestamp, lane);
+        handleProducing(plugin, record.value(), consumeTimestamp, lane);
     }
 
     /**
@@ -374,6 +666,10 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
      * @param input input message [can be null]
      */
     public void handleProducing(String input, long consumeTimestamp, ProcessingLane lane) {
+        handleProducing(plugin, input, consumeTimestamp, lane);
+    }
+
+    private void handleProducing(KafkaPlugin plugin, String input, long consumeTimestamp, ProcessingLane lane) {
         String outputTopicName;
         if (lane == ProcessingLane.PRIORITY) {
             outputTopicName = String.format("fasten.%s.priority.out", outputTopic);
@@ -398,11 +694,34 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
                 emitMessage(this.producer, outputTopicName, getStdOutMsg(input, payload, consumeTimestamp));
             }
         }
+        recordProcessing(plugin, consumeTimestamp, lane);
+    }
+
+    /**
+     * Records the time from the consumption of a record to the production of the corresponding messages,
+     * and counts errors by exception type.
+     */
+    private void recordProcessing(KafkaPlugin plugin, long consumeTimestamp, ProcessingLane lane) {
+        var error = plugin.getPluginError();
+        metrics.timer("fasten_plugin_processing_seconds", "plugin", name(), "lane", laneName(lane),
+                "status", error == null ? "success" : "error")
+                .record(System.currentTimeMillis() - consumeTimestamp, TimeUnit.MILLISECONDS);
+        if (error != null) {
+            metrics.counter("fasten_plugin_errors_total", "plugin", name(),
+                    "exception", error.getClass().getSimpleName()).increment();
+        }
     }
 
     /**
      * Send message to Kafka topic.
      *
+     * The message is sent asynchronously, so that the producer can batch messages (see `linger.ms` and
+     * `batch.size` in the producer properties); pending messages are flushed before offsets are committed,
+     * and if any of them could not be sent the offsets are not committed, and the records are processed
+     * again (i.e., delivery is at least once).
+     * If {@link #MAX_IN_FLIGHT_MESSAGES} messages have not been acknowledged yet, this method blocks until
+     * one of them is.
+     *
      * @param producer Kafka producer
      * @param topic    topic to send to
      * @param msg      message
@@ -410,15 +729,44 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
     private void emitMessage(KafkaProducer<String, String> producer, String topic, String msg) {
         ProducerRecord<String, String> record = new ProducerRecord<>(topic, msg);
 
-        producer.send(record, (recordMetadata, e) -> {
-            if (recordMetadata != null) {
-                logger.debug("Sent: {} to {}", msg, topic);
-            } else {
-                e.printStackTrace();
-            }
-        });
+        try {
+            inFlightMessages.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to send a message to " + topic, e);
+        }
+        try {
+            producer.send(record, (recordMetadata, e) -> {
+                inFlightMessages.release();
+                if (e == null) {
+                    logger.debug("Sent a message of {} characters to {}", msg.length(), topic);
+                } else {
+                    failedMessages.incrementAndGet();
+                    logger.error("Failed to send a message to " + topic, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightMessages.release();
+            throw e;
+        }
+    }
 
-        producer.flush();
+    /**
+     * Blocks until all messages sent so far have been acknowledged (or have failed).
+     */
+    private void flushMessages() {
+        if (producer != null) {
+            producer.flush();
+        }
+    }
+
+    /**
+     * Returns the number of messages that could not be sent.
+     *
+     * @return the number of messages whose sending failed.
+     */
+    public long getFailedMessages() {
+        return failedMessages.get();
     }
 
     /**
@@ -460,9 +808,8 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
      * @return stdout message
      */
     private String getStdOutMsg(String input, String payload, long consumeTimestamp) {
-        var stdoutMsg = getStdMsg(input, consumeTimestamp);
-        stdoutMsg.put("payload", StringUtils.isNotEmpty(payload) ? new JSONObject(payload) : "");
-        return stdoutMsg.toString();
+        var stdoutMsg = getStdMsg(consumeTimestamp).toString();
+        return appendJsonMember(appendJsonMember(stdoutMsg, "input", input), "payload", payload);
     }
 
     /**
@@ -478,42 +825,130 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
         error.put("message", pluginError.getMessage());
         error.put("stacktrace", ExceptionUtils.getStackTrace(pluginError));
 
-        var stderrMsg = getStdMsg(input, consumeTimestamp);
+        var stderrMsg = getStdMsg(consumeTimestamp);
         stderrMsg.put("error", error);
 
-        return stderrMsg.toString();
+        return appendJsonMember(stderrMsg.toString(), "input", input);
     }
 
-    private JSONObject getStdMsg(String input, long consumeTimestamp) {
+    private JSONObject getStdMsg(long consumeTimestamp) {
         var stdoutMsg = new JSONObject();
         stdoutMsg.put("createdAt", System.currentTimeMillis());
         stdoutMsg.put("consumedAt", consumeTimestamp);
         stdoutMsg.put("plugin", plugin.getClass().getName());
         stdoutMsg.put("version", plugin.version());
+        stdoutMsg.put("host", HOST);
+        return stdoutMsg;
+    }
+
+    /**
+     * Appends a member to a serialized JSON object, splicing the value in verbatim whenever possible.
+     *
+     * Inputs and payloads are serialized JSON objects, often large ones, so they are embedded verbatim
+     * rather than parsed and serialized again; they are just scanned once by a streaming parser. Values
+     * that are not strict JSON objects are parsed and serialized again, as before, so that the lenient
+     * syntax accepted by {@link JSONObject} (e.g., unquoted keys) is normalized, and invalid values are
+     * still rejected. Empty values become empty strings.
+     *
+     * @param json  a serialized JSON object
+     * @param key   the key of the new member
+     * @param value a serialized JSON object, or an empty or null string
+     * @return {@code json} with the new member appended
+     * @throws org.json.JSONException if {@code value} is not empty and it is not a serialized JSON object
+     */
+    static String appendJsonMember(String json, String key, String value) {
+        String member;
+        if (StringUtils.isEmpty(value)) {
+            member = "\"\"";
+        } else {
+            member = value.strip();
+            if (!isJsonObject(member)) {
+                member = new JSONObject(value).toString();
+            }
+        }
+        var end = json.lastIndexOf('}');
+        var last = end - 1;
+        while (Character.isWhitespace(json.charAt(last))) {
+            last--;
+        }
+        var isEmpty = json.charAt(last) == '{';
+        return new StringBuilder(json.length() + key.length() + member.length() + 4)
+                .append(json, 0, end)
+                .append(isEmpty ? "" : ",")
+                .append(JSONObject.quote(key))
+                .append(':')
+                .append(member)
+                .append('}')
+                .toString();
+    }
+
+    /**
+     * Returns whether a string is a single, strictly valid serialized JSON object, scanning its tokens
+     * without building it.
+     */
+    private static boolean isJsonObject(String json) {
+        try (var parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String getHostName() {
         try {
-            stdoutMsg.put("host", InetAddress.getLocalHost().getHostName());
+            return InetAddress.getLocalHost().getHostName();
         } catch (UnknownHostException e) {
-            stdoutMsg.put("host", "unknown");
+            return "unknown";
         }
-        stdoutMsg.put("input", StringUtils.isNotEmpty(input) ? new JSONObject(input) : "");
-        return stdoutMsg;
     }
 
     /**
      * This is a synchronous commits and will block until either the commit succeeds
      * or an unrecoverable error is encountered.
+     *
+     * @return false if the offsets have not been committed because some output messages could not be sent
      */
-    private void doCommitSync(ProcessingLane kafkaRecordKind) {
+    private boolean doCommitSync(ProcessingLane kafkaRecordKind) {
+        return doCommitSync(kafkaRecordKind, null);
+    }
+
+    /**
+     * Synchronously commits the given offsets, or the offsets of the last poll if {@code offsets} is null.
+     *
+     * Offsets are committed only once all output messages have been acknowledged, and only if none of the
+     * messages sent since the last call failed; otherwise, the caller must rewind the consumer.
+     *
+     * @return false if the offsets have not been committed because some output messages could not be sent
+     */
+    private boolean doCommitSync(ProcessingLane kafkaRecordKind, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        var consumer = kafkaRecordKind == ProcessingLane.PRIORITY ? connPrio : connNorm;
+        long start = System.nanoTime();
+        flushMessages();
+        metrics.timer("fasten_kafka_flush_seconds", "plugin", name()).recordNanos(System.nanoTime() - start);
+        // All messages sent so far have been acknowledged or have failed, so the count is final
+        var failed = failedMessages.get();
+        if (failed != failedMessagesAtLastCommit) {
+            logger.error("{} output messages could not be sent, not committing offsets", failed - failedMessagesAtLastCommit);
+            failedMessagesAtLastCommit = failed;
+            return false;
+        }
         try {
-            if (kafkaRecordKind == ProcessingLane.PRIORITY) {
-                connPrio.commitSync();
-            } else {
-                connNorm.commitSync();
+            start = System.nanoTime();
+            if (offsets == null) {
+                consumer.commitSync();
+            } else if (!offsets.isEmpty()) {
+                consumer.commitSync(offsets);
             }
+            metrics.timer("fasten_kafka_commit_seconds", "plugin", name(), "lane", laneName(kafkaRecordKind))
+                    .recordNanos(System.nanoTime() - start);
         } catch (WakeupException e) {
             // we're shutting down, but finish the commit first and then
             // rethrow the exception so that the main loop can exit
-            doCommitSync(kafkaRecordKind);
+            doCommitSync(kafkaRecordKind, offsets);
             throw e;
         } catch (CommitFailedException e) {
             // the commit failed with an unrecoverable error. if there is any
@@ -521,6 +956,7 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
             // up here. otherwise it's reasonable to ignore the error and go on
             logger.error("Commit failed", e);
         }
+        return true;
     }
 
     /**
@@ -571,6 +1007,22 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
         }
     }
 
+    /**
+     * Polls a consumer with all its partitions paused, so that it is not evicted while workers are
+     * processing records. If a rebalance assigned new partitions to the consumer in the meantime, the
+     * records returned for them are rewound, so that they will be returned again by the next poll.
+     */
+    private static void keepAlive(KafkaConsumer<String, String> kafkaConn) {
+        if (!kafkaConn.subscription().isEmpty()) {
+            kafkaConn.pause(kafkaConn.assignment());
+            var records = kafkaConn.poll(Duration.ZERO);
+            for (var partition : records.partitions()) {
+                kafkaConn.seek(partition, records.records(partition).get(0).offset());
+            }
+            kafkaConn.resume(kafkaConn.assignment());
+        }
+    }
+
     /**
      * This is a dummy poll method for calling lazy methods such as seek.
      *
@@ -600,6 +1052,11 @@ public class FastenKafkaPlugin implements FastenServerPlugin {
      *                https://stackoverflow.com/questions/1164301/how-do-i-call-some-blocking-method-with-a-timeout-in-java
      */
     public void consumeWithTimeout(String input, long timeout, boolean exitOnTimeout, ProcessingLane lane) {
+        consumeWithTimeout(plugin, input, timeout, exitOnTimeout, lane);
+    }
+
+    private void consumeWithTimeout(KafkaPlugin plugin, String input, long timeout, boolean exitOnTimeout,
+            ProcessingLane lane) {
         Runnable consumeTask = () -> plugin.consume(input, lane);
 
         // Submit the consume task to a thread.
@@ -0,0 +1,394 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.server.plugins.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local storage keeping the hashes of the messages in an in-memory index, backed by an append-only log.
+ *
+ * <p>Checking and storing a message takes constant time, and clearing the messages of committed offsets
+ * takes a single write. The log is a text file in the storage folder with one operation per line:
+ * <ul>
+ *     <li>`+ topic partition offset hash` stores a message (the offset is -1 if unknown);</li>
+ *     <li>`- topic partition hash` deletes a message;</li>
+ *     <li>`&lt; topic partition offset` deletes the messages of a partition preceding an offset.</li>
+ * </ul>
+ * Each operation is appended with a single write, so the log survives crashes of the plugin; when the log is
+ * opened, the index is rebuilt from it and a truncated last line, if any, is discarded. The log is truncated
+ * when the index becomes empty (usually, after all processed records have been committed), and otherwise
+ * rewritten atomically when it contains many more operations than messages.
+ *
+ * <p>Messages found in the directory format of {@link LocalStorage} when the log is opened are imported into
+ * the log, and their files are removed.
+ *
+ * <p>Instances are thread-safe.
+ */
+public class IndexedLocalStorage extends LocalStorage {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedLocalStorage.class);
+
+    /** The name of the log file in the storage folder. */
+    public static final String LOG_FILE_NAME = "local-storage.log";
+
+    /** The log is compacted only if it contains at least this number of operations. */
+    private static final long MIN_COMPACTION_OPERATIONS = 4096;
+
+    private final File logFile;
+    private FileChannel log;
+    /** Maps `topic partition` keys to the hashes of the messages stored for that partition, with their offsets. */
+    private final Map<String, Map<String, Long>> index = new HashMap<>();
+    /** The number of messages in {@link #index}. */
+    private long size;
+    /** The number of operations in {@link #log}. */
+    private long operations;
+
+    /**
+     * Opens (or creates) the indexed local storage of this plugin instance.
+     *
+     * @param folder the folder to store in (see {@link LocalStorage#LocalStorage(String)}).
+     * @throws IOException if the log cannot be read or written.
+     */
+    public IndexedLocalStorage(String folder) throws IOException {
+        super(folder);
+        logFile = new File(storageFolder, LOG_FILE_NAME);
+        long length = recover();
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.truncate(length);
+        log.position(length);
+        importDirectories();
+    }
+
+    /**
+     * Rebuilds the index from the log.
+     *
+     * @return the length of the valid prefix of the log.
+     */
+    private long recover() throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        var bytes = Files.readAllBytes(logFile.toPath());
+        int start = 0;
+        for (int end; start < bytes.length && (end = indexOf(bytes, start)) != -1; start = end + 1) {
+            var line = new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+            if (!apply(line)) {
+                logger.warn("Discarding invalid operation in {} at byte {}: {}", logFile, start, line);
+                break;
+            }
+            operations++;
+        }
+        if (start < bytes.length) {
+            logger.warn("Discarding {} bytes at the end of {}", bytes.length - start, logFile);
+        }
+        logger.info("Recovered {} messages from {}", size, logFile);
+        return start;
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies an operation of the log to the index.
+     *
+     * @return false if the operation is malformed.
+     */
+    private boolean apply(String operation) {
+        var fields = operation.split(" ");
+        try {
+            switch (fields[0]) {
+                case "+":
+                    if (fields.length != 5) {
+                        return false;
+                    }
+                    add(key(fields[1], Integer.parseInt(fields[2])), fields[4], Long.parseLong(fields[3]));
+                    return true;
+                case "-":
+                    if (fields.length != 4) {
+                        return false;
+                    }
+                    remove(key(fields[1], Integer.parseInt(fields[2])), fields[3]);
+                    return true;
+                case "<":
+                    if (fields.length != 4) {
+                        return false;
+                    }
+                    removeBefore(key(fields[1], Integer.parseInt(fields[2])), Long.parseLong(fields[3]));
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Imports the messages stored in the directory format, removing their files.
+     */
+    private void importDirectories() throws IOException {
+        var topics = storageFolder.listFiles(File::isDirectory);
+        if (topics == null) {
+            return;
+        }
+        var batch = new StringBuilder();
+        var imported = new ArrayList<File>();
+        for (var topic : topics) {
+            var partitions = topic.listFiles(f -> f.isDirectory() && f.getName().startsWith("partition-"));
+            if (partitions == null) {
+                continue;
+            }
+            for (var partitionFolder : partitions) {
+                int partition;
+                try {
+                    partition = Integer.parseInt(partitionFolder.getName().substring("partition-".length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                var hashes = partitionFolder.listFiles(File::isFile);
+                if (hashes == null) {
+                    continue;
+                }
+                for (var hash : hashes) {
+                    var key = key(topic.getName(), partition);
+                    if (!contains(key, hash.getName())) {
+                        add(key, hash.getName(), -1);
+                        batch.append(storeOperation(topic.getName(), partition, -1, hash.getName()));
+                    }
+                    imported.add(hash);
+                }
+            }
+        }
+        if (imported.isEmpty()) {
+            return;
+        }
+        // Files are removed only once their messages are in the log
+        append(batch.toString());
+        imported.forEach(File::delete);
+        for (var topic : topics) {
+            var partitions = topic.listFiles(File::isDirectory);
+            if (partitions != null) {
+                Arrays.stream(partitions).forEach(File::delete);
+            }
+            topic.delete();
+        }
+        logger.info("Imported {} messages from the directory format into {}", imported.size(), logFile);
+    }
+
+    @Override
+    public synchronized boolean exists(String message, int partition, String topicName) {
+        return contains(key(topicName, partition), getSHA1(message));
+    }
+
+    @Override
+    public boolean store(String message, int partition, String topicName) throws IOException {
+        return store(message, partition, topicName, -1);
+    }
+
+    @Override
+    public synchronized boolean store(String message, int partition, String topicName, long offset) throws IOException {
+        var key = key(topicName, partition);
+        var hash = getSHA1(message);
+        if (contains(key, hash)) {
+            return false;
+        }
+        append(storeOperation(topicName, partition, offset, hash));
+        add(key, hash, offset);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(String message, int partition, String topicName) {
+        var key = key(topicName, partition);
+        var hash = getSHA1(message);
+        if (!contains(key, hash)) {
+            return false;
+        }
+        try {
+            append("- " + topicName + " " + partition + " " + hash + "\n");
+            remove(key, hash);
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public void clear(List<Integer> partitions, String topicName) {
+        var committedOffsets = new HashMap<Integer, Long>();
+        partitions.forEach(p -> committedOffsets.put(p, Long.MAX_VALUE));
+        clear(topicName, committedOffsets);
+    }
+
+    @Override
+    public synchronized void clear(String topicName, Map<Integer, Long> committedOffsets) {
+        var batch = new StringBuilder();
+        for (var entry : committedOffsets.entrySet()) {
+            var key = key(topicName, entry.getKey());
+            var hashes = index.get(key);
+            if (hashes != null && hashes.values().stream().anyMatch(o -> o < entry.getValue())) {
+                batch.append("< ").append(topicName).append(' ').append(entry.getKey()).append(' ')
+                        .append(entry.getValue()).append('\n');
+            }
+        }
+        if (batch.length() == 0) {
+            return;
+        }
+        try {
+            append(batch.toString());
+            for (var entry : committedOffsets.entrySet()) {
+                removeBefore(key(topicName, entry.getKey()), entry.getValue());
+            }
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of messages in local storage.
+     *
+     * @return the number of messages stored and not deleted or cleared.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    private static String key(String topicName, int partition) {
+        return topicName + " " + partition;
+    }
+
+    private static String storeOperation(String topicName, int partition, long offset, String hash) {
+        return "+ " + topicName + " " + partition + " " + offset + " " + hash + "\n";
+    }
+
+    private boolean contains(String key, String hash) {
+        var hashes = index.get(key);
+        return hashes != null && hashes.containsKey(hash);
+    }
+
+    private void add(String key, String hash, long offset) {
+        if (index.computeIfAbsent(key, k -> new HashMap<>()).put(hash, offset) == null) {
+            size++;
+        }
+    }
+
+    private void remove(String key, String hash) {
+        var hashes = index.get(key);
+        if (hashes != null && hashes.remove(hash) != null) {
+            size--;
+            if (hashes.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private void removeBefore(String key, long offset) {
+        var hashes = index.get(key);
+        if (hashes == null) {
+            return;
+        }
+        var before = hashes.size();
+        hashes.values().removeIf(o -> o < offset);
+        size -= before - hashes.size();
+        if (hashes.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Appends operations to the log with a single write.
+     */
+    private void append(String batch) throws IOException {
+        var buffer = ByteBuffer.wrap(batch.getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        for (int i = 0; i < batch.length(); i++) {
+            if (batch.charAt(i) == '\n') {
+                operations++;
+            }
+        }
+    }
+
+    /**
+     * Truncates the log if the index is empty, or rewrites it if it contains many more operations than messages.
+     */
+    private void compact() throws IOException {
+        if (size == 0) {
+            log.truncate(0);
+            log.position(0);
+            operations = 0;
+            return;
+        }
+        if (operations < MIN_COMPACTION_OPERATIONS || operations < 4 * size) {
+            return;
+        }
+        var compacted = new StringBuilder();
+        for (var partition : index.entrySet()) {
+            var topicAndPartition = partition.getKey().split(" ");
+            for (var hash : partition.getValue().entrySet()) {
+                compacted.append(storeOperation(topicAndPartition[0], Integer.parseInt(topicAndPartition[1]),
+                        hash.getValue(), hash.getKey()));
+            }
+        }
+        var temp = new File(storageFolder, LOG_FILE_NAME + ".tmp");
+        try (var channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var buffer = ByteBuffer.wrap(compacted.toString().getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        log.close();
+        Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+        log.position(log.size());
+        operations = size;
+    }
+}
@@ -1,18 +1,28 @@
 package eu.fasten.server.plugins.kafka;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
-import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_1;
+public class LocalStorage implements Closeable {
 
-public class LocalStorage {
+    /**
+     * Environment variable selecting the format of local storage created by {@link #create(String)}:
+     * `log` (the default) for {@link IndexedLocalStorage}, `directory` for one file per message.
+     */
+    public static final String FORMAT_ENV_VARIABLE = "FASTEN_LOCAL_STORAGE_FORMAT";
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorage.class);
 
     private final String instanceId;
-    private final File storageFolder;
-    private final DigestUtils digestUtils = new DigestUtils(SHA_1);
+    protected final File storageFolder;
 
     /**
      * Helper class to store a SHA-1 hash of a message in local storage of a plugin instance.
@@ -36,6 +46,25 @@ public class LocalStorage {
         }
     }
 
+    /**
+     * Creates local storage in the format selected by {@link #FORMAT_ENV_VARIABLE}. If the indexed format
+     * cannot be opened, the directory format is used instead.
+     *
+     * @param folder the folder to store in.
+     * @return local storage for this plugin instance.
+     */
+    public static LocalStorage create(String folder) {
+        if ("directory".equals(System.getenv(FORMAT_ENV_VARIABLE))) {
+            return new LocalStorage(folder);
+        }
+        try {
+            return new IndexedLocalStorage(folder);
+        } catch (IOException e) {
+            logger.warn("Could not open indexed local storage, falling back to the directory format", e);
+            return new LocalStorage(folder);
+        }
+    }
+
     /**
      * Verify if a message is already in the local storage.
      *
@@ -104,6 +133,30 @@ public class LocalStorage {
         return fileToCreate.createNewFile();
     }
 
+    /**
+     * Stores a message in local storage, together with its offset.
+     * This format does not record offsets, so this is the same as {@link #store(String, int, String)}.
+     *
+     * @param message   the raw message to store. Will be hashed into SHA-1 format.
+     * @param partition the partition this message belongs to.
+     * @param offset    the offset of this message.
+     * @return if successfully stored.
+     * @throws IOException when file can't be created.
+     */
+    public boolean store(String message, int partition, String topicName, long offset) throws IOException {
+        return store(message, partition, topicName);
+    }
+
+    /**
+     * Remove the messages of some partitions preceding the given (committed) offsets.
+     * This format does not record offsets, so the partitions are cleared completely.
+     *
+     * @param committedOffsets maps partitions to the offset of their first message that has not been committed.
+     */
+    public void clear(String topicName, Map<Integer, Long> committedOffsets) {
+        clear(new ArrayList<>(committedOffsets.keySet()), topicName);
+    }
+
     /**
      * Remove all hashes/files from local storage.
      *
@@ -140,7 +193,12 @@ public class LocalStorage {
      * @return the hashed message.
      */
     public String getSHA1(String message) {
-        return digestUtils.digestAsHex(message);
+        // Not a shared DigestUtils instance, as messages may be hashed concurrently
+        return DigestUtils.sha1Hex(message);
+    }
+
+    @Override
+    public void close() throws IOException {
     }
 
 
@@ -0,0 +1,115 @@
+package eu.fasten.server.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class PluginSupervisorTest {
+
+    /**
+     * A plugin looping until it is stopped, or failing once all plugins are running.
+     */
+    private static class LoopingPlugin implements FastenServerPlugin {
+        private final String name;
+        private final CountDownLatch running;
+        private final boolean fail;
+        private final Set<String> threads;
+        private volatile boolean stopped;
+
+        LoopingPlugin(String name, CountDownLatch running, boolean fail, Set<String> threads) {
+            this.name = name;
+            this.running = running;
+            this.fail = fail;
+            this.threads = threads;
+        }
+
+        @Override
+        public void run() {
+            threads.add(Thread.currentThread().getName());
+            running.countDown();
+            try {
+                assertTrue(running.await(10, TimeUnit.SECONDS));
+                while (!stopped) {
+                    if (fail) {
+                        throw new IllegalStateException("Failing " + name);
+                    }
+                    Thread.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void start() {
+            run();
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+    }
+
+    @Test
+    public void testPluginsRunConcurrently() throws InterruptedException {
+        var running = new CountDownLatch(3);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var plugins = List.of(new LoopingPlugin("A", running, false, threads),
+                new LoopingPlugin("B", running, false, threads), new LoopingPlugin("C", running, false, threads));
+        var supervisor = new PluginSupervisor(plugins, true, 1000);
+        supervisor.start();
+
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertEquals(Set.of("plugin-A", "plugin-B", "plugin-C"), threads);
+        assertNotEquals(Thread.currentThread().getName(), threads.iterator().next());
+        supervisor.stop();
+        assertTrue(supervisor.awaitTermination());
+    }
+
+    @Test
+    public void testFailureStopsAllPlugins() throws InterruptedException {
+        var running = new CountDownLatch(2);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var healthy = new LoopingPlugin("healthy", running, false, threads);
+        var supervisor = new PluginSupervisor(List.of(healthy, new LoopingPlugin("failing", running, true, threads)), true, 1000);
+        supervisor.start();
+
+        assertFalse(supervisor.awaitTermination());
+        assertTrue(healthy.stopped);
+        assertEquals(Set.of("failing"), supervisor.getFailures().keySet());
+        assertTrue(supervisor.getFailures().get("failing") instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testFailureIsIsolated() throws InterruptedException {
+        var running = new CountDownLatch(2);
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var healthy = new LoopingPlugin("healthy", running, false, threads);
+        var supervisor = new PluginSupervisor(List.of(healthy, new LoopingPlugin("failing", running, true, threads)), false, 1000);
+        supervisor.start();
+
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        while (supervisor.getFailures().isEmpty()) {
+            Thread.sleep(1);
+        }
+        assertFalse(healthy.stopped);
+        supervisor.stop();
+        assertFalse(supervisor.awaitTermination());
+        assertEquals(Set.of("failing"), supervisor.getFailures().keySet());
+    }
+}
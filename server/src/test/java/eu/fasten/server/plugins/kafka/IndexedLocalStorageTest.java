@@ -0,0 +1,143 @@
+package eu.fasten.server.plugins.kafka;
+
+import static eu.fasten.server.plugins.kafka.LocalStorageTest.setEnv;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+public class IndexedLocalStorageTest {
+
+    @TempDir
+    File tempDir;
+
+    private File logFile;
+
+    @BeforeEach
+    public void setupEnv() {
+        setEnv("POD_INSTANCE_ID", "test_pod");
+        logFile = new File(tempDir, "test_pod" + File.separator + IndexedLocalStorage.LOG_FILE_NAME);
+    }
+
+    private IndexedLocalStorage open() throws IOException {
+        return new IndexedLocalStorage(tempDir.getAbsolutePath());
+    }
+
+    @Test
+    public void testStoreAndExists() throws IOException {
+        try (var localStorage = open()) {
+            Assertions.assertTrue(localStorage.store("A very nice message!", 1, "dummy_topic", 10));
+            Assertions.assertFalse(localStorage.store("A very nice message!", 1, "dummy_topic", 11));
+            Assertions.assertTrue(localStorage.store("A very nice message!", 2, "dummy_topic", 10));
+            Assertions.assertTrue(localStorage.store("A very nice message!", 1, "other_topic"));
+            Assertions.assertTrue(localStorage.exists("A very nice message!", 1, "dummy_topic"));
+            Assertions.assertFalse(localStorage.exists("Doesn't exist", 1, "dummy_topic"));
+            Assertions.assertTrue(localStorage.delete("A very nice message!", 2, "dummy_topic"));
+            Assertions.assertFalse(localStorage.delete("A very nice message!", 2, "dummy_topic"));
+            Assertions.assertFalse(localStorage.exists("A very nice message!", 2, "dummy_topic"));
+            Assertions.assertEquals(2, localStorage.size());
+        }
+    }
+
+    @Test
+    public void testClearCommittedOffsets() throws IOException {
+        try (var localStorage = open()) {
+            localStorage.store("Number 1", 1, "dummy_topic", 5);
+            localStorage.store("Number 2", 1, "dummy_topic", 6);
+            localStorage.store("Number 3", 2, "dummy_topic", 5);
+            localStorage.store("Number 4", 3, "dummy_topic", 5);
+
+            localStorage.clear("dummy_topic", Map.of(1, 6L, 2, 6L));
+
+            Assertions.assertFalse(localStorage.exists("Number 1", 1, "dummy_topic"));
+            Assertions.assertTrue(localStorage.exists("Number 2", 1, "dummy_topic"));
+            Assertions.assertFalse(localStorage.exists("Number 3", 2, "dummy_topic"));
+            Assertions.assertTrue(localStorage.exists("Number 4", 3, "dummy_topic"));
+
+            localStorage.clear(List.of(1, 3), "dummy_topic");
+            Assertions.assertEquals(0, localStorage.size());
+        }
+        // Once everything is cleared the log is truncated
+        Assertions.assertEquals(0, logFile.length());
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        try (var localStorage = open()) {
+            localStorage.store("Number 1", 1, "dummy_topic", 5);
+            localStorage.store("Number 2", 1, "dummy_topic", 6);
+            localStorage.store("Number 3", 2, "dummy_topic", 5);
+            localStorage.delete("Number 3", 2, "dummy_topic");
+            localStorage.clear("dummy_topic", Map.of(1, 6L));
+        }
+        // Simulate a crash in the middle of a write
+        Files.writeString(logFile.toPath(), "+ dummy_topic 1 7 a9993e3", StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+        long length = logFile.length();
+
+        try (var localStorage = open()) {
+            Assertions.assertEquals(1, localStorage.size());
+            Assertions.assertFalse(localStorage.exists("Number 1", 1, "dummy_topic"));
+            Assertions.assertTrue(localStorage.exists("Number 2", 1, "dummy_topic"));
+            Assertions.assertFalse(localStorage.exists("Number 3", 2, "dummy_topic"));
+            Assertions.assertTrue(logFile.length() < length);
+            Assertions.assertTrue(localStorage.store("Number 4", 1, "dummy_topic", 7));
+        }
+
+        try (var localStorage = open()) {
+            Assertions.assertEquals(2, localStorage.size());
+            Assertions.assertTrue(localStorage.exists("Number 4", 1, "dummy_topic"));
+        }
+    }
+
+    @Test
+    public void testImportDirectoryFormat() throws IOException {
+        var legacy = new LocalStorage(tempDir.getAbsolutePath());
+        legacy.store("Number 1", 1, "dummy_topic");
+        legacy.store("Number 2", 2, "dummy_topic");
+
+        try (var localStorage = open()) {
+            Assertions.assertEquals(2, localStorage.size());
+            Assertions.assertTrue(localStorage.exists("Number 1", 1, "dummy_topic"));
+            Assertions.assertTrue(localStorage.exists("Number 2", 2, "dummy_topic"));
+            Assertions.assertFalse(new File(tempDir, "test_pod" + File.separator + "dummy_topic").exists());
+            // Imported messages have no offset, so they are cleared by any committed offset
+            localStorage.clear("dummy_topic", Map.of(1, 0L));
+            Assertions.assertFalse(localStorage.exists("Number 1", 1, "dummy_topic"));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        try (var localStorage = open()) {
+            localStorage.store("Kept", 0, "dummy_topic", 0);
+            for (int i = 1; i <= 5000; i++) {
+                localStorage.store("Number " + i, 1, "dummy_topic", i);
+                localStorage.clear("dummy_topic", Map.of(1, (long) i + 1));
+            }
+            Assertions.assertEquals(1, localStorage.size());
+            Assertions.assertTrue(Files.readAllLines(logFile.toPath()).size() < 4096);
+            Assertions.assertTrue(localStorage.store("Number 1", 1, "dummy_topic", 1));
+        }
+        try (var localStorage = open()) {
+            Assertions.assertEquals(2, localStorage.size());
+            Assertions.assertTrue(localStorage.exists("Kept", 0, "dummy_topic"));
+            Assertions.assertTrue(localStorage.exists("Number 1", 1, "dummy_topic"));
+        }
+    }
+
+    @Test
+    public void testCreate() throws IOException {
+        try (var localStorage = LocalStorage.create(tempDir.getAbsolutePath())) {
+            Assertions.assertTrue(localStorage instanceof IndexedLocalStorage);
+        }
+    }
+}
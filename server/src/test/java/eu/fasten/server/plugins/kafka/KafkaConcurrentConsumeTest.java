@@ -0,0 +1,253 @@
+package eu.fasten.server.plugins.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import eu.fasten.core.exceptions.UnrecoverableError;
+import eu.fasten.core.plugins.ConcurrentKafkaPlugin;
+import eu.fasten.core.plugins.KafkaPlugin;
+
+public class KafkaConcurrentConsumeTest {
+
+    private static final String TOPIC = "dummy_topic";
+    private static final int PARTITIONS = 3;
+    private static final int RECORDS = 5;
+
+    private KafkaConsumer<String, String> consumer;
+
+    @SuppressWarnings("unchecked")
+    private FastenKafkaPlugin setup(KafkaPlugin plugin, int workers) throws IllegalAccessException {
+        var kafkaPlugin = new FastenKafkaPlugin(false, new Properties(), new Properties(), new Properties(), plugin, 0, null, null, "", false, 0, false, false, "", workers);
+        consumer = mock(KafkaConsumer.class);
+        FieldUtils.writeField(kafkaPlugin, "connNorm", consumer, true);
+        FieldUtils.writeField(kafkaPlugin, "connPrio", mock(KafkaConsumer.class), true);
+        FieldUtils.writeField(kafkaPlugin, "producer", mock(KafkaProducer.class), true);
+        FieldUtils.writeField(kafkaPlugin, "prioTopics", List.of(), true);
+        FieldUtils.writeField(kafkaPlugin, "normTopics", List.of(TOPIC), true);
+
+        var records = new HashMap<TopicPartition, List<ConsumerRecord<String, String>>>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            var list = new ArrayList<ConsumerRecord<String, String>>();
+            for (int o = 0; o < RECORDS; o++) {
+                list.add(new ConsumerRecord<>(TOPIC, p, 100 + o, null, "{\"partition\": " + p + ", \"offset\": " + (100 + o) + "}"));
+            }
+            records.put(new TopicPartition(TOPIC, p), list);
+        }
+        when(consumer.poll(any())).thenReturn(new ConsumerRecords<>(records));
+        when(consumer.assignment()).thenReturn(records.keySet());
+        return kafkaPlugin;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<TopicPartition, OffsetAndMetadata> committedOffsets() {
+        ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumer).commitSync(captor.capture());
+        verify(consumer, never()).commitSync();
+        return captor.getValue();
+    }
+
+    @Test
+    public void testConcurrentProcessing() throws Exception {
+        // The first record of each partition waits for the first records of all other partitions
+        var barrier = new CyclicBarrier(PARTITIONS);
+        var plugin = new ConcurrentPlugin(barrier, -1);
+        var kafkaPlugin = setup(plugin, PARTITIONS);
+
+        kafkaPlugin.handleConsuming();
+
+        assertEquals(PARTITIONS, plugin.instances.size());
+        for (int p = 0; p < PARTITIONS; p++) {
+            var consumed = plugin.consumed.get(p);
+            assertEquals(RECORDS, consumed.size());
+            for (int o = 0; o < RECORDS; o++) {
+                assertEquals(100 + o, consumed.get(o));
+            }
+        }
+        var offsets = committedOffsets();
+        assertEquals(PARTITIONS, offsets.size());
+        for (int p = 0; p < PARTITIONS; p++) {
+            assertEquals(100 + RECORDS, offsets.get(new TopicPartition(TOPIC, p)).offset());
+        }
+    }
+
+    @Test
+    public void testFailureCommitsProcessedRecordsOnly() throws Exception {
+        var plugin = new ConcurrentPlugin(null, 102);
+        var kafkaPlugin = setup(plugin, 2);
+
+        assertThrows(UnrecoverableError.class, kafkaPlugin::handleConsuming);
+
+        var offsets = committedOffsets();
+        // Partition 1 fails at offset 102, so only offsets 100 and 101 are committed
+        assertEquals(102, offsets.get(new TopicPartition(TOPIC, 1)).offset());
+        verify(consumer).seek(new TopicPartition(TOPIC, 1), 102);
+        assertEquals(List.of(100L, 101L, 102L), plugin.consumed.get(1));
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (p != 1) {
+                assertEquals(100 + RECORDS, offsets.get(new TopicPartition(TOPIC, p)).offset());
+            }
+        }
+    }
+
+    @Test
+    public void testNoConcurrencyWithoutSupport() throws Exception {
+        var plugin = new RecordingPlugin(null, -1);
+        var kafkaPlugin = setup(plugin, 4);
+
+        kafkaPlugin.handleConsuming();
+
+        assertEquals(1, plugin.instances.size());
+        verify(consumer).commitSync();
+        for (int p = 0; p < PARTITIONS; p++) {
+            assertEquals(RECORDS, plugin.consumed.get(p).size());
+        }
+    }
+
+    /**
+     * A plugin recording, for each partition, the offsets it consumed. Partition 1 fails with an
+     * unrecoverable error at a given offset.
+     */
+    private static class RecordingPlugin implements KafkaPlugin {
+        final Map<Integer, List<Long>> consumed;
+        final Set<RecordingPlugin> instances;
+        final CyclicBarrier barrier;
+        final long failingOffset;
+        private Exception error;
+        private String result;
+
+        RecordingPlugin(CyclicBarrier barrier, long failingOffset) {
+            this(new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(), barrier, failingOffset);
+        }
+
+        RecordingPlugin(Map<Integer, List<Long>> consumed, Set<RecordingPlugin> instances, CyclicBarrier barrier, long failingOffset) {
+            this.consumed = consumed;
+            this.instances = instances;
+            this.barrier = barrier;
+            this.failingOffset = failingOffset;
+            instances.add(this);
+        }
+
+        @Override
+        public void consume(String record) {
+            error = null;
+            var json = new JSONObject(record);
+            int partition = json.getInt("partition");
+            long offset = json.getLong("offset");
+            consumed.computeIfAbsent(partition, p -> new CopyOnWriteArrayList<>()).add(offset);
+            if (barrier != null && offset == 100) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new RuntimeException("Records were not processed concurrently", e);
+                }
+            }
+            if (partition == 1 && offset == failingOffset) {
+                throw new UnrecoverableError("Failing at " + offset);
+            }
+            result = record;
+        }
+
+        @Override
+        public Optional<String> produce() {
+            assertTrue(error == null);
+            return Optional.of(result);
+        }
+
+        @Override
+        public Optional<List<String>> consumeTopic() {
+            return Optional.of(List.of(TOPIC));
+        }
+
+        @Override
+        public void setTopics(List<String> consumeTopics) {
+        }
+
+        @Override
+        public String getOutputPath() {
+            return null;
+        }
+
+        @Override
+        public String name() {
+            return "RecordingPlugin";
+        }
+
+        @Override
+        public String description() {
+            return null;
+        }
+
+        @Override
+        public String version() {
+            return null;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Exception getPluginError() {
+            return error;
+        }
+
+        @Override
+        public void setPluginError(Exception error) {
+            this.error = error;
+        }
+
+        @Override
+        public void freeResource() {
+        }
+    }
+
+    /** A {@link RecordingPlugin} whose workers share the records consumed. */
+    private static class ConcurrentPlugin extends RecordingPlugin implements ConcurrentKafkaPlugin {
+
+        ConcurrentPlugin(CyclicBarrier barrier, long failingOffset) {
+            super(barrier, failingOffset);
+        }
+
+        private ConcurrentPlugin(ConcurrentPlugin plugin) {
+            super(plugin.consumed, plugin.instances, plugin.barrier, plugin.failingOffset);
+        }
+
+        @Override
+        public KafkaPlugin newWorker() {
+            return new ConcurrentPlugin(this);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package eu.fasten.server.plugins.kafka;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import eu.fasten.core.metrics.MetricRegistry;
 import eu.fasten.core.plugins.KafkaPlugin;
 import eu.fasten.core.plugins.KafkaPlugin.ProcessingLane;
 import org.apache.commons.io.FileUtils;
@@ -14,8 +15,10 @@ import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.json.JSONException;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.File;
@@ -30,6 +33,7 @@ import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -192,6 +196,64 @@ public class KafkaPluginConsumeBehaviourTest {
 		assertTrue(stacktrace.contains("\tat "));
     }
 
+    @Test
+    public void outputIsFlushedOnlyBeforeCommit() throws Exception {
+        FastenKafkaPlugin kafkaPlugin = spy(new FastenKafkaPlugin(false, new Properties(), new Properties(),
+                new Properties(), dummyPlugin, 0, null, null, "", false, 0, false, false, ""));
+        setupMocks(kafkaPlugin);
+        Mockito.when(dummyPlugin.getPluginError()).thenReturn(createNestedException());
+
+        kafkaPlugin.handleProducing("{}", 123, ProcessingLane.NORMAL);
+        verify(mockProducer).send(any(), any());
+        verify(mockProducer, never()).flush();
+
+        kafkaPlugin.handleConsuming();
+        var mockConsumer = (KafkaConsumer<?, ?>) FieldUtils.readField(kafkaPlugin, "connPrio", true);
+        InOrder inOrder = Mockito.inOrder(mockProducer, mockConsumer);
+        inOrder.verify(mockProducer).flush();
+        inOrder.verify(mockConsumer).commitSync();
+    }
+
+    @Test
+    public void metricsAreRecorded() throws Exception {
+        FastenKafkaPlugin kafkaPlugin = spy(new FastenKafkaPlugin(false, new Properties(), new Properties(),
+                new Properties(), dummyPlugin, 0, null, null, "", false, 0, false, false, ""));
+        setupMocks(kafkaPlugin);
+        var metrics = MetricRegistry.global();
+        var name = kafkaPlugin.name();
+        var processed = metrics.timer("fasten_plugin_processing_seconds", "plugin", name, "lane", "priority", "status", "error");
+        var errors = metrics.counter("fasten_plugin_errors_total", "plugin", name, "exception", "RuntimeException");
+        var commits = metrics.timer("fasten_kafka_commit_seconds", "plugin", name, "lane", "priority");
+        var polls = metrics.timer("fasten_kafka_poll_seconds", "plugin", name, "lane", "priority", "result", "records");
+        long processedBefore = processed.count(), errorsBefore = errors.count(), commitsBefore = commits.count(), pollsBefore = polls.count();
+        Mockito.when(dummyPlugin.getPluginError()).thenReturn(new RuntimeException());
+
+        kafkaPlugin.handleConsuming();
+
+        assertEquals(processedBefore + 1, processed.count());
+        assertEquals(errorsBefore + 1, errors.count());
+        assertEquals(commitsBefore + 1, commits.count());
+        assertEquals(pollsBefore + 1, polls.count());
+        assertTrue(metrics.scrape().contains("fasten_plugin_errors_total{exception=\"RuntimeException\",plugin=\"" + name + "\"}"));
+    }
+
+    @Test
+    public void inputIsSplicedVerbatim() {
+        String input = "{\"groupId\": \"g\", \"nested\": {\"a\": [1, 2]}}";
+        String msg = FastenKafkaPlugin.appendJsonMember("{\"plugin\":\"p\"}", "input", input);
+        assertEquals("{\"plugin\":\"p\",\"input\":" + input + "}", msg);
+        JsonObject obj = JsonParser.parseString(msg).getAsJsonObject();
+        assertEquals("g", obj.getAsJsonObject("input").getAsJsonPrimitive("groupId").getAsString());
+
+        assertEquals("{\"input\":\"\"}", FastenKafkaPlugin.appendJsonMember("{}", "input", ""));
+        assertEquals("{\"input\":\"\"}", FastenKafkaPlugin.appendJsonMember("{}", "input", null));
+        assertThrows(JSONException.class, () -> FastenKafkaPlugin.appendJsonMember("{}", "input", "not json"));
+        assertThrows(JSONException.class, () -> FastenKafkaPlugin.appendJsonMember("{}", "input", "{not json}"));
+        assertEquals("{\"input\":{\"key\":\"v\"}}", FastenKafkaPlugin.appendJsonMember("{}", "input", "{key: 'v'}"));
+        assertEquals("{\"input\":{\"a\":1}}", FastenKafkaPlugin.appendJsonMember("{}", "input", "{\"a\": 1,}"));
+        assertThrows(JSONException.class, () -> FastenKafkaPlugin.appendJsonMember("{}", "input", "[1, 2]"));
+    }
+
     private Exception createNestedException() {
 		try {
 			throw new FileNotFoundException("XXX");